@@ -8,7 +8,7 @@ if (typeof screenshotPath !== "undefined") {
     "Image size: " + info.width + "x" + info.height + ", bytes=" + info.bytes
   );
 
-  var base64Length = img.toBase64(screenshotPath).length();
+  var base64Length = img.base64Length(screenshotPath);
   log("Base64 payload length=" + base64Length);
 
   var logPath = "scripts/runtime.log";
@@ -19,6 +19,7 @@ public final class CapturePreferences {
     private static final String KEY_SHOW_CAPTURE_TOAST = "show_capture_toast";
     private static final String KEY_SHOW_SCRIPT_SUCCESS_TOAST = "show_script_success_toast";
     private static final String KEY_SHOW_SCRIPT_ERROR_TOAST = "show_script_error_toast";
+    private static final String KEY_SKIP_DUPLICATE_CAPTURES = "skip_duplicate_captures";
 
     private CapturePreferences() {
     }
@@ -91,6 +92,14 @@ public final class CapturePreferences {
         prefs(context).edit().putBoolean(KEY_SHOW_SCRIPT_ERROR_TOAST, show).apply();
     }
 
+    public static boolean shouldSkipDuplicateCaptures(Context context) {
+        return prefs(context).getBoolean(KEY_SKIP_DUPLICATE_CAPTURES, false);
+    }
+
+    public static void setSkipDuplicateCaptures(Context context, boolean skip) {
+        prefs(context).edit().putBoolean(KEY_SKIP_DUPLICATE_CAPTURES, skip).apply();
+    }
+
     private static SharedPreferences prefs(Context context) {
         return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
@@ -21,10 +21,14 @@ import com.scriptshot.core.screenshot.RootScreenshotAction;
 import com.scriptshot.core.screenshot.ScreenshotAction;
 import com.scriptshot.core.screenshot.ScreenshotActionFactory;
 import com.scriptshot.core.screenshot.ScreenshotContentObserver;
+import com.scriptshot.raster.SimilarityIndex;
 import com.scriptshot.script.EngineManager;
 import com.scriptshot.script.ScriptExecutionCallback;
+import com.scriptshot.script.imaging.ImageHashes;
 import com.scriptshot.script.storage.ScriptStorage;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -52,6 +56,7 @@ public final class TriggerPipeline {
     private static final long DEBOUNCE_MS = 800L;
     private static final long TIMEOUT_MS = 15_000L;  // 增加到 15 秒，给 Root 会话重建留足时间
     private static final AtomicLong LAST_TRIGGER_MS = new AtomicLong(0L);
+    private static final int DUPLICATE_MAX_DISTANCE = 4;
 
     private final Context appContext;
     private final Listener listener;
@@ -167,7 +172,11 @@ public final class TriggerPipeline {
             appContext,
             new Handler(observerThread.getLooper()),
             captureStartTime,
-            file -> mainHandler.post(() -> onScreenshotCaptured(file))
+            file -> {
+                // Hashing decodes the image, so it runs here on the observer thread rather than the main thread.
+                boolean duplicate = CapturePreferences.shouldSkipDuplicateCaptures(appContext) && isDuplicateCapture(file);
+                mainHandler.post(() -> onScreenshotCaptured(file, duplicate));
+            }
         );
         contentObserver.register();
         Log.d(TAG, "[CAPTURE] MediaStore observer registered, waiting for screenshot...");
@@ -225,7 +234,7 @@ public final class TriggerPipeline {
         return R.string.screenshot_timeout_toast;
     }
 
-    private void onScreenshotCaptured(@NonNull ScreenshotContentObserver.ScreenshotFile file) {
+    private void onScreenshotCaptured(@NonNull ScreenshotContentObserver.ScreenshotFile file, boolean duplicate) {
         long captureTime = System.currentTimeMillis() - captureStartTime;
         Log.i(TAG, "[CAPTURE] ========== Screenshot Captured ==========");
         Log.i(TAG, "[CAPTURE] SUCCESS! File detected in " + captureTime + "ms");
@@ -233,6 +242,12 @@ public final class TriggerPipeline {
               " size=" + file.sizeBytes + " bytes" +
               " path=" + file.absolutePath);
         
+        if (duplicate) {
+            Log.i(TAG, "[CAPTURE] Near-duplicate of a recent capture, skipping automation");
+            maybeShowToast(R.string.duplicate_capture_skipped_toast, android.widget.Toast.LENGTH_SHORT);
+            finishFlow();
+            return;
+        }
         if (CapturePreferences.shouldShowCaptureToast(appContext) && !currentRequest.shouldSuppressFeedback()) {
             maybeShowToastText(appContext.getString(R.string.screenshot_captured_toast, file.displayName), android.widget.Toast.LENGTH_SHORT);
         }
@@ -240,6 +255,26 @@ public final class TriggerPipeline {
         finishFlow();
     }
 
+    private boolean isDuplicateCapture(@NonNull ScreenshotContentObserver.ScreenshotFile file) {
+        boolean hasPath = file.absolutePath != null && !file.absolutePath.isEmpty();
+        String key = hasPath ? file.absolutePath : file.contentUri.toString();
+        ImageHashes.StreamOpener opener = hasPath
+            ? ImageHashes.fileOpener(new File(file.absolutePath))
+            : ImageHashes.uriOpener(appContext.getContentResolver(), file.contentUri);
+        try {
+            long start = System.currentTimeMillis();
+            long hash = ImageHashes.phash(opener);
+            SimilarityIndex index = ImageHashes.index(appContext);
+            List<SimilarityIndex.Match> matches = index.query(hash, DUPLICATE_MAX_DISTANCE, key);
+            index.add(key, hash, System.currentTimeMillis());
+            Log.d(TAG, "[CAPTURE] Duplicate check took " + (System.currentTimeMillis() - start) + "ms, matches=" + matches.size());
+            return !matches.isEmpty();
+        } catch (IOException e) {
+            Log.w(TAG, "[CAPTURE] Duplicate check failed, running automation anyway", e);
+            return false;
+        }
+    }
+
     private void runAutomationScript(@Nullable ScreenshotContentObserver.ScreenshotFile file) {
         if (!CapturePreferences.areScriptsEnabled(appContext)) {
             Log.i(TAG, "Script execution disabled by user preference");
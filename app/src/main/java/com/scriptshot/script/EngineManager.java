@@ -6,6 +6,7 @@ import android.util.Log;
 import com.scriptshot.script.api.FilesApi;
 import com.scriptshot.script.api.ImgApi;
 import com.scriptshot.script.api.NotificationApi;
+import com.scriptshot.script.api.ScriptArrays;
 import com.scriptshot.script.api.ShareApi;
 import com.scriptshot.script.api.ShellApi;
 import com.scriptshot.script.api.UiApi;
@@ -107,6 +108,7 @@ public final class EngineManager {
 
         try {
             Scriptable scope = rhinoContext.initStandardObjects();
+            ScriptArrays.bindScope(rhinoContext, scope);
             ScriptableObject.putProperty(scope, "img", org.mozilla.javascript.Context.javaToJS(imgApi, scope));
             ScriptableObject.putProperty(scope, "files", org.mozilla.javascript.Context.javaToJS(filesApi, scope));
             ScriptableObject.putProperty(scope, "shell", org.mozilla.javascript.Context.javaToJS(shellApi, scope));
@@ -0,0 +1,96 @@
+package com.scriptshot.script.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base64 (standard alphabet, padded, no line breaks) straight from a memory-mapped file, so the input never lands on
+ * the Java heap. Output is produced either into one exactly sized array or in fixed chunks to a sink.
+ */
+final class Base64Streams {
+
+    private static final byte[] ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    /** Input bytes per chunk; a multiple of 3 so only the final chunk needs padding. */
+    private static final int CHUNK_INPUT = 48 * 1024;
+
+    private Base64Streams() {
+    }
+
+    static long encodedLength(long inputLength) {
+        return (inputLength + 2) / 3 * 4;
+    }
+
+    static String encode(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+            long outputLength = encodedLength(size);
+            if (outputLength > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large to encode in memory: " + file.getAbsolutePath());
+            }
+            byte[] output = new byte[(int) outputLength];
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] chunk = new byte[(int) Math.min(CHUNK_INPUT, Math.max(size, 1))];
+            int written = 0;
+            while (mapped.hasRemaining()) {
+                int length = Math.min(chunk.length, mapped.remaining());
+                mapped.get(chunk, 0, length);
+                written += encodeChunk(chunk, length, output, written);
+            }
+            return new String(output, 0, written, StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Streams the encoding of {@code file} to {@code sink} and returns the number of characters written. The sink
+     * is flushed but not closed.
+     */
+    static long encode(File file, OutputStream sink) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+            long total = 0;
+            byte[] chunk = new byte[CHUNK_INPUT];
+            byte[] output = new byte[(int) encodedLength(CHUNK_INPUT)];
+            // Map in windows so files beyond 2 GB, and address-space-constrained devices, still work.
+            long mapWindow = (long) CHUNK_INPUT * 256;
+            for (long position = 0; position < size; position += mapWindow) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapWindow, size - position));
+                while (mapped.hasRemaining()) {
+                    int length = Math.min(chunk.length, mapped.remaining());
+                    mapped.get(chunk, 0, length);
+                    int encoded = encodeChunk(chunk, length, output, 0);
+                    sink.write(output, 0, encoded);
+                    total += encoded;
+                }
+            }
+            sink.flush();
+            return total;
+        }
+    }
+
+    private static int encodeChunk(byte[] input, int length, byte[] output, int offset) {
+        int out = offset;
+        int full = length - length % 3;
+        for (int i = 0; i < full; i += 3) {
+            int bits = (input[i] & 0xFF) << 16 | (input[i + 1] & 0xFF) << 8 | (input[i + 2] & 0xFF);
+            output[out++] = ALPHABET[bits >>> 18];
+            output[out++] = ALPHABET[(bits >>> 12) & 0x3F];
+            output[out++] = ALPHABET[(bits >>> 6) & 0x3F];
+            output[out++] = ALPHABET[bits & 0x3F];
+        }
+        int remaining = length - full;
+        if (remaining > 0) {
+            int bits = (input[full] & 0xFF) << 16 | (remaining == 2 ? (input[full + 1] & 0xFF) << 8 : 0);
+            output[out++] = ALPHABET[bits >>> 18];
+            output[out++] = ALPHABET[(bits >>> 12) & 0x3F];
+            output[out++] = remaining == 2 ? ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+            output[out++] = '=';
+        }
+        return out - offset;
+    }
+}
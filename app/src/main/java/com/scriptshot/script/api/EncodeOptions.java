@@ -0,0 +1,123 @@
+package com.scriptshot.script.api;
+
+import android.graphics.Bitmap;
+
+import com.scriptshot.raster.PaletteQuantizer;
+import com.scriptshot.raster.PngFilter;
+
+import java.util.zip.Deflater;
+
+/**
+ * Output encoding chosen by a script through {@code {format, quality, colors, dither, level, filter, encoder}}.
+ * {@code "png8"} selects the palette PNG encoder; {@code "png"} goes through the PNG backend named by {@code encoder}
+ * (the API-wide default when absent) with the given deflate {@code level} and row {@code filter}; every other format
+ * goes through {@link Bitmap#compress}.
+ */
+final class EncodeOptions {
+
+    static final String FORMAT_JPEG = "jpeg";
+    static final String FORMAT_PNG = "png";
+    static final String FORMAT_WEBP = "webp";
+    static final String FORMAT_PNG8 = "png8";
+    static final String PNG_ENCODER_PLATFORM = "platform";
+    static final String PNG_ENCODER_PARALLEL = "parallel";
+
+    final String format;
+    final int quality;
+    final int colors;
+    final boolean dither;
+    final int level;
+    final PngFilter filter;
+    /** PNG backend requested for this call, or {@code null} for the API-wide default. */
+    final String pngEncoder;
+
+    private EncodeOptions(String format, int quality, int colors, boolean dither, int level, PngFilter filter,
+                          String pngEncoder) {
+        this.format = format;
+        this.quality = quality;
+        this.colors = colors;
+        this.dither = dither;
+        this.level = level;
+        this.filter = filter;
+        this.pngEncoder = pngEncoder;
+    }
+
+    static EncodeOptions from(ScriptOptions options, String defaultFormat, int defaultQuality) {
+        String format = normalizeFormat(options.getLowerString("format", defaultFormat));
+        int quality = Math.max(0, Math.min(100, options.getInt("quality", defaultQuality)));
+        int colors = Math.max(2, Math.min(PaletteQuantizer.MAX_COLORS, options.getInt("colors", PaletteQuantizer.MAX_COLORS)));
+        int level = options.has("level")
+            ? Math.max(0, Math.min(9, options.getInt("level", Deflater.DEFAULT_COMPRESSION)))
+            : Deflater.DEFAULT_COMPRESSION;
+        PngFilter filter = PngFilter.parse(options.getString("filter", null), PngFilter.ADAPTIVE);
+        String encoder = options.has("encoder") ? normalizePngEncoder(options.getLowerString("encoder", null)) : null;
+        return new EncodeOptions(format, quality, colors, options.getBoolean("dither", false), level, filter, encoder);
+    }
+
+    static String normalizePngEncoder(String encoder) {
+        if (PNG_ENCODER_PLATFORM.equals(encoder) || PNG_ENCODER_PARALLEL.equals(encoder)) {
+            return encoder;
+        }
+        throw new IllegalArgumentException("Unsupported PNG encoder: " + encoder);
+    }
+
+    boolean isPalette() {
+        return FORMAT_PNG8.equals(format);
+    }
+
+    Bitmap.CompressFormat compressFormat() {
+        switch (format) {
+            case FORMAT_PNG:
+            case FORMAT_PNG8:
+                return Bitmap.CompressFormat.PNG;
+            case FORMAT_WEBP:
+                return Bitmap.CompressFormat.WEBP;
+            case FORMAT_JPEG:
+            default:
+                return Bitmap.CompressFormat.JPEG;
+        }
+    }
+
+    String mime() {
+        switch (format) {
+            case FORMAT_PNG:
+            case FORMAT_PNG8:
+                return "image/png";
+            case FORMAT_WEBP:
+                return "image/webp";
+            case FORMAT_JPEG:
+            default:
+                return "image/jpeg";
+        }
+    }
+
+    String extension() {
+        switch (format) {
+            case FORMAT_PNG:
+            case FORMAT_PNG8:
+                return ".png";
+            case FORMAT_WEBP:
+                return ".webp";
+            case FORMAT_JPEG:
+            default:
+                return ".jpg";
+        }
+    }
+
+    private static String normalizeFormat(String format) {
+        if (format == null) {
+            return FORMAT_JPEG;
+        }
+        switch (format) {
+            case "jpg":
+            case FORMAT_JPEG:
+                return FORMAT_JPEG;
+            case FORMAT_PNG:
+            case FORMAT_WEBP:
+            case FORMAT_PNG8:
+                return format;
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.scriptshot.script.api;
+
+import com.scriptshot.script.api.ImgApi.ImageInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of {@link ImageInfo} keyed by canonical path, last-modified time and length, so a file that changes
+ * on disk simply misses instead of needing explicit invalidation.
+ */
+final class ImageInfoCache {
+
+    private static final int MAX_ENTRIES = 64;
+
+    private final LinkedHashMap<Key, ImageInfo> entries = new LinkedHashMap<Key, ImageInfo>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ImageInfo> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    ImageInfo get(File file) {
+        Key key = Key.of(file);
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    void put(File file, ImageInfo info) {
+        Key key = Key.of(file);
+        if (info == null || info.width <= 0 || info.height <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, info);
+        }
+    }
+
+    void invalidate(File file) {
+        Key key = Key.of(file);
+        synchronized (entries) {
+            Iterator<Key> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().path.equals(key.path)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        final String path;
+        final long lastModified;
+        final long length;
+
+        private Key(String path, long lastModified, long length) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        static Key of(File file) {
+            String path;
+            try {
+                path = file.getCanonicalPath();
+            } catch (IOException e) {
+                path = file.getAbsolutePath();
+            }
+            return new Key(path, file.lastModified(), file.length());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return lastModified == key.lastModified && length == key.length && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + Long.hashCode(lastModified);
+            result = 31 * result + Long.hashCode(length);
+            return result;
+        }
+    }
+}
@@ -1,43 +1,117 @@
 package com.scriptshot.script.api;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.Shader;
 import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.os.Process;
 import android.provider.MediaStore;
-import android.util.Base64;
 import android.util.Log;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.Map;
+import java.util.zip.Deflater;
 
 import com.scriptshot.core.root.RootUtils;
+import com.scriptshot.raster.BandOp;
+import com.scriptshot.raster.BandOps;
+import com.scriptshot.raster.BandReader;
+import com.scriptshot.raster.BorderTrimmer;
+import com.scriptshot.raster.BoxBlur;
+import com.scriptshot.raster.CodeScanner;
+import com.scriptshot.raster.ColorAdjust;
+import com.scriptshot.raster.ColorMatrixOp;
+import com.scriptshot.raster.Convolution;
+import com.scriptshot.raster.ImageDiff;
+import com.scriptshot.raster.ImagingPool;
+import com.scriptshot.raster.IntRect;
+import com.scriptshot.raster.JpegStreamWriter;
+import com.scriptshot.raster.LumaPlane;
+import com.scriptshot.raster.PaletteQuantizer;
+import com.scriptshot.raster.ParallelPngEncoder;
+import com.scriptshot.raster.PerceptualHash;
+import com.scriptshot.raster.PngFilter;
+import com.scriptshot.raster.PngStreamWriter;
+import com.scriptshot.raster.Raster;
+import com.scriptshot.raster.RasterStats;
+import com.scriptshot.raster.Redaction;
+import com.scriptshot.raster.ScrollStitcher;
+import com.scriptshot.raster.SimilarityIndex;
+import com.scriptshot.raster.TemplateMatcher;
+import com.scriptshot.raster.TiledProcessor;
 import com.scriptshot.script.api.ShellApi.ShellResult;
+import com.scriptshot.script.imaging.AutoTrim;
+import com.scriptshot.script.imaging.BandDecoder;
+import com.scriptshot.script.imaging.DecodePolicy;
+import com.scriptshot.script.imaging.ExifOrientation;
+import com.scriptshot.script.imaging.ImageHashes;
+import com.scriptshot.script.imaging.ImageHeader;
+import com.scriptshot.script.imaging.Rasters;
+import com.scriptshot.script.imaging.ThumbnailCache;
+import com.scriptshot.script.imaging.WatermarkCache;
 public final class ImgApi {
 
     private static final String TAG = "ImgApi";
     private static final String PUBLIC_FOLDER = "ScriptShot";
+    private static final String ROTATE_MODE_EXIF = "exif";
+    private static final double DEFAULT_FIND_THRESHOLD = 0.8d;
+    private static final int DEFAULT_FIND_RESULTS = 5;
+    private static final int BAND_ROWS = 256;
+    private static final int DEFAULT_QUALITY = 90;
+    private static final int DEFAULT_MIN_QUALITY = 40;
+    private static final int DEFAULT_MAX_QUALITY = 95;
+    private static final int DEFAULT_REDACT_RADIUS = 12;
+    private static final int DEFAULT_REDACT_BLOCK = 16;
+    private static final float MAX_SHARPEN_AMOUNT = 10f;
+    private static final String PIXEL_FORMAT_ARGB = "argb";
+    private static final String PIXEL_FORMAT_RGBA = "rgba";
+    private static final double DEFAULT_TILED_WATERMARK_SCALE = 0.2d;
+    private static final int DEFAULT_TILED_WATERMARK_SPACING = 120;
+    private static final double DEFAULT_TILED_WATERMARK_ANGLE = -30d;
+    /** Long edge of the plane {@link #scanCodes} binarizes first. */
+    private static final int DEFAULT_SCAN_EDGE = 1600;
+    /** Images up to this size get a full-resolution rescan when the downsampled plane holds no code. */
+    private static final int MAX_FULL_SCAN_PIXELS = 5_000_000;
+    /** Same quality {@link #compressTo} re-encodes JPEG edits at. */
+    private static final int REENCODE_QUALITY = 100;
+    /** Edits switch to the tiled path once one ARGB frame would take more than 1/N of the free heap. */
+    private static final int TILE_HEADROOM_DIVISOR = 2;
 
     private final Context appContext;
+    private final ImageInfoCache infoCache = new ImageInfoCache();
     private volatile String lastOutputPath;
+    private volatile DecodePolicy.Quality quality = DecodePolicy.Quality.EXACT;
+    private volatile String pngEncoder = EncodeOptions.PNG_ENCODER_PARALLEL;
 
     public ImgApi(Context context) {
         this.appContext = context.getApplicationContext();
@@ -47,44 +121,104 @@ public final class ImgApi {
         Bitmap apply(Bitmap source) throws IOException;
     }
 
+    private interface RasterOperator {
+        void apply(Raster raster);
+    }
+
+    private interface OutputWriter {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Sets the default decode precision: {@code "fast"} decodes opaque images as RGB_565 (half the memory, slight
+     * banding) for edits and re-encodes, {@code "exact"} (the default) keeps ARGB_8888. Calls that take an options
+     * object can override it with {@code quality: "fast"|"exact"}.
+     */
+    public void setQuality(String mode) {
+        DecodePolicy.Quality parsed = DecodePolicy.Quality.parse(mode, null);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Unsupported quality: " + mode);
+        }
+        quality = parsed;
+    }
+
+    public String getQuality() {
+        return quality.name().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Selects the PNG backend for edits and re-encodes: {@code "parallel"} (the default) filters and deflates row
+     * chunks on every core, {@code "platform"} uses {@link Bitmap#compress}. {@code compress} and {@code export}
+     * can override it per call with {@code encoder}, and pick a deflate {@code level} (0..9) and row
+     * {@code filter} ("adaptive", "none", "sub", "up", "paeth") for the parallel encoder.
+     */
+    public void setPngEncoder(String encoder) {
+        pngEncoder = EncodeOptions.normalizePngEncoder(encoder == null ? null : encoder.trim().toLowerCase(Locale.US));
+    }
+
+    public String getPngEncoder() {
+        return pngEncoder;
+    }
+
     public ImageInfo load(String path) throws IOException {
         File source = resolveFile(path);
         if (!source.exists()) {
             throw new IOException("Image not found: " + path);
         }
+        ImageInfo cached = infoCache.get(source);
+        if (cached != null) {
+            return cached;
+        }
 
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true;
         BitmapFactory.decodeFile(source.getAbsolutePath(), options);
-
-        return new ImageInfo(
-            options.outWidth,
-            options.outHeight,
-            source.length(),
-            options.outMimeType
-        );
+        return remember(source, options);
     }
 
     public String toBase64(String path) throws IOException {
-        File source = resolveFile(path);
-        if (!source.exists()) {
-            throw new IOException("Image not found: " + path);
-        }
+        return Base64Streams.encode(requireExisting(path));
+    }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        FileInputStream inputStream = new FileInputStream(source);
-        byte[] buffer = new byte[8 * 1024];
-        int read;
-        while ((read = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, read);
+    /**
+     * Length of {@link #toBase64}'s result, computed from the file size without encoding.
+     */
+    public long base64Length(String path) throws IOException {
+        return Base64Streams.encodedLength(requireExisting(path).length());
+    }
+
+    /**
+     * Streams the Base64 encoding of {@code path} into {@code outPath} and returns the number of characters written.
+     */
+    public long writeBase64(String path, String outPath) throws IOException {
+        File source = requireExisting(path);
+        String normalizedOut = normalizeOutPath(outPath);
+        if (normalizedOut == null) {
+            throw new IllegalArgumentException("outPath is required for writeBase64");
+        }
+        File destination = resolveFile(normalizedOut);
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+        }
+        try (OutputStream output = new FileOutputStream(destination, false)) {
+            long written = Base64Streams.encode(source, output);
+            lastOutputPath = destination.getAbsolutePath();
+            return written;
         }
-        inputStream.close();
-        return Base64.encodeToString(outputStream.toByteArray(), Base64.NO_WRAP);
+    }
+
+    /**
+     * Streams the Base64 encoding of {@code path} into {@code sink}, which is flushed but left open.
+     */
+    public long writeBase64(String path, OutputStream sink) throws IOException {
+        return Base64Streams.encode(requireExisting(path), sink);
     }
 
     public boolean compress(String path, int quality, String outPath) throws IOException {
         File source = resolveFile(path);
-        Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath());
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(),
+            DecodePolicy.options(DecodePolicy.Use.PIXELS, this.quality, false));
         if (bitmap == null) {
             return false;
         }
@@ -95,6 +229,7 @@ public final class ImgApi {
             parent.mkdirs();
         }
 
+        infoCache.invalidate(destination);
         FileOutputStream outputStream = new FileOutputStream(destination);
         boolean success = bitmap.compress(Bitmap.CompressFormat.JPEG, Math.max(0, Math.min(quality, 100)), outputStream);
         outputStream.flush();
@@ -106,6 +241,180 @@ public final class ImgApi {
         return success;
     }
 
+    /**
+     * Re-encodes {@code path} into {@code outPath}. Options: {@code format} ("jpeg", "png", "webp" or "png8"),
+     * {@code quality} for the lossy formats, {@code colors} / {@code dither} for the png8 palette encoder, and
+     * {@code level} / {@code filter} / {@code encoder} for png (see {@link #setPngEncoder}).
+     */
+    public boolean compress(String path, String outPath, Map<?, ?> options) throws IOException {
+        File source = requireExisting(path);
+        String normalizedOut = normalizeOutPath(outPath);
+        if (normalizedOut == null) {
+            throw new IllegalArgumentException("outPath is required for compress");
+        }
+        ScriptOptions opts = ScriptOptions.from(options);
+        EncodeOptions encoding = EncodeOptions.from(opts, EncodeOptions.FORMAT_JPEG, DEFAULT_QUALITY);
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), decodeOptions(opts, false));
+        if (bitmap == null) {
+            return false;
+        }
+        File destination = resolveFile(normalizedOut);
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            bitmap.recycle();
+            throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+        }
+        infoCache.invalidate(destination);
+        long started = SystemClock.elapsedRealtime();
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(destination, false))) {
+            encodeTo(bitmap, encoding, output);
+        } finally {
+            bitmap.recycle();
+        }
+        Log.d(TAG, String.format(Locale.US, "Encoded %s as %s: %d -> %d bytes in %d ms", source.getName(),
+            encoding.format, source.length(), destination.length(), SystemClock.elapsedRealtime() - started));
+        lastOutputPath = destination.getAbsolutePath();
+        return true;
+    }
+
+    public EncodeResult encodeToSize(String path, long maxBytes) throws IOException {
+        return encodeToSize(path, maxBytes, null);
+    }
+
+    /**
+     * Decodes once and writes the highest JPEG/WebP quality that fits {@code maxBytes}. Options: {@code format}
+     * ("jpeg" or "webp"), {@code minQuality} (default 40), {@code maxQuality} (default 95), {@code resize}
+     * (scale down when minQuality is still too large, default true) and {@code outPath} (defaults to a sibling
+     * file with a "-sized" suffix).
+     */
+    public EncodeResult encodeToSize(String path, long maxBytes, Map<?, ?> options) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be > 0");
+        }
+        File source = requireExisting(path);
+        ScriptOptions opts = ScriptOptions.from(options);
+        EncodeOptions encoding = EncodeOptions.from(opts, EncodeOptions.FORMAT_JPEG, DEFAULT_QUALITY);
+        if (!EncodeOptions.FORMAT_JPEG.equals(encoding.format) && !EncodeOptions.FORMAT_WEBP.equals(encoding.format)) {
+            throw new IllegalArgumentException("encodeToSize supports jpeg and webp only");
+        }
+        int minQuality = clamp(opts.getInt("minQuality", DEFAULT_MIN_QUALITY), 0, 100);
+        int maxQuality = clamp(opts.getInt("maxQuality", DEFAULT_MAX_QUALITY), minQuality, 100);
+        String outPath = normalizeOutPath(opts.getString("outPath", null));
+        File destination = outPath != null ? resolveFile(outPath) : siblingWithSuffix(source, "-sized", encoding.extension());
+
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), decodeOptions(opts, false));
+        if (bitmap == null) {
+            throw new IOException("Unable to decode image: " + source.getAbsolutePath());
+        }
+        TargetSizeEncoder encoder = new TargetSizeEncoder(encoding.compressFormat(), maxBytes, minQuality, maxQuality);
+        boolean fits;
+        try {
+            fits = encoder.encode(bitmap, opts.getBoolean("resize", true));
+        } finally {
+            bitmap.recycle();
+        }
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+        }
+        infoCache.invalidate(destination);
+        try (OutputStream output = new FileOutputStream(destination, false)) {
+            encoder.writeTo(output);
+        }
+        lastOutputPath = destination.getAbsolutePath();
+        return new EncodeResult(lastOutputPath, encoder.getSize(), encoder.getQuality(), encoder.getWidth(),
+            encoder.getHeight(), fits);
+    }
+
+    /**
+     * Writes several variants of one image from a single decode. Each spec is an options object with {@code maxEdge}
+     * (longest edge in px, omitted or 0 for full size), the {@link #compress(String, String, Map)} encoding options
+     * and an optional {@code outPath}. Smaller variants are scaled down from the next larger one and every variant is
+     * encoded on the imaging pool as soon as it is ready. Results come back in spec order.
+     */
+    public ExportResult[] export(String path, List<?> variants) throws IOException {
+        if (variants == null || variants.isEmpty()) {
+            throw new IllegalArgumentException("At least one export variant is required");
+        }
+        File source = requireExisting(path);
+        ImageInfo info = load(path);
+        String defaultFormat = defaultFormatFor(info.mime);
+        int count = variants.size();
+        ScriptOptions[] specs = new ScriptOptions[count];
+        EncodeOptions[] encodings = new EncodeOptions[count];
+        for (int i = 0; i < count; i++) {
+            Object item = variants.get(i);
+            if (!(item instanceof Map)) {
+                throw new IllegalArgumentException("Export variant " + i + " must be an object");
+            }
+            specs[i] = ScriptOptions.from((Map<?, ?>) item);
+            encodings[i] = EncodeOptions.from(specs[i], defaultFormat, DEFAULT_QUALITY);
+        }
+
+        Bitmap decoded = BitmapFactory.decodeFile(source.getAbsolutePath(),
+            DecodePolicy.options(DecodePolicy.Use.PIXELS, quality, false));
+        if (decoded == null) {
+            throw new IOException("Unable to decode image: " + source.getAbsolutePath());
+        }
+        int fullEdge = Math.max(decoded.getWidth(), decoded.getHeight());
+        Integer[] order = new Integer[count];
+        int[] targets = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            int maxEdge = specs[i].getInt("maxEdge", 0);
+            targets[i] = maxEdge <= 0 ? fullEdge : Math.min(maxEdge, fullEdge);
+        }
+        Arrays.sort(order, (first, second) -> Integer.compare(targets[second], targets[first]));
+
+        List<Bitmap> owned = new ArrayList<>();
+        owned.add(decoded);
+        List<Future<ExportResult>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(null);
+        }
+        try {
+            Bitmap current = decoded;
+            for (Integer index : order) {
+                current = scaleHierarchically(current, targets[index], owned);
+                Bitmap variant = current;
+                EncodeOptions encoding = encodings[index];
+                String outPath = normalizeOutPath(specs[index].getString("outPath", null));
+                File destination = outPath != null ? resolveFile(outPath) : siblingWithSuffix(source,
+                    targets[index] == fullEdge ? "-full" : "-" + targets[index], encoding.extension());
+                futures.set(index, ImagingPool.executor().submit(() -> writeVariant(variant, encoding, destination)));
+            }
+            ExportResult[] results = new ExportResult[count];
+            for (int i = 0; i < count; i++) {
+                results[i] = ImagingPool.awaitIo(futures.get(i));
+            }
+            lastOutputPath = results[0].path;
+            return results;
+        } finally {
+            // Encodes may still be reading pixels if an earlier one failed; let them finish before recycling.
+            for (Future<ExportResult> future : futures) {
+                if (future != null) {
+                    try {
+                        future.get();
+                    } catch (Exception ignored) {
+                        // Already surfaced through awaitIo, or superseded by the failure being propagated.
+                    }
+                }
+            }
+            for (Bitmap bitmap : owned) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Returns the path of a cached JPEG thumbnail whose longest edge is at most {@code size} px.
+     */
+    public String thumbnail(String path, int size) throws IOException {
+        File source = requireExisting(path);
+        int edge = clamp(size, ThumbnailCache.MIN_EDGE, ThumbnailCache.MAX_EDGE);
+        return ThumbnailCache.get(appContext).file(source, edge).getAbsolutePath();
+    }
+
     public boolean delete(String path) {
         File source = resolveFile(path);
         if (!source.exists()) {
@@ -113,12 +422,21 @@ public final class ImgApi {
         }
 
         boolean deletedOnDisk = source.delete();
+        infoCache.invalidate(source);
         removeFromMediaStore(source.getAbsolutePath());
         lastOutputPath = null;
         return deletedOnDisk;
     }
 
     public boolean rotate(String path, int degrees) throws IOException {
+        return rotate(path, degrees, null);
+    }
+
+    /**
+     * Rotates clockwise by {@code degrees}. With {@code {mode: "exif"}} a JPEG only has its EXIF orientation tag
+     * rewritten instead of being decoded and re-encoded; other formats always take the pixel path.
+     */
+    public boolean rotate(String path, int degrees, Map<?, ?> options) throws IOException {
         if (degrees % 360 == 0) {
             File noop = resolveFile(path);
             lastOutputPath = noop.getAbsolutePath();
@@ -128,6 +446,15 @@ public final class ImgApi {
         if (!source.exists()) {
             throw new IOException("Image not found: " + path);
         }
+        if (ROTATE_MODE_EXIF.equals(ScriptOptions.from(options).getLowerString("mode", null))) {
+            if (degrees % 90 == 0 && ExifOrientation.isJpeg(source)) {
+                if (rotateByExif(source, degrees)) {
+                    return true;
+                }
+            } else {
+                Log.i(TAG, "EXIF rotation needs a JPEG and a multiple of 90 degrees, re-encoding " + source.getName());
+            }
+        }
         Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath());
         if (bitmap == null) {
             return false;
@@ -139,28 +466,11 @@ public final class ImgApi {
 
         ImageInfo info = load(path);
         Bitmap.CompressFormat format = chooseFormat(info.mime);
-        File temp = createTempFile(source.getName(), format);
-        if (temp == null) {
-            rotated.recycle();
-            return false;
-        }
         try {
-            writeBitmap(rotated, temp, format);
-            if (RootUtils.isRootAvailable() && copyWithRoot(temp, source)) {
-                lastOutputPath = source.getAbsolutePath();
-                return true;
-            }
-            String publicPath = saveToPublicGallery(temp, info.mime != null ? info.mime : guessMimeFromFormat(format), format, source.getName());
-            if (publicPath != null) {
-                lastOutputPath = publicPath;
-                return true;
-            }
-            return false;
+            String mime = info.mime != null ? info.mime : guessMimeFromFormat(format);
+            return publishReplacement(source, mime, format, outputStream -> compressTo(rotated, format, outputStream));
         } finally {
             rotated.recycle();
-            if (temp.exists() && !temp.delete()) {
-                Log.w(TAG, "Unable to delete temp file " + temp.getAbsolutePath());
-            }
         }
     }
 
@@ -168,36 +478,57 @@ public final class ImgApi {
         if (targetWidth <= 0 || targetHeight <= 0) {
             throw new IllegalArgumentException("Width and height must be > 0");
         }
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, IntRect.centered(large.width, large.height, targetWidth, targetHeight),
+                Collections.emptyList());
+        }
         return applyTransform(path, outPath, bitmap -> {
-            int width = Math.min(targetWidth, bitmap.getWidth());
-            int height = Math.min(targetHeight, bitmap.getHeight());
-            int startX = Math.max(0, (bitmap.getWidth() - width) / 2);
-            int startY = Math.max(0, (bitmap.getHeight() - height) / 2);
-            return Bitmap.createBitmap(bitmap, startX, startY, width, height);
+            IntRect rect = IntRect.centered(bitmap.getWidth(), bitmap.getHeight(), targetWidth, targetHeight);
+            return Bitmap.createBitmap(bitmap, rect.left, rect.top, rect.width(), rect.height());
         });
     }
 
     public boolean cropRelative(String path, float leftRatio, float topRatio, float rightRatio, float bottomRatio, String outPath) throws IOException {
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            IntRect rect = IntRect.relative(large.width, large.height, leftRatio, topRatio, rightRatio, bottomRatio);
+            return applyTiled(path, outPath, large, rect.isEmpty() ? null : rect, Collections.emptyList());
+        }
         return applyTransform(path, outPath, bitmap -> {
-            float clampedLeft = clampFloat(leftRatio, 0f, 1f);
-            float clampedTop = clampFloat(topRatio, 0f, 1f);
-            float clampedRight = clampFloat(rightRatio, 0f, 1f);
-            float clampedBottom = clampFloat(bottomRatio, 0f, 1f);
-            int left = Math.round(bitmap.getWidth() * Math.min(clampedLeft, clampedRight));
-            int right = Math.round(bitmap.getWidth() * Math.max(clampedLeft, clampedRight));
-            int top = Math.round(bitmap.getHeight() * Math.min(clampedTop, clampedBottom));
-            int bottom = Math.round(bitmap.getHeight() * Math.max(clampedTop, clampedBottom));
-            left = clamp(left, 0, bitmap.getWidth());
-            right = clamp(right, 0, bitmap.getWidth());
-            top = clamp(top, 0, bitmap.getHeight());
-            bottom = clamp(bottom, 0, bitmap.getHeight());
-            if (right - left <= 0 || bottom - top <= 0) {
+            IntRect rect = IntRect.relative(bitmap.getWidth(), bitmap.getHeight(), leftRatio, topRatio, rightRatio, bottomRatio);
+            if (rect.isEmpty()) {
                 return bitmap;
             }
-            return Bitmap.createBitmap(bitmap, left, top, right - left, bottom - top);
+            return Bitmap.createBitmap(bitmap, rect.left, rect.top, rect.width(), rect.height());
         });
     }
 
+    public TrimResult autoTrim(String path, Map<?, ?> options) throws IOException {
+        return autoTrim(path, options, null);
+    }
+
+    /**
+     * Crops system bars and uniform borders. {@code bars} (default true) drops the status bar and, in portrait, the
+     * navigation bar when the capture has the display's size, keeping any rows of those bands that do not look like a
+     * bar (immersive games and video); {@code uniformBorders} (default true) trims flat
+     * bands from every edge; {@code tolerance} (default 8) is the per-channel difference still counted as flat.
+     * Detection reads one subsampled decode plus thin full-resolution strips, and the crop is written through
+     * region decoding, so the full image is never decoded.
+     */
+    public TrimResult autoTrim(String path, Map<?, ?> options, String outPath) throws IOException {
+        File source = requireExisting(path);
+        ScriptOptions parsed = ScriptOptions.from(options);
+        ImageInfo info = load(source.getAbsolutePath());
+        IntRect content = AutoTrim.detect(appContext, source, parsed.getBoolean("bars", true),
+            parsed.getBoolean("uniformBorders", true), parsed.getInt("tolerance", BorderTrimmer.DEFAULT_TOLERANCE));
+        boolean trimmed = !content.equals(new IntRect(0, 0, info.width, info.height));
+        boolean success = trimmed
+            ? cropByRegion(path, outPath, info, content)
+            : handleNoopResult(source, normalizeOutPath(outPath));
+        return new TrimResult(success ? lastOutputPath : null, content, trimmed);
+    }
+
     public boolean resizeToMaxEdge(String path, int maxEdge, String outPath) throws IOException {
         if (maxEdge <= 0) {
             throw new IllegalArgumentException("maxEdge must be > 0");
@@ -235,6 +566,11 @@ public final class ImgApi {
     }
 
     public boolean fillRect(String path, int left, int top, int right, int bottom, String color, String outPath) throws IOException {
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null, Collections.singletonList(
+                BandOps.fill(IntRect.clamped(left, top, right, bottom, large.width, large.height), parseColor(color))));
+        }
         return applyTransform(path, outPath, bitmap -> {
             Rect rect = buildRect(left, top, right, bottom, bitmap.getWidth(), bitmap.getHeight());
             if (rect.isEmpty()) {
@@ -269,17 +605,67 @@ public final class ImgApi {
         if (radius <= 0) {
             throw new IllegalArgumentException("radius must be > 0");
         }
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null, Collections.singletonList(
+                BandOps.blur(IntRect.clamped(left, top, right, bottom, large.width, large.height), radius)));
+        }
         return applyTransform(path, outPath, bitmap -> {
-            Rect rect = buildRect(left, top, right, bottom, bitmap.getWidth(), bitmap.getHeight());
+            IntRect rect = IntRect.clamped(left, top, right, bottom, bitmap.getWidth(), bitmap.getHeight());
             if (rect.isEmpty()) {
                 return bitmap;
             }
-            Bitmap region = Bitmap.createBitmap(bitmap, rect.left, rect.top, rect.width(), rect.height());
-            Bitmap blurred = applyBoxBlur(region, radius);
-            Canvas canvas = new Canvas(bitmap);
-            canvas.drawBitmap(blurred, rect.left, rect.top, null);
-            region.recycle();
-            blurred.recycle();
+            Raster region = Rasters.read(bitmap, rect);
+            BoxBlur.apply(region, radius);
+            Rasters.write(region, bitmap, rect.left, rect.top);
+            return bitmap;
+        });
+    }
+
+    /**
+     * Redacts several rectangles with one decode and one encode. Each area is {@code {rect: [left, top, right,
+     * bottom], mode: "blur"|"fill"|"pixelate", radius, block, color}}; overlapping areas with the same settings are
+     * merged and disjoint regions are processed in parallel. Only the rows spanned by the areas are copied out of
+     * the bitmap.
+     */
+    public boolean redact(String path, List<?> areas, String outPath) throws IOException {
+        if (areas == null || areas.isEmpty()) {
+            throw new IllegalArgumentException("At least one redaction area is required");
+        }
+        List<Redaction.Area> parsed = new ArrayList<>(areas.size());
+        for (int i = 0; i < areas.size(); i++) {
+            Object item = areas.get(i);
+            if (!(item instanceof Map)) {
+                throw new IllegalArgumentException("Redaction area " + i + " must be an object");
+            }
+            parsed.add(parseRedaction(ScriptOptions.from((Map<?, ?>) item), i));
+        }
+        return applyTransform(path, outPath, bitmap -> {
+            int top = bitmap.getHeight();
+            int bottom = 0;
+            for (Redaction.Area area : parsed) {
+                IntRect clamped = IntRect.clamped(area.rect.left, area.rect.top, area.rect.right, area.rect.bottom,
+                    bitmap.getWidth(), bitmap.getHeight());
+                if (!clamped.isEmpty()) {
+                    top = Math.min(top, clamped.top);
+                    bottom = Math.max(bottom, clamped.bottom);
+                }
+            }
+            if (bottom <= top) {
+                return bitmap;
+            }
+            Raster band = Rasters.read(bitmap, new IntRect(0, top, bitmap.getWidth(), bottom));
+            List<Redaction.Area> shifted = new ArrayList<>(parsed.size());
+            for (Redaction.Area area : parsed) {
+                IntRect rect = area.rect;
+                shifted.add(new Redaction.Area(new IntRect(rect.left, rect.top - top, rect.right, rect.bottom - top),
+                    area.mode, area.amount, area.color));
+            }
+            long start = SystemClock.elapsedRealtime();
+            int regions = Redaction.apply(band, shifted);
+            Rasters.write(band, bitmap, 0, top);
+            Log.d(TAG, "redact: " + parsed.size() + " areas as " + regions + " regions in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
             return bitmap;
         });
     }
@@ -288,101 +674,85 @@ public final class ImgApi {
         if (text == null || text.trim().isEmpty()) {
             return false;
         }
-        final String safeText = text;
-        final String safePosition = position;
-        final float safeSize = Math.max(10f, textSize);
+        final Bitmap overlay = WatermarkCache.get().text(text, Math.max(10f, textSize), parseColor(color), 0);
+        final WatermarkPosition safePosition = resolvePosition(position);
         final int safePadding = Math.max(0, paddingPx);
+        final int inset = WatermarkCache.TEXT_SHADOW_INSET;
+        final int boxWidth = overlay.getWidth() - inset * 2;
+        final int boxHeight = overlay.getHeight() - inset * 2;
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            IntRect box = placeWatermark(safePosition, large.width, large.height, boxWidth, boxHeight, safePadding);
+            return applyTiled(path, outPath, large, null, Collections.singletonList(
+                BandOps.overlay(Rasters.read(overlay), box.left - inset, box.top - inset)));
+        }
         return applyTransform(path, outPath, bitmap -> {
-            Canvas canvas = new Canvas(bitmap);
-            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            paint.setColor(parseColor(color));
-            paint.setTextSize(safeSize);
-            paint.setShadowLayer(2f, 1f, 1f, Color.argb(120, 0, 0, 0));
-            float x;
-            float y;
-            Paint.FontMetrics metrics = paint.getFontMetrics();
-            float textHeight = metrics.descent - metrics.ascent;
-            switch (resolvePosition(safePosition)) {
-                case TOP_LEFT:
-                    paint.setTextAlign(Paint.Align.LEFT);
-                    x = safePadding;
-                    y = safePadding - metrics.ascent;
-                    break;
-                case TOP_RIGHT:
-                    paint.setTextAlign(Paint.Align.RIGHT);
-                    x = bitmap.getWidth() - safePadding;
-                    y = safePadding - metrics.ascent;
-                    break;
-                case BOTTOM_LEFT:
-                    paint.setTextAlign(Paint.Align.LEFT);
-                    x = safePadding;
-                    y = bitmap.getHeight() - safePadding - metrics.descent;
-                    break;
-                case CENTER:
-                    paint.setTextAlign(Paint.Align.CENTER);
-                    x = bitmap.getWidth() / 2f;
-                    y = bitmap.getHeight() / 2f - metrics.ascent / 2f;
-                    break;
-                case BOTTOM_RIGHT:
-                default:
-                    paint.setTextAlign(Paint.Align.RIGHT);
-                    x = bitmap.getWidth() - safePadding;
-                    y = bitmap.getHeight() - safePadding - metrics.descent;
-                    break;
-            }
-            canvas.drawText(safeText, x, y, paint);
+            IntRect box = placeWatermark(safePosition, bitmap.getWidth(), bitmap.getHeight(), boxWidth, boxHeight,
+                safePadding);
+            new Canvas(bitmap).drawBitmap(overlay, box.left - inset, box.top - inset, null);
             return bitmap;
         });
     }
 
     public boolean watermarkImage(String path, String watermarkPath, String position, float scale, int paddingPx, String outPath) throws IOException {
-        File overlayFile = resolveFile(watermarkPath);
-        if (!overlayFile.exists()) {
-            throw new IOException("Watermark image not found: " + watermarkPath);
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null, Collections.singletonList(
+                watermarkOp(watermarkPath, position, scale, paddingPx, large.width, large.height)));
         }
-        Bitmap overlay = BitmapFactory.decodeFile(overlayFile.getAbsolutePath());
-        if (overlay == null) {
-            throw new IOException("Unable to decode watermark image: " + watermarkPath);
-        }
-        final Bitmap safeOverlay = overlay;
-        final String safePosition = position;
-        final float safeScale = scale <= 0f ? 0.25f : Math.min(scale, 1f);
+        final File overlayFile = requireWatermark(watermarkPath);
+        final WatermarkPosition safePosition = resolvePosition(position);
         final int safePadding = Math.max(0, paddingPx);
         return applyTransform(path, outPath, bitmap -> {
-            int baseWidth = bitmap.getWidth();
-            float targetWidth = baseWidth * safeScale;
-            float aspect = (float) safeOverlay.getWidth() / Math.max(1, safeOverlay.getHeight());
-            int overlayWidth = (int) Math.max(1, targetWidth);
-            int overlayHeight = (int) Math.max(1, overlayWidth / aspect);
-            Bitmap scaled = Bitmap.createScaledBitmap(safeOverlay, overlayWidth, overlayHeight, true);
-            Canvas canvas = new Canvas(bitmap);
-            float x;
-            float y;
-            switch (resolvePosition(safePosition)) {
-                case TOP_LEFT:
-                    x = safePadding;
-                    y = safePadding;
-                    break;
-                case TOP_RIGHT:
-                    x = bitmap.getWidth() - overlayWidth - safePadding;
-                    y = safePadding;
-                    break;
-                case BOTTOM_LEFT:
-                    x = safePadding;
-                    y = bitmap.getHeight() - overlayHeight - safePadding;
-                    break;
-                case CENTER:
-                    x = (bitmap.getWidth() - overlayWidth) / 2f;
-                    y = (bitmap.getHeight() - overlayHeight) / 2f;
-                    break;
-                case BOTTOM_RIGHT:
-                default:
-                    x = bitmap.getWidth() - overlayWidth - safePadding;
-                    y = bitmap.getHeight() - overlayHeight - safePadding;
-                    break;
-            }
-            canvas.drawBitmap(scaled, x, y, null);
-            scaled.recycle();
+            Bitmap overlay = WatermarkCache.get().image(overlayFile, watermarkWidth(bitmap.getWidth(), scale), 0);
+            IntRect placement = placeWatermark(safePosition, bitmap.getWidth(), bitmap.getHeight(),
+                overlay.getWidth(), overlay.getHeight(), safePadding);
+            new Canvas(bitmap).drawBitmap(overlay, placement.left, placement.top, null);
+            return bitmap;
+        });
+    }
+
+    /**
+     * Repeats a watermark over the whole image, as one shader fill rather than a draw per copy. Options:
+     * {@code text} or {@code image} (a path), {@code textSize} (default 36), {@code color} (default
+     * {@code "#80FFFFFF"}), {@code scale} (image width as a fraction of the base width, default 0.2),
+     * {@code spacing} (pixels between copies, default 120), {@code angle} (degrees, default -30) and
+     * {@code opacity} (0..1, default 1).
+     */
+    public boolean watermarkTiled(String path, Map<?, ?> options, String outPath) throws IOException {
+        ScriptOptions parsed = ScriptOptions.from(options);
+        String text = parsed.getString("text", null);
+        String image = parsed.getString("image", null);
+        if ((text == null || text.trim().isEmpty()) && image == null) {
+            throw new IllegalArgumentException("watermarkTiled needs text or image");
+        }
+        final File overlayFile = image != null ? requireWatermark(image) : null;
+        final float scale = (float) parsed.getDouble("scale", DEFAULT_TILED_WATERMARK_SCALE);
+        final int margin = Math.max(0, parsed.getInt("spacing", DEFAULT_TILED_WATERMARK_SPACING)) / 2;
+        final float angle = (float) parsed.getDouble("angle", DEFAULT_TILED_WATERMARK_ANGLE);
+        final float opacity = (float) Math.max(0d, Math.min(1d, parsed.getDouble("opacity", 1d)));
+        final Bitmap textTile = overlayFile == null
+            ? WatermarkCache.get().text(text, Math.max(10f, (float) parsed.getDouble("textSize", 36d)),
+                parseColor(parsed.getString("color", "#80FFFFFF")), margin)
+            : null;
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            Bitmap tile = textTile != null ? textTile
+                : WatermarkCache.get().image(overlayFile, watermarkWidth(large.width, scale), margin);
+            return applyTiled(path, outPath, large, null, Collections.singletonList(BandOps.pattern(
+                Rasters.read(tile), angle, large.width / 2f, large.height / 2f, opacity)));
+        }
+        return applyTransform(path, outPath, bitmap -> {
+            Bitmap tile = textTile != null ? textTile
+                : WatermarkCache.get().image(overlayFile, watermarkWidth(bitmap.getWidth(), scale), margin);
+            BitmapShader shader = new BitmapShader(tile, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+            Matrix rotation = new Matrix();
+            rotation.setRotate(angle, bitmap.getWidth() / 2f, bitmap.getHeight() / 2f);
+            shader.setLocalMatrix(rotation);
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+            paint.setShader(shader);
+            paint.setAlpha(Math.round(opacity * 255f));
+            new Canvas(bitmap).drawPaint(paint);
             return bitmap;
         });
     }
@@ -417,43 +787,162 @@ public final class ImgApi {
         }
         final int background = parseColor(color);
         return applyTransform(path, outPath, bitmap -> {
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            float current = (float) width / height;
-            int padLeft = 0;
-            int padTop = 0;
-            int padRight = 0;
-            int padBottom = 0;
-            if (targetRatio > current) {
-                float desiredWidth = targetRatio * height;
-                int totalPad = Math.max(0, Math.round(desiredWidth) - width);
-                padLeft = totalPad / 2;
-                padRight = totalPad - padLeft;
-            } else {
-                float desiredHeight = width / targetRatio;
-                int totalPad = Math.max(0, Math.round(desiredHeight) - height);
-                padTop = totalPad / 2;
-                padBottom = totalPad - padTop;
-            }
-            Bitmap padded = Bitmap.createBitmap(width + padLeft + padRight, height + padTop + padBottom, Bitmap.Config.ARGB_8888);
+            IntRect canvasRect = IntRect.padToAspect(bitmap.getWidth(), bitmap.getHeight(), targetRatio);
+            Bitmap padded = Bitmap.createBitmap(canvasRect.width(), canvasRect.height(), Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(padded);
             canvas.drawColor(background);
-            canvas.drawBitmap(bitmap, padLeft, padTop, null);
+            canvas.drawBitmap(bitmap, -canvasRect.left, -canvasRect.top, null);
             return padded;
         });
     }
 
     public boolean toGrayscale(String path, String outPath) throws IOException {
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null,
+                Collections.singletonList(BandOps.colorMatrix(ColorMatrixOp.saturation(0f))));
+        }
+        return applyPointwise(path, outPath, raster -> ColorMatrixOp.saturation(0f).apply(raster));
+    }
+
+    /**
+     * Colour adjustments fused into one pass over the decoded pixels, in place: {@code brightness} (-1..1, default
+     * 0), {@code contrast} (scale about mid-grey, default 1), {@code saturation} (0 = grey, default 1),
+     * {@code invert} (default false) are composed into one colour matrix, and {@code gamma} (above 1 lifts
+     * mid-tones, default 1) becomes a lookup table applied after it, in that order.
+     */
+    public boolean adjust(String path, Map<?, ?> options, String outPath) throws IOException {
+        ColorAdjust adjustment = parseAdjust(ScriptOptions.from(options), "adjust");
+        if (adjustment.isIdentity()) {
+            return handleNoopResult(requireExisting(path), normalizeOutPath(outPath));
+        }
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null, Collections.singletonList(BandOps.colorAdjust(adjustment)));
+        }
+        return applyPointwise(path, outPath, adjustment::apply);
+    }
+
+    /**
+     * Unsharp mask: {@code amount} (0-10, around 0.5-1.5 for downscaled captures) scales the detail added back,
+     * {@code radius} is the Gaussian sigma in pixels.
+     */
+    public boolean sharpen(String path, double amount, double radius, String outPath) throws IOException {
+        if (!(amount > 0) || amount > MAX_SHARPEN_AMOUNT) {
+            throw new IllegalArgumentException("amount must be in (0, " + MAX_SHARPEN_AMOUNT + "]");
+        }
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("radius must be > 0");
+        }
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null, Collections.singletonList(BandOps.sharpen((float) amount, radius)));
+        }
+        return applyRaster(path, outPath, raster -> Convolution.sharpen(raster, (float) amount, radius));
+    }
+
+    /**
+     * Sobel edge magnitude on luma as an opaque greyscale image, for layout analysis.
+     */
+    public boolean edges(String path, String outPath) throws IOException {
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null, Collections.singletonList(BandOps.edges()));
+        }
+        return applyRaster(path, outPath, Convolution::edges);
+    }
+
+    public boolean convolve(String path, List<?> kernel, String outPath) throws IOException {
+        return convolve(path, kernel, outPath, null);
+    }
+
+    /**
+     * Convolves with a custom kernel given as rows of numbers with odd sides, e.g. {@code [[0,-1,0],[-1,5,-1],
+     * [0,-1,0]]}. Weights are divided by {@code options.divisor} (default 1). Kernels that factor into a column
+     * times a row are detected and run as two 1D passes.
+     */
+    public boolean convolve(String path, List<?> kernel, String outPath, Map<?, ?> options) throws IOException {
+        Convolution.Kernel parsed = parseKernel(kernel, ScriptOptions.from(options).getDouble("divisor", 1d));
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            return applyTiled(path, outPath, large, null, Collections.singletonList(BandOps.convolve(parsed)));
+        }
+        return applyRaster(path, outPath, raster -> Convolution.apply(raster, parsed));
+    }
+
+    public PixelData readPixels(String path) throws IOException {
+        return readPixels(path, null, null);
+    }
+
+    public PixelData readPixels(String path, List<?> rect) throws IOException {
+        return readPixels(path, rect, null);
+    }
+
+    /**
+     * Copies a block of pixels into a JS typed array in one bulk transfer. {@code rect} is
+     * {@code [left, top, right, bottom]} (the whole image when null); {@code options.scale} (0..1, default 1)
+     * downsamples the block; {@code options.format} is {@code "argb"} (default: an {@code Int32Array} of
+     * {@code 0xAARRGGBB} values) or {@code "rgba"} (a {@code Uint8Array}, four bytes per pixel). Only the block is
+     * decoded.
+     */
+    public PixelData readPixels(String path, List<?> rect, Map<?, ?> options) throws IOException {
+        File source = requireExisting(path);
+        ScriptOptions parsed = ScriptOptions.from(options);
+        double scale = parsed.getDouble("scale", 1d);
+        if (!(scale > 0) || scale > 1) {
+            throw new IllegalArgumentException("scale must be in (0, 1]");
+        }
+        String format = parsed.getLowerString("format", PIXEL_FORMAT_ARGB);
+        if (!PIXEL_FORMAT_ARGB.equals(format) && !PIXEL_FORMAT_RGBA.equals(format)) {
+            throw new IllegalArgumentException("format must be \"argb\" or \"rgba\"");
+        }
+        ImageInfo info = load(source.getAbsolutePath());
+        IntRect region = rect == null ? new IntRect(0, 0, info.width, info.height) : toRect(rect, "readPixels");
+        region = IntRect.clamped(region.left, region.top, region.right, region.bottom, info.width, info.height);
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException("readPixels rect lies outside the " + info.width + "x" + info.height
+                + " image");
+        }
+        int width = (int) Math.max(1, Math.round(region.width() * scale));
+        int height = (int) Math.max(1, Math.round(region.height() * scale));
+        int[] pixels = new int[width * height];
+        Bitmap bitmap;
+        try (BandDecoder decoder = BandDecoder.open(source)) {
+            bitmap = decoder.decodeRegion(region, width, height);
+        }
+        try {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        } finally {
+            bitmap.recycle();
+        }
+        Object data = PIXEL_FORMAT_ARGB.equals(format)
+            ? ScriptArrays.newInt32Array(pixels)
+            : ScriptArrays.newUint8Array(ScriptArrays.argbToRgba(pixels));
+        return new PixelData(region, width, height, format, data);
+    }
+
+    /**
+     * The inverse of {@link #readPixels}: replaces the pixels of {@code rect} ({@code [left, top, right, bottom]})
+     * with {@code data}, row by row, given as an {@code Int32Array} of ARGB values, a {@code Uint8Array} of RGBA
+     * bytes, or the {@link PixelData} an unscaled read returned. Pixels are replaced, not blended.
+     */
+    public boolean writePixels(String path, List<?> rect, Object data, String outPath) throws IOException {
+        IntRect region = toRect(rect, "writePixels");
+        if (region.isEmpty() || region.left < 0 || region.top < 0) {
+            throw new IllegalArgumentException("writePixels needs a non-empty rect inside the image");
+        }
+        Object values = data instanceof PixelData ? ((PixelData) data).data : data;
+        int[] pixels = ScriptArrays.toArgb(values, region.width() * region.height());
+        ImageInfo large = tiledInfo(path);
+        if (large != null) {
+            requireInside(region, large.width, large.height);
+            return applyTiled(path, outPath, large, null, Collections.singletonList(
+                BandOps.paste(new Raster(region.width(), region.height(), pixels), region.left, region.top)));
+        }
         return applyTransform(path, outPath, bitmap -> {
-            Bitmap grayscale = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(grayscale);
-            Paint paint = new Paint();
-            android.graphics.ColorMatrix matrix = new android.graphics.ColorMatrix();
-            matrix.setSaturation(0f);
-            android.graphics.ColorMatrixColorFilter filter = new android.graphics.ColorMatrixColorFilter(matrix);
-            paint.setColorFilter(filter);
-            canvas.drawBitmap(bitmap, 0, 0, paint);
-            return grayscale;
+            requireInside(region, bitmap.getWidth(), bitmap.getHeight());
+            bitmap.setPixels(pixels, 0, region.width(), region.left, region.top, region.width(), region.height());
+            return bitmap;
         });
     }
 
@@ -467,35 +956,362 @@ public final class ImgApi {
             throw new IOException("Unable to decode bitmap: " + path);
         }
         try {
-            Rect rect = buildRect(left, top, right, bottom, bitmap.getWidth(), bitmap.getHeight());
+            IntRect rect = IntRect.clamped(left, top, right, bottom, bitmap.getWidth(), bitmap.getHeight());
             if (rect.isEmpty()) {
-                rect.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
-            }
-            long totalR = 0;
-            long totalG = 0;
-            long totalB = 0;
-            long count = 0;
-            for (int y = rect.top; y < rect.bottom; y++) {
-                for (int x = rect.left; x < rect.right; x++) {
-                    int pixel = bitmap.getPixel(x, y);
-                    totalR += Color.red(pixel);
-                    totalG += Color.green(pixel);
-                    totalB += Color.blue(pixel);
-                    count++;
-                }
+                rect = new IntRect(0, 0, bitmap.getWidth(), bitmap.getHeight());
             }
-            if (count == 0) {
-                return "#000000";
-            }
-            int avgR = (int) (totalR / count);
-            int avgG = (int) (totalG / count);
-            int avgB = (int) (totalB / count);
-            return String.format(Locale.US, "#%02X%02X%02X", avgR, avgG, avgB);
+            int average = RasterStats.average(Rasters.read(bitmap, rect));
+            return String.format(Locale.US, "#%06X", average & 0xFFFFFF);
         } finally {
             bitmap.recycle();
         }
     }
 
+    public String phash(String path) throws IOException {
+        return PerceptualHash.toHex(ImageHashes.phash(ImageHashes.fileOpener(requireExisting(path))));
+    }
+
+    public String dhash(String path) throws IOException {
+        return PerceptualHash.toHex(ImageHashes.dhash(ImageHashes.fileOpener(requireExisting(path))));
+    }
+
+    /**
+     * Returns previously indexed images whose pHash lies within {@code maxDistance} bits of this one, closest first,
+     * then records this image in the index so later captures can be compared against it.
+     */
+    public SimilarityIndex.Match[] findSimilar(String path, int maxDistance) throws IOException {
+        File source = requireExisting(path);
+        long hash = ImageHashes.phash(ImageHashes.fileOpener(source));
+        SimilarityIndex index = ImageHashes.index(appContext);
+        List<SimilarityIndex.Match> matches = index.query(hash, Math.max(0, maxDistance), source.getAbsolutePath());
+        index.add(source.getAbsolutePath(), hash, source.lastModified());
+        return matches.toArray(new SimilarityIndex.Match[0]);
+    }
+
+    public TemplateMatcher.Match[] find(String path, String templatePath) throws IOException {
+        return find(path, templatePath, null);
+    }
+
+    /**
+     * Locates {@code templatePath} inside {@code path}. Options: {@code threshold} (NCC score, default 0.8),
+     * {@code scales} (template scale factors, default [1]) and {@code maxResults} (default 5).
+     */
+    public TemplateMatcher.Match[] find(String path, String templatePath, Map<?, ?> options) throws IOException {
+        ScriptOptions opts = ScriptOptions.from(options);
+        double threshold = opts.getDouble("threshold", DEFAULT_FIND_THRESHOLD);
+        double[] scales = opts.getDoubleArray("scales", new double[]{1d});
+        int maxResults = Math.max(1, opts.getInt("maxResults", DEFAULT_FIND_RESULTS));
+        BitmapFactory.Options decodeOptions = decodeOptions(opts, false);
+        LumaPlane image = decodeLuma(requireExisting(path), decodeOptions);
+        LumaPlane template = decodeLuma(requireExisting(templatePath), decodeOptions);
+        List<TemplateMatcher.Match> matches = TemplateMatcher.find(image, template, threshold, scales, maxResults);
+        return matches.toArray(new TemplateMatcher.Match[0]);
+    }
+
+    public CodeResult[] scanCodes(String path) throws IOException {
+        return scanCodes(path, null);
+    }
+
+    /**
+     * Reads QR codes and EAN-13, UPC-A, EAN-8 and Code 128 barcodes on the device. Options: {@code qr} and
+     * {@code barcodes} (both default true) pick what to look for; {@code maxEdge} (default 1600) caps the long edge
+     * of the plane scanned first. Codes whose modules are too fine to survive that downsampling are picked up by a
+     * full-resolution rescan, which runs only when the first pass finds nothing. Bounds are in source pixels.
+     */
+    public CodeResult[] scanCodes(String path, Map<?, ?> options) throws IOException {
+        File source = requireExisting(path);
+        ScriptOptions parsed = ScriptOptions.from(options);
+        boolean qr = parsed.getBoolean("qr", true);
+        boolean barcodes = parsed.getBoolean("barcodes", true);
+        if (!qr && !barcodes) {
+            throw new IllegalArgumentException("scanCodes needs qr or barcodes enabled");
+        }
+        int maxEdge = parsed.getInt("maxEdge", DEFAULT_SCAN_EDGE);
+        if (maxEdge <= 0) {
+            throw new IllegalArgumentException("maxEdge must be > 0");
+        }
+        ImageInfo info = load(source.getAbsolutePath());
+        int sampleSize = 1;
+        while (Math.max(info.width, info.height) / sampleSize > maxEdge) {
+            sampleSize *= 2;
+        }
+        long started = SystemClock.elapsedRealtime();
+        CodeResult[] results = scanLuma(source, info, sampleSize, qr, barcodes);
+        if (results.length == 0 && sampleSize > 1 && (long) info.width * info.height <= MAX_FULL_SCAN_PIXELS) {
+            results = scanLuma(source, info, 1, qr, barcodes);
+            sampleSize = 1;
+        }
+        Log.d(TAG, "scanCodes: " + results.length + " codes in " + source.getName() + " at 1/" + sampleSize + " in "
+            + (SystemClock.elapsedRealtime() - started) + " ms");
+        return results;
+    }
+
+    private CodeResult[] scanLuma(File source, ImageInfo info, int sampleSize, boolean qr, boolean barcodes)
+        throws IOException {
+        BitmapFactory.Options decodeOptions = DecodePolicy.options(DecodePolicy.Use.TOLERANT, quality, false);
+        decodeOptions.inSampleSize = sampleSize;
+        LumaPlane plane = decodeLuma(source, decodeOptions);
+        double scaleX = (double) info.width / plane.width;
+        double scaleY = (double) info.height / plane.height;
+        List<CodeScanner.Result> found = CodeScanner.scan(plane, qr, barcodes);
+        CodeResult[] results = new CodeResult[found.size()];
+        for (int i = 0; i < results.length; i++) {
+            CodeScanner.Result code = found.get(i);
+            IntRect bounds = IntRect.clamped((int) Math.floor(code.bounds.left * scaleX),
+                (int) Math.floor(code.bounds.top * scaleY), (int) Math.ceil(code.bounds.right * scaleX),
+                (int) Math.ceil(code.bounds.bottom * scaleY), info.width, info.height);
+            results[i] = new CodeResult(code.format, code.text, bounds);
+        }
+        return results;
+    }
+
+    public ImageDiff.Result diff(String firstPath, String secondPath) throws IOException {
+        return diff(firstPath, secondPath, null);
+    }
+
+    /**
+     * Compares two captures of the same size. Options: {@code tolerance} (max per-channel delta still counted as
+     * equal, default 0), {@code tile} (tile edge in px, default 32), {@code ssim} (also compute mean SSIM) and
+     * {@code heatmap} (PNG path to write a diff visualisation to).
+     */
+    public ImageDiff.Result diff(String firstPath, String secondPath, Map<?, ?> options) throws IOException {
+        ScriptOptions opts = ScriptOptions.from(options);
+        String heatmapPath = opts.getString("heatmap", null);
+        Bitmap first = decodeForDiff(requireExisting(firstPath), opts);
+        Bitmap second = null;
+        Bitmap heat = null;
+        try {
+            second = decodeForDiff(requireExisting(secondPath), opts);
+            requireSameSize(first, second);
+            int width = first.getWidth();
+            int height = first.getHeight();
+            ImageDiff.BandWriter heatWriter = null;
+            if (heatmapPath != null) {
+                Bitmap heatBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                heat = heatBitmap;
+                heatWriter = (top, rows, pixels) -> heatBitmap.setPixels(pixels, 0, width, 0, top, width, rows);
+            }
+            ImageDiff.Result result = ImageDiff.compare(width, height, Rasters.bandReader(first), Rasters.bandReader(second),
+                opts.getInt("tolerance", 0), opts.getInt("tile", ImageDiff.DEFAULT_TILE),
+                opts.getBoolean("ssim", false), heatWriter);
+            if (heat != null) {
+                File destination = resolveFile(heatmapPath);
+                writeBitmap(heat, destination, Bitmap.CompressFormat.PNG);
+                lastOutputPath = destination.getAbsolutePath();
+            }
+            return result;
+        } finally {
+            first.recycle();
+            if (second != null) {
+                second.recycle();
+            }
+            if (heat != null) {
+                heat.recycle();
+            }
+        }
+    }
+
+    public boolean differs(String firstPath, String secondPath) throws IOException {
+        return differs(firstPath, secondPath, null);
+    }
+
+    /**
+     * Boolean form of {@link #diff}: stops at the first changed pixel. Accepts {@code tolerance} and {@code tile}.
+     */
+    public boolean differs(String firstPath, String secondPath, Map<?, ?> options) throws IOException {
+        ScriptOptions opts = ScriptOptions.from(options);
+        Bitmap first = decodeForDiff(requireExisting(firstPath), opts);
+        Bitmap second = null;
+        try {
+            second = decodeForDiff(requireExisting(secondPath), opts);
+            if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+                return true;
+            }
+            return ImageDiff.differs(first.getWidth(), first.getHeight(), Rasters.bandReader(first), Rasters.bandReader(second),
+                opts.getInt("tolerance", 0), opts.getInt("tile", ImageDiff.DEFAULT_TILE));
+        } finally {
+            first.recycle();
+            if (second != null) {
+                second.recycle();
+            }
+        }
+    }
+
+    /**
+     * Joins overlapping scrolling captures (top to bottom) into one PNG. Fixed header and footer bands are kept once,
+     * and frames are decoded band by band so only one strip of one frame is in memory at a time.
+     */
+    public boolean stitchVertical(List<?> paths, String outPath) throws IOException {
+        if (paths == null || paths.isEmpty()) {
+            throw new IllegalArgumentException("No images to stitch");
+        }
+        String normalizedOut = normalizeOutPath(outPath);
+        if (normalizedOut == null) {
+            throw new IllegalArgumentException("outPath is required for stitchVertical");
+        }
+        List<File> frames = new ArrayList<>(paths.size());
+        for (Object path : paths) {
+            frames.add(requireExisting(String.valueOf(path)));
+        }
+        int width = -1;
+        int[] band = null;
+        List<long[]> rowHashes = new ArrayList<>(frames.size());
+        for (File frame : frames) {
+            try (BandDecoder decoder = BandDecoder.open(frame)) {
+                if (width < 0) {
+                    width = decoder.getWidth();
+                    band = new int[width * BAND_ROWS];
+                } else if (decoder.getWidth() != width) {
+                    throw new IllegalArgumentException("All frames must have the same width: " + frame.getAbsolutePath());
+                }
+                long[] hashes = new long[decoder.getHeight()];
+                for (int top = 0; top < hashes.length; top += BAND_ROWS) {
+                    int rows = Math.min(BAND_ROWS, hashes.length - top);
+                    decoder.read(top, rows, band);
+                    ScrollStitcher.hashRows(band, width, rows, hashes, top);
+                }
+                rowHashes.add(hashes);
+            }
+        }
+        ScrollStitcher.Plan plan = ScrollStitcher.plan(rowHashes);
+
+        File destination = resolveFile(normalizedOut);
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+        }
+        infoCache.invalidate(destination);
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(destination, false));
+             PngStreamWriter writer = new PngStreamWriter(output, width, plan.outputHeight, false, Deflater.DEFAULT_COMPRESSION)) {
+            for (ScrollStitcher.Segment segment : plan.segments) {
+                try (BandDecoder decoder = BandDecoder.open(frames.get(segment.frame))) {
+                    for (int top = segment.top; top < segment.bottom; top += BAND_ROWS) {
+                        int rows = Math.min(BAND_ROWS, segment.bottom - top);
+                        decoder.read(top, rows, band);
+                        writer.writeRows(band, 0, width, rows);
+                    }
+                }
+            }
+            writer.finish();
+        }
+        lastOutputPath = destination.getAbsolutePath();
+        return true;
+    }
+
+    /**
+     * Applies a chain of band-local operations while decoding only a few hundred rows at a time, so images far
+     * larger than the heap can be edited. {@code operations} are objects run in order: {@code {op: "crop", rect}}
+     * (first only), {@code {op: "blur", radius, rect?}}, {@code {op: "fill", rect, color}}, {@code {op:
+     * "grayscale"}}, {@code {op: "colorMatrix", matrix: [20 numbers]}}, {@code {op: "adjust", ...}} with the
+     * {@link #adjust} options, {@code {op: "sharpen", amount, radius}}, {@code {op: "edges"}}, {@code {op:
+     * "convolve", kernel, divisor}} and {@code {op: "watermark", image, position, scale, padding}}. Consecutive
+     * colour operations are fused into one pass. Rectangles after a crop are in cropped coordinates. PNG and JPEG
+     * sources only; the output keeps the source format.
+     */
+    public boolean process(String path, List<?> operations, String outPath) throws IOException {
+        ImageInfo info = load(requireExisting(path).getAbsolutePath());
+        IntRect crop = null;
+        List<BandOp> ops = new ArrayList<>();
+        ColorAdjust pendingColor = null;
+        int count = operations == null ? 0 : operations.size();
+        for (int i = 0; i < count; i++) {
+            Object item = operations.get(i);
+            if (!(item instanceof Map)) {
+                throw new IllegalArgumentException("Operation " + i + " must be an object");
+            }
+            ScriptOptions options = ScriptOptions.from((Map<?, ?>) item);
+            String label = "Operation " + i;
+            int width = crop != null ? crop.width() : info.width;
+            int height = crop != null ? crop.height() : info.height;
+            String name = options.getLowerString("op", "");
+            BandOp op = null;
+            ColorAdjust color = null;
+            switch (name) {
+                case "crop":
+                    if (i != 0) {
+                        throw new IllegalArgumentException("crop must be the first operation");
+                    }
+                    IntRect rect = parseRect(options, label);
+                    crop = IntRect.clamped(rect.left, rect.top, rect.right, rect.bottom, info.width, info.height);
+                    if (crop.isEmpty()) {
+                        throw new IllegalArgumentException("Crop " + rect + " is outside the image");
+                    }
+                    break;
+                case "blur":
+                    int radius = options.getInt("radius", 0);
+                    if (radius <= 0) {
+                        throw new IllegalArgumentException(label + ": radius must be > 0");
+                    }
+                    op = BandOps.blur(options.has("rect") ? parseRect(options, label) : null, radius);
+                    break;
+                case "fill":
+                    op = BandOps.fill(parseRect(options, label), parseColor(options.getString("color", "#000000")));
+                    break;
+                case "grayscale":
+                    color = new ColorAdjust(ColorMatrixOp.saturation(0f), null);
+                    break;
+                case "sharpen":
+                    double amount = options.getDouble("amount", 1d);
+                    double sigma = options.getDouble("radius", 1d);
+                    if (!(amount > 0) || amount > MAX_SHARPEN_AMOUNT || !(sigma > 0)) {
+                        throw new IllegalArgumentException(label + ": amount must be in (0, " + MAX_SHARPEN_AMOUNT
+                            + "] and radius > 0");
+                    }
+                    op = BandOps.sharpen((float) amount, sigma);
+                    break;
+                case "edges":
+                    op = BandOps.edges();
+                    break;
+                case "convolve":
+                    Object weights = options.get("kernel");
+                    if (!(weights instanceof List)) {
+                        throw new IllegalArgumentException(label + " needs kernel: rows of numbers");
+                    }
+                    op = BandOps.convolve(parseKernel((List<?>) weights, options.getDouble("divisor", 1d)));
+                    break;
+                case "colormatrix":
+                    double[] values = options.getDoubleArray("matrix", null);
+                    if (values == null || values.length != 20) {
+                        throw new IllegalArgumentException(label + " needs matrix: 20 numbers");
+                    }
+                    float[] matrix = new float[20];
+                    for (int j = 0; j < matrix.length; j++) {
+                        matrix[j] = (float) values[j];
+                    }
+                    color = new ColorAdjust(new ColorMatrixOp(matrix), null);
+                    break;
+                case "adjust":
+                    color = parseAdjust(options, label);
+                    break;
+                case "watermark":
+                    op = watermarkOp(options.getString("image", null), options.getString("position", null),
+                        (float) options.getDouble("scale", 0d), options.getInt("padding", 0), width, height);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported operation: " + name);
+            }
+            if (color != null) {
+                // Consecutive colour operations collapse into one pass where they can.
+                ColorAdjust fused = pendingColor != null ? pendingColor.then(color) : color;
+                if (fused == null) {
+                    ops.add(BandOps.colorAdjust(pendingColor));
+                    fused = color;
+                }
+                pendingColor = fused;
+            } else if (op != null) {
+                if (pendingColor != null) {
+                    ops.add(BandOps.colorAdjust(pendingColor));
+                    pendingColor = null;
+                }
+                ops.add(op);
+            }
+        }
+        if (pendingColor != null) {
+            ops.add(BandOps.colorAdjust(pendingColor));
+        }
+        return applyTiled(path, outPath, info, crop, ops);
+    }
+
     public String getLastOutputPath() {
         return lastOutputPath;
     }
@@ -506,70 +1322,349 @@ public final class ImgApi {
             throw new IOException("Image not found: " + path);
         }
         String normalizedOut = normalizeOutPath(outPath);
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-        options.inMutable = true;
+        BitmapFactory.Options options = DecodePolicy.options(DecodePolicy.Use.PIXELS, quality, true);
         Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
         if (bitmap == null) {
             return false;
         }
-        Bitmap result = null;
-        boolean success;
+        Bitmap result = null;
+        boolean success;
+        try {
+            result = operator.apply(bitmap);
+            if (result == null) {
+                result = bitmap;
+            }
+            ImageInfo info = remember(source, options);
+            Bitmap.CompressFormat format = chooseFormat(info.mime);
+            success = persistTransformedBitmap(result, source, normalizedOut, info, format);
+        } finally {
+            if (bitmap != null && bitmap != result && !bitmap.isRecycled()) {
+                bitmap.recycle();
+            }
+            if (result != null && !result.isRecycled()) {
+                result.recycle();
+            }
+        }
+        return success;
+    }
+
+    /**
+     * {@link #applyTransform} for kernels that work on a {@link Raster}: one bulk read, the kernel, one bulk write.
+     */
+    private boolean applyRaster(String path, String outPath, RasterOperator operator) throws IOException {
+        return applyTransform(path, outPath, bitmap -> {
+            Raster raster = Rasters.read(bitmap);
+            operator.apply(raster);
+            Rasters.write(raster, bitmap, 0, 0);
+            return bitmap;
+        });
+    }
+
+    /**
+     * {@link #applyTransform} for per-pixel kernels: the mutable decode is rewritten in place a band at a time, so
+     * the only extra memory is one band of pixels.
+     */
+    private boolean applyPointwise(String path, String outPath, RasterOperator operator) throws IOException {
+        return applyTransform(path, outPath, bitmap -> {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] band = new int[width * Math.min(BAND_ROWS, height)];
+            for (int top = 0; top < height; top += BAND_ROWS) {
+                int rows = Math.min(BAND_ROWS, height - top);
+                bitmap.getPixels(band, 0, width, 0, top, width, rows);
+                operator.apply(new Raster(width, rows, band));
+                bitmap.setPixels(band, 0, width, 0, top, width, rows);
+            }
+            return bitmap;
+        });
+    }
+
+    private boolean persistTransformedBitmap(Bitmap bitmap, File source, String outPath, ImageInfo info, Bitmap.CompressFormat format) throws IOException {
+        if (outPath != null) {
+            File destination = resolveFile(outPath);
+            File parent = destination.getParentFile();
+            if (parent != null && !parent.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                parent.mkdirs();
+            }
+            writeBitmap(bitmap, destination, format);
+            lastOutputPath = destination.getAbsolutePath();
+            return true;
+        }
+        String mime = info.mime != null ? info.mime : guessMimeFromFormat(format);
+        return publishReplacement(source, mime, format, outputStream -> compressTo(bitmap, format, outputStream));
+    }
+
+    /**
+     * Returns the image's info when an edit should take the tiled path, i.e. one ARGB frame would not fit
+     * comfortably in the heap (the {@code int[]} copies the kernels work on live there even when bitmap pixels do
+     * not). WebP has no streaming encoder here and always takes the bitmap path.
+     */
+    private ImageInfo tiledInfo(String path) throws IOException {
+        File source = resolveFile(path);
+        if (!source.exists()) {
+            return null;
+        }
+        ImageInfo info = load(source.getAbsolutePath());
+        if (info.width <= 0 || info.height <= 0 || chooseFormat(info.mime) == Bitmap.CompressFormat.WEBP) {
+            return null;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long headroom = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return (long) info.width * info.height * 4 > headroom / TILE_HEADROOM_DIVISOR ? info : null;
+    }
+
+    /**
+     * Streams {@code crop} (or the whole image) of {@code path} through {@code ops} and re-encodes it in the source
+     * format. The source is still being decoded while the output is written, so in-place edits go through a temp
+     * file first.
+     */
+    private boolean applyTiled(String path, String outPath, ImageInfo info, IntRect crop, List<BandOp> ops) throws IOException {
+        File source = requireExisting(path);
+        Bitmap.CompressFormat format = chooseFormat(info.mime);
+        if (format == Bitmap.CompressFormat.WEBP) {
+            throw new IOException("Tiled processing supports PNG and JPEG sources only: " + path);
+        }
+        IntRect bounds = crop != null ? crop : new IntRect(0, 0, info.width, info.height);
+        String normalizedOut = normalizeOutPath(outPath);
+        File destination = normalizedOut != null ? resolveFile(normalizedOut) : null;
+        if (destination != null && !destination.getAbsoluteFile().equals(source.getAbsoluteFile())) {
+            File parent = destination.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+            }
+            infoCache.invalidate(destination);
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(destination, false))) {
+                streamTiled(source, info, bounds, ops, format, output);
+            }
+            lastOutputPath = destination.getAbsolutePath();
+            return true;
+        }
+        File temp = createTempFile(source.getName(), format);
+        if (temp == null) {
+            throw new IOException("Unable to create temp file for " + source.getName());
+        }
+        try {
+            try (OutputStream output = new BufferedOutputStream(new FileOutputStream(temp, false))) {
+                streamTiled(source, info, bounds, ops, format, output);
+            }
+            if (destination != null) {
+                infoCache.invalidate(destination);
+                try (OutputStream output = new FileOutputStream(destination, false)) {
+                    copyFile(temp, output);
+                }
+                lastOutputPath = destination.getAbsolutePath();
+                return true;
+            }
+            String mime = info.mime != null ? info.mime : guessMimeFromFormat(format);
+            return publishReplacement(source, mime, format, outputStream -> copyFile(temp, outputStream));
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                Log.w(TAG, "Unable to delete temp file " + temp.getAbsolutePath());
+            }
+        }
+    }
+
+    private void streamTiled(File source, ImageInfo info, IntRect bounds, List<BandOp> ops,
+                             Bitmap.CompressFormat format, OutputStream output) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        int bands;
+        try (BandDecoder decoder = BandDecoder.open(source)) {
+            if (format == Bitmap.CompressFormat.PNG) {
+                try (PngStreamWriter writer = new PngStreamWriter(output, bounds.width(), bounds.height(), info.alpha,
+                    Deflater.DEFAULT_COMPRESSION)) {
+                    bands = TiledProcessor.run(decoder, decoder.getWidth(), decoder.getHeight(), bounds, ops, BAND_ROWS, writer);
+                    writer.finish();
+                }
+            } else {
+                try (JpegStreamWriter writer = new JpegStreamWriter(output, bounds.width(), bounds.height(), REENCODE_QUALITY)) {
+                    bands = TiledProcessor.run(decoder, decoder.getWidth(), decoder.getHeight(), bounds, ops, BAND_ROWS, writer);
+                    writer.finish();
+                }
+            }
+        }
+        Log.d(TAG, "Tiled " + source.getName() + " " + bounds + " with " + ops.size() + " ops in " + bands + " bands, "
+            + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    /**
+     * Writes {@code crop} of the source without decoding the rest: streamed for PNG and JPEG, one region decode
+     * for WebP.
+     */
+    private boolean cropByRegion(String path, String outPath, ImageInfo info, IntRect crop) throws IOException {
+        Bitmap.CompressFormat format = chooseFormat(info.mime);
+        if (format != Bitmap.CompressFormat.WEBP) {
+            return applyTiled(path, outPath, info, crop, Collections.emptyList());
+        }
+        File source = requireExisting(path);
+        Bitmap region;
+        try (BandDecoder decoder = BandDecoder.open(source)) {
+            region = decoder.decodeRegion(crop);
+        }
         try {
-            result = operator.apply(bitmap);
-            if (result == null) {
-                result = bitmap;
-            }
-            ImageInfo info = load(source.getAbsolutePath());
-            Bitmap.CompressFormat format = chooseFormat(info.mime);
-            success = persistTransformedBitmap(result, source, normalizedOut, info, format);
+            return persistTransformedBitmap(region, source, normalizeOutPath(outPath), info, format);
         } finally {
-            if (bitmap != null && bitmap != result && !bitmap.isRecycled()) {
-                bitmap.recycle();
+            region.recycle();
+        }
+    }
+
+    private static void copyFile(File source, OutputStream outputStream) throws IOException {
+        try (InputStream inputStream = new FileInputStream(source)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
             }
-            if (result != null && !result.isRecycled()) {
-                result.recycle();
+        }
+        outputStream.flush();
+    }
+
+    private boolean rotateByExif(File source, int degrees) {
+        infoCache.invalidate(source);
+        try {
+            if (source.canWrite() && ExifOrientation.patchInPlace(source, degrees)) {
+                MediaScannerConnection.scanFile(appContext, new String[]{source.getAbsolutePath()}, null, null);
+                lastOutputPath = source.getAbsolutePath();
+                return true;
             }
+            File sibling = new File(source.getParentFile(), "." + source.getName() + ".exif");
+            if (source.canWrite() && source.getParentFile() != null && source.getParentFile().canWrite()) {
+                try {
+                    try (OutputStream outputStream = new FileOutputStream(sibling, false)) {
+                        ExifOrientation.rewrite(source, outputStream, degrees);
+                    }
+                    if (sibling.renameTo(source)) {
+                        MediaScannerConnection.scanFile(appContext, new String[]{source.getAbsolutePath()}, null, null);
+                        lastOutputPath = source.getAbsolutePath();
+                        return true;
+                    }
+                } finally {
+                    if (sibling.exists() && !sibling.delete()) {
+                        Log.w(TAG, "Unable to delete temp file " + sibling.getAbsolutePath());
+                    }
+                }
+            }
+            return publishReplacement(source, "image/jpeg", Bitmap.CompressFormat.JPEG,
+                outputStream -> ExifOrientation.rewrite(source, outputStream, degrees));
+        } catch (IOException e) {
+            Log.w(TAG, "EXIF rotation failed for " + source.getName() + ", re-encoding instead", e);
+            return false;
         }
-        return success;
     }
 
-    private boolean persistTransformedBitmap(Bitmap bitmap, File source, String outPath, ImageInfo info, Bitmap.CompressFormat format) throws IOException {
-        if (outPath != null) {
-            File destination = resolveFile(outPath);
-            File parent = destination.getParentFile();
-            if (parent != null && !parent.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                parent.mkdirs();
+    /**
+     * Replaces {@code source} with whatever {@code writer} produces. MediaStore items the app may write and the root
+     * overwrite both go through a temp file that is complete before {@code source} is touched, so a failing writer
+     * never leaves it truncated and {@code writer} may still read it. The gallery fallback streams straight into
+     * MediaStore so each output is written once.
+     */
+    private boolean publishReplacement(File source, String mime, Bitmap.CompressFormat format, OutputWriter writer) throws IOException {
+        infoCache.invalidate(source);
+        Uri uri = findWritableMediaUri(source);
+        if (uri != null || RootUtils.isRootAvailable()) {
+            File temp = createTempFile(source.getName(), format);
+            if (temp != null) {
+                try {
+                    try (OutputStream outputStream = new FileOutputStream(temp, false)) {
+                        writer.writeTo(outputStream);
+                    }
+                    if ((uri != null && overwriteThroughMediaStore(uri, temp))
+                        || (RootUtils.isRootAvailable() && copyWithRoot(temp, source))) {
+                        lastOutputPath = source.getAbsolutePath();
+                        return true;
+                    }
+                } finally {
+                    if (temp.exists() && !temp.delete()) {
+                        Log.w(TAG, "Unable to delete temp file " + temp.getAbsolutePath());
+                    }
+                }
             }
-            writeBitmap(bitmap, destination, format);
-            lastOutputPath = destination.getAbsolutePath();
+        }
+        String publicPath = saveToPublicGallery(writer, mime, format, source.getName());
+        if (publicPath != null) {
+            lastOutputPath = publicPath;
             return true;
         }
-        File temp = createTempFile(source.getName(), format);
-        if (temp == null) {
+        return false;
+    }
+
+    /**
+     * Copies the finished {@code replacement} over the MediaStore item through "wt" and refreshes the row's size,
+     * dimensions and modification time with one update, so no media scan is needed.
+     */
+    private boolean overwriteThroughMediaStore(Uri uri, File replacement) throws IOException {
+        ContentResolver resolver = appContext.getContentResolver();
+        try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "wt")) {
+            if (descriptor == null) {
+                return false;
+            }
+            try (FileOutputStream outputStream = new FileOutputStream(descriptor.getFileDescriptor())) {
+                copyFile(replacement, outputStream);
+            }
+        } catch (SecurityException e) {
+            Log.d(TAG, "No write grant for " + uri + ", falling back to root copy");
             return false;
         }
-        try {
-            writeBitmap(bitmap, temp, format);
-            if (RootUtils.isRootAvailable() && copyWithRoot(temp, source)) {
-                lastOutputPath = source.getAbsolutePath();
-                return true;
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(replacement.getAbsolutePath(), bounds);
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.SIZE, replacement.length());
+        if (bounds.outWidth > 0 && bounds.outHeight > 0) {
+            values.put(MediaStore.Images.Media.WIDTH, bounds.outWidth);
+            values.put(MediaStore.Images.Media.HEIGHT, bounds.outHeight);
+        }
+        values.put(MediaStore.Images.Media.DATE_MODIFIED, System.currentTimeMillis() / 1000);
+        resolver.update(uri, values, null, null);
+        return true;
+    }
+
+    /**
+     * Looks up the MediaStore row for {@code file} and returns its uri when this app owns it or holds a write grant
+     * (e.g. from {@code MediaStore.createWriteRequest}). Before scoped storage every row is worth trying.
+     */
+    private Uri findWritableMediaUri(File file) {
+        ContentResolver resolver = appContext.getContentResolver();
+        Uri collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+        boolean scoped = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+        String[] projection = scoped
+            ? new String[]{MediaStore.Images.Media._ID, MediaStore.Images.Media.OWNER_PACKAGE_NAME}
+            : new String[]{MediaStore.Images.Media._ID};
+        try (Cursor cursor = resolver.query(collection, projection, MediaStore.Images.Media.DATA + "=?",
+            new String[]{file.getAbsolutePath()}, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
             }
-            String mime = info.mime != null ? info.mime : guessMimeFromFormat(format);
-            String publicPath = saveToPublicGallery(temp, mime, format, source.getName());
-            if (publicPath != null) {
-                lastOutputPath = publicPath;
-                return true;
+            Uri uri = ContentUris.withAppendedId(collection, cursor.getLong(0));
+            if (!scoped) {
+                return uri;
             }
-            return false;
-        } finally {
-            if (temp.exists() && !temp.delete()) {
-                Log.w(TAG, "Unable to delete temp file " + temp.getAbsolutePath());
+            if (appContext.getPackageName().equals(cursor.getString(1))) {
+                return uri;
             }
+            int granted = appContext.checkUriPermission(uri, Process.myPid(), Process.myUid(), Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+            return granted == PackageManager.PERMISSION_GRANTED ? uri : null;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "MediaStore lookup failed for " + file.getAbsolutePath(), e);
+            return null;
         }
     }
 
+    /**
+     * Caches the dimensions a bounds-only or full decode has already produced, along with the cheap header fields.
+     */
+    private ImageInfo remember(File source, BitmapFactory.Options decoded) {
+        ImageInfo info = new ImageInfo(
+            decoded.outWidth,
+            decoded.outHeight,
+            source.length(),
+            decoded.outMimeType,
+            ImageHeader.read(source)
+        );
+        infoCache.put(source, info);
+        return info;
+    }
+
     private String normalizeOutPath(String outPath) {
         if (outPath == null) {
             return null;
@@ -608,19 +1703,122 @@ public final class ImgApi {
         resolver.delete(uri, MediaStore.Images.Media.DATA + "=?", new String[]{absolutePath});
     }
 
-    private Rect buildRect(int left, int top, int right, int bottom, int maxWidth, int maxHeight) {
-        int clampedLeft = clamp(Math.min(left, right), 0, maxWidth);
-        int clampedRight = clamp(Math.max(left, right), 0, maxWidth);
-        int clampedTop = clamp(Math.min(top, bottom), 0, maxHeight);
-        int clampedBottom = clamp(Math.max(top, bottom), 0, maxHeight);
-        return new Rect(clampedLeft, clampedTop, clampedRight, clampedBottom);
+    private Redaction.Area parseRedaction(ScriptOptions options, int index) {
+        IntRect bounds = parseRect(options, "Redaction area " + index);
+        String mode = options.getLowerString("mode", "blur");
+        switch (mode) {
+            case "blur":
+                return new Redaction.Area(bounds, Redaction.Mode.BLUR, options.getInt("radius", DEFAULT_REDACT_RADIUS), 0);
+            case "pixelate":
+                return new Redaction.Area(bounds, Redaction.Mode.PIXELATE, options.getInt("block", DEFAULT_REDACT_BLOCK), 0);
+            case "fill":
+                return new Redaction.Area(bounds, Redaction.Mode.FILL, 0, parseColor(options.getString("color", "#000000")));
+            default:
+                throw new IllegalArgumentException("Unsupported redaction mode: " + mode);
+        }
     }
 
-    private int clamp(int value, int min, int max) {
-        return Math.max(min, Math.min(max, value));
+    private static IntRect parseRect(ScriptOptions options, String label) {
+        double[] rect = options.getDoubleArray("rect", null);
+        if (rect == null || rect.length != 4) {
+            throw new IllegalArgumentException(label + " needs rect: [left, top, right, bottom]");
+        }
+        return new IntRect((int) rect[0], (int) rect[1], (int) rect[2], (int) rect[3]);
+    }
+
+    /**
+     * Reads a {@code [left, top, right, bottom]} JS array.
+     */
+    private static IntRect toRect(List<?> values, String label) {
+        if (values == null || values.size() != 4) {
+            throw new IllegalArgumentException(label + " needs rect: [left, top, right, bottom]");
+        }
+        int[] edges = new int[4];
+        for (int i = 0; i < 4; i++) {
+            Object value = values.get(i);
+            if (!(value instanceof Number)) {
+                throw new IllegalArgumentException(label + " rect must hold numbers");
+            }
+            edges[i] = ((Number) value).intValue();
+        }
+        return new IntRect(edges[0], edges[1], edges[2], edges[3]);
+    }
+
+    private static void requireInside(IntRect rect, int width, int height) {
+        if (rect.right > width || rect.bottom > height) {
+            throw new IllegalArgumentException("Rect " + rect + " exceeds the " + width + "x" + height + " image");
+        }
     }
 
-    private float clampFloat(float value, float min, float max) {
+    private static ColorAdjust parseAdjust(ScriptOptions options, String label) {
+        double brightness = options.getDouble("brightness", 0d);
+        double contrast = options.getDouble("contrast", 1d);
+        double saturation = options.getDouble("saturation", 1d);
+        double gamma = options.getDouble("gamma", 1d);
+        if (!(brightness >= -1d && brightness <= 1d)) {
+            throw new IllegalArgumentException(label + ": brightness must be in [-1, 1]");
+        }
+        if (!(contrast >= 0d) || !(saturation >= 0d) || !(gamma > 0d)) {
+            throw new IllegalArgumentException(label + ": contrast and saturation must be >= 0 and gamma > 0");
+        }
+        return ColorAdjust.of((float) brightness, (float) contrast, (float) saturation, (float) gamma,
+            options.getBoolean("invert", false));
+    }
+
+    /**
+     * Reads a kernel from rows of numbers, or from a flat list whose length is an odd square.
+     */
+    private static Convolution.Kernel parseKernel(List<?> kernel, double divisor) {
+        if (kernel == null || kernel.isEmpty()) {
+            throw new IllegalArgumentException("Kernel must not be empty");
+        }
+        if (divisor == 0 || Double.isNaN(divisor)) {
+            throw new IllegalArgumentException("divisor must be non-zero");
+        }
+        List<?> rows = kernel;
+        if (!(kernel.get(0) instanceof List)) {
+            int side = (int) Math.round(Math.sqrt(kernel.size()));
+            if (side * side != kernel.size()) {
+                throw new IllegalArgumentException("A flat kernel needs a square number of weights");
+            }
+            List<Object> nested = new ArrayList<>(side);
+            for (int y = 0; y < side; y++) {
+                nested.add(kernel.subList(y * side, (y + 1) * side));
+            }
+            rows = nested;
+        }
+        int height = rows.size();
+        int width = -1;
+        float[] weights = null;
+        for (int y = 0; y < height; y++) {
+            Object row = rows.get(y);
+            if (!(row instanceof List)) {
+                throw new IllegalArgumentException("Kernel row " + y + " must be a list");
+            }
+            List<?> values = (List<?>) row;
+            if (width < 0) {
+                width = values.size();
+                weights = new float[width * height];
+            } else if (values.size() != width) {
+                throw new IllegalArgumentException("Kernel rows must have the same length");
+            }
+            for (int x = 0; x < width; x++) {
+                Object value = values.get(x);
+                if (!(value instanceof Number)) {
+                    throw new IllegalArgumentException("Kernel weight at " + y + "," + x + " is not a number");
+                }
+                weights[y * width + x] = (float) (((Number) value).doubleValue() / divisor);
+            }
+        }
+        return new Convolution.Kernel(width, height, weights);
+    }
+
+    private Rect buildRect(int left, int top, int right, int bottom, int maxWidth, int maxHeight) {
+        IntRect rect = IntRect.clamped(left, top, right, bottom, maxWidth, maxHeight);
+        return new Rect(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    private int clamp(int value, int min, int max) {
         return Math.max(min, Math.min(max, value));
     }
 
@@ -660,83 +1858,6 @@ public final class ImgApi {
         }
     }
 
-    private Bitmap applyBoxBlur(Bitmap source, int radius) {
-        if (radius <= 0) {
-            return source.copy(Bitmap.Config.ARGB_8888, true);
-        }
-        Bitmap working = source.copy(Bitmap.Config.ARGB_8888, true);
-        int width = working.getWidth();
-        int height = working.getHeight();
-        int[] pixels = new int[width * height];
-        int[] temp = new int[width * height];
-        working.getPixels(pixels, 0, width, 0, 0, width, height);
-        boxBlurHorizontal(pixels, temp, width, height, radius);
-        boxBlurVertical(temp, pixels, width, height, radius);
-        Bitmap blurred = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        blurred.setPixels(pixels, 0, width, 0, 0, width, height);
-        working.recycle();
-        return blurred;
-    }
-
-    private void boxBlurHorizontal(int[] input, int[] output, int width, int height, int radius) {
-        int window = radius * 2 + 1;
-        for (int y = 0; y < height; y++) {
-            int sumA = 0;
-            int sumR = 0;
-            int sumG = 0;
-            int sumB = 0;
-            int row = y * width;
-            for (int i = -radius; i <= radius; i++) {
-                int sampleX = clamp(i, 0, width - 1);
-                int color = input[row + sampleX];
-                sumA += Color.alpha(color);
-                sumR += Color.red(color);
-                sumG += Color.green(color);
-                sumB += Color.blue(color);
-            }
-            for (int x = 0; x < width; x++) {
-                output[row + x] = Color.argb(sumA / window, sumR / window, sumG / window, sumB / window);
-                int removeIndex = clamp(x - radius, 0, width - 1);
-                int addIndex = clamp(x + radius + 1, 0, width - 1);
-                int remove = input[row + removeIndex];
-                int add = input[row + addIndex];
-                sumA += Color.alpha(add) - Color.alpha(remove);
-                sumR += Color.red(add) - Color.red(remove);
-                sumG += Color.green(add) - Color.green(remove);
-                sumB += Color.blue(add) - Color.blue(remove);
-            }
-        }
-    }
-
-    private void boxBlurVertical(int[] input, int[] output, int width, int height, int radius) {
-        int window = radius * 2 + 1;
-        for (int x = 0; x < width; x++) {
-            int sumA = 0;
-            int sumR = 0;
-            int sumG = 0;
-            int sumB = 0;
-            for (int i = -radius; i <= radius; i++) {
-                int sampleY = clamp(i, 0, height - 1);
-                int color = input[sampleY * width + x];
-                sumA += Color.alpha(color);
-                sumR += Color.red(color);
-                sumG += Color.green(color);
-                sumB += Color.blue(color);
-            }
-            for (int y = 0; y < height; y++) {
-                output[y * width + x] = Color.argb(sumA / window, sumR / window, sumG / window, sumB / window);
-                int removeIndex = clamp(y - radius, 0, height - 1);
-                int addIndex = clamp(y + radius + 1, 0, height - 1);
-                int remove = input[removeIndex * width + x];
-                int add = input[addIndex * width + x];
-                sumA += Color.alpha(add) - Color.alpha(remove);
-                sumR += Color.red(add) - Color.red(remove);
-                sumG += Color.green(add) - Color.green(remove);
-                sumB += Color.blue(add) - Color.blue(remove);
-            }
-        }
-    }
-
     private enum WatermarkPosition {
         TOP_LEFT,
         TOP_RIGHT,
@@ -745,6 +1866,162 @@ public final class ImgApi {
         CENTER
     }
 
+    private File requireWatermark(String watermarkPath) throws IOException {
+        File overlayFile = resolveFile(watermarkPath);
+        if (!overlayFile.exists()) {
+            throw new IOException("Watermark image not found: " + watermarkPath);
+        }
+        return overlayFile;
+    }
+
+    /**
+     * Watermark width for {@code scale} of the base width (0.25 when not positive, at most 1); height follows the
+     * watermark's aspect.
+     */
+    private static int watermarkWidth(int baseWidth, float scale) {
+        float safeScale = scale <= 0f ? 0.25f : Math.min(scale, 1f);
+        return (int) Math.max(1, baseWidth * safeScale);
+    }
+
+    private static IntRect placeWatermark(WatermarkPosition position, int width, int height, int overlayWidth,
+                                          int overlayHeight, int padding) {
+        int x;
+        int y;
+        switch (position) {
+            case TOP_LEFT:
+                x = padding;
+                y = padding;
+                break;
+            case TOP_RIGHT:
+                x = width - overlayWidth - padding;
+                y = padding;
+                break;
+            case BOTTOM_LEFT:
+                x = padding;
+                y = height - overlayHeight - padding;
+                break;
+            case CENTER:
+                x = (width - overlayWidth) / 2;
+                y = (height - overlayHeight) / 2;
+                break;
+            case BOTTOM_RIGHT:
+            default:
+                x = width - overlayWidth - padding;
+                y = height - overlayHeight - padding;
+                break;
+        }
+        return new IntRect(x, y, x + overlayWidth, y + overlayHeight);
+    }
+
+    /**
+     * The tiled form of {@link #watermarkImage}: the cached, scaled watermark is read into a raster once and blended
+     * into each band it overlaps.
+     */
+    private BandOp watermarkOp(String watermarkPath, String position, float scale, int padding, int width, int height) throws IOException {
+        Bitmap overlay = WatermarkCache.get().image(requireWatermark(watermarkPath), watermarkWidth(width, scale), 0);
+        IntRect placement = placeWatermark(resolvePosition(position), width, height, overlay.getWidth(),
+            overlay.getHeight(), Math.max(0, padding));
+        return BandOps.overlay(Rasters.read(overlay), placement.left, placement.top);
+    }
+
+    /**
+     * Decode options honouring a per-call {@code quality: "fast"|"exact"} over the API-wide setting.
+     */
+    private BitmapFactory.Options decodeOptions(ScriptOptions options, boolean mutable) {
+        Object hint = options.get("quality");
+        DecodePolicy.Quality effective = hint instanceof String
+            ? DecodePolicy.Quality.parse((String) hint, quality) : quality;
+        return DecodePolicy.options(DecodePolicy.Use.PIXELS, effective, mutable);
+    }
+
+    private Bitmap decodeForDiff(File source, ScriptOptions options) throws IOException {
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), decodeOptions(options, false));
+        if (bitmap == null) {
+            throw new IOException("Unable to decode image: " + source.getAbsolutePath());
+        }
+        return bitmap;
+    }
+
+    private static void requireSameSize(Bitmap first, Bitmap second) {
+        if (first.getWidth() != second.getWidth() || first.getHeight() != second.getHeight()) {
+            throw new IllegalArgumentException("Image sizes differ: " + first.getWidth() + "x" + first.getHeight()
+                + " vs " + second.getWidth() + "x" + second.getHeight());
+        }
+    }
+
+    private LumaPlane decodeLuma(File source, BitmapFactory.Options options) throws IOException {
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+        if (bitmap == null) {
+            throw new IOException("Unable to decode image: " + source.getAbsolutePath());
+        }
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return LumaPlane.fromArgb(pixels, width, height);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private File requireExisting(String path) throws IOException {
+        File source = resolveFile(path);
+        if (!source.exists()) {
+            throw new IOException("Image not found: " + path);
+        }
+        return source;
+    }
+
+    /**
+     * Halves {@code source} while that stays at or above {@code targetEdge}, then resizes to the exact edge. Every
+     * bitmap created is added to {@code owned} so the caller can recycle it once all encodes are done.
+     */
+    private Bitmap scaleHierarchically(Bitmap source, int targetEdge, List<Bitmap> owned) {
+        Bitmap current = source;
+        while (Math.max(current.getWidth(), current.getHeight()) / 2 >= targetEdge) {
+            current = Bitmap.createScaledBitmap(current, Math.max(1, current.getWidth() / 2),
+                Math.max(1, current.getHeight() / 2), true);
+            owned.add(current);
+        }
+        int edge = Math.max(current.getWidth(), current.getHeight());
+        if (edge != targetEdge) {
+            double scale = (double) targetEdge / edge;
+            current = Bitmap.createScaledBitmap(current, Math.max(1, (int) Math.round(current.getWidth() * scale)),
+                Math.max(1, (int) Math.round(current.getHeight() * scale)), true);
+            owned.add(current);
+        }
+        return current;
+    }
+
+    private ExportResult writeVariant(Bitmap bitmap, EncodeOptions encoding, File destination) throws IOException {
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+        }
+        infoCache.invalidate(destination);
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(destination, false))) {
+            encodeTo(bitmap, encoding, output);
+        }
+        return new ExportResult(destination.getAbsolutePath(), bitmap.getWidth(), bitmap.getHeight(),
+            destination.length(), encoding.format);
+    }
+
+    private static String defaultFormatFor(String mime) {
+        if (mime != null && mime.contains("png")) {
+            return EncodeOptions.FORMAT_PNG;
+        }
+        if (mime != null && mime.contains("webp")) {
+            return EncodeOptions.FORMAT_WEBP;
+        }
+        return EncodeOptions.FORMAT_JPEG;
+    }
+
+    private File siblingWithSuffix(File source, String suffix, String extension) {
+        File parent = source.getParentFile();
+        return new File(parent != null ? parent : appContext.getFilesDir(), stripExtension(source.getName()) + suffix + extension);
+    }
+
     private File resolveFile(String path) {
         File file = new File(path);
         if (file.isAbsolute()) {
@@ -772,17 +2049,67 @@ public final class ImgApi {
         if (parent != null && !parent.exists() && !parent.mkdirs()) {
             throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
         }
+        infoCache.invalidate(destination);
         FileOutputStream outputStream = new FileOutputStream(destination, false);
         try {
-            if (!bitmap.compress(format, 100, outputStream)) {
+            compressTo(bitmap, format, outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void compressTo(Bitmap bitmap, Bitmap.CompressFormat format, OutputStream outputStream) throws IOException {
+        if (format == Bitmap.CompressFormat.PNG && EncodeOptions.PNG_ENCODER_PARALLEL.equals(pngEncoder)) {
+            encodePng(bitmap, Deflater.DEFAULT_COMPRESSION, PngFilter.ADAPTIVE, outputStream);
+            return;
+        }
+        if (!bitmap.compress(format, 100, outputStream)) {
+            throw new IOException("Bitmap compression failed");
+        }
+        outputStream.flush();
+    }
+
+    private void encodeTo(Bitmap bitmap, EncodeOptions encoding, OutputStream outputStream) throws IOException {
+        String encoder = encoding.pngEncoder != null ? encoding.pngEncoder : pngEncoder;
+        if (EncodeOptions.FORMAT_PNG.equals(encoding.format) && EncodeOptions.PNG_ENCODER_PARALLEL.equals(encoder)) {
+            encodePng(bitmap, encoding.level, encoding.filter, outputStream);
+            return;
+        }
+        if (!encoding.isPalette()) {
+            if (!bitmap.compress(encoding.compressFormat(), encoding.quality, outputStream)) {
                 throw new IOException("Bitmap compression failed");
             }
             outputStream.flush();
-        } finally {
-            outputStream.close();
+            return;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        BandReader reader = Rasters.bandReader(bitmap);
+        PaletteQuantizer.Palette palette = PaletteQuantizer.build(reader, width, height, encoding.colors, encoding.dither);
+        int[] band = new int[width * Math.min(BAND_ROWS, height)];
+        byte[] indices = new byte[width];
+        try (PngStreamWriter writer = PngStreamWriter.indexed(outputStream, width, height, palette.colors,
+            Deflater.DEFAULT_COMPRESSION)) {
+            for (int top = 0; top < height; top += BAND_ROWS) {
+                int rows = Math.min(BAND_ROWS, height - top);
+                reader.read(top, rows, band);
+                for (int row = 0; row < rows; row++) {
+                    palette.mapRow(band, row * width, width, top + row, indices, 0);
+                    writer.writeIndexRow(indices, 0);
+                }
+            }
+            writer.finish();
         }
     }
 
+    private void encodePng(Bitmap bitmap, int level, PngFilter filter, OutputStream outputStream) throws IOException {
+        long started = SystemClock.elapsedRealtime();
+        ParallelPngEncoder.encode(Rasters.bandReader(bitmap), bitmap.getWidth(), bitmap.getHeight(), bitmap.hasAlpha(),
+            level, filter, outputStream);
+        Log.d(TAG, "Parallel PNG " + bitmap.getWidth() + "x" + bitmap.getHeight() + " level " + level + ", "
+            + filter.name().toLowerCase(Locale.US) + " filter in " + (SystemClock.elapsedRealtime() - started) + "ms");
+    }
+
     private File createTempFile(String originalName, Bitmap.CompressFormat format) {
         File cacheDir = appContext.getCacheDir();
         if (cacheDir == null) {
@@ -870,7 +2197,7 @@ public final class ImgApi {
         return false;
     }
 
-    private String saveToPublicGallery(File temp, String mimeType, Bitmap.CompressFormat format, String originalName) {
+    private String saveToPublicGallery(OutputWriter writer, String mimeType, Bitmap.CompressFormat format, String originalName) {
         ContentResolver resolver = appContext.getContentResolver();
         ContentValues values = new ContentValues();
         String displayName = stripExtension(originalName);
@@ -885,6 +2212,7 @@ public final class ImgApi {
         String relativePath = Environment.DIRECTORY_PICTURES + "/" + PUBLIC_FOLDER;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             values.put(MediaStore.Images.Media.RELATIVE_PATH, relativePath);
+            values.put(MediaStore.Images.Media.IS_PENDING, 1);
         }
         Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
         if (uri == null) {
@@ -896,12 +2224,17 @@ public final class ImgApi {
                 Log.e(TAG, "Unable to open output stream for uri " + uri);
                 return null;
             }
-            copyFile(temp, outputStream);
+            writer.writeTo(outputStream);
         } catch (IOException e) {
             Log.e(TAG, "Unable to write rotated image to MediaStore", e);
             resolver.delete(uri, null, null);
             return null;
         }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ContentValues published = new ContentValues();
+            published.put(MediaStore.Images.Media.IS_PENDING, 0);
+            resolver.update(uri, published, null, null);
+        }
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
             File publicDir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), PUBLIC_FOLDER);
             if (!publicDir.exists()) {
@@ -915,31 +2248,131 @@ public final class ImgApi {
         return Environment.getExternalStorageDirectory().getAbsolutePath() + "/Pictures/" + PUBLIC_FOLDER + "/" + displayName;
     }
 
-    private void copyFile(File source, OutputStream destination) throws IOException {
-        try (FileInputStream inputStream = new FileInputStream(source)) {
-            byte[] buffer = new byte[16 * 1024];
-            int read;
-            while ((read = inputStream.read(buffer)) != -1) {
-                destination.write(buffer, 0, read);
-            }
-            destination.flush();
-        }
-    }
-
     /**
-     * Value object describing the dimensions and metadata of an image.
+     * Value object describing the dimensions and metadata of an image. {@code orientation} is the raw EXIF value
+     * (0 when absent), {@code bitDepth} the bits per channel from the file header (0 when unknown) and
+     * {@code alpha} whether a PNG declares an alpha channel.
      */
     public static final class ImageInfo {
         public final int width;
         public final int height;
         public final long bytes;
         public final String mime;
+        public final int orientation;
+        public final int bitDepth;
+        public final boolean alpha;
 
-        ImageInfo(int width, int height, long bytes, String mime) {
+        ImageInfo(int width, int height, long bytes, String mime, ImageHeader header) {
             this.width = width;
             this.height = height;
             this.bytes = bytes;
             this.mime = mime;
+            this.orientation = header.orientation;
+            this.bitDepth = header.bitDepth;
+            this.alpha = header.alpha;
+        }
+    }
+
+    /**
+     * Outcome of {@link #autoTrim}: the kept rectangle in source pixels and whether anything was removed.
+     */
+    public static final class TrimResult {
+        public final String path;
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+        public final boolean trimmed;
+
+        TrimResult(String path, IntRect content, boolean trimmed) {
+            this.path = path;
+            this.left = content.left;
+            this.top = content.top;
+            this.right = content.right;
+            this.bottom = content.bottom;
+            this.trimmed = trimmed;
+        }
+    }
+
+    /**
+     * Outcome of {@link #readPixels}: the source rectangle, the size of {@code data} in pixels (smaller than the
+     * rectangle when scaled), its {@code format} and the typed array itself.
+     */
+    public static final class PixelData {
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+        public final int width;
+        public final int height;
+        public final String format;
+        public final Object data;
+
+        PixelData(IntRect source, int width, int height, String format, Object data) {
+            this.left = source.left;
+            this.top = source.top;
+            this.right = source.right;
+            this.bottom = source.bottom;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.data = data;
+        }
+    }
+
+    /**
+     * One code found by {@link #scanCodes}: {@code format} ({@code "QR_CODE"}, {@code "EAN_13"}, {@code "UPC_A"},
+     * {@code "EAN_8"} or {@code "CODE_128"}), the decoded {@code text} and its bounds in source pixels.
+     */
+    public static final class CodeResult {
+        public final String format;
+        public final String text;
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+
+        CodeResult(String format, String text, IntRect bounds) {
+            this.format = format;
+            this.text = text;
+            this.left = bounds.left;
+            this.top = bounds.top;
+            this.right = bounds.right;
+            this.bottom = bounds.bottom;
+        }
+    }
+
+    public static final class EncodeResult {
+        public final String path;
+        public final long bytes;
+        public final int quality;
+        public final int width;
+        public final int height;
+        public final boolean fits;
+
+        EncodeResult(String path, long bytes, int quality, int width, int height, boolean fits) {
+            this.path = path;
+            this.bytes = bytes;
+            this.quality = quality;
+            this.width = width;
+            this.height = height;
+            this.fits = fits;
+        }
+    }
+
+    public static final class ExportResult {
+        public final String path;
+        public final int width;
+        public final int height;
+        public final long bytes;
+        public final String format;
+
+        ExportResult(String path, int width, int height, long bytes, String format) {
+            this.path = path;
+            this.width = width;
+            this.height = height;
+            this.bytes = bytes;
+            this.format = format;
         }
     }
 }
@@ -0,0 +1,144 @@
+package com.scriptshot.script.api;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.typedarrays.NativeArrayBuffer;
+import org.mozilla.javascript.typedarrays.NativeInt32Array;
+import org.mozilla.javascript.typedarrays.NativeTypedArrayView;
+import org.mozilla.javascript.typedarrays.NativeUint32Array;
+import org.mozilla.javascript.typedarrays.NativeUint8Array;
+import org.mozilla.javascript.typedarrays.NativeUint8ClampedArray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Moves pixel blocks across the Rhino bridge as JS typed arrays. Their contents are copied in bulk through the
+ * backing {@code ArrayBuffer}, so each call crosses the bridge once instead of boxing every element.
+ * The engine binds each run's top-level scope with {@link #bindScope} so arrays get the script's own prototypes.
+ */
+public final class ScriptArrays {
+
+    private static final Object SCOPE_KEY = new Object();
+
+    private ScriptArrays() {
+    }
+
+    public static void bindScope(Context cx, Scriptable scope) {
+        cx.putThreadLocal(SCOPE_KEY, scope);
+    }
+
+    /**
+     * A new {@code Int32Array} holding {@code values}.
+     */
+    static Scriptable newInt32Array(int[] values) {
+        NativeTypedArrayView<?> array = newTypedArray("Int32Array", values.length);
+        byteView(array).asIntBuffer().put(values);
+        return array;
+    }
+
+    /**
+     * A new {@code Uint8Array} holding {@code values}.
+     */
+    static Scriptable newUint8Array(byte[] values) {
+        NativeTypedArrayView<?> array = newTypedArray("Uint8Array", values.length);
+        byteView(array).put(values);
+        return array;
+    }
+
+    /**
+     * Reads {@code count} ARGB pixels from {@code data}: an {@code Int32Array}/{@code Uint32Array} or {@code int[]}
+     * of ARGB values, a {@code Uint8Array}/{@code Uint8ClampedArray} of RGBA bytes, or a plain JS array of either
+     * (told apart by its length).
+     */
+    static int[] toArgb(Object data, int count) {
+        if (data instanceof int[]) {
+            return requireLength((int[]) data, count);
+        }
+        if (data instanceof NativeInt32Array || data instanceof NativeUint32Array) {
+            NativeTypedArrayView<?> array = (NativeTypedArrayView<?>) data;
+            int[] pixels = new int[checkLength(array.size(), count, 1)];
+            byteView(array).asIntBuffer().get(pixels);
+            return pixels;
+        }
+        if (data instanceof NativeUint8Array || data instanceof NativeUint8ClampedArray) {
+            NativeTypedArrayView<?> array = (NativeTypedArrayView<?>) data;
+            byte[] rgba = new byte[checkLength(array.size(), count, 4)];
+            byteView(array).get(rgba);
+            return rgbaToArgb(rgba, count);
+        }
+        if (data instanceof List) {
+            List<?> items = (List<?>) data;
+            boolean bytes = items.size() == count * 4 && count > 0;
+            int[] values = new int[checkLength(items.size(), count, bytes ? 4 : 1)];
+            for (int i = 0; i < values.length; i++) {
+                Object item = items.get(i);
+                values[i] = item instanceof Number ? (int) ((Number) item).longValue() : 0;
+            }
+            if (!bytes) {
+                return values;
+            }
+            byte[] rgba = new byte[values.length];
+            for (int i = 0; i < rgba.length; i++) {
+                rgba[i] = (byte) values[i];
+            }
+            return rgbaToArgb(rgba, count);
+        }
+        throw new IllegalArgumentException("Pixels must be an Int32Array, Uint8Array or array of numbers");
+    }
+
+    static byte[] argbToRgba(int[] pixels) {
+        byte[] rgba = new byte[pixels.length * 4];
+        for (int i = 0, j = 0; i < pixels.length; i++, j += 4) {
+            int color = pixels[i];
+            rgba[j] = (byte) (color >> 16);
+            rgba[j + 1] = (byte) (color >> 8);
+            rgba[j + 2] = (byte) color;
+            rgba[j + 3] = (byte) (color >>> 24);
+        }
+        return rgba;
+    }
+
+    private static int[] rgbaToArgb(byte[] rgba, int count) {
+        int[] pixels = new int[count];
+        for (int i = 0, j = 0; i < count; i++, j += 4) {
+            pixels[i] = (rgba[j + 3] & 0xFF) << 24 | (rgba[j] & 0xFF) << 16 | (rgba[j + 1] & 0xFF) << 8
+                | (rgba[j + 2] & 0xFF);
+        }
+        return pixels;
+    }
+
+    private static int[] requireLength(int[] pixels, int count) {
+        checkLength(pixels.length, count, 1);
+        return pixels;
+    }
+
+    private static int checkLength(int actual, int count, int perPixel) {
+        if (actual != count * perPixel) {
+            throw new IllegalArgumentException("Expected " + count * perPixel + " values for " + count
+                + " pixels, got " + actual);
+        }
+        return actual;
+    }
+
+    private static NativeTypedArrayView<?> newTypedArray(String constructor, int length) {
+        Context cx = Context.getCurrentContext();
+        Scriptable scope = cx != null ? (Scriptable) cx.getThreadLocal(SCOPE_KEY) : null;
+        if (scope == null) {
+            throw new IllegalStateException("Typed arrays need a running script");
+        }
+        return (NativeTypedArrayView<?>) cx.newObject(scope, constructor, new Object[]{length});
+    }
+
+    /**
+     * The array's slice of its backing buffer, in the byte order Rhino reads typed array elements with.
+     */
+    private static ByteBuffer byteView(NativeTypedArrayView<?> array) {
+        NativeArrayBuffer buffer = array.getBuffer();
+        Context cx = Context.getCurrentContext();
+        boolean littleEndian = cx != null && cx.hasFeature(Context.FEATURE_LITTLE_ENDIAN);
+        return ByteBuffer.wrap(buffer.getBuffer(), array.getByteOffset(), array.getByteLength()).slice()
+            .order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+    }
+}
@@ -0,0 +1,111 @@
+package com.scriptshot.script.api;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Read-only view over the optional {@code {key: value}} object scripts pass as the last argument.
+ * Rhino hands JS objects over as {@link Map}s whose numbers are doubles, so every getter coerces.
+ */
+final class ScriptOptions {
+
+    private static final ScriptOptions EMPTY = new ScriptOptions(Collections.emptyMap());
+
+    private final Map<?, ?> values;
+
+    private ScriptOptions(Map<?, ?> values) {
+        this.values = values;
+    }
+
+    static ScriptOptions from(Map<?, ?> values) {
+        return values == null ? EMPTY : new ScriptOptions(values);
+    }
+
+    boolean has(String key) {
+        return values.get(key) != null;
+    }
+
+    Object get(String key) {
+        return values.get(key);
+    }
+
+    String getString(String key, String fallback) {
+        Object value = values.get(key);
+        if (value == null) {
+            return fallback;
+        }
+        String text = String.valueOf(value).trim();
+        return text.isEmpty() ? fallback : text;
+    }
+
+    String getLowerString(String key, String fallback) {
+        String value = getString(key, fallback);
+        return value == null ? null : value.toLowerCase(Locale.US);
+    }
+
+    int getInt(String key, int fallback) {
+        Object value = values.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        if (value != null) {
+            try {
+                return (int) Double.parseDouble(String.valueOf(value).trim());
+            } catch (NumberFormatException ignored) {
+                return fallback;
+            }
+        }
+        return fallback;
+    }
+
+    double getDouble(String key, double fallback) {
+        Object value = values.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value != null) {
+            try {
+                return Double.parseDouble(String.valueOf(value).trim());
+            } catch (NumberFormatException ignored) {
+                return fallback;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Accepts a JS array (Rhino passes it as a {@link Collection}) or a single number.
+     */
+    double[] getDoubleArray(String key, double[] fallback) {
+        Object value = values.get(key);
+        if (value instanceof Number) {
+            return new double[]{((Number) value).doubleValue()};
+        }
+        if (!(value instanceof Collection)) {
+            return fallback;
+        }
+        Collection<?> items = (Collection<?>) value;
+        double[] result = new double[items.size()];
+        int count = 0;
+        for (Object item : items) {
+            if (item instanceof Number) {
+                result[count++] = ((Number) item).doubleValue();
+            }
+        }
+        return count == 0 ? fallback : Arrays.copyOf(result, count);
+    }
+
+    boolean getBoolean(String key, boolean fallback) {
+        Object value = values.get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value != null) {
+            return Boolean.parseBoolean(String.valueOf(value).trim());
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,135 @@
+package com.scriptshot.script.api;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Finds the highest lossy quality whose output fits a byte budget by binary search over in-memory encodes. Two
+ * buffers are reused for the whole search: one holds the best fitting result so far, the other the attempt in
+ * progress. When even the minimum quality is too large, the bitmap is scaled down and the search repeats.
+ */
+final class TargetSizeEncoder {
+
+    private static final int INITIAL_BUFFER = 256 * 1024;
+    private static final int MAX_RESIZE_STEPS = 4;
+    private static final int MIN_EDGE = 64;
+    private static final double MIN_STEP_SCALE = 0.5d;
+    private static final double MAX_STEP_SCALE = 0.9d;
+    /** Encoded size does not shrink linearly with pixel count; aim a little lower than the estimate. */
+    private static final double SCALE_MARGIN = 0.95d;
+
+    private final Bitmap.CompressFormat format;
+    private final long maxBytes;
+    private final int minQuality;
+    private final int maxQuality;
+    private ByteArrayOutputStream best = new ByteArrayOutputStream(INITIAL_BUFFER);
+    private ByteArrayOutputStream attempt = new ByteArrayOutputStream(INITIAL_BUFFER);
+    private int bestQuality = -1;
+    private int width;
+    private int height;
+
+    TargetSizeEncoder(Bitmap.CompressFormat format, long maxBytes, int minQuality, int maxQuality) {
+        this.format = format;
+        this.maxBytes = maxBytes;
+        this.minQuality = minQuality;
+        this.maxQuality = Math.max(minQuality, maxQuality);
+    }
+
+    /**
+     * Returns true when some encode fits the budget; otherwise the smallest encode tried is kept.
+     */
+    boolean encode(Bitmap source, boolean allowResize) throws IOException {
+        Bitmap current = source;
+        try {
+            for (int step = 0; ; step++) {
+                if (search(current)) {
+                    return true;
+                }
+                if (!allowResize || step >= MAX_RESIZE_STEPS) {
+                    return false;
+                }
+                double scale = Math.sqrt((double) maxBytes / best.size()) * SCALE_MARGIN;
+                scale = Math.max(MIN_STEP_SCALE, Math.min(MAX_STEP_SCALE, scale));
+                int nextWidth = (int) Math.round(current.getWidth() * scale);
+                int nextHeight = (int) Math.round(current.getHeight() * scale);
+                if (Math.min(nextWidth, nextHeight) < MIN_EDGE) {
+                    return false;
+                }
+                Bitmap scaled = Bitmap.createScaledBitmap(current, nextWidth, nextHeight, true);
+                if (current != source) {
+                    current.recycle();
+                }
+                current = scaled;
+            }
+        } finally {
+            if (current != source) {
+                current.recycle();
+            }
+        }
+    }
+
+    int getQuality() {
+        return bestQuality;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    long getSize() {
+        return best.size();
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        best.writeTo(outputStream);
+    }
+
+    private boolean search(Bitmap bitmap) throws IOException {
+        if (compress(bitmap, maxQuality)) {
+            return true;
+        }
+        if (!compress(bitmap, minQuality)) {
+            return false;
+        }
+        int low = minQuality + 1;
+        int high = maxQuality - 1;
+        while (low <= high) {
+            int quality = (low + high) >>> 1;
+            if (compress(bitmap, quality)) {
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes into the attempt buffer and promotes it to best when it fits, or when nothing has fitted yet and it
+     * is the smallest output so far.
+     */
+    private boolean compress(Bitmap bitmap, int quality) throws IOException {
+        attempt.reset();
+        if (!bitmap.compress(format, quality, attempt)) {
+            throw new IOException("Bitmap compression failed");
+        }
+        boolean fits = attempt.size() <= maxBytes;
+        boolean bestFits = bestQuality >= 0 && best.size() <= maxBytes;
+        if (fits || (!bestFits && (bestQuality < 0 || attempt.size() < best.size()))) {
+            ByteArrayOutputStream swap = best;
+            best = attempt;
+            attempt = swap;
+            bestQuality = quality;
+            width = bitmap.getWidth();
+            height = bitmap.getHeight();
+        }
+        return fits;
+    }
+}
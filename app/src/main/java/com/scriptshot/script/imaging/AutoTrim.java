@@ -0,0 +1,226 @@
+package com.scriptshot.script.imaging;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.WindowManager;
+
+import com.scriptshot.raster.BorderTrimmer;
+import com.scriptshot.raster.IntRect;
+import com.scriptshot.raster.Raster;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Finds the content rectangle of a capture without decoding it at full size. System bars are only looked for when
+ * the image matches the display, so scaled or foreign images are left alone; the platform's own dimens then bound
+ * the bands that may hold a bar, and only the rows of those bands that look like one on a subsampled decode are
+ * removed, so a game or video drawn under a hidden bar keeps its edges. Uniform borders are found on the same
+ * subsampled decode, and each edge that moved is then pinned down at full resolution from a strip a few sampled rows
+ * wide, decoded through {@link BandDecoder}.
+ */
+public final class AutoTrim {
+
+    private static final String TAG = "AutoTrim";
+    /** The subsampled decode keeps at least this many pixels on each side. */
+    private static final int MIN_SAMPLED_EDGE = 256;
+
+    private AutoTrim() {
+    }
+
+    public static IntRect detect(Context context, File file, boolean bars, boolean borders, int tolerance) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), bounds);
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Unable to read image bounds: " + file.getAbsolutePath());
+        }
+        IntRect full = new IntRect(0, 0, width, height);
+        IntRect barLimits = bars ? systemBarLimits(context, width, height) : full;
+        if (!borders && barLimits.equals(full)) {
+            return full;
+        }
+        Raster sampled = decodeSampled(file, width, height);
+        Scale scale = new Scale(width, height, sampled.width, sampled.height);
+        IntRect content = barLimits.equals(full) ? full : confirmBars(sampled, scale, barLimits, tolerance);
+        if (!borders || content.isEmpty()) {
+            return content;
+        }
+        IntRect start = new IntRect(scale.sampledStartX(content.left), scale.sampledStartY(content.top),
+            scale.sampledEndX(content.right), scale.sampledEndY(content.bottom));
+        if (start.isEmpty()) {
+            return content;
+        }
+        IntRect found = BorderTrimmer.trim(sampled, start, tolerance);
+        if (found.equals(start)) {
+            return content;
+        }
+        int top = content.top;
+        int bottom = content.bottom;
+        int left = content.left;
+        int right = content.right;
+        try (BandDecoder decoder = BandDecoder.open(file)) {
+            if (found.top > start.top) {
+                int stripTop = Math.max(top, scale.fullY(found.top - 1));
+                int stripBottom = Math.min(bottom, scale.fullY(found.top + 1));
+                Raster strip = readRegion(decoder, new IntRect(left, stripTop, right, stripBottom));
+                top = stripTop + BorderTrimmer.leadingRows(strip, 0, strip.width, 0, strip.height, tolerance, false);
+            }
+            if (found.bottom < start.bottom) {
+                int stripTop = Math.max(top, scale.fullY(found.bottom - 1));
+                int stripBottom = Math.min(bottom, scale.fullY(found.bottom + 1));
+                if (stripTop < stripBottom) {
+                    Raster strip = readRegion(decoder, new IntRect(left, stripTop, right, stripBottom));
+                    bottom = stripBottom - BorderTrimmer.leadingRows(strip, 0, strip.width, 0, strip.height, tolerance, true);
+                }
+            }
+            if (top >= bottom) {
+                return content;
+            }
+            if (found.left > start.left) {
+                int stripLeft = Math.max(left, scale.fullX(found.left - 1));
+                int stripRight = Math.min(right, scale.fullX(found.left + 1));
+                Raster strip = readRegion(decoder, new IntRect(stripLeft, top, stripRight, bottom));
+                left = stripLeft + BorderTrimmer.leadingColumns(strip, 0, strip.height, 0, strip.width, tolerance, false);
+            }
+            if (found.right < start.right) {
+                int stripLeft = Math.max(left, scale.fullX(found.right - 1));
+                int stripRight = Math.min(right, scale.fullX(found.right + 1));
+                if (stripLeft < stripRight) {
+                    Raster strip = readRegion(decoder, new IntRect(stripLeft, top, stripRight, bottom));
+                    right = stripRight - BorderTrimmer.leadingColumns(strip, 0, strip.height, 0, strip.width, tolerance, true);
+                }
+            }
+        }
+        IntRect trimmed = new IntRect(left, top, right, bottom);
+        Log.d(TAG, file.getName() + ": content " + trimmed + " of " + width + "x" + height);
+        return trimmed.isEmpty() ? content : trimmed;
+    }
+
+    /**
+     * Returns what would be left if the status bar, and in portrait the navigation bar, took their full platform
+     * height, or the whole image when it does not have the display's real size. This only bounds the search: bars are
+     * hidden in immersive apps, and {@link #confirmBars} decides how much of each band really is one.
+     */
+    @SuppressWarnings("deprecation")
+    private static IntRect systemBarLimits(Context context, int width, int height) {
+        IntRect full = new IntRect(0, 0, width, height);
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        if (windowManager == null) {
+            return full;
+        }
+        DisplayMetrics metrics = new DisplayMetrics();
+        windowManager.getDefaultDisplay().getRealMetrics(metrics);
+        int displayShort = Math.min(metrics.widthPixels, metrics.heightPixels);
+        int displayLong = Math.max(metrics.widthPixels, metrics.heightPixels);
+        if (Math.min(width, height) != displayShort || Math.max(width, height) != displayLong) {
+            Log.d(TAG, width + "x" + height + " is not a full-screen capture, keeping system bars");
+            return full;
+        }
+        Resources resources = context.getResources();
+        int statusBar = systemDimension(resources, "status_bar_height");
+        int navigationBar = width < height ? systemDimension(resources, "navigation_bar_height") : 0;
+        IntRect limits = new IntRect(0, statusBar, width, height - navigationBar);
+        return limits.isEmpty() ? full : limits;
+    }
+
+    /**
+     * Crops, within {@code limits}, only the outer rows that {@link BorderTrimmer#barRows} finds bar-like on the
+     * sampled decode. A band confirmed down to its last sampled row is cropped to the full platform height, since
+     * the sampled rows cannot place the bar's edge more precisely; otherwise the crop stops at the last confirmed row.
+     */
+    private static IntRect confirmBars(Raster sampled, Scale scale, IntRect limits, int tolerance) {
+        int top = 0;
+        if (limits.top > 0) {
+            int band = scale.sampledEndY(limits.top);
+            int rows = BorderTrimmer.barRows(sampled, 0, sampled.width, 0, band, tolerance, false);
+            top = band > 0 && rows == band ? limits.top : scale.fullY(rows);
+        }
+        int bottom = scale.height;
+        if (limits.bottom < scale.height) {
+            int band = scale.sampledStartY(limits.bottom);
+            int rows = BorderTrimmer.barRows(sampled, 0, sampled.width, band, sampled.height, tolerance, true);
+            bottom = band < sampled.height && rows == sampled.height - band
+                ? limits.bottom : scale.fullY(sampled.height - rows);
+        }
+        IntRect content = new IntRect(0, top, scale.width, bottom);
+        if (top != limits.top || bottom != limits.bottom) {
+            Log.d(TAG, "system bars confirmed down to " + content + " of limits " + limits);
+        }
+        return content.isEmpty() ? new IntRect(0, 0, scale.width, scale.height) : content;
+    }
+
+    private static int systemDimension(Resources resources, String name) {
+        int id = resources.getIdentifier(name, "dimen", "android");
+        return id != 0 ? resources.getDimensionPixelSize(id) : 0;
+    }
+
+    private static Raster decodeSampled(File file, int width, int height) throws IOException {
+        // Uniformity survives 5-6-5 quantization; the full-resolution refinement decides the exact edge.
+        BitmapFactory.Options options = DecodePolicy.options(DecodePolicy.Use.TOLERANT, DecodePolicy.Quality.EXACT, false);
+        options.inSampleSize = ImageHashes.sampleSizeFor(width, height, MIN_SAMPLED_EDGE, MIN_SAMPLED_EDGE);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        if (bitmap == null) {
+            throw new IOException("Unable to decode image: " + file.getAbsolutePath());
+        }
+        try {
+            return Rasters.read(bitmap);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static Raster readRegion(BandDecoder decoder, IntRect rect) {
+        Bitmap bitmap = decoder.decodeRegion(rect);
+        try {
+            return Rasters.read(bitmap);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /** Maps between full-resolution and subsampled coordinates; sampled starts round inwards. */
+    private static final class Scale {
+        final int width;
+        final int height;
+        final int sampledWidth;
+        final int sampledHeight;
+
+        Scale(int width, int height, int sampledWidth, int sampledHeight) {
+            this.width = width;
+            this.height = height;
+            this.sampledWidth = sampledWidth;
+            this.sampledHeight = sampledHeight;
+        }
+
+        int sampledStartX(int x) {
+            return (int) (((long) x * sampledWidth + width - 1) / width);
+        }
+
+        int sampledStartY(int y) {
+            return (int) (((long) y * sampledHeight + height - 1) / height);
+        }
+
+        int sampledEndX(int x) {
+            return (int) ((long) x * sampledWidth / width);
+        }
+
+        int sampledEndY(int y) {
+            return (int) ((long) y * sampledHeight / height);
+        }
+
+        int fullX(int x) {
+            return (int) Math.min(width, (long) x * width / sampledWidth);
+        }
+
+        int fullY(int y) {
+            return (int) Math.min(height, (long) y * height / sampledHeight);
+        }
+    }
+}
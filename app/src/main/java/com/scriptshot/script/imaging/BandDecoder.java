@@ -0,0 +1,117 @@
+package com.scriptshot.script.imaging;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+
+import com.scriptshot.raster.BandReader;
+import com.scriptshot.raster.IntRect;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decodes horizontal bands of an image through {@link BitmapRegionDecoder}, reusing one strip bitmap, so callers can
+ * walk arbitrarily tall images without ever holding the whole frame.
+ */
+public final class BandDecoder implements BandReader, Closeable {
+
+    private final BitmapRegionDecoder decoder;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final Rect region = new Rect();
+    private Bitmap strip;
+
+    private BandDecoder(BitmapRegionDecoder decoder) {
+        this.decoder = decoder;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+    }
+
+    @SuppressWarnings("deprecation")
+    public static BandDecoder open(File file) throws IOException {
+        BitmapRegionDecoder decoder = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+            ? BitmapRegionDecoder.newInstance(file.getAbsolutePath())
+            : BitmapRegionDecoder.newInstance(file.getAbsolutePath(), false);
+        if (decoder == null) {
+            throw new IOException("Unable to open image: " + file.getAbsolutePath());
+        }
+        return new BandDecoder(decoder);
+    }
+
+    public int getWidth() {
+        return decoder.getWidth();
+    }
+
+    public int getHeight() {
+        return decoder.getHeight();
+    }
+
+    @Override
+    public void read(int top, int rows, int[] out) {
+        int width = decoder.getWidth();
+        region.set(0, top, width, top + rows);
+        if (strip != null && strip.getHeight() >= rows) {
+            options.inBitmap = strip;
+        } else {
+            options.inBitmap = null;
+        }
+        Bitmap decoded = decoder.decodeRegion(region, options);
+        if (decoded == null) {
+            throw new IllegalStateException("Unable to decode rows " + top + ".." + (top + rows));
+        }
+        if (decoded != strip) {
+            if (strip != null) {
+                strip.recycle();
+            }
+            strip = decoded;
+        }
+        // A reused strip may be taller than the region; only its top rows are ours.
+        strip.getPixels(out, 0, width, 0, 0, width, rows);
+    }
+
+    /**
+     * Decodes {@code rect} into a new ARGB_8888 bitmap owned by the caller; the shared strip is left alone.
+     */
+    public Bitmap decodeRegion(IntRect rect) {
+        return decodeRegion(rect, 1);
+    }
+
+    /**
+     * {@code rect} scaled to exactly {@code width x height}: the decoder subsamples by the largest power of two that
+     * stays at or above that size and a filtered scale covers the rest.
+     */
+    public Bitmap decodeRegion(IntRect rect, int width, int height) {
+        Bitmap decoded = decodeRegion(rect, ImageHashes.sampleSizeFor(rect.width(), rect.height(), width, height));
+        if (decoded.getWidth() == width && decoded.getHeight() == height) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    private Bitmap decodeRegion(IntRect rect, int sampleSize) {
+        BitmapFactory.Options regionOptions = new BitmapFactory.Options();
+        regionOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        regionOptions.inSampleSize = sampleSize;
+        Bitmap decoded = decoder.decodeRegion(new Rect(rect.left, rect.top, rect.right, rect.bottom), regionOptions);
+        if (decoded == null) {
+            throw new IllegalStateException("Unable to decode region " + rect);
+        }
+        return decoded;
+    }
+
+    @Override
+    public void close() {
+        decoder.recycle();
+        if (strip != null) {
+            strip.recycle();
+            strip = null;
+        }
+    }
+}
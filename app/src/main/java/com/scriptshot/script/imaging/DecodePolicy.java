@@ -0,0 +1,62 @@
+package com.scriptshot.script.imaging;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.util.Locale;
+
+/**
+ * Picks the bitmap config each operation decodes into. Screenshots are opaque, so operations that tolerate 5-6-5
+ * precision decode into {@link Bitmap.Config#RGB_565} at half the memory of {@code ARGB_8888}. Requesting
+ * {@code RGB_565} is safe for any source: the platform decoder falls back to {@code ARGB_8888} when the image has
+ * per-pixel alpha.
+ */
+public final class DecodePolicy {
+
+    /** Script-facing precision hint, {@code quality: "fast"} or {@code "exact"}. */
+    public enum Quality {
+        EXACT,
+        FAST;
+
+        public static Quality parse(String value, Quality fallback) {
+            if (value == null) {
+                return fallback;
+            }
+            switch (value.trim().toLowerCase(Locale.US)) {
+                case "fast":
+                    return FAST;
+                case "exact":
+                    return EXACT;
+                default:
+                    return fallback;
+            }
+        }
+    }
+
+    public enum Use {
+        /** Pixels feed an approximate result such as a perceptual hash or a downscaled thumbnail. */
+        TOLERANT,
+        /** Pixels are edited, compared or re-encoded; reduced precision only when the caller asked for it. */
+        PIXELS
+    }
+
+    private DecodePolicy() {
+    }
+
+    public static Bitmap.Config configFor(Use use, Quality quality) {
+        switch (use) {
+            case TOLERANT:
+                return Bitmap.Config.RGB_565;
+            case PIXELS:
+            default:
+                return quality == Quality.FAST ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        }
+    }
+
+    public static BitmapFactory.Options options(Use use, Quality quality, boolean mutable) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = configFor(use, quality);
+        options.inMutable = mutable;
+        return options;
+    }
+}
@@ -0,0 +1,378 @@
+package com.scriptshot.script.imaging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads and rewrites the EXIF orientation tag of a JPEG without touching the entropy-coded image data.
+ * Only segment headers and the APP1 (Exif) payload are ever read or written.
+ */
+public final class ExifOrientation {
+
+    public static final int UNDEFINED = 0;
+    public static final int NORMAL = 1;
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_APP0 = 0xE0;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TYPE_SHORT = 3;
+    private static final int EXIF_HEADER_LENGTH = 6;
+    private static final int IFD_ENTRY_LENGTH = 12;
+    private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    // Orientation values 1..8 expressed as (horizontal mirror, clockwise rotation) applied in that order.
+    private static final boolean[] MIRRORED = {false, false, true, false, true, true, false, true, false};
+    private static final int[] ROTATION = {0, 0, 0, 180, 180, 270, 90, 90, 270};
+
+    private ExifOrientation() {
+    }
+
+    public static boolean isJpeg(File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return inputStream.read() == 0xFF && inputStream.read() == MARKER_SOI;
+        }
+    }
+
+    /**
+     * Returns the orientation obtained by rotating an image that already carries {@code orientation}
+     * a further {@code degrees} clockwise.
+     */
+    public static int compose(int orientation, int degrees) {
+        int current = orientation >= 1 && orientation <= 8 ? orientation : NORMAL;
+        boolean mirrored = MIRRORED[current];
+        int rotation = ((ROTATION[current] + degrees) % 360 + 360) % 360;
+        for (int candidate = 1; candidate <= 8; candidate++) {
+            if (MIRRORED[candidate] == mirrored && ROTATION[candidate] == rotation) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("degrees must be a multiple of 90");
+    }
+
+    /**
+     * Reads the orientation tag from IFD0, or {@link #UNDEFINED} when the file has no Exif orientation.
+     */
+    public static int read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            TagLocation location = locate(raf);
+            return location == null || location.valueOffset < 0 ? UNDEFINED : location.value;
+        }
+    }
+
+    /**
+     * Overwrites an existing orientation tag in place. Writes exactly two bytes.
+     *
+     * @return {@code false} when the file has no orientation tag and needs {@link #rewrite} instead.
+     */
+    public static boolean patchInPlace(File file, int degrees) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            TagLocation location = locate(raf);
+            if (location == null || location.valueOffset < 0) {
+                return false;
+            }
+            int updated = compose(location.value, degrees);
+            raf.seek(location.valueOffset);
+            if (location.order == ByteOrder.BIG_ENDIAN) {
+                raf.write(updated >> 8);
+                raf.write(updated);
+            } else {
+                raf.write(updated);
+                raf.write(updated >> 8);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Streams {@code source} into {@code destination}, replacing the first Exif APP1 segment with one whose IFD0
+     * carries the rotated orientation, wherever it sits among the header segments. Only a file with no Exif segment
+     * at all gets a minimal one, inserted right after SOI/APP0. All other segments and the scan data are copied byte
+     * for byte.
+     */
+    public static void rewrite(File source, OutputStream destination, int degrees) throws IOException {
+        boolean hasExif = hasExifSegment(source);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source), 16 * 1024))) {
+            if (in.readUnsignedByte() != 0xFF || in.readUnsignedByte() != MARKER_SOI) {
+                throw new IOException("Not a JPEG file: " + source.getAbsolutePath());
+            }
+            destination.write(0xFF);
+            destination.write(MARKER_SOI);
+            boolean exifWritten = false;
+            while (true) {
+                int marker = readMarker(in);
+                if (marker == MARKER_SOS || marker == MARKER_EOI || !hasLength(marker)) {
+                    if (!exifWritten) {
+                        writeSegment(destination, MARKER_APP1, buildMinimalExif(compose(NORMAL, degrees)));
+                    }
+                    destination.write(0xFF);
+                    destination.write(marker);
+                    break;
+                }
+                int length = in.readUnsignedShort();
+                if (length < 2) {
+                    throw new IOException("Corrupt JPEG segment length " + length);
+                }
+                byte[] payload = new byte[length - 2];
+                in.readFully(payload);
+                if (marker == MARKER_APP1 && !exifWritten && startsWithExifHeader(payload)) {
+                    writeSegment(destination, MARKER_APP1, withOrientation(payload, degrees));
+                    exifWritten = true;
+                    continue;
+                }
+                if (marker != MARKER_APP0 && !hasExif && !exifWritten) {
+                    writeSegment(destination, MARKER_APP1, buildMinimalExif(compose(NORMAL, degrees)));
+                    exifWritten = true;
+                }
+                writeSegment(destination, marker, payload);
+            }
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                destination.write(buffer, 0, read);
+            }
+            destination.flush();
+        }
+    }
+
+    /**
+     * Orientation carried by an APP1 payload, or {@link #UNDEFINED} when it is not Exif or has no such tag.
+     */
+    static int fromApp1Payload(byte[] payload) {
+        if (!startsWithExifHeader(payload)) {
+            return UNDEFINED;
+        }
+        try {
+            ByteBuffer tiff = tiffView(payload);
+            int entryOffset = findOrientationEntry(tiff);
+            return entryOffset < 0 ? UNDEFINED : tiff.getShort(entryOffset + 8) & 0xFFFF;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            return UNDEFINED;
+        }
+    }
+
+    private static boolean hasExifSegment(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.readUnsignedByte() != 0xFF || raf.readUnsignedByte() != MARKER_SOI) {
+                return false;
+            }
+            byte[] header = new byte[EXIF_HEADER_LENGTH];
+            while (raf.getFilePointer() < raf.length()) {
+                int marker = readMarker(raf);
+                if (marker == MARKER_SOS || marker == MARKER_EOI || !hasLength(marker)) {
+                    return false;
+                }
+                int length = raf.readUnsignedShort();
+                long payloadStart = raf.getFilePointer();
+                if (marker == MARKER_APP1 && length >= 2 + EXIF_HEADER_LENGTH) {
+                    raf.readFully(header);
+                    if (startsWithExifHeader(header)) {
+                        return true;
+                    }
+                }
+                raf.seek(payloadStart + length - 2);
+            }
+            return false;
+        }
+    }
+
+    private static TagLocation locate(RandomAccessFile raf) throws IOException {
+        if (raf.readUnsignedByte() != 0xFF || raf.readUnsignedByte() != MARKER_SOI) {
+            return null;
+        }
+        while (raf.getFilePointer() < raf.length()) {
+            int marker = readMarker(raf);
+            if (marker == MARKER_SOS || marker == MARKER_EOI || !hasLength(marker)) {
+                return null;
+            }
+            int length = raf.readUnsignedShort();
+            long payloadStart = raf.getFilePointer();
+            if (marker == MARKER_APP1 && length >= 2 + EXIF_HEADER_LENGTH + 8) {
+                byte[] payload = new byte[length - 2];
+                raf.readFully(payload);
+                if (startsWithExifHeader(payload)) {
+                    ByteBuffer tiff = tiffView(payload);
+                    int entryOffset = findOrientationEntry(tiff);
+                    if (entryOffset < 0) {
+                        return new TagLocation(tiff.order(), -1L, UNDEFINED);
+                    }
+                    int value = tiff.getShort(entryOffset + 8) & 0xFFFF;
+                    long fileOffset = payloadStart + EXIF_HEADER_LENGTH + entryOffset + 8;
+                    return new TagLocation(tiff.order(), fileOffset, value);
+                }
+            }
+            raf.seek(payloadStart + length - 2);
+        }
+        return null;
+    }
+
+    private static byte[] withOrientation(byte[] payload, int degrees) throws IOException {
+        ByteBuffer tiff = tiffView(payload);
+        int entryOffset = findOrientationEntry(tiff);
+        if (entryOffset >= 0) {
+            byte[] patched = payload.clone();
+            ByteBuffer view = tiffView(patched);
+            int current = view.getShort(entryOffset + 8) & 0xFFFF;
+            view.putShort(entryOffset + 8, (short) compose(current, degrees));
+            return patched;
+        }
+        // No orientation entry: append a copy of IFD0 with the tag inserted and repoint the header at it.
+        // Value offsets stay valid because the original data is left where it was.
+        int ifdOffset = tiff.getInt(4);
+        int count = tiff.getShort(ifdOffset) & 0xFFFF;
+        int tiffLength = tiff.limit();
+        int newIfdOffset = tiffLength + (tiffLength & 1);
+        int newIfdLength = 2 + (count + 1) * IFD_ENTRY_LENGTH + 4;
+        int newPayloadLength = EXIF_HEADER_LENGTH + newIfdOffset + newIfdLength;
+        if (newPayloadLength + 2 > MAX_SEGMENT_LENGTH) {
+            throw new IOException("Exif segment too large to extend");
+        }
+        byte[] extended = new byte[newPayloadLength];
+        System.arraycopy(payload, 0, extended, 0, payload.length);
+        ByteBuffer out = tiffView(extended);
+        out.putInt(4, newIfdOffset);
+        out.putShort(newIfdOffset, (short) (count + 1));
+        int write = newIfdOffset + 2;
+        boolean inserted = false;
+        for (int i = 0; i < count; i++) {
+            int entry = ifdOffset + 2 + i * IFD_ENTRY_LENGTH;
+            int tag = tiff.getShort(entry) & 0xFFFF;
+            if (!inserted && tag > TAG_ORIENTATION) {
+                putOrientationEntry(out, write, compose(NORMAL, degrees));
+                write += IFD_ENTRY_LENGTH;
+                inserted = true;
+            }
+            System.arraycopy(payload, EXIF_HEADER_LENGTH + entry, extended, EXIF_HEADER_LENGTH + write, IFD_ENTRY_LENGTH);
+            write += IFD_ENTRY_LENGTH;
+        }
+        if (!inserted) {
+            putOrientationEntry(out, write, compose(NORMAL, degrees));
+            write += IFD_ENTRY_LENGTH;
+        }
+        out.putInt(write, tiff.getInt(ifdOffset + 2 + count * IFD_ENTRY_LENGTH));
+        return extended;
+    }
+
+    private static byte[] buildMinimalExif(int orientation) {
+        byte[] payload = new byte[EXIF_HEADER_LENGTH + 8 + 2 + IFD_ENTRY_LENGTH + 4];
+        System.arraycopy(EXIF_HEADER, 0, payload, 0, EXIF_HEADER_LENGTH);
+        ByteBuffer tiff = ByteBuffer.wrap(payload, EXIF_HEADER_LENGTH, payload.length - EXIF_HEADER_LENGTH)
+            .slice()
+            .order(ByteOrder.BIG_ENDIAN);
+        tiff.put(0, (byte) 'M');
+        tiff.put(1, (byte) 'M');
+        tiff.putShort(2, (short) 42);
+        tiff.putInt(4, 8);
+        tiff.putShort(8, (short) 1);
+        putOrientationEntry(tiff, 10, orientation);
+        tiff.putInt(10 + IFD_ENTRY_LENGTH, 0);
+        return payload;
+    }
+
+    private static void putOrientationEntry(ByteBuffer tiff, int offset, int orientation) {
+        tiff.putShort(offset, (short) TAG_ORIENTATION);
+        tiff.putShort(offset + 2, (short) TYPE_SHORT);
+        tiff.putInt(offset + 4, 1);
+        tiff.putShort(offset + 8, (short) orientation);
+        tiff.putShort(offset + 10, (short) 0);
+    }
+
+    private static int findOrientationEntry(ByteBuffer tiff) throws IOException {
+        int ifdOffset = tiff.getInt(4);
+        if (ifdOffset < 8 || ifdOffset + 2 > tiff.limit()) {
+            throw new IOException("Corrupt Exif IFD0 offset " + ifdOffset);
+        }
+        int count = tiff.getShort(ifdOffset) & 0xFFFF;
+        if (ifdOffset + 2 + count * IFD_ENTRY_LENGTH + 4 > tiff.limit()) {
+            throw new IOException("Corrupt Exif IFD0 entry count " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int entry = ifdOffset + 2 + i * IFD_ENTRY_LENGTH;
+            if ((tiff.getShort(entry) & 0xFFFF) == TAG_ORIENTATION
+                && (tiff.getShort(entry + 2) & 0xFFFF) == TYPE_SHORT) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer tiffView(byte[] payload) throws IOException {
+        if (payload.length < EXIF_HEADER_LENGTH + 8) {
+            throw new IOException("Exif segment too short");
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(payload, EXIF_HEADER_LENGTH, payload.length - EXIF_HEADER_LENGTH).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+            tiff.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            throw new IOException("Unknown TIFF byte order");
+        }
+        return tiff;
+    }
+
+    private static boolean startsWithExifHeader(byte[] payload) {
+        if (payload.length < EXIF_HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_HEADER_LENGTH; i++) {
+            if (payload[i] != EXIF_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasLength(int marker) {
+        // RSTn and TEM markers are standalone; everything else before SOS carries a length.
+        return !(marker >= 0xD0 && marker <= 0xD7) && marker != 0x01;
+    }
+
+    private static int readMarker(DataInput in) throws IOException {
+        int prefix = in.readUnsignedByte();
+        if (prefix != 0xFF) {
+            throw new IOException("Expected JPEG marker, found 0x" + Integer.toHexString(prefix));
+        }
+        int marker;
+        do {
+            marker = in.readUnsignedByte();
+        } while (marker == 0xFF);
+        return marker;
+    }
+
+    private static void writeSegment(OutputStream out, int marker, byte[] payload) throws IOException {
+        int length = payload.length + 2;
+        if (length > MAX_SEGMENT_LENGTH) {
+            throw new IOException("JPEG segment too large: " + length);
+        }
+        out.write(0xFF);
+        out.write(marker);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write(payload);
+    }
+
+    private static final class TagLocation {
+        final ByteOrder order;
+        final long valueOffset;
+        final int value;
+
+        TagLocation(ByteOrder order, long valueOffset, int value) {
+            this.order = order;
+            this.valueOffset = valueOffset;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.scriptshot.script.imaging;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import com.scriptshot.raster.PerceptualHash;
+import com.scriptshot.raster.SimilarityIndex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Computes perceptual hashes from a subsampled decode and owns the process-wide {@link SimilarityIndex}.
+ */
+public final class ImageHashes {
+
+    private static final String INDEX_FILE = "imaging/similarity.idx";
+    private static final int INDEX_CAPACITY = 20_000;
+    // Decode at roughly 4x the hash plane so the final bilinear downscale still averages neighbouring pixels.
+    private static final int OVERSAMPLE = 4;
+    private static volatile SimilarityIndex sharedIndex;
+
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private ImageHashes() {
+    }
+
+    public static SimilarityIndex index(Context context) {
+        if (sharedIndex == null) {
+            synchronized (ImageHashes.class) {
+                if (sharedIndex == null) {
+                    File file = new File(context.getApplicationContext().getFilesDir(), INDEX_FILE);
+                    sharedIndex = new SimilarityIndex(file, INDEX_CAPACITY);
+                }
+            }
+        }
+        return sharedIndex;
+    }
+
+    public static StreamOpener fileOpener(File file) {
+        return () -> new FileInputStream(file);
+    }
+
+    public static StreamOpener uriOpener(ContentResolver resolver, Uri uri) {
+        return () -> {
+            InputStream stream = resolver.openInputStream(uri);
+            if (stream == null) {
+                throw new FileNotFoundException("Unable to open " + uri);
+            }
+            return stream;
+        };
+    }
+
+    public static long phash(StreamOpener opener) throws IOException {
+        return PerceptualHash.phash(lumaPlane(opener, PerceptualHash.PHASH_SIZE, PerceptualHash.PHASH_SIZE));
+    }
+
+    public static long dhash(StreamOpener opener) throws IOException {
+        return PerceptualHash.dhash(lumaPlane(opener, PerceptualHash.DHASH_WIDTH, PerceptualHash.DHASH_HEIGHT));
+    }
+
+    private static int[] lumaPlane(StreamOpener opener, int width, int height) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream stream = opener.open()) {
+            BitmapFactory.decodeStream(stream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unable to read image bounds");
+        }
+        // The plane is reduced to at most 32x32 luma values, far below what 5-6-5 precision can disturb.
+        BitmapFactory.Options options = DecodePolicy.options(DecodePolicy.Use.TOLERANT, DecodePolicy.Quality.EXACT, false);
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, width * OVERSAMPLE, height * OVERSAMPLE);
+        Bitmap decoded;
+        try (InputStream stream = opener.open()) {
+            decoded = BitmapFactory.decodeStream(stream, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Unable to decode image for hashing");
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        int[] pixels = new int[width * height];
+        scaled.getPixels(pixels, 0, width, 0, 0, width, height);
+        if (scaled != decoded) {
+            scaled.recycle();
+        }
+        decoded.recycle();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = PerceptualHash.luma(pixels[i]);
+        }
+        return pixels;
+    }
+
+    static int sampleSizeFor(int sourceWidth, int sourceHeight, int minWidth, int minHeight) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= minWidth && sourceHeight / (sampleSize * 2) >= minHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -0,0 +1,100 @@
+package com.scriptshot.script.imaging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Header fields that can be read without decoding: EXIF orientation, per-channel bit depth and whether a PNG
+ * carries an alpha channel. JPEG parsing stops at the first frame header, PNG parsing only looks at IHDR.
+ */
+public final class ImageHeader {
+
+    public static final ImageHeader UNKNOWN = new ImageHeader(ExifOrientation.UNDEFINED, 0, false);
+
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MAX_APP1_SCAN = 64 * 1024;
+
+    public final int orientation;
+    public final int bitDepth;
+    /** PNG colour type 4 or 6; a tRNS chunk on other types is not detected. */
+    public final boolean alpha;
+
+    private ImageHeader(int orientation, int bitDepth, boolean alpha) {
+        this.orientation = orientation;
+        this.bitDepth = bitDepth;
+        this.alpha = alpha;
+    }
+
+    public static ImageHeader read(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < 12) {
+                return UNKNOWN;
+            }
+            int first = raf.readUnsignedByte();
+            int second = raf.readUnsignedByte();
+            if (first == 0xFF && second == 0xD8) {
+                return readJpeg(raf);
+            }
+            if (first == 0x89 && second == 'P') {
+                return readPng(raf);
+            }
+            raf.seek(8);
+            if (raf.readInt() == 0x57454250) {
+                // "WEBP": always 8 bits per channel.
+                return new ImageHeader(ExifOrientation.UNDEFINED, 8, false);
+            }
+            return UNKNOWN;
+        } catch (IOException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static ImageHeader readPng(RandomAccessFile raf) throws IOException {
+        // Signature (8) + IHDR length (4) + type (4) + width (4) + height (4), then bit depth and colour type.
+        if (raf.length() < 26) {
+            return UNKNOWN;
+        }
+        raf.seek(24);
+        int bitDepth = raf.readUnsignedByte();
+        int colorType = raf.readUnsignedByte();
+        return new ImageHeader(ExifOrientation.UNDEFINED, bitDepth, (colorType & 4) != 0);
+    }
+
+    private static ImageHeader readJpeg(RandomAccessFile raf) throws IOException {
+        int orientation = ExifOrientation.UNDEFINED;
+        while (raf.getFilePointer() + 4 <= raf.length()) {
+            if (raf.readUnsignedByte() != 0xFF) {
+                break;
+            }
+            int marker;
+            do {
+                marker = raf.readUnsignedByte();
+            } while (marker == 0xFF);
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                break;
+            }
+            if ((marker >= 0xD0 && marker <= 0xD7) || marker == 0x01) {
+                continue;
+            }
+            int length = raf.readUnsignedShort();
+            long payloadStart = raf.getFilePointer();
+            if (isStartOfFrame(marker)) {
+                return new ImageHeader(orientation, raf.readUnsignedByte(), false);
+            }
+            if (marker == MARKER_APP1 && orientation == ExifOrientation.UNDEFINED && length > 2 && length <= MAX_APP1_SCAN) {
+                byte[] payload = new byte[length - 2];
+                raf.readFully(payload);
+                orientation = ExifOrientation.fromApp1Payload(payload);
+            }
+            raf.seek(payloadStart + length - 2);
+        }
+        return new ImageHeader(orientation, 0, false);
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+}
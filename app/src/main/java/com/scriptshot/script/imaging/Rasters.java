@@ -0,0 +1,50 @@
+package com.scriptshot.script.imaging;
+
+import android.graphics.Bitmap;
+
+import com.scriptshot.raster.BandReader;
+import com.scriptshot.raster.IntRect;
+import com.scriptshot.raster.Raster;
+
+/**
+ * Moves pixels between {@link Bitmap} and {@link Raster} with one bulk {@code getPixels}/{@code setPixels} call.
+ */
+public final class Rasters {
+
+    private Rasters() {
+    }
+
+    public static Raster read(Bitmap bitmap) {
+        return read(bitmap, new IntRect(0, 0, bitmap.getWidth(), bitmap.getHeight()));
+    }
+
+    /**
+     * Copies the pixels under {@code rect}, which must be non-empty and inside the bitmap.
+     */
+    public static Raster read(Bitmap bitmap, IntRect rect) {
+        Raster raster = new Raster(rect.width(), rect.height());
+        bitmap.getPixels(raster.pixels, 0, raster.width, rect.left, rect.top, raster.width, raster.height);
+        return raster;
+    }
+
+    /**
+     * Writes {@code raster} into the mutable {@code bitmap} with its top-left corner at {@code (left, top)}.
+     */
+    public static void write(Raster raster, Bitmap bitmap, int left, int top) {
+        bitmap.setPixels(raster.pixels, 0, raster.width, left, top, raster.width, raster.height);
+    }
+
+    public static Bitmap toBitmap(Raster raster) {
+        Bitmap bitmap = Bitmap.createBitmap(raster.width, raster.height, Bitmap.Config.ARGB_8888);
+        write(raster, bitmap, 0, 0);
+        return bitmap;
+    }
+
+    /**
+     * Reads rows straight from the bitmap without copying it into a raster first.
+     */
+    public static BandReader bandReader(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        return (top, rows, out) -> bitmap.getPixels(out, 0, width, 0, top, width, rows);
+    }
+}
@@ -0,0 +1,221 @@
+package com.scriptshot.script.imaging;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Size;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Process-wide thumbnail service: a size-bounded disk LRU of JPEG thumbnails under {@code cacheDir/thumbnails}.
+ * Entries are keyed by the image's content URI (or path when it is not in MediaStore), its modification time and
+ * length, and the requested edge, so edits to the source simply miss.
+ */
+public final class ThumbnailCache {
+
+    public static final int MIN_EDGE = 16;
+    public static final int MAX_EDGE = 1024;
+
+    private static final String TAG = "ThumbnailCache";
+    private static final String DIRECTORY = "thumbnails";
+    private static final long MAX_DISK_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_URI_ENTRIES = 256;
+    private static final String NO_URI = "";
+    private static final int JPEG_QUALITY = 85;
+    private static volatile ThumbnailCache instance;
+
+    private final Context appContext;
+    private final File directory;
+    /** Path to content URI (or {@link #NO_URI}), so repeat lookups skip the MediaStore query. */
+    private final LruCache<String, String> uris = new LruCache<>(MAX_URI_ENTRIES);
+    private long diskBytes = -1;
+
+    private ThumbnailCache(Context context) {
+        appContext = context.getApplicationContext();
+        directory = new File(appContext.getCacheDir(), DIRECTORY);
+    }
+
+    public static ThumbnailCache get(Context context) {
+        if (instance == null) {
+            synchronized (ThumbnailCache.class) {
+                if (instance == null) {
+                    instance = new ThumbnailCache(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached JPEG for {@code source}, whose longest edge is at most {@code edge}, generating it first
+     * when needed.
+     */
+    public File file(File source, int edge) throws IOException {
+        File file = new File(directory, keyFor(source, edge) + ".jpg");
+        if (file.isFile()) {
+            // Touch so disk eviction, which goes by modification time, behaves as an LRU.
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+        Bitmap thumbnail = generate(source, edge);
+        try {
+            store(file, thumbnail);
+        } finally {
+            thumbnail.recycle();
+        }
+        return file;
+    }
+
+    private Bitmap generate(File source, int edge) throws IOException {
+        Uri uri = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? findMediaUri(source) : null;
+        if (uri != null) {
+            try {
+                Bitmap thumbnail = appContext.getContentResolver().loadThumbnail(uri, new Size(edge, edge), null);
+                return fitWithin(thumbnail, edge);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "loadThumbnail failed, decoding instead: " + source.getAbsolutePath(), e);
+            }
+        }
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(source.getAbsolutePath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unable to read image bounds: " + source.getAbsolutePath());
+        }
+        double scale = (double) edge / Math.max(bounds.outWidth, bounds.outHeight);
+        // Thumbnails are stored as JPEG, which drops alpha and loses more detail than 5-6-5 decoding does.
+        BitmapFactory.Options options =
+            DecodePolicy.options(DecodePolicy.Use.TOLERANT, DecodePolicy.Quality.EXACT, false);
+        options.inSampleSize = ImageHashes.sampleSizeFor(bounds.outWidth, bounds.outHeight,
+            Math.max(1, (int) Math.ceil(bounds.outWidth * scale)),
+            Math.max(1, (int) Math.ceil(bounds.outHeight * scale)));
+        Bitmap decoded = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+        if (decoded == null) {
+            throw new IOException("Unable to decode image: " + source.getAbsolutePath());
+        }
+        return fitWithin(decoded, edge);
+    }
+
+    private static Bitmap fitWithin(Bitmap bitmap, int edge) {
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest <= edge) {
+            return bitmap;
+        }
+        double scale = (double) edge / longest;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+            Math.max(1, (int) Math.round(bitmap.getWidth() * scale)),
+            Math.max(1, (int) Math.round(bitmap.getHeight() * scale)), true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    private synchronized void store(File file, Bitmap thumbnail) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory: " + directory.getAbsolutePath());
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (OutputStream output = new FileOutputStream(temp, false)) {
+            if (!thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output)) {
+                throw new IOException("Thumbnail compression failed");
+            }
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Unable to move thumbnail into place: " + file.getAbsolutePath());
+        }
+        if (diskBytes < 0) {
+            diskBytes = 0;
+            File[] entries = directory.listFiles();
+            if (entries != null) {
+                for (File entry : entries) {
+                    diskBytes += entry.length();
+                }
+            }
+        } else {
+            diskBytes += file.length();
+        }
+        if (diskBytes > MAX_DISK_BYTES) {
+            trimDisk();
+        }
+    }
+
+    /**
+     * Deletes least recently used files until the directory is back under three quarters of its budget.
+     */
+    private void trimDisk() {
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        Arrays.sort(entries, (first, second) -> Long.compare(first.lastModified(), second.lastModified()));
+        long target = MAX_DISK_BYTES * 3 / 4;
+        long total = 0;
+        for (File entry : entries) {
+            total += entry.length();
+        }
+        for (File entry : entries) {
+            if (total <= target) {
+                break;
+            }
+            long length = entry.length();
+            if (entry.delete()) {
+                total -= length;
+            }
+        }
+        diskBytes = total;
+    }
+
+    private String keyFor(File source, int edge) {
+        Uri uri = findMediaUri(source);
+        String identity = uri != null ? uri.toString() : source.getAbsolutePath();
+        String raw = identity + '|' + source.lastModified() + '|' + source.length() + '|' + edge;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < raw.length(); i++) {
+            hash = (hash ^ raw.charAt(i)) * 0x100000001b3L;
+        }
+        return String.format(Locale.US, "%016x-%d", hash, edge);
+    }
+
+    private Uri findMediaUri(File file) {
+        String path = file.getAbsolutePath();
+        String known = uris.get(path);
+        if (known == null) {
+            Uri uri = queryMediaUri(file);
+            known = uri != null ? uri.toString() : NO_URI;
+            uris.put(path, known);
+        }
+        return known.isEmpty() ? null : Uri.parse(known);
+    }
+
+    private Uri queryMediaUri(File file) {
+        ContentResolver resolver = appContext.getContentResolver();
+        Uri collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+        try (Cursor cursor = resolver.query(collection, new String[]{MediaStore.Images.Media._ID},
+            MediaStore.Images.Media.DATA + "=?", new String[]{file.getAbsolutePath()}, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            return ContentUris.withAppendedId(collection, cursor.getLong(0));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.scriptshot.script.imaging;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Process-wide cache of prepared watermark overlays, so stamping the same watermark on every capture decodes, scales
+ * or lays out text once. Image overlays are keyed by path, modification time, length, target width and margin; text
+ * overlays by text, size, colour and margin. Returned bitmaps are shared: callers must not recycle or draw into them.
+ */
+public final class WatermarkCache {
+
+    /**
+     * Transparent border around rendered text that holds its drop shadow; the text box starts this far in.
+     */
+    public static final int TEXT_SHADOW_INSET = 4;
+
+    private static final int MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+    private static final float SHADOW_RADIUS = 2f;
+    private static final float SHADOW_OFFSET = 1f;
+    private static final int SHADOW_COLOR = Color.argb(120, 0, 0, 0);
+    private static volatile WatermarkCache instance;
+
+    private final LruCache<String, Bitmap> overlays;
+
+    private WatermarkCache() {
+        int memoryBytes = (int) Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 32);
+        overlays = new LruCache<String, Bitmap>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    public static WatermarkCache get() {
+        if (instance == null) {
+            synchronized (WatermarkCache.class) {
+                if (instance == null) {
+                    instance = new WatermarkCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * {@code source} scaled to {@code targetWidth} pixels wide with its aspect kept, surrounded by {@code margin}
+     * transparent pixels on every side.
+     */
+    public Bitmap image(File source, int targetWidth, int margin) throws IOException {
+        String key = String.format(Locale.US, "image:%s:%d:%d:%d:%d", source.getAbsolutePath(),
+            source.lastModified(), source.length(), targetWidth, margin);
+        Bitmap cached = overlays.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(source.getAbsolutePath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unable to decode watermark image: " + source.getAbsolutePath());
+        }
+        float aspect = (float) bounds.outWidth / bounds.outHeight;
+        int width = Math.max(1, targetWidth);
+        int height = (int) Math.max(1, width / aspect);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = ImageHashes.sampleSizeFor(bounds.outWidth, bounds.outHeight, width, height);
+        Bitmap decoded = BitmapFactory.decodeFile(source.getAbsolutePath(), options);
+        if (decoded == null) {
+            throw new IOException("Unable to decode watermark image: " + source.getAbsolutePath());
+        }
+        Bitmap overlay = Bitmap.createBitmap(width + margin * 2, height + margin * 2, Bitmap.Config.ARGB_8888);
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        new Canvas(overlay).drawBitmap(scaled, margin, margin, null);
+        if (scaled != decoded) {
+            scaled.recycle();
+        }
+        decoded.recycle();
+        overlays.put(key, overlay);
+        return overlay;
+    }
+
+    /**
+     * {@code text} rendered once with the watermark drop shadow. The text box (advance width by ascent plus descent)
+     * starts {@code margin + TEXT_SHADOW_INSET} pixels from the top-left corner.
+     */
+    public Bitmap text(String text, float textSize, int color, int margin) {
+        String key = String.format(Locale.US, "text:%s:%.2f:%08X:%d", text, textSize, color, margin);
+        Bitmap cached = overlays.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setTextSize(textSize);
+        paint.setShadowLayer(SHADOW_RADIUS, SHADOW_OFFSET, SHADOW_OFFSET, SHADOW_COLOR);
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        int inset = margin + TEXT_SHADOW_INSET;
+        int width = (int) Math.ceil(paint.measureText(text)) + inset * 2;
+        int height = (int) Math.ceil(metrics.descent - metrics.ascent) + inset * 2;
+        Bitmap overlay = Bitmap.createBitmap(Math.max(1, width), Math.max(1, height), Bitmap.Config.ARGB_8888);
+        new Canvas(overlay).drawText(text, inset, inset - metrics.ascent, paint);
+        overlays.put(key, overlay);
+        return overlay;
+    }
+
+    public void clear() {
+        overlays.evictAll();
+    }
+}
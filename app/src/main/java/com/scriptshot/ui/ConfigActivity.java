@@ -43,6 +43,7 @@ public class ConfigActivity extends AppCompatActivity {
     private SwitchCompat captureToastSwitch;
     private SwitchCompat scriptSuccessToastSwitch;
     private SwitchCompat scriptErrorToastSwitch;
+    private SwitchCompat skipDuplicatesSwitch;
     private boolean suppressSwitchCallbacks;
 
     private static final int REQUEST_WRITE_STORAGE = 1001;
@@ -74,6 +75,7 @@ public class ConfigActivity extends AppCompatActivity {
         captureToastSwitch = findViewById(R.id.switch_capture_toast);
         scriptSuccessToastSwitch = findViewById(R.id.switch_script_success_toast);
         scriptErrorToastSwitch = findViewById(R.id.switch_script_error_toast);
+        skipDuplicatesSwitch = findViewById(R.id.switch_skip_duplicates);
     }
 
     private void setupModeSelector() {
@@ -219,6 +221,14 @@ public class ConfigActivity extends AppCompatActivity {
                 CapturePreferences.setShowScriptErrorToast(this, isChecked);
             });
         }
+        if (skipDuplicatesSwitch != null) {
+            skipDuplicatesSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                if (suppressSwitchCallbacks) {
+                    return;
+                }
+                CapturePreferences.setSkipDuplicateCaptures(this, isChecked);
+            });
+        }
     }
 
     private void refreshStatus() {
@@ -260,6 +270,9 @@ public class ConfigActivity extends AppCompatActivity {
         if (scriptErrorToastSwitch != null) {
             scriptErrorToastSwitch.setChecked(CapturePreferences.shouldShowScriptErrorToast(this));
         }
+        if (skipDuplicatesSwitch != null) {
+            skipDuplicatesSwitch.setChecked(CapturePreferences.shouldSkipDuplicateCaptures(this));
+        }
         suppressSwitchCallbacks = false;
     }
 
@@ -0,0 +1,196 @@
+package com.scriptshot.script.imaging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExifOrientationTest {
+
+    private static final int APP0 = 0xE0;
+    private static final int APP1 = 0xE1;
+    private static final int APP2 = 0xE2;
+    private static final int SOS = 0xDA;
+    private static final byte[] SCAN = {
+        0x00, 0x3F, 0x00, (byte) 0xA5, (byte) 0xFF, 0x00, 0x12, (byte) 0xFF, (byte) 0xD9
+    };
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("exif").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void composeFollowsTheRotationOfEachOrientation() {
+        assertEquals(6, ExifOrientation.compose(ExifOrientation.NORMAL, 90));
+        assertEquals(3, ExifOrientation.compose(6, 90));
+        assertEquals(ExifOrientation.NORMAL, ExifOrientation.compose(8, 90));
+        assertEquals(7, ExifOrientation.compose(2, 90));
+        assertEquals(6, ExifOrientation.compose(ExifOrientation.UNDEFINED, -270));
+    }
+
+    @Test
+    public void patchInPlaceRewritesOnlyTheTag() throws IOException {
+        File file = write("tagged.jpg", jpeg(segment(APP0, jfif()), segment(APP1, exif(6))));
+        byte[] before = Files.readAllBytes(file.toPath());
+        assertTrue(ExifOrientation.patchInPlace(file, 90));
+        assertEquals(3, ExifOrientation.read(file));
+        byte[] after = Files.readAllBytes(file.toPath());
+        int changed = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) {
+                changed++;
+            }
+        }
+        assertEquals(1, changed);
+    }
+
+    @Test
+    public void patchInPlaceNeedsAnExistingTag() throws IOException {
+        File file = write("plain.jpg", jpeg(segment(APP0, jfif())));
+        assertFalse(ExifOrientation.patchInPlace(file, 90));
+        assertEquals(ExifOrientation.UNDEFINED, ExifOrientation.read(file));
+    }
+
+    @Test
+    public void rewritePatchesAnExifSegmentThatFollowsAnIccProfile() throws IOException {
+        byte[] icc = icc();
+        File file = write("icc.jpg", jpeg(segment(APP0, jfif()), segment(APP2, icc), segment(APP1, exif(1))));
+        File rotated = write("rotated.jpg", rewrite(file, 90));
+        assertEquals(Arrays.asList(APP0, APP2, APP1), markers(rotated));
+        assertEquals(6, ExifOrientation.read(rotated));
+        assertScanCopied(rotated);
+    }
+
+    @Test
+    public void rewriteInsertsExifAfterApp0WhenThereIsNone() throws IOException {
+        File file = write("plain.jpg", jpeg(segment(APP0, jfif()), segment(APP2, icc())));
+        File rotated = write("rotated.jpg", rewrite(file, 270));
+        assertEquals(Arrays.asList(APP0, APP1, APP2), markers(rotated));
+        assertEquals(8, ExifOrientation.read(rotated));
+        assertScanCopied(rotated);
+    }
+
+    @Test
+    public void rewriteAddsTheTagToAnExifSegmentWithoutOne() throws IOException {
+        File file = write("untagged.jpg", jpeg(segment(APP1, exif(0)), segment(APP2, icc())));
+        File rotated = write("rotated.jpg", rewrite(file, 180));
+        assertEquals(Arrays.asList(APP1, APP2), markers(rotated));
+        assertEquals(3, ExifOrientation.read(rotated));
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static byte[] rewrite(File source, int degrees) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExifOrientation.rewrite(source, out, degrees);
+        return out.toByteArray();
+    }
+
+    private static void assertScanCopied(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertArrayEquals(SCAN, Arrays.copyOfRange(bytes, bytes.length - SCAN.length, bytes.length));
+        assertEquals(SOS, bytes[bytes.length - SCAN.length - 1] & 0xFF);
+    }
+
+    /** Markers of the segments between SOI and SOS. */
+    private static List<Integer> markers(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        List<Integer> markers = new ArrayList<>();
+        int position = 2;
+        while ((bytes[position + 1] & 0xFF) != SOS) {
+            markers.add(bytes[position + 1] & 0xFF);
+            position += 2 + ((bytes[position + 2] & 0xFF) << 8 | bytes[position + 3] & 0xFF);
+        }
+        return markers;
+    }
+
+    private static byte[] jpeg(byte[]... segments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        for (byte[] segment : segments) {
+            out.write(segment, 0, segment.length);
+        }
+        out.write(0xFF);
+        out.write(SOS);
+        out.write(SCAN, 0, SCAN.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        byte[] segment = new byte[payload.length + 4];
+        segment[0] = (byte) 0xFF;
+        segment[1] = (byte) marker;
+        segment[2] = (byte) ((payload.length + 2) >> 8);
+        segment[3] = (byte) (payload.length + 2);
+        System.arraycopy(payload, 0, segment, 4, payload.length);
+        return segment;
+    }
+
+    private static byte[] jfif() {
+        return new byte[]{'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0};
+    }
+
+    private static byte[] icc() {
+        byte[] payload = new byte[40];
+        System.arraycopy("ICC_PROFILE".getBytes(), 0, payload, 0, 11);
+        payload[12] = 1;
+        payload[13] = 1;
+        return payload;
+    }
+
+    /**
+     * A little-endian Exif payload whose IFD0 holds an ImageWidth entry and, unless {@code orientation} is 0, an
+     * orientation entry.
+     */
+    private static byte[] exif(int orientation) {
+        int entries = orientation == 0 ? 1 : 2;
+        byte[] payload = new byte[6 + 8 + 2 + entries * 12 + 4];
+        System.arraycopy(new byte[]{'E', 'x', 'i', 'f', 0, 0, 'I', 'I', 42, 0, 8, 0, 0, 0}, 0, payload, 0, 14);
+        payload[14] = (byte) entries;
+        putShortEntry(payload, 16, 0x0100, 640);
+        if (orientation != 0) {
+            putShortEntry(payload, 28, 0x0112, orientation);
+        }
+        return payload;
+    }
+
+    private static void putShortEntry(byte[] payload, int offset, int tag, int value) {
+        payload[offset] = (byte) tag;
+        payload[offset + 1] = (byte) (tag >> 8);
+        payload[offset + 2] = 3;
+        payload[offset + 4] = 1;
+        payload[offset + 8] = (byte) value;
+        payload[offset + 9] = (byte) (value >> 8);
+    }
+}
@@ -0,0 +1,41 @@
+package com.scriptshot.benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * Runs JMH with the usual command line (benchmark regex, {@code -prof gc}, {@code -p radius=8} ...) and then writes
+ * the condensed summary from {@link ResultsExporter}. Paths come from the {@code benchmarks.rawResults} and
+ * {@code benchmarks.summary} system properties set by the Gradle task.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        String rawResults = System.getProperty("benchmarks.rawResults");
+        if (rawResults != null && !commandLine.getResult().hasValue()) {
+            File parent = new File(rawResults).getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IllegalStateException("Unable to create " + parent);
+            }
+            options.resultFormat(ResultFormatType.JSON).result(rawResults);
+        }
+        Collection<RunResult> results = new Runner(options.build()).run();
+        String summary = System.getProperty("benchmarks.summary");
+        if (summary != null && !results.isEmpty()) {
+            ResultsExporter.write(results, new File(summary));
+            System.out.println("Summary written to " + summary);
+        }
+    }
+}
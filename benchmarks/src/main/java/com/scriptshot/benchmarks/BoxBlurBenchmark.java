@@ -0,0 +1,57 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.BoxBlur;
+import com.scriptshot.raster.Raster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BoxBlur} across radii and image sizes. The blur works in place, so each invocation first restores the
+ * source pixels with one array copy; that copy is a small, constant part of the score.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxBlurBenchmark {
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    @Param({Fixtures.SIZE_HALF, Fixtures.SIZE_FULL})
+    public String size;
+
+    @Param({"2", "8", "32"})
+    public int radius;
+
+    private int[] original;
+    private Raster working;
+
+    @Setup
+    public void setUp() {
+        Raster source = Fixtures.load(fixture, size);
+        original = source.pixels.clone();
+        working = source;
+    }
+
+    @Benchmark
+    public Raster blur() {
+        System.arraycopy(original, 0, working.pixels, 0, original.length);
+        BoxBlur.apply(working, radius);
+        return working;
+    }
+}
@@ -0,0 +1,56 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.CodeScanner;
+import com.scriptshot.raster.LumaPlane;
+import com.scriptshot.raster.Raster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full QR and barcode scan of a fixture that holds no code, which is the worst case: binarization plus every row
+ * scan, with nothing to stop early. {@code full} scans the fixture as is; {@code half} scans the 2x-downsampled
+ * plane {@code img.scanCodes} starts from on a 1080x2400 capture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeScanBenchmark {
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    @Param({"full", "half"})
+    public String plane;
+
+    private LumaPlane luma;
+
+    @Setup
+    public void setUp() {
+        Raster source = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        luma = LumaPlane.fromArgb(source.pixels, source.width, source.height);
+        if ("half".equals(plane)) {
+            luma = luma.downsample();
+        }
+    }
+
+    @Benchmark
+    public List<CodeScanner.Result> scan() {
+        return CodeScanner.scan(luma, true, true);
+    }
+}
@@ -0,0 +1,69 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.ColorAdjust;
+import com.scriptshot.raster.ColorMatrixOp;
+import com.scriptshot.raster.Raster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brightness, contrast, saturation and invert on a full fixture. {@code sequential} runs one {@link ColorMatrixOp}
+ * pass per step; {@code fused} is the same chain as one {@link ColorAdjust} matrix pass; {@code fusedTables} drops
+ * saturation so the fused matrix keeps channels apart and runs as lookup tables. Like {@link BoxBlurBenchmark},
+ * each invocation restores the source pixels first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorAdjustBenchmark {
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    @Param({"sequential", "fused", "fusedTables"})
+    public String mode;
+
+    private int[] original;
+    private Raster working;
+    private ColorMatrixOp[] steps;
+    private ColorAdjust adjust;
+
+    @Setup
+    public void setUp() {
+        working = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        original = working.pixels.clone();
+        steps = new ColorMatrixOp[]{ColorMatrixOp.brightness(25f), ColorMatrixOp.contrast(1.2f),
+            ColorMatrixOp.saturation(0.8f), ColorMatrixOp.invert()};
+        adjust = "fusedTables".equals(mode)
+            ? ColorAdjust.of(0.1f, 1.2f, 1f, 1f, true)
+            : ColorAdjust.of(0.1f, 1.2f, 0.8f, 1f, true);
+    }
+
+    @Benchmark
+    public Raster adjust() {
+        System.arraycopy(original, 0, working.pixels, 0, original.length);
+        if ("sequential".equals(mode)) {
+            for (ColorMatrixOp step : steps) {
+                step.apply(working);
+            }
+        } else {
+            adjust.apply(working);
+        }
+        return working;
+    }
+}
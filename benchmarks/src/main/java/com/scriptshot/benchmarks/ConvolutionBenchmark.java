@@ -0,0 +1,102 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.Convolution;
+import com.scriptshot.raster.Raster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Convolution} kernels. {@code gaussian} and {@code gaussianDense} share a 13x13 footprint, but the dense
+ * variant has one corner weight nudged so it no longer factors. Their ratio is the gain from the two-pass path.
+ * Like {@link BoxBlurBenchmark}, each invocation restores the source pixels first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvolutionBenchmark {
+
+    private static final double SIGMA = 2.0;
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    @Param({"gaussian", "gaussianDense", "sharpen3x3", "unsharp", "edges"})
+    public String kernel;
+
+    private int[] original;
+    private Raster working;
+    private Convolution.Kernel weights;
+
+    @Setup
+    public void setUp() {
+        Raster source = Fixtures.load(fixture, Fixtures.SIZE_HALF);
+        original = source.pixels.clone();
+        working = source;
+        Convolution.Kernel gaussian = Convolution.Kernel.gaussian(SIGMA);
+        switch (kernel) {
+            case "gaussianDense":
+                float[] dense = new float[gaussian.width * gaussian.height];
+                float[] tap = gaussianTaps(gaussian.width);
+                for (int y = 0; y < gaussian.height; y++) {
+                    for (int x = 0; x < gaussian.width; x++) {
+                        dense[y * gaussian.width + x] = tap[y] * tap[x];
+                    }
+                }
+                dense[0] += 1e-3f;
+                weights = new Convolution.Kernel(gaussian.width, gaussian.height, dense);
+                break;
+            case "sharpen3x3":
+                weights = new Convolution.Kernel(3, 3, new float[]{0, -1, 0, -1, 5, -1, 0, -1, 0});
+                break;
+            default:
+                weights = gaussian;
+                break;
+        }
+    }
+
+    @Benchmark
+    public Raster convolve() {
+        System.arraycopy(original, 0, working.pixels, 0, original.length);
+        switch (kernel) {
+            case "unsharp":
+                Convolution.sharpen(working, 1f, SIGMA);
+                break;
+            case "edges":
+                Convolution.edges(working);
+                break;
+            default:
+                Convolution.apply(working, weights);
+                break;
+        }
+        return working;
+    }
+
+    private static float[] gaussianTaps(int size) {
+        int radius = size / 2;
+        float[] taps = new float[size];
+        float sum = 0f;
+        for (int i = -radius; i <= radius; i++) {
+            taps[i + radius] = (float) Math.exp(-(i * i) / (2 * SIGMA * SIGMA));
+            sum += taps[i + radius];
+        }
+        for (int i = 0; i < size; i++) {
+            taps[i] /= sum;
+        }
+        return taps;
+    }
+}
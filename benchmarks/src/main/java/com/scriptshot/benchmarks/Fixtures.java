@@ -0,0 +1,72 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.IntRect;
+import com.scriptshot.raster.Raster;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads the checked-in fixture images. They are fixed on purpose so numbers stay comparable across commits:
+ * {@code screen} is a 1080x2400 UI screenshot (flat colours, text), {@code photo} a 1200x900 photo-like image
+ * (gradients, sensor-style noise).
+ */
+final class Fixtures {
+
+    static final String SCREEN = "screen";
+    static final String PHOTO = "photo";
+    /** Full fixture size. */
+    static final String SIZE_FULL = "full";
+    /** Centred quarter-area crop, for checking how kernels scale with pixel count. */
+    static final String SIZE_HALF = "half";
+
+    private static final Map<String, Raster> CACHE = new HashMap<>();
+
+    private Fixtures() {
+    }
+
+    /**
+     * Returns a fresh copy, so benchmarks that mutate pixels never see each other's output.
+     */
+    static Raster load(String name, String size) {
+        Raster source = decoded(name);
+        if (SIZE_HALF.equals(size)) {
+            return source.crop(IntRect.centered(source.width, source.height, source.width / 2, source.height / 2));
+        }
+        if (!SIZE_FULL.equals(size)) {
+            throw new IllegalArgumentException("Unknown fixture size: " + size);
+        }
+        return new Raster(source.width, source.height, source.pixels.clone());
+    }
+
+    private static synchronized Raster decoded(String name) {
+        Raster cached = CACHE.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        String resource = "/fixtures/" + (PHOTO.equals(name) ? "photo.jpg" : name + ".png");
+        try (InputStream stream = Fixtures.class.getResourceAsStream(resource)) {
+            if (stream == null) {
+                throw new IllegalArgumentException("Unknown fixture: " + name);
+            }
+            BufferedImage image = ImageIO.read(stream);
+            if (image == null) {
+                throw new IOException("Unable to decode fixture " + resource);
+            }
+            int width = image.getWidth();
+            int height = image.getHeight();
+            Raster raster = new Raster(width, height);
+            image.getRGB(0, 0, width, height, raster.pixels, 0, width);
+            CACHE.put(name, raster);
+            return raster;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
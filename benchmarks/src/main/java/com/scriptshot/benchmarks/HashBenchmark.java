@@ -0,0 +1,89 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.BandReader;
+import com.scriptshot.raster.ImageDiff;
+import com.scriptshot.raster.LumaPlane;
+import com.scriptshot.raster.PerceptualHash;
+import com.scriptshot.raster.Raster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perceptual hashing from full-resolution pixels (luma conversion, resample, transform) and tile-by-tile diffing of
+ * an image against an identical copy and against one with a small edited patch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    private Raster source;
+    private Raster identical;
+    private Raster edited;
+    private int[] scratch;
+
+    @Setup
+    public void setUp() {
+        source = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        identical = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        edited = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        for (int y = edited.height / 2; y < edited.height / 2 + 40; y++) {
+            for (int x = edited.width / 3; x < edited.width / 3 + 120; x++) {
+                edited.set(x, y, ~edited.get(x, y) | 0xFF000000);
+            }
+        }
+        scratch = new int[source.width * source.height];
+    }
+
+    @Benchmark
+    public long phash() {
+        return PerceptualHash.phash(luma().resize(PerceptualHash.PHASH_SIZE, PerceptualHash.PHASH_SIZE).values);
+    }
+
+    @Benchmark
+    public long dhash() {
+        return PerceptualHash.dhash(luma().resize(PerceptualHash.DHASH_WIDTH, PerceptualHash.DHASH_HEIGHT).values);
+    }
+
+    @Benchmark
+    public ImageDiff.Result diffIdentical() {
+        return compare(identical);
+    }
+
+    @Benchmark
+    public ImageDiff.Result diffEdited() {
+        return compare(edited);
+    }
+
+    @Benchmark
+    public boolean differsEdited() {
+        return ImageDiff.differs(source.width, source.height, source, edited, 0, ImageDiff.DEFAULT_TILE);
+    }
+
+    private LumaPlane luma() {
+        System.arraycopy(source.pixels, 0, scratch, 0, scratch.length);
+        return LumaPlane.fromArgb(scratch, source.width, source.height);
+    }
+
+    private ImageDiff.Result compare(BandReader other) {
+        return ImageDiff.compare(source.width, source.height, source, other, 0, ImageDiff.DEFAULT_TILE, false, null);
+    }
+}
@@ -0,0 +1,79 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.BandReader;
+import com.scriptshot.raster.ParallelPngEncoder;
+import com.scriptshot.raster.PngFilter;
+import com.scriptshot.raster.PngStreamWriter;
+import com.scriptshot.raster.Raster;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Truecolor PNG encoding of a full fixture. {@code stream} is the single-threaded {@link PngStreamWriter};
+ * {@code parallel} is {@link ParallelPngEncoder} with the same adaptive filter and default level, so their ratio is
+ * the multi-core gain; {@code parallelFast} shows the level 1 / Up filter end of the size-for-speed trade. Each
+ * invocation returns the encoded size so the work cannot be elided.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PngEncodeBenchmark {
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    @Param({"stream", "parallel", "parallelFast"})
+    public String encoder;
+
+    private Raster source;
+    private BandReader reader;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setUp() {
+        source = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        reader = (top, rows, out) -> System.arraycopy(source.pixels, top * source.width, out, 0, rows * source.width);
+        output = new ByteArrayOutputStream(source.width * source.height * 4);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        output.reset();
+        switch (encoder) {
+            case "parallel":
+                ParallelPngEncoder.encode(reader, source.width, source.height, false, Deflater.DEFAULT_COMPRESSION,
+                    PngFilter.ADAPTIVE, output);
+                break;
+            case "parallelFast":
+                ParallelPngEncoder.encode(reader, source.width, source.height, false, 1, PngFilter.UP, output);
+                break;
+            case "stream":
+            default:
+                try (PngStreamWriter writer = new PngStreamWriter(output, source.width, source.height, false,
+                    Deflater.DEFAULT_COMPRESSION)) {
+                    writer.writeRows(source.pixels, 0, source.width, source.height);
+                    writer.finish();
+                }
+                break;
+        }
+        return output.size();
+    }
+}
@@ -0,0 +1,66 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.ColorMatrixOp;
+import com.scriptshot.raster.IntRect;
+import com.scriptshot.raster.Raster;
+import com.scriptshot.raster.RasterStats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-image statistics and per-pixel colour transforms, the kernels behind {@code img.getAverageColor} and
+ * {@code img.toGrayscale}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RasterStatsBenchmark {
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    private Raster source;
+    private Raster working;
+    private IntRect centre;
+    private ColorMatrixOp grayscale;
+
+    @Setup
+    public void setUp() {
+        source = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        working = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        centre = IntRect.centered(source.width, source.height, source.width / 4, source.height / 4);
+        grayscale = ColorMatrixOp.saturation(0f);
+    }
+
+    @Benchmark
+    public int averageFull() {
+        return RasterStats.average(source);
+    }
+
+    @Benchmark
+    public int averageRegion() {
+        return RasterStats.average(source, centre);
+    }
+
+    @Benchmark
+    public Raster grayscaleMatrix() {
+        System.arraycopy(source.pixels, 0, working.pixels, 0, source.width * source.height);
+        grayscale.apply(working);
+        return working;
+    }
+}
@@ -0,0 +1,101 @@
+package com.scriptshot.benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a compact JSON summary meant to be committed next to the change it measures: one line per benchmark and
+ * parameter set, sorted, with the score, its error and unit, plus normalized allocation when {@code -prof gc} ran.
+ * Unlike JMH's own JSON it carries no per-iteration data, so a review diff shows exactly which numbers moved.
+ */
+final class ResultsExporter {
+
+    private static final String GC_ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private ResultsExporter() {
+    }
+
+    static void write(Collection<RunResult> results, File destination) throws IOException {
+        Map<String, String> lines = new TreeMap<>();
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            String name = params.getBenchmark().replace("com.scriptshot.benchmarks.", "");
+            Map<String, String> values = new TreeMap<>();
+            for (String key : params.getParamsKeys()) {
+                values.put(key, params.getParam(key));
+            }
+            Result<?> primary = result.getPrimaryResult();
+            StringBuilder line = new StringBuilder("    {\"benchmark\": ").append(quote(name));
+            line.append(", \"mode\": ").append(quote(params.getMode().shortLabel()));
+            line.append(", \"params\": {");
+            boolean first = true;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                line.append(first ? "" : ", ").append(quote(entry.getKey())).append(": ").append(quote(entry.getValue()));
+                first = false;
+            }
+            line.append("}, \"score\": ").append(number(primary.getScore()));
+            line.append(", \"error\": ").append(number(primary.getScoreError()));
+            line.append(", \"unit\": ").append(quote(primary.getScoreUnit()));
+            for (String label : result.getSecondaryResults().keySet()) {
+                if (label.endsWith(GC_ALLOC_NORM)) {
+                    Result<?> secondary = result.getSecondaryResults().get(label);
+                    line.append(", \"allocBytesPerOp\": ").append(number(secondary.getScore()));
+                }
+            }
+            line.append('}');
+            lines.put(name + values, line.toString());
+        }
+        List<String> entries = new ArrayList<>(lines.values());
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(destination.toPath()), StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write("  \"jvm\": " + quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version")) + ",\n");
+            writer.write("  \"cpus\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+            writer.write("  \"results\": [\n");
+            for (int i = 0; i < entries.size(); i++) {
+                writer.write(entries.get(i));
+                writer.write(i + 1 < entries.size() ? ",\n" : "\n");
+            }
+            writer.write("  ]\n}\n");
+        }
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+}
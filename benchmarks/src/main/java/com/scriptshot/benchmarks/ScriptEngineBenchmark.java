@@ -0,0 +1,182 @@
+package com.scriptshot.benchmarks;
+
+import org.mozilla.javascript.ClassCache;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rhino configured the way {@code EngineManager.runScript} does it (interpreted, optimization level -1, ES6):
+ * per-run scope setup, compiling and running a typical script, and the cost of crossing into host objects.
+ * The Android APIs cannot load on a desktop JVM, so {@link HostApi} stands in with a comparable method surface.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptEngineBenchmark {
+
+    /** The objects {@code runScript} binds before evaluating. */
+    private static final String[] API_NAMES = {"img", "files", "shell", "share", "notifications", "ui"};
+    private static final String TYPICAL_SCRIPT = ""
+        + "var info = img.info(screenshotPath);\n"
+        + "var name = 'shot_' + info.width + 'x' + info.height + '.jpg';\n"
+        + "if (info.width > 1080) { img.resize(screenshotPath, 1080); }\n"
+        + "var tags = [];\n"
+        + "for (var i = 0; i < 20; i++) { tags.push(files.name(screenshotPath) + i); }\n"
+        + "shell.enabled() ? share.text(tags.join(',')) : name;\n";
+    private static final String HOST_CALL_LOOP = ""
+        + "var total = 0;\n"
+        + "for (var i = 0; i < 1000; i++) { total += img.scale(i); }\n"
+        + "total;\n";
+
+    /** A context entered for the whole trial with the standard scope and APIs bound, as inside a script run. */
+    @State(Scope.Thread)
+    public static class EnteredContext {
+        Context context;
+        Scriptable scope;
+        HostApi host;
+        Script typicalScript;
+        Script hostCallLoop;
+
+        @Setup
+        public void enter() {
+            context = enterConfigured();
+            scope = context.initStandardObjects();
+            host = new HostApi();
+            bindApis(scope, host);
+            typicalScript = context.compileString(TYPICAL_SCRIPT, "typical", 1, null);
+            hostCallLoop = context.compileString(HOST_CALL_LOOP, "hostCalls", 1, null);
+        }
+
+        @TearDown
+        public void exit() {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Everything {@code runScript} does before user code runs: enter, configure, standard objects, bindings.
+     */
+    @Benchmark
+    public Scriptable scopeSetup() {
+        Context context = enterConfigured();
+        try {
+            Scriptable scope = context.initStandardObjects();
+            bindApis(scope, new HostApi());
+            return scope;
+        } finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Compile and interpret a short script from source, as every trigger does.
+     */
+    @Benchmark
+    public Object evaluateTypical(EnteredContext state) {
+        return state.context.evaluateString(state.scope, TYPICAL_SCRIPT, "userScript", 1, null);
+    }
+
+    /**
+     * The same script precompiled, isolating interpretation from parsing.
+     */
+    @Benchmark
+    public Object executeTypicalPrecompiled(EnteredContext state) {
+        return state.typicalScript.exec(state.context, state.scope);
+    }
+
+    /**
+     * Wrapping one host object; member reflection is already cached in the scope.
+     */
+    @Benchmark
+    public Object javaToJs(EnteredContext state) {
+        return Context.javaToJS(state.host, state.scope);
+    }
+
+    /**
+     * Wrapping a host object whose class has not been seen yet, which reflects its members; this is paid once per
+     * class in every fresh scope, i.e. on every script run.
+     */
+    @Benchmark
+    public Object javaToJsColdClass(EnteredContext state) {
+        ClassCache.get(state.scope).clearCaches();
+        return Context.javaToJS(state.host, state.scope);
+    }
+
+    /**
+     * One thousand JS-to-Java method calls with a number argument and return value.
+     */
+    @Benchmark
+    public Object hostCalls(EnteredContext state) {
+        return state.hostCallLoop.exec(state.context, state.scope);
+    }
+
+    static Context enterConfigured() {
+        Context context = ContextFactory.getGlobal().enterContext();
+        context.setOptimizationLevel(-1);
+        context.setLanguageVersion(Context.VERSION_ES6);
+        return context;
+    }
+
+    static void bindApis(Scriptable scope, HostApi host) {
+        for (String name : API_NAMES) {
+            ScriptableObject.putProperty(scope, name, Context.javaToJS(host, scope));
+        }
+        ScriptableObject.putProperty(scope, "screenshotPath", "/sdcard/Pictures/Screenshots/Screenshot_20260101-120000.png");
+    }
+
+    /**
+     * Stand-in for the script APIs: public methods with primitive, string and object results.
+     */
+    public static final class HostApi {
+
+        public static final class Info {
+            public final int width = 1080;
+            public final int height = 2400;
+            public final String mime = "image/png";
+        }
+
+        private final Info info = new Info();
+
+        public Info info(String path) {
+            return info;
+        }
+
+        public boolean resize(String path, int maxEdge) {
+            return false;
+        }
+
+        public String name(String path) {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        public boolean enabled() {
+            return true;
+        }
+
+        public boolean text(String value) {
+            return !value.isEmpty();
+        }
+
+        public double scale(double value) {
+            return value * 0.5d;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.scriptshot.benchmarks;
+
+import com.scriptshot.raster.LumaPlane;
+import com.scriptshot.raster.Raster;
+import com.scriptshot.raster.TemplateMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code img.find} on a full-size fixture with a square template cut from it: the title text of the screen, the
+ * centre of the photo. Small templates are the interesting case, because they leave the fewest pyramid levels
+ * before the template itself gets too small to correlate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateMatchBenchmark {
+
+    @Param({Fixtures.SCREEN, Fixtures.PHOTO})
+    public String fixture;
+
+    @Param({"16", "32", "64"})
+    public int size;
+
+    private LumaPlane image;
+    private LumaPlane template;
+
+    @Setup
+    public void setUp() {
+        Raster source = Fixtures.load(fixture, Fixtures.SIZE_FULL);
+        image = LumaPlane.fromArgb(source.pixels, source.width, source.height);
+        int centerX = Fixtures.SCREEN.equals(fixture) ? 84 : source.width / 2;
+        int centerY = Fixtures.SCREEN.equals(fixture) ? 172 : source.height / 2;
+        int[] values = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            System.arraycopy(image.values, (centerY - size / 2 + y) * image.width + centerX - size / 2, values,
+                y * size, size);
+        }
+        template = new LumaPlane(size, size, values);
+    }
+
+    @Benchmark
+    public List<TemplateMatcher.Match> find() {
+        return TemplateMatcher.find(image, template, 0.9, null, 5);
+    }
+}
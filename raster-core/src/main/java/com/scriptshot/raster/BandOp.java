@@ -0,0 +1,18 @@
+package com.scriptshot.raster;
+
+/**
+ * One step of a {@link TiledProcessor} pipeline. Coordinates are those of the image being produced, i.e. after
+ * the processor's crop.
+ */
+public interface BandOp {
+
+    /**
+     * Rows above and below an output row this op reads to produce it; zero for per-pixel ops.
+     */
+    int haloRows();
+
+    /**
+     * Processes {@code band} in place; its first row is row {@code bandTop} of the output image.
+     */
+    void apply(Raster band, int bandTop);
+}
@@ -0,0 +1,278 @@
+package com.scriptshot.raster;
+
+/**
+ * The {@link BandOp}s the tiled path supports. Each produces the same pixels as the whole-image operation it
+ * stands in for, provided the processor hands it {@link BandOp#haloRows()} rows of context.
+ */
+public final class BandOps {
+
+    private static final int MIN_PATTERN_ROWS_PER_TASK = 16;
+
+    private BandOps() {
+    }
+
+    /**
+     * Box blur of {@code rect}, or of the whole image when it is {@code null}. Edges repeat at the rectangle's
+     * border, as with {@link BoxBlur} on a cropped region.
+     */
+    public static BandOp blur(IntRect rect, int radius) {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return Math.max(0, radius);
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                IntRect target = rect != null ? rect : new IntRect(0, 0, band.width, Integer.MAX_VALUE);
+                IntRect local = IntRect.clamped(target.left, target.top - bandTop, target.right,
+                    target.bottom - bandTop, band.width, band.height);
+                if (local.isEmpty()) {
+                    return;
+                }
+                Raster region = band.crop(local);
+                BoxBlur.apply(region, radius);
+                band.paste(region, local.left, local.top);
+            }
+        };
+    }
+
+    public static BandOp convolve(Convolution.Kernel kernel) {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return kernel.height / 2;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                Convolution.apply(band, kernel);
+            }
+        };
+    }
+
+    public static BandOp sharpen(float amount, double sigma) {
+        int halo = Convolution.Kernel.gaussian(sigma).height / 2;
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return halo;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                Convolution.sharpen(band, amount, sigma);
+            }
+        };
+    }
+
+    public static BandOp edges() {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return 1;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                Convolution.edges(band);
+            }
+        };
+    }
+
+    public static BandOp colorMatrix(ColorMatrixOp matrix) {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return 0;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                matrix.apply(band);
+            }
+        };
+    }
+
+    public static BandOp colorAdjust(ColorAdjust adjust) {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return 0;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                adjust.apply(band);
+            }
+        };
+    }
+
+    /**
+     * Source-over fill of {@code rect} with an ARGB colour.
+     */
+    public static BandOp fill(IntRect rect, int color) {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return 0;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                IntRect local = IntRect.clamped(rect.left, rect.top - bandTop, rect.right, rect.bottom - bandTop,
+                    band.width, band.height);
+                if (!local.isEmpty()) {
+                    Redaction.fill(band, local, color);
+                }
+            }
+        };
+    }
+
+    /**
+     * Draws {@code overlay} source-over with its top-left corner at ({@code left}, {@code top}); only the rows that
+     * overlap each band are touched.
+     */
+    public static BandOp overlay(Raster overlay, int left, int top) {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return 0;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                IntRect local = IntRect.clamped(left, top - bandTop, left + overlay.width,
+                    top + overlay.height - bandTop, band.width, band.height);
+                for (int y = local.top; y < local.bottom; y++) {
+                    int sourceRow = (y + bandTop - top) * overlay.width - left;
+                    int row = y * band.width;
+                    for (int x = local.left; x < local.right; x++) {
+                        int color = overlay.pixels[sourceRow + x];
+                        int alpha = color >>> 24;
+                        if (alpha == 0xFF) {
+                            band.pixels[row + x] = color;
+                        } else if (alpha != 0) {
+                            band.pixels[row + x] = Redaction.blend(band.pixels[row + x], color, alpha);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Replaces the pixels under {@code block}, top-left corner at ({@code left}, {@code top}), without blending.
+     */
+    public static BandOp paste(Raster block, int left, int top) {
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return 0;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                IntRect local = IntRect.clamped(left, top - bandTop, left + block.width,
+                    top + block.height - bandTop, band.width, band.height);
+                for (int y = local.top; y < local.bottom; y++) {
+                    System.arraycopy(block.pixels, (y + bandTop - top) * block.width + local.left - left,
+                        band.pixels, y * band.width + local.left, local.width());
+                }
+            }
+        };
+    }
+
+    /**
+     * Repeats {@code tile} across the whole image, rotated by {@code degrees} about ({@code centerX},
+     * {@code centerY}) and drawn source-over at {@code opacity}: the band form of a repeating bitmap shader with a
+     * rotation as its local matrix. Tile samples are bilinear on premultiplied colour, so transparent texels do not
+     * darken glyph edges.
+     */
+    public static BandOp pattern(Raster tile, float degrees, float centerX, float centerY, float opacity) {
+        double radians = Math.toRadians(degrees);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        float strength = Math.max(0f, Math.min(1f, opacity));
+        return new BandOp() {
+            @Override
+            public int haloRows() {
+                return 0;
+            }
+
+            @Override
+            public void apply(Raster band, int bandTop) {
+                ImagingPool.forEachRange(band.height, MIN_PATTERN_ROWS_PER_TASK, (start, end) -> {
+                    float[] sample = new float[4];
+                    for (int y = start; y < end; y++) {
+                        float dy = bandTop + y + 0.5f - centerY;
+                        int row = y * band.width;
+                        for (int x = 0; x < band.width; x++) {
+                            float dx = x + 0.5f - centerX;
+                            // Inverse rotation maps the device pixel back into unrotated pattern space.
+                            float u = cos * dx + sin * dy + centerX - 0.5f;
+                            float v = -sin * dx + cos * dy + centerY - 0.5f;
+                            sampleRepeat(tile, u, v, sample);
+                            float sourceAlpha = sample[0] * strength / 255f;
+                            if (sourceAlpha > 0f) {
+                                band.pixels[row + x] = blendPremultiplied(band.pixels[row + x], sourceAlpha,
+                                    sample[1] * strength, sample[2] * strength, sample[3] * strength);
+                            }
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Bilinear sample of {@code tile} wrapped in both directions; writes premultiplied A, R, G, B in 0..255.
+     */
+    private static void sampleRepeat(Raster tile, float u, float v, float[] out) {
+        int x0 = (int) Math.floor(u);
+        int y0 = (int) Math.floor(v);
+        float fx = u - x0;
+        float fy = v - y0;
+        int left = Math.floorMod(x0, tile.width);
+        int right = left + 1 == tile.width ? 0 : left + 1;
+        int top = Math.floorMod(y0, tile.height) * tile.width;
+        int bottom = Math.floorMod(y0 + 1, tile.height) * tile.width;
+        out[0] = 0f;
+        out[1] = 0f;
+        out[2] = 0f;
+        out[3] = 0f;
+        accumulatePremultiplied(tile.pixels[top + left], (1f - fx) * (1f - fy), out);
+        accumulatePremultiplied(tile.pixels[top + right], fx * (1f - fy), out);
+        accumulatePremultiplied(tile.pixels[bottom + left], (1f - fx) * fy, out);
+        accumulatePremultiplied(tile.pixels[bottom + right], fx * fy, out);
+    }
+
+    private static void accumulatePremultiplied(int color, float weight, float[] out) {
+        int alpha = color >>> 24;
+        if (alpha == 0 || weight == 0f) {
+            return;
+        }
+        float scaled = weight * alpha / 255f;
+        out[0] += weight * alpha;
+        out[1] += scaled * ((color >> 16) & 0xFF);
+        out[2] += scaled * ((color >> 8) & 0xFF);
+        out[3] += scaled * (color & 0xFF);
+    }
+
+    /**
+     * Source-over of a premultiplied source (alpha normalised to 0..1, colour in 0..255) onto a straight ARGB pixel.
+     */
+    private static int blendPremultiplied(int destination, float alpha, float red, float green, float blue) {
+        float destinationAlpha = (destination >>> 24) / 255f;
+        float keep = destinationAlpha * (1f - alpha);
+        float outAlpha = alpha + keep;
+        if (outAlpha <= 0f) {
+            return 0;
+        }
+        int r = Math.min(255, Math.round((red + ((destination >> 16) & 0xFF) * keep) / outAlpha));
+        int g = Math.min(255, Math.round((green + ((destination >> 8) & 0xFF) * keep) / outAlpha));
+        int b = Math.min(255, Math.round((blue + (destination & 0xFF) * keep) / outAlpha));
+        int a = Math.min(255, Math.round(outAlpha * 255f));
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+}
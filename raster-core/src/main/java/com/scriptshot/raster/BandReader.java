@@ -0,0 +1,12 @@
+package com.scriptshot.raster;
+
+/**
+ * Source of ARGB pixel rows for kernels that walk an image band by band.
+ */
+public interface BandReader {
+
+    /**
+     * Copies {@code rows} rows starting at {@code top} into {@code out}, row-major with stride equal to the width.
+     */
+    void read(int top, int rows, int[] out);
+}
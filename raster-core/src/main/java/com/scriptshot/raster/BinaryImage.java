@@ -0,0 +1,148 @@
+package com.scriptshot.raster;
+
+/**
+ * One byte per pixel, 1 for dark, thresholded from a {@link LumaPlane} against the mean of a square window around
+ * each pixel (Bradley and Roth). Window sums and sums of squares come from summed-area tables, so the cost does not
+ * depend on the window size. Windows too flat to have a meaningful local mean, such as the inside of a large dark
+ * block, fall back to a global Otsu threshold.
+ */
+final class BinaryImage {
+
+    private static final int MIN_ROWS_PER_TASK = 32;
+    private static final int MIN_COLUMNS_PER_TASK = 64;
+    /** A pixel is dark when it lies this many percent below its window mean. */
+    private static final int DARKNESS_PERCENT = 15;
+    /** Windows whose standard deviation is below this are treated as flat. */
+    private static final int FLAT_DEVIATION = 12;
+    /** The window radius is this fraction of the long edge: a few modules of any code a capture shows legibly. */
+    private static final int RADIUS_DIVISOR = 32;
+    private static final int MIN_RADIUS = 8;
+    /**
+     * Keeps a window's sum of squares (at most {@code (2r+1)^2 * 255^2}) inside an {@code int}, so the wrapping
+     * summed-area tables still give exact window sums.
+     */
+    private static final int MAX_RADIUS = 80;
+
+    final int width;
+    final int height;
+    final byte[] bits;
+
+    private BinaryImage(int width, int height, byte[] bits) {
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+    }
+
+    boolean isDark(int x, int y) {
+        return bits[y * width + x] != 0;
+    }
+
+    BinaryImage inverted() {
+        byte[] flipped = new byte[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            flipped[i] = (byte) (bits[i] ^ 1);
+        }
+        return new BinaryImage(width, height, flipped);
+    }
+
+    static BinaryImage threshold(LumaPlane plane) {
+        int width = plane.width;
+        int height = plane.height;
+        int[] values = plane.values;
+        int stride = width + 1;
+        // Both tables may wrap; window sums are differences, which stay exact modulo 2^32.
+        int[] sums = new int[stride * (height + 1)];
+        int[] squares = new int[stride * (height + 1)];
+        ImagingPool.forEachRange(height, MIN_ROWS_PER_TASK, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int sum = 0;
+                int square = 0;
+                int offset = (y + 1) * stride + 1;
+                for (int x = 0; x < width; x++) {
+                    int value = values[y * width + x];
+                    sum += value;
+                    square += value * value;
+                    sums[offset + x] = sum;
+                    squares[offset + x] = square;
+                }
+            }
+        });
+        ImagingPool.forEachRange(width, MIN_COLUMNS_PER_TASK, (start, end) -> {
+            for (int y = 2; y <= height; y++) {
+                int row = y * stride;
+                int above = row - stride;
+                for (int x = start + 1; x <= end; x++) {
+                    sums[row + x] += sums[above + x];
+                    squares[row + x] += squares[above + x];
+                }
+            }
+        });
+        int global = otsu(values, width * height);
+        int radius = Math.max(MIN_RADIUS, Math.min(MAX_RADIUS, Math.max(width, height) / RADIUS_DIVISOR));
+        long flat = (long) FLAT_DEVIATION * FLAT_DEVIATION;
+        byte[] bits = new byte[width * height];
+        ImagingPool.forEachRange(height, MIN_ROWS_PER_TASK, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                int top = Math.max(0, y - radius) * stride;
+                int bottom = Math.min(height, y + radius + 1) * stride;
+                int rows = Math.min(height, y + radius + 1) - Math.max(0, y - radius);
+                for (int x = 0; x < width; x++) {
+                    int left = Math.max(0, x - radius);
+                    int right = Math.min(width, x + radius + 1);
+                    long count = (long) rows * (right - left);
+                    long sum = windowSum(sums, top, bottom, left, right);
+                    long square = windowSum(squares, top, bottom, left, right);
+                    int value = values[y * width + x];
+                    boolean dark;
+                    if (count * square - sum * sum < flat * count * count) {
+                        dark = value < global;
+                    } else {
+                        dark = value * count * 100 < sum * (100 - DARKNESS_PERCENT);
+                    }
+                    bits[y * width + x] = (byte) (dark ? 1 : 0);
+                }
+            }
+        });
+        return new BinaryImage(width, height, bits);
+    }
+
+    private static long windowSum(int[] table, int top, int bottom, int left, int right) {
+        return (table[bottom + right] - table[top + right] - table[bottom + left] + table[top + left]) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Otsu's threshold: the grey level that maximises the between-class variance of the histogram.
+     */
+    private static int otsu(int[] values, int count) {
+        long[] histogram = new long[256];
+        for (int i = 0; i < count; i++) {
+            histogram[values[i]]++;
+        }
+        double total = 0;
+        for (int level = 0; level < 256; level++) {
+            total += (double) level * histogram[level];
+        }
+        double below = 0;
+        long belowCount = 0;
+        double best = -1;
+        int threshold = 128;
+        for (int level = 0; level < 256; level++) {
+            belowCount += histogram[level];
+            if (belowCount == 0) {
+                continue;
+            }
+            long aboveCount = count - belowCount;
+            if (aboveCount == 0) {
+                break;
+            }
+            below += (double) level * histogram[level];
+            double difference = below / belowCount - (total - below) / aboveCount;
+            double variance = (double) belowCount * aboveCount * difference * difference;
+            if (variance > best) {
+                best = variance;
+                threshold = level + 1;
+            }
+        }
+        return threshold;
+    }
+}
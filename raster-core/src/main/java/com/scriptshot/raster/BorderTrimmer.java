@@ -0,0 +1,116 @@
+package com.scriptshot.raster;
+
+/**
+ * Finds uniform bands along the edges of an image. A row or column counts as part of a border when every pixel in it
+ * lies within a per-channel tolerance of the colour at that edge's outermost corner, so the scan stops at the first
+ * line carrying any content (an icon, a divider, text).
+ */
+public final class BorderTrimmer {
+
+    /** Per-channel difference still treated as the same colour; absorbs JPEG ringing along flat borders. */
+    public static final int DEFAULT_TOLERANCE = 8;
+
+    private BorderTrimmer() {
+    }
+
+    /**
+     * Shrinks {@code bounds} past uniform rows at the top and bottom, then past uniform columns at the left and
+     * right of the remaining rows. Returns {@code bounds} itself when nothing but border is found.
+     */
+    public static IntRect trim(Raster raster, IntRect bounds, int tolerance) {
+        int left = bounds.left;
+        int right = bounds.right;
+        int top = bounds.top + leadingRows(raster, left, right, bounds.top, bounds.bottom, tolerance, false);
+        if (top >= bounds.bottom) {
+            return bounds;
+        }
+        int bottom = bounds.bottom - leadingRows(raster, left, right, top, bounds.bottom, tolerance, true);
+        left += leadingColumns(raster, top, bottom, left, right, tolerance, false);
+        if (left >= right) {
+            return new IntRect(bounds.left, top, bounds.right, bottom);
+        }
+        right -= leadingColumns(raster, top, bottom, left, right, tolerance, true);
+        return new IntRect(left, top, right, bottom);
+    }
+
+    /**
+     * Counts rows of {@code [top, bottom)}, restricted to columns {@code [left, right)}, that match the colour of
+     * the first pixel of the outermost row, scanning down from {@code top} or up from {@code bottom}.
+     */
+    public static int leadingRows(Raster raster, int left, int right, int top, int bottom, int tolerance,
+                                  boolean fromBottom) {
+        if (top >= bottom || left >= right) {
+            return 0;
+        }
+        int reference = raster.get(left, fromBottom ? bottom - 1 : top);
+        int count = 0;
+        for (int i = 0; i < bottom - top; i++) {
+            int y = fromBottom ? bottom - 1 - i : top + i;
+            int offset = y * raster.width;
+            for (int x = left; x < right; x++) {
+                if (!matches(raster.pixels[offset + x], reference, tolerance)) {
+                    return count;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Counts bar-like rows of {@code [top, bottom)}, restricted to columns {@code [left, right)}, scanning down from
+     * {@code top} or up from {@code bottom}. Unlike {@link #leadingRows}, a row may carry some content, as a status
+     * bar carries its clock and icons: it only has to keep at least three quarters of its pixels at the colour of the
+     * first pixel of the outermost row. Rows of a photo or a game running under the bar fail that test.
+     */
+    public static int barRows(Raster raster, int left, int right, int top, int bottom, int tolerance,
+                              boolean fromBottom) {
+        if (top >= bottom || left >= right) {
+            return 0;
+        }
+        int reference = raster.get(left, fromBottom ? bottom - 1 : top);
+        int allowed = (right - left) / 4;
+        int count = 0;
+        for (int i = 0; i < bottom - top; i++) {
+            int y = fromBottom ? bottom - 1 - i : top + i;
+            int offset = y * raster.width;
+            int misses = 0;
+            for (int x = left; x < right; x++) {
+                if (!matches(raster.pixels[offset + x], reference, tolerance) && ++misses > allowed) {
+                    return count;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Column counterpart of {@link #leadingRows}, scanning right from {@code left} or left from {@code right}.
+     */
+    public static int leadingColumns(Raster raster, int top, int bottom, int left, int right, int tolerance,
+                                     boolean fromRight) {
+        if (top >= bottom || left >= right) {
+            return 0;
+        }
+        int reference = raster.get(fromRight ? right - 1 : left, top);
+        int count = 0;
+        for (int i = 0; i < right - left; i++) {
+            int x = fromRight ? right - 1 - i : left + i;
+            for (int y = top; y < bottom; y++) {
+                if (!matches(raster.pixels[y * raster.width + x], reference, tolerance)) {
+                    return count;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean matches(int pixel, int reference, int tolerance) {
+        return Math.abs((pixel >>> 24) - (reference >>> 24)) <= tolerance
+            && Math.abs(((pixel >> 16) & 0xFF) - ((reference >> 16) & 0xFF)) <= tolerance
+            && Math.abs(((pixel >> 8) & 0xFF) - ((reference >> 8) & 0xFF)) <= tolerance
+            && Math.abs((pixel & 0xFF) - (reference & 0xFF)) <= tolerance;
+    }
+}
@@ -0,0 +1,83 @@
+package com.scriptshot.raster;
+
+/**
+ * Separable box blur over all four ARGB channels with edge pixels repeated past the border. Each pass is a running
+ * sum, so the cost per pixel does not depend on the radius; rows and columns are split across {@link ImagingPool}.
+ */
+public final class BoxBlur {
+
+    private static final int MIN_LINES_PER_TASK = 32;
+
+    private BoxBlur() {
+    }
+
+    /**
+     * Blurs {@code raster} in place.
+     */
+    public static void apply(Raster raster, int radius) {
+        if (radius <= 0) {
+            return;
+        }
+        int width = raster.width;
+        int height = raster.height;
+        int[] pixels = raster.pixels;
+        int[] temp = new int[width * height];
+        ImagingPool.forEachRange(height, MIN_LINES_PER_TASK,
+            (start, end) -> horizontal(pixels, temp, width, start, end, radius));
+        ImagingPool.forEachRange(width, MIN_LINES_PER_TASK,
+            (start, end) -> vertical(temp, pixels, width, height, start, end, radius));
+    }
+
+    private static void horizontal(int[] input, int[] output, int width, int startY, int endY, int radius) {
+        int window = radius * 2 + 1;
+        for (int y = startY; y < endY; y++) {
+            int row = y * width;
+            int sumA = 0;
+            int sumR = 0;
+            int sumG = 0;
+            int sumB = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int color = input[row + IntRect.clamp(i, 0, width - 1)];
+                sumA += color >>> 24;
+                sumR += (color >> 16) & 0xFF;
+                sumG += (color >> 8) & 0xFF;
+                sumB += color & 0xFF;
+            }
+            for (int x = 0; x < width; x++) {
+                output[row + x] = (sumA / window) << 24 | (sumR / window) << 16 | (sumG / window) << 8 | sumB / window;
+                int remove = input[row + IntRect.clamp(x - radius, 0, width - 1)];
+                int add = input[row + IntRect.clamp(x + radius + 1, 0, width - 1)];
+                sumA += (add >>> 24) - (remove >>> 24);
+                sumR += ((add >> 16) & 0xFF) - ((remove >> 16) & 0xFF);
+                sumG += ((add >> 8) & 0xFF) - ((remove >> 8) & 0xFF);
+                sumB += (add & 0xFF) - (remove & 0xFF);
+            }
+        }
+    }
+
+    private static void vertical(int[] input, int[] output, int width, int height, int startX, int endX, int radius) {
+        int window = radius * 2 + 1;
+        for (int x = startX; x < endX; x++) {
+            int sumA = 0;
+            int sumR = 0;
+            int sumG = 0;
+            int sumB = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int color = input[IntRect.clamp(i, 0, height - 1) * width + x];
+                sumA += color >>> 24;
+                sumR += (color >> 16) & 0xFF;
+                sumG += (color >> 8) & 0xFF;
+                sumB += color & 0xFF;
+            }
+            for (int y = 0; y < height; y++) {
+                output[y * width + x] = (sumA / window) << 24 | (sumR / window) << 16 | (sumG / window) << 8 | sumB / window;
+                int remove = input[IntRect.clamp(y - radius, 0, height - 1) * width + x];
+                int add = input[IntRect.clamp(y + radius + 1, 0, height - 1) * width + x];
+                sumA += (add >>> 24) - (remove >>> 24);
+                sumR += ((add >> 16) & 0xFF) - ((remove >> 16) & 0xFF);
+                sumG += ((add >> 8) & 0xFF) - ((remove >> 8) & 0xFF);
+                sumB += (add & 0xFF) - (remove & 0xFF);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.scriptshot.raster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads QR codes and EAN-13, UPC-A, EAN-8 and Code 128 barcodes from a luminance plane without leaving the device.
+ * The plane is binarized once by {@link BinaryImage}; {@link QrDetector} and {@link LinearCodeReader} then work on
+ * the bits, with their row scans spread over the imaging pool. When no QR code is found the inverted bits are
+ * searched as well, which catches light-on-dark codes.
+ */
+public final class CodeScanner {
+
+    public static final String QR_CODE = "QR_CODE";
+    public static final String EAN_13 = "EAN_13";
+    public static final String EAN_8 = "EAN_8";
+    public static final String UPC_A = "UPC_A";
+    public static final String CODE_128 = "CODE_128";
+
+    /** A decoded code: its format, payload and bounds in plane pixels. */
+    public static final class Result {
+        public final String format;
+        public final String text;
+        public final IntRect bounds;
+
+        Result(String format, String text, IntRect bounds) {
+            this.format = format;
+            this.text = text;
+            this.bounds = bounds;
+        }
+    }
+
+    private CodeScanner() {
+    }
+
+    /**
+     * Every readable code in {@code plane}, QR codes first, each in reading order (top to bottom, then left to
+     * right).
+     */
+    public static List<Result> scan(LumaPlane plane, boolean qr, boolean linear) {
+        BinaryImage image = BinaryImage.threshold(plane);
+        List<Result> results = new ArrayList<>();
+        if (qr) {
+            List<Result> codes = QrDetector.detect(image);
+            if (codes.isEmpty()) {
+                codes = QrDetector.detect(image.inverted());
+            }
+            results.addAll(sorted(codes));
+        }
+        if (linear) {
+            results.addAll(sorted(LinearCodeReader.detect(image)));
+        }
+        return results;
+    }
+
+    private static List<Result> sorted(List<Result> results) {
+        results.sort((first, second) -> first.bounds.top != second.bounds.top
+            ? Integer.compare(first.bounds.top, second.bounds.top)
+            : Integer.compare(first.bounds.left, second.bounds.left));
+        return results;
+    }
+}
@@ -0,0 +1,150 @@
+package com.scriptshot.raster;
+
+/**
+ * A fused colour adjustment: one {@link ColorMatrixOp} for every linear step, followed by one 256-entry tone curve
+ * on R, G and B for the non-linear ones (gamma). Any chain of adjustments therefore costs a single pass. When the
+ * matrix keeps channels apart (brightness, contrast, invert) the matrix and curve collapse into three lookup tables
+ * and the pass does no arithmetic at all.
+ */
+public final class ColorAdjust {
+
+    private static final int MIN_ROWS_PER_TASK = 64;
+
+    private final ColorMatrixOp matrix;
+    private final int[] curve;
+    private final int[][] tables;
+
+    /**
+     * {@code curve} maps a clamped 0..255 channel value after the matrix; {@code null} leaves it as is.
+     */
+    public ColorAdjust(ColorMatrixOp matrix, int[] curve) {
+        if (curve != null && curve.length != 256) {
+            throw new IllegalArgumentException("Tone curve needs 256 entries, got " + curve.length);
+        }
+        this.matrix = matrix != null ? matrix : ColorMatrixOp.identity();
+        this.curve = curve != null ? curve.clone() : null;
+        this.tables = this.matrix.isPerChannel() ? buildTables(this.matrix.getArray(), this.curve) : null;
+    }
+
+    /**
+     * Brightness (-1..1, added as a fraction of full scale), contrast (scale about mid-grey, 1 = unchanged),
+     * saturation (0 = grey, 1 = unchanged), invert, then gamma (above 1 lifts mid-tones, 1 = unchanged), in that
+     * order.
+     */
+    public static ColorAdjust of(float brightness, float contrast, float saturation, float gamma, boolean invert) {
+        ColorMatrixOp fused = ColorMatrixOp.brightness(brightness * 255f)
+            .concat(ColorMatrixOp.contrast(contrast))
+            .concat(ColorMatrixOp.saturation(saturation));
+        if (invert) {
+            fused = fused.concat(ColorMatrixOp.invert());
+        }
+        return new ColorAdjust(fused, gamma == 1f ? null : gammaCurve(gamma));
+    }
+
+    public static int[] gammaCurve(float gamma) {
+        if (!(gamma > 0f)) {
+            throw new IllegalArgumentException("gamma must be > 0");
+        }
+        int[] curve = new int[256];
+        double exponent = 1d / gamma;
+        for (int i = 0; i < 256; i++) {
+            curve[i] = (int) Math.round(255d * Math.pow(i / 255d, exponent));
+        }
+        return curve;
+    }
+
+    public boolean isIdentity() {
+        if (!matrix.isIdentity()) {
+            return false;
+        }
+        if (curve != null) {
+            for (int i = 0; i < 256; i++) {
+                if (curve[i] != i) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The single adjustment equivalent to this one followed by {@code next}, or {@code null} when this one ends in a
+     * tone curve and {@code next} still has a matrix, which cannot be folded across the curve.
+     */
+    public ColorAdjust then(ColorAdjust next) {
+        if (curve == null) {
+            return new ColorAdjust(matrix.concat(next.matrix), next.curve);
+        }
+        if (!next.matrix.isIdentity()) {
+            return null;
+        }
+        if (next.curve == null) {
+            return this;
+        }
+        int[] composed = new int[256];
+        for (int i = 0; i < 256; i++) {
+            composed[i] = next.curve[curve[i]];
+        }
+        return new ColorAdjust(matrix, composed);
+    }
+
+    /**
+     * Adjusts {@code raster} in place.
+     */
+    public void apply(Raster raster) {
+        int width = raster.width;
+        int[] pixels = raster.pixels;
+        ImagingPool.forEachRange(raster.height, MIN_ROWS_PER_TASK,
+            (start, end) -> apply(pixels, start * width, end * width));
+    }
+
+    private void apply(int[] pixels, int from, int to) {
+        if (tables != null) {
+            int[] red = tables[0];
+            int[] green = tables[1];
+            int[] blue = tables[2];
+            for (int i = from; i < to; i++) {
+                int pixel = pixels[i];
+                pixels[i] = (pixel & 0xFF000000) | red[(pixel >> 16) & 0xFF] | green[(pixel >> 8) & 0xFF]
+                    | blue[pixel & 0xFF];
+            }
+            return;
+        }
+        float[] m = matrix.getArray();
+        int[] tone = curve;
+        for (int i = from; i < to; i++) {
+            int pixel = pixels[i];
+            float a = pixel >>> 24;
+            float r = (pixel >> 16) & 0xFF;
+            float g = (pixel >> 8) & 0xFF;
+            float b = pixel & 0xFF;
+            int outR = ColorMatrixOp.channel(m[0] * r + m[1] * g + m[2] * b + m[3] * a + m[4]);
+            int outG = ColorMatrixOp.channel(m[5] * r + m[6] * g + m[7] * b + m[8] * a + m[9]);
+            int outB = ColorMatrixOp.channel(m[10] * r + m[11] * g + m[12] * b + m[13] * a + m[14]);
+            int outA = ColorMatrixOp.channel(m[15] * r + m[16] * g + m[17] * b + m[18] * a + m[19]);
+            if (tone != null) {
+                outR = tone[outR];
+                outG = tone[outG];
+                outB = tone[outB];
+            }
+            pixels[i] = outA << 24 | outR << 16 | outG << 8 | outB;
+        }
+    }
+
+    /**
+     * Per-channel tables with each entry already shifted into its channel's position.
+     */
+    private static int[][] buildTables(float[] m, int[] curve) {
+        int[][] tables = new int[3][256];
+        for (int channel = 0; channel < 3; channel++) {
+            float scale = m[channel * 6];
+            float offset = m[channel * 5 + 4];
+            int shift = 16 - channel * 8;
+            for (int value = 0; value < 256; value++) {
+                int out = ColorMatrixOp.channel(scale * value + offset);
+                tables[channel][value] = (curve != null ? curve[out] : out) << shift;
+            }
+        }
+        return tables;
+    }
+}
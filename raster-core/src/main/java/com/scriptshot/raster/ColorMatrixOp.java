@@ -0,0 +1,150 @@
+package com.scriptshot.raster;
+
+/**
+ * 4x5 colour matrix in the row-major layout used by {@code android.graphics.ColorMatrix}: each output channel is a
+ * weighted sum of R, G, B, A plus an offset in 0..255 units, applied to non-premultiplied pixels and clamped.
+ */
+public final class ColorMatrixOp {
+
+    private static final int MIN_ROWS_PER_TASK = 64;
+
+    private final float[] matrix;
+
+    public ColorMatrixOp(float[] matrix) {
+        if (matrix.length != 20) {
+            throw new IllegalArgumentException("Colour matrix needs 20 entries, got " + matrix.length);
+        }
+        this.matrix = matrix.clone();
+    }
+
+    public static ColorMatrixOp identity() {
+        float[] m = new float[20];
+        m[0] = m[6] = m[12] = m[18] = 1f;
+        return new ColorMatrixOp(m);
+    }
+
+    /**
+     * Same weights as {@code ColorMatrix.setSaturation}; 0 yields grayscale and 1 the identity.
+     */
+    public static ColorMatrixOp saturation(float saturation) {
+        float inverse = 1f - saturation;
+        float r = 0.213f * inverse;
+        float g = 0.715f * inverse;
+        float b = 0.072f * inverse;
+        float[] m = new float[20];
+        m[0] = r + saturation;
+        m[1] = g;
+        m[2] = b;
+        m[5] = r;
+        m[6] = g + saturation;
+        m[7] = b;
+        m[10] = r;
+        m[11] = g;
+        m[12] = b + saturation;
+        m[18] = 1f;
+        return new ColorMatrixOp(m);
+    }
+
+    /**
+     * Adds {@code offset} (in 0..255 units) to R, G and B.
+     */
+    public static ColorMatrixOp brightness(float offset) {
+        return scaleAndOffset(1f, offset);
+    }
+
+    /**
+     * Scales R, G and B by {@code contrast} about mid-grey; 1 is the identity and 0 flat grey.
+     */
+    public static ColorMatrixOp contrast(float contrast) {
+        return scaleAndOffset(contrast, 127.5f * (1f - contrast));
+    }
+
+    public static ColorMatrixOp invert() {
+        return scaleAndOffset(-1f, 255f);
+    }
+
+    private static ColorMatrixOp scaleAndOffset(float scale, float offset) {
+        float[] m = new float[20];
+        m[0] = m[6] = m[12] = scale;
+        m[4] = m[9] = m[14] = offset;
+        m[18] = 1f;
+        return new ColorMatrixOp(m);
+    }
+
+    /**
+     * The single matrix equivalent to applying this one and then {@code next}, like
+     * {@code ColorMatrix.postConcat}. Clamping happens once, at the end, instead of after each step.
+     */
+    public ColorMatrixOp concat(ColorMatrixOp next) {
+        float[] a = next.matrix;
+        float[] b = matrix;
+        float[] m = new float[20];
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 5; column++) {
+                float sum = column == 4 ? a[row * 5 + 4] : 0f;
+                for (int k = 0; k < 4; k++) {
+                    sum += a[row * 5 + k] * b[k * 5 + column];
+                }
+                m[row * 5 + column] = sum;
+            }
+        }
+        return new ColorMatrixOp(m);
+    }
+
+    public boolean isIdentity() {
+        for (int i = 0; i < 20; i++) {
+            float expected = i == 0 || i == 6 || i == 12 || i == 18 ? 1f : 0f;
+            if (matrix[i] != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * True when each of R, G and B depends on its own input channel only and alpha passes through, so the matrix
+     * reduces to a per-channel lookup table.
+     */
+    boolean isPerChannel() {
+        float[] m = matrix;
+        return m[1] == 0f && m[2] == 0f && m[3] == 0f
+            && m[5] == 0f && m[7] == 0f && m[8] == 0f
+            && m[10] == 0f && m[11] == 0f && m[13] == 0f
+            && m[15] == 0f && m[16] == 0f && m[17] == 0f && m[18] == 1f && m[19] == 0f;
+    }
+
+    public float[] getArray() {
+        return matrix.clone();
+    }
+
+    /**
+     * Transforms {@code raster} in place.
+     */
+    public void apply(Raster raster) {
+        int width = raster.width;
+        int[] pixels = raster.pixels;
+        ImagingPool.forEachRange(raster.height, MIN_ROWS_PER_TASK,
+            (start, end) -> apply(pixels, start * width, end * width));
+    }
+
+    private void apply(int[] pixels, int from, int to) {
+        float[] m = matrix;
+        for (int i = from; i < to; i++) {
+            int pixel = pixels[i];
+            float a = pixel >>> 24;
+            float r = (pixel >> 16) & 0xFF;
+            float g = (pixel >> 8) & 0xFF;
+            float b = pixel & 0xFF;
+            int outR = channel(m[0] * r + m[1] * g + m[2] * b + m[3] * a + m[4]);
+            int outG = channel(m[5] * r + m[6] * g + m[7] * b + m[8] * a + m[9]);
+            int outB = channel(m[10] * r + m[11] * g + m[12] * b + m[13] * a + m[14]);
+            int outA = channel(m[15] * r + m[16] * g + m[17] * b + m[18] * a + m[19]);
+            pixels[i] = outA << 24 | outR << 16 | outG << 8 | outB;
+        }
+    }
+
+    static int channel(float value) {
+        int rounded = (int) (value + 0.5f);
+        return rounded < 0 ? 0 : Math.min(255, rounded);
+    }
+}
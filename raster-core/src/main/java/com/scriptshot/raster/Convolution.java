@@ -0,0 +1,398 @@
+package com.scriptshot.raster;
+
+import java.util.Arrays;
+
+/**
+ * Convolution over premultiplied ARGB with edge pixels repeated past the border. Each channel is split into its own
+ * {@code int} plane and weights are quantized to fixed point, so the inner loops are plain integer multiply-adds
+ * over one array. Kernels that factor into a column times a row run as a horizontal and a vertical 1D pass, which
+ * is {@code w + h} instead of {@code w * h} taps per pixel. Rows are split across {@link ImagingPool}. Opaque
+ * rasters skip the alpha plane and the premultiply round trip and stay opaque, so zero-sum kernels such as edge
+ * detectors do not wipe out alpha on screenshots.
+ */
+public final class Convolution {
+
+    private static final int MIN_ROWS_PER_TASK = 16;
+    /** Fixed-point fraction bits for weights; fewer are used when the kernel's magnitude would overflow. */
+    private static final int MAX_FRACTION_BITS = 14;
+    private static final int MIN_FRACTION_BITS = 8;
+    /** Extra precision kept in the intermediate plane between the two separable passes. */
+    private static final int INTERMEDIATE_BITS = 4;
+    private static final int SHARPEN_AMOUNT_BITS = 8;
+    private static final float SEPARABLE_TOLERANCE = 1e-5f;
+
+    /**
+     * A {@code width x height} kernel with odd sides, weights row-major, centred on the output pixel.
+     */
+    public static final class Kernel {
+        public final int width;
+        public final int height;
+        private final float[] weights;
+        /** Non-null when the kernel equals {@code column x row}. */
+        private final float[] column;
+        private final float[] row;
+
+        public Kernel(int width, int height, float[] weights) {
+            if (width <= 0 || height <= 0 || width % 2 == 0 || height % 2 == 0) {
+                throw new IllegalArgumentException("Kernel sides must be odd and positive: " + width + "x" + height);
+            }
+            if (weights.length != width * height) {
+                throw new IllegalArgumentException("Expected " + width * height + " weights but got " + weights.length);
+            }
+            this.width = width;
+            this.height = height;
+            this.weights = weights.clone();
+            float[][] factors = factor(this.weights, width, height);
+            this.column = factors == null ? null : factors[0];
+            this.row = factors == null ? null : factors[1];
+        }
+
+        /**
+         * Normalized Gaussian with the given standard deviation, truncated at three sigma.
+         */
+        public static Kernel gaussian(double sigma) {
+            if (!(sigma > 0)) {
+                throw new IllegalArgumentException("sigma must be > 0");
+            }
+            int radius = Math.max(1, (int) Math.ceil(sigma * 3));
+            float[] taps = new float[radius * 2 + 1];
+            double sum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                double value = Math.exp(-(i * i) / (2 * sigma * sigma));
+                taps[i + radius] = (float) value;
+                sum += value;
+            }
+            for (int i = 0; i < taps.length; i++) {
+                taps[i] /= (float) sum;
+            }
+            return outer(taps, taps);
+        }
+
+        /**
+         * The kernel {@code column x row}.
+         */
+        public static Kernel outer(float[] column, float[] row) {
+            float[] weights = new float[column.length * row.length];
+            for (int y = 0; y < column.length; y++) {
+                for (int x = 0; x < row.length; x++) {
+                    weights[y * row.length + x] = column[y] * row[x];
+                }
+            }
+            return new Kernel(row.length, column.length, weights);
+        }
+
+        public boolean isSeparable() {
+            return column != null;
+        }
+
+        /**
+         * This kernel with every weight multiplied by {@code factor}, e.g. {@code 1 / divisor}.
+         */
+        public Kernel scaled(float factor) {
+            float[] out = new float[weights.length];
+            for (int i = 0; i < out.length; i++) {
+                out[i] = weights[i] * factor;
+            }
+            return new Kernel(width, height, out);
+        }
+
+        /**
+         * Rank-1 test: takes the row and column through the largest weight and checks their product reproduces
+         * every weight.
+         */
+        private static float[][] factor(float[] weights, int width, int height) {
+            int pivot = 0;
+            for (int i = 1; i < weights.length; i++) {
+                if (Math.abs(weights[i]) > Math.abs(weights[pivot])) {
+                    pivot = i;
+                }
+            }
+            float scale = Math.abs(weights[pivot]);
+            if (scale == 0f) {
+                return null;
+            }
+            int pivotX = pivot % width;
+            int pivotY = pivot / width;
+            float[] column = new float[height];
+            float[] row = new float[width];
+            for (int y = 0; y < height; y++) {
+                column[y] = weights[y * width + pivotX];
+            }
+            for (int x = 0; x < width; x++) {
+                row[x] = weights[pivotY * width + x] / weights[pivot];
+            }
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (Math.abs(column[y] * row[x] - weights[y * width + x]) > SEPARABLE_TOLERANCE * scale) {
+                        return null;
+                    }
+                }
+            }
+            return new float[][]{column, row};
+        }
+    }
+
+    private Convolution() {
+    }
+
+    /**
+     * Convolves {@code raster} in place.
+     */
+    public static void apply(Raster raster, Kernel kernel) {
+        Planes planes = Planes.split(raster);
+        for (int c = 0; c < planes.count; c++) {
+            planes.set(c, convolve(planes.get(c), raster.width, raster.height, kernel));
+        }
+        planes.merge(raster);
+    }
+
+    /**
+     * Unsharp mask: adds {@code amount} times the difference to a Gaussian blur of standard deviation {@code sigma}.
+     */
+    public static void sharpen(Raster raster, float amount, double sigma) {
+        Kernel blur = Kernel.gaussian(sigma);
+        int weight = Math.round(amount * (1 << SHARPEN_AMOUNT_BITS));
+        int half = 1 << (SHARPEN_AMOUNT_BITS - 1);
+        Planes planes = Planes.split(raster);
+        for (int c = 0; c < planes.count; c++) {
+            int[] plane = planes.get(c);
+            int[] blurred = convolve(plane, raster.width, raster.height, blur);
+            ImagingPool.forEachRange(raster.width * raster.height, MIN_ROWS_PER_TASK * raster.width, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    blurred[i] = plane[i] + (((plane[i] - blurred[i]) * weight + half) >> SHARPEN_AMOUNT_BITS);
+                }
+            });
+            planes.set(c, blurred);
+        }
+        planes.merge(raster);
+    }
+
+    /**
+     * Replaces {@code raster} by its Sobel gradient magnitude on luma, as opaque grey clamped to 255.
+     */
+    public static void edges(Raster raster) {
+        int width = raster.width;
+        int height = raster.height;
+        int[] luma = new int[width * height];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = PerceptualHash.luma(raster.pixels[i]);
+        }
+        int[] smooth = {1, 2, 1};
+        int[] derivative = {-1, 0, 1};
+        int[] gx = pass(pass(luma, width, height, derivative, true, 0), width, height, smooth, false, 0);
+        int[] gy = pass(pass(luma, width, height, smooth, true, 0), width, height, derivative, false, 0);
+        int[] pixels = raster.pixels;
+        ImagingPool.forEachRange(luma.length, MIN_ROWS_PER_TASK * width, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                int magnitude = Math.min(255, (int) Math.sqrt((double) gx[i] * gx[i] + (double) gy[i] * gy[i]));
+                pixels[i] = 0xFF000000 | magnitude << 16 | magnitude << 8 | magnitude;
+            }
+        });
+    }
+
+    /**
+     * Convolves one plane of values in {@code [0, 255]}; the result is rounded but not clamped.
+     */
+    private static int[] convolve(int[] plane, int width, int height, Kernel kernel) {
+        if (kernel.isSeparable()) {
+            int rowBits = fractionBits(255L, kernel.row);
+            int[] rowTaps = quantize(kernel.row, rowBits);
+            int[] horizontal = pass(plane, width, height, rowTaps, true, rowBits - INTERMEDIATE_BITS);
+            long intermediateMax = (255L << INTERMEDIATE_BITS) * Math.max(1, (long) Math.ceil(absoluteSum(kernel.row)));
+            int columnBits = fractionBits(intermediateMax, kernel.column);
+            return pass(horizontal, width, height, quantize(kernel.column, columnBits), false,
+                columnBits + INTERMEDIATE_BITS);
+        }
+        int bits = fractionBits(255L, kernel.weights);
+        return pass2d(plane, width, height, kernel, quantize(kernel.weights, bits), bits);
+    }
+
+    /**
+     * One 1D pass along rows ({@code horizontal}) or columns; {@code taps} are centred and the sums are rounded and
+     * shifted right by {@code shift}.
+     */
+    private static int[] pass(int[] in, int width, int height, int[] taps, boolean horizontal, int shift) {
+        int[] out = new int[width * height];
+        int radius = taps.length / 2;
+        int half = shift > 0 ? 1 << (shift - 1) : 0;
+        ImagingPool.forEachRange(height, MIN_ROWS_PER_TASK, (start, end) -> {
+            int[] sums = new int[width];
+            for (int y = start; y < end; y++) {
+                Arrays.fill(sums, 0);
+                for (int t = 0; t < taps.length; t++) {
+                    if (taps[t] == 0) {
+                        continue;
+                    }
+                    if (horizontal) {
+                        accumulate(sums, in, y * width, width, t - radius, taps[t]);
+                    } else {
+                        accumulate(sums, in, IntRect.clamp(y + t - radius, 0, height - 1) * width, width, 0, taps[t]);
+                    }
+                }
+                store(sums, out, y * width, width, half, shift);
+            }
+        });
+        return out;
+    }
+
+    private static int[] pass2d(int[] in, int width, int height, Kernel kernel, int[] taps, int shift) {
+        int[] out = new int[width * height];
+        int radiusX = kernel.width / 2;
+        int radiusY = kernel.height / 2;
+        int half = shift > 0 ? 1 << (shift - 1) : 0;
+        ImagingPool.forEachRange(height, MIN_ROWS_PER_TASK, (start, end) -> {
+            int[] sums = new int[width];
+            for (int y = start; y < end; y++) {
+                Arrays.fill(sums, 0);
+                for (int ky = 0; ky < kernel.height; ky++) {
+                    int source = IntRect.clamp(y + ky - radiusY, 0, height - 1) * width;
+                    for (int kx = 0; kx < kernel.width; kx++) {
+                        int weight = taps[ky * kernel.width + kx];
+                        if (weight != 0) {
+                            accumulate(sums, in, source, width, kx - radiusX, weight);
+                        }
+                    }
+                }
+                store(sums, out, y * width, width, half, shift);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Adds {@code weight} times the row at {@code offset} shifted by {@code dx} to {@code sums}, repeating the end
+     * pixels where the shift runs past the border.
+     */
+    private static void accumulate(int[] sums, int[] in, int offset, int width, int dx, int weight) {
+        int start = IntRect.clamp(-dx, 0, width);
+        int end = IntRect.clamp(width - dx, start, width);
+        if (start > 0) {
+            int edge = weight * in[offset];
+            for (int x = 0; x < start; x++) {
+                sums[x] += edge;
+            }
+        }
+        for (int x = start, source = offset + start + dx; x < end; x++, source++) {
+            sums[x] += weight * in[source];
+        }
+        if (end < width) {
+            int edge = weight * in[offset + width - 1];
+            for (int x = end; x < width; x++) {
+                sums[x] += edge;
+            }
+        }
+    }
+
+    private static void store(int[] sums, int[] out, int offset, int width, int half, int shift) {
+        for (int x = 0; x < width; x++) {
+            out[offset + x] = (sums[x] + half) >> shift;
+        }
+    }
+
+    /**
+     * Largest fraction bit count (at most {@link #MAX_FRACTION_BITS}) for which inputs up to {@code inputMax} cannot
+     * overflow an {@code int} sum.
+     */
+    private static int fractionBits(long inputMax, float[] weights) {
+        double sum = absoluteSum(weights);
+        int bits = MAX_FRACTION_BITS;
+        // Each quantized weight may be rounded up by half a unit.
+        while (bits >= MIN_FRACTION_BITS && inputMax * (sum * (1L << bits) + weights.length / 2.0) >= Integer.MAX_VALUE) {
+            bits--;
+        }
+        if (bits < MIN_FRACTION_BITS) {
+            throw new IllegalArgumentException("Kernel weights too large; divide them down first");
+        }
+        return bits;
+    }
+
+    private static double absoluteSum(float[] weights) {
+        double sum = 0;
+        for (float weight : weights) {
+            sum += Math.abs(weight);
+        }
+        return sum;
+    }
+
+    private static int[] quantize(float[] weights, int bits) {
+        int[] out = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            out[i] = Math.round(weights[i] * (1 << bits));
+        }
+        return out;
+    }
+
+    /**
+     * Premultiplied channel planes of a raster: B, G, R and, unless every pixel is opaque, A.
+     */
+    private static final class Planes {
+        final int count;
+        private final int[][] planes;
+
+        private Planes(int[][] planes) {
+            this.planes = planes;
+            this.count = planes.length;
+        }
+
+        static Planes split(Raster raster) {
+            int length = raster.width * raster.height;
+            int[] pixels = raster.pixels;
+            boolean opaque = true;
+            for (int i = 0; i < length && opaque; i++) {
+                opaque = pixels[i] >>> 24 == 0xFF;
+            }
+            int[][] planes = new int[opaque ? 3 : 4][];
+            for (int c = 0; c < planes.length; c++) {
+                planes[c] = new int[length];
+            }
+            boolean premultiply = !opaque;
+            ImagingPool.forEachRange(length, MIN_ROWS_PER_TASK * raster.width, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    int pixel = pixels[i];
+                    int alpha = pixel >>> 24;
+                    for (int c = 0; c < 3; c++) {
+                        int value = (pixel >> (c * 8)) & 0xFF;
+                        planes[c][i] = premultiply ? (value * alpha + 127) / 255 : value;
+                    }
+                    if (premultiply) {
+                        planes[3][i] = alpha;
+                    }
+                }
+            });
+            return new Planes(planes);
+        }
+
+        int[] get(int channel) {
+            return planes[channel];
+        }
+
+        void set(int channel, int[] plane) {
+            planes[channel] = plane;
+        }
+
+        /**
+         * Clamps alpha to {@code [0, 255]} and colour to {@code [0, alpha]}, un-premultiplies and writes back.
+         */
+        void merge(Raster raster) {
+            int length = raster.width * raster.height;
+            int[] pixels = raster.pixels;
+            boolean opaque = count == 3;
+            ImagingPool.forEachRange(length, MIN_ROWS_PER_TASK * raster.width, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    int alpha = opaque ? 0xFF : IntRect.clamp(planes[3][i], 0, 255);
+                    int pixel = alpha << 24;
+                    if (alpha != 0) {
+                        for (int c = 0; c < 3; c++) {
+                            int value = IntRect.clamp(planes[c][i], 0, alpha);
+                            if (!opaque) {
+                                value = Math.min(255, (value * 255 + alpha / 2) / alpha);
+                            }
+                            pixel |= value << (c * 8);
+                        }
+                    }
+                    pixels[i] = pixel;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.scriptshot.raster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tile-by-tile comparison of two equally sized ARGB images. Pixels are pulled one band of tile rows at a time. Each
+ * tile is first checked for exact equality, which stops at the first differing pixel, so an identical tile costs a
+ * single read-only pass with no delta, heat or SSIM work.
+ */
+public final class ImageDiff {
+
+    public interface BandWriter {
+        void write(int top, int rows, int[] pixels);
+    }
+
+    public static final class Region {
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+        public final long pixels;
+
+        Region(int left, int top, int right, int bottom, long pixels) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.pixels = pixels;
+        }
+    }
+
+    public static final class Result {
+        public final boolean changed;
+        public final long changedPixels;
+        public final double ratio;
+        public final Region[] regions;
+        /** Mean SSIM over 8x8 luma blocks, or {@code NaN} when not requested. */
+        public final double ssim;
+
+        Result(long changedPixels, long totalPixels, Region[] regions, double ssim) {
+            this.changed = changedPixels > 0;
+            this.changedPixels = changedPixels;
+            this.ratio = totalPixels == 0 ? 0d : (double) changedPixels / totalPixels;
+            this.regions = regions;
+            this.ssim = ssim;
+        }
+    }
+
+    public static final int DEFAULT_TILE = 32;
+
+    private static final int MIN_TILE = 8;
+    private static final int MAX_TILE = 512;
+    private static final int SSIM_BLOCK = 8;
+    private static final double SSIM_C1 = (0.01d * 255) * (0.01d * 255);
+    private static final double SSIM_C2 = (0.03d * 255) * (0.03d * 255);
+    private static final int HEAT_UNCHANGED_SHIFT = 2;
+
+    private ImageDiff() {
+    }
+
+    public static Result compare(int width, int height, BandReader first, BandReader second,
+                                 int tolerance, int tileSize, boolean computeSsim, BandWriter heatmap) {
+        int tile = normalizeTile(tileSize);
+        int columns = (width + tile - 1) / tile;
+        int rows = (height + tile - 1) / tile;
+        int[] bandA = new int[width * tile];
+        int[] bandB = new int[width * tile];
+        int[] heat = heatmap != null ? new int[width * tile] : null;
+        long[] tileCounts = new long[columns * rows];
+        int[] bounds = new int[columns * rows * 4];
+        long changedPixels = 0L;
+        double ssimSum = 0d;
+        long ssimBlocks = 0L;
+
+        for (int tileRow = 0; tileRow < rows; tileRow++) {
+            int top = tileRow * tile;
+            int bandRows = Math.min(tile, height - top);
+            first.read(top, bandRows, bandA);
+            second.read(top, bandRows, bandB);
+            for (int tileColumn = 0; tileColumn < columns; tileColumn++) {
+                int left = tileColumn * tile;
+                int tileWidth = Math.min(tile, width - left);
+                if (identical(bandA, bandB, width, left, tileWidth, bandRows)) {
+                    if (computeSsim) {
+                        long blocks = blockCount(tileWidth) * (long) blockCount(bandRows);
+                        ssimSum += blocks;
+                        ssimBlocks += blocks;
+                    }
+                    if (heat != null) {
+                        fillUnchanged(bandB, heat, width, left, tileWidth, bandRows);
+                    }
+                    continue;
+                }
+                int index = tileRow * columns + tileColumn;
+                long count = comparePixels(bandA, bandB, heat, width, left, tileWidth, bandRows, tolerance,
+                    top, bounds, index * 4);
+                tileCounts[index] = count;
+                changedPixels += count;
+                if (computeSsim) {
+                    for (int blockTop = 0; blockTop < bandRows; blockTop += SSIM_BLOCK) {
+                        int blockHeight = Math.min(SSIM_BLOCK, bandRows - blockTop);
+                        for (int blockLeft = left; blockLeft < left + tileWidth; blockLeft += SSIM_BLOCK) {
+                            int blockWidth = Math.min(SSIM_BLOCK, left + tileWidth - blockLeft);
+                            ssimSum += blockSsim(bandA, bandB, width, blockLeft, blockTop, blockWidth, blockHeight);
+                            ssimBlocks++;
+                        }
+                    }
+                }
+            }
+            if (heatmap != null) {
+                heatmap.write(top, bandRows, heat);
+            }
+        }
+        double ssim = computeSsim ? (ssimBlocks == 0 ? 1d : ssimSum / ssimBlocks) : Double.NaN;
+        Region[] regions = buildRegions(tileCounts, bounds, columns, rows);
+        return new Result(changedPixels, (long) width * height, regions, ssim);
+    }
+
+    /**
+     * Stops at the first pixel that differs by more than {@code tolerance} on any channel.
+     */
+    public static boolean differs(int width, int height, BandReader first, BandReader second, int tolerance, int tileSize) {
+        int tile = normalizeTile(tileSize);
+        int[] bandA = new int[width * tile];
+        int[] bandB = new int[width * tile];
+        for (int top = 0; top < height; top += tile) {
+            int bandRows = Math.min(tile, height - top);
+            first.read(top, bandRows, bandA);
+            second.read(top, bandRows, bandB);
+            for (int left = 0; left < width; left += tile) {
+                int tileWidth = Math.min(tile, width - left);
+                for (int y = 0; y < bandRows; y++) {
+                    int offset = y * width + left;
+                    for (int x = 0; x < tileWidth; x++) {
+                        int a = bandA[offset + x];
+                        int b = bandB[offset + x];
+                        if (a != b && (tolerance <= 0 || channelDelta(a, b) > tolerance)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int normalizeTile(int tileSize) {
+        int tile = Math.max(MIN_TILE, Math.min(MAX_TILE, tileSize <= 0 ? DEFAULT_TILE : tileSize));
+        // Keep tiles on the SSIM block grid so identical tiles can be credited without a pass.
+        return tile - tile % SSIM_BLOCK;
+    }
+
+    private static int blockCount(int length) {
+        return (length + SSIM_BLOCK - 1) / SSIM_BLOCK;
+    }
+
+    private static boolean identical(int[] bandA, int[] bandB, int width, int left, int tileWidth, int rows) {
+        for (int y = 0; y < rows; y++) {
+            int offset = y * width + left;
+            for (int x = 0; x < tileWidth; x++) {
+                if (bandA[offset + x] != bandB[offset + x]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long comparePixels(int[] bandA, int[] bandB, int[] heat, int width, int left, int tileWidth,
+                                      int rows, int tolerance, int top, int[] bounds, int boundsOffset) {
+        long count = 0L;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < rows; y++) {
+            int offset = y * width + left;
+            for (int x = 0; x < tileWidth; x++) {
+                int a = bandA[offset + x];
+                int b = bandB[offset + x];
+                int delta = a == b ? 0 : channelDelta(a, b);
+                boolean changed = delta > tolerance;
+                if (changed) {
+                    count++;
+                    minX = Math.min(minX, left + x);
+                    maxX = Math.max(maxX, left + x);
+                    minY = Math.min(minY, top + y);
+                    maxY = Math.max(maxY, top + y);
+                }
+                if (heat != null) {
+                    heat[offset + x] = changed ? heatColor(delta) : dimmed(b);
+                }
+            }
+        }
+        bounds[boundsOffset] = minX;
+        bounds[boundsOffset + 1] = minY;
+        bounds[boundsOffset + 2] = maxX + 1;
+        bounds[boundsOffset + 3] = maxY + 1;
+        return count;
+    }
+
+    private static int channelDelta(int a, int b) {
+        int da = Math.abs((a >>> 24) - (b >>> 24));
+        int dr = Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF));
+        int dg = Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF));
+        int db = Math.abs((a & 0xFF) - (b & 0xFF));
+        return Math.max(Math.max(da, dr), Math.max(dg, db));
+    }
+
+    private static double blockSsim(int[] bandA, int[] bandB, int width, int left, int top, int blockWidth, int blockHeight) {
+        long sumA = 0L;
+        long sumB = 0L;
+        long sumAA = 0L;
+        long sumBB = 0L;
+        long sumAB = 0L;
+        for (int y = top; y < top + blockHeight; y++) {
+            int offset = y * width;
+            for (int x = left; x < left + blockWidth; x++) {
+                int a = PerceptualHash.luma(bandA[offset + x]);
+                int b = PerceptualHash.luma(bandB[offset + x]);
+                sumA += a;
+                sumB += b;
+                sumAA += a * a;
+                sumBB += b * b;
+                sumAB += a * b;
+            }
+        }
+        double n = (double) blockWidth * blockHeight;
+        double meanA = sumA / n;
+        double meanB = sumB / n;
+        double varA = sumAA / n - meanA * meanA;
+        double varB = sumBB / n - meanB * meanB;
+        double covariance = sumAB / n - meanA * meanB;
+        return ((2 * meanA * meanB + SSIM_C1) * (2 * covariance + SSIM_C2))
+            / ((meanA * meanA + meanB * meanB + SSIM_C1) * (varA + varB + SSIM_C2));
+    }
+
+    private static void fillUnchanged(int[] source, int[] heat, int width, int left, int tileWidth, int rows) {
+        for (int y = 0; y < rows; y++) {
+            int offset = y * width + left;
+            for (int x = 0; x < tileWidth; x++) {
+                heat[offset + x] = dimmed(source[offset + x]);
+            }
+        }
+    }
+
+    private static int dimmed(int argb) {
+        int gray = PerceptualHash.luma(argb) >> HEAT_UNCHANGED_SHIFT;
+        return 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+    }
+
+    private static int heatColor(int delta) {
+        // Small deltas shade towards yellow, large ones towards pure red.
+        int green = Math.max(0, 255 - delta * 2);
+        return 0xFFFF0000 | (green << 8);
+    }
+
+    /**
+     * Groups 8-connected changed tiles and reports the tight pixel bounds of each group.
+     */
+    private static Region[] buildRegions(long[] tileCounts, int[] bounds, int columns, int rows) {
+        List<Region> regions = new ArrayList<>();
+        boolean[] visited = new boolean[tileCounts.length];
+        int[] stack = new int[tileCounts.length];
+        for (int start = 0; start < tileCounts.length; start++) {
+            if (visited[start] || tileCounts[start] == 0) {
+                continue;
+            }
+            int left = Integer.MAX_VALUE;
+            int top = Integer.MAX_VALUE;
+            int right = 0;
+            int bottom = 0;
+            long pixels = 0L;
+            int size = 0;
+            stack[size++] = start;
+            visited[start] = true;
+            while (size > 0) {
+                int index = stack[--size];
+                pixels += tileCounts[index];
+                left = Math.min(left, bounds[index * 4]);
+                top = Math.min(top, bounds[index * 4 + 1]);
+                right = Math.max(right, bounds[index * 4 + 2]);
+                bottom = Math.max(bottom, bounds[index * 4 + 3]);
+                int column = index % columns;
+                int row = index / columns;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = column + dx;
+                        int ny = row + dy;
+                        if (nx < 0 || ny < 0 || nx >= columns || ny >= rows) {
+                            continue;
+                        }
+                        int neighbour = ny * columns + nx;
+                        if (!visited[neighbour] && tileCounts[neighbour] > 0) {
+                            visited[neighbour] = true;
+                            stack[size++] = neighbour;
+                        }
+                    }
+                }
+            }
+            regions.add(new Region(left, top, right, bottom, pixels));
+        }
+        return regions.toArray(new Region[0]);
+    }
+}
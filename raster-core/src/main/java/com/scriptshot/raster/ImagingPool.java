@@ -0,0 +1,117 @@
+package com.scriptshot.raster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared worker pool for pixel kernels. Work submitted from a pool thread runs inline so nested kernels cannot
+ * starve the pool.
+ */
+public final class ImagingPool {
+
+    public interface RangeTask {
+        void run(int start, int end);
+    }
+
+    private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final AtomicInteger THREAD_ID = new AtomicInteger(1);
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+        Thread thread = new PoolThread(runnable, "ImagingPool-" + THREAD_ID.getAndIncrement());
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ImagingPool() {
+    }
+
+    public static int parallelism() {
+        return PARALLELISM;
+    }
+
+    public static ExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Splits {@code [0, count)} into contiguous ranges of at least {@code minChunk} items and runs them concurrently,
+     * using the calling thread for the last range. Returns once every range has finished.
+     */
+    public static void forEachRange(int count, int minChunk, RangeTask task) {
+        if (count <= 0) {
+            return;
+        }
+        int chunks = Math.min(PARALLELISM, Math.max(1, count / Math.max(1, minChunk)));
+        if (chunks <= 1 || Thread.currentThread() instanceof PoolThread) {
+            task.run(0, count);
+            return;
+        }
+        int step = (count + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<>(chunks - 1);
+        int start = 0;
+        while (start + step < count) {
+            final int rangeStart = start;
+            final int rangeEnd = start + step;
+            futures.add(EXECUTOR.submit(() -> task.run(rangeStart, rangeEnd)));
+            start = rangeEnd;
+        }
+        task.run(start, count);
+        for (Future<?> future : futures) {
+            await(future);
+        }
+    }
+
+    public static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for imaging task", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Imaging task failed", cause);
+        }
+    }
+
+    /**
+     * Like {@link #await} but rethrows an {@link IOException} raised by the task as is.
+     */
+    public static <T> T awaitIo(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for imaging task", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Imaging task failed", cause);
+        }
+    }
+
+    private static final class PoolThread extends Thread {
+        PoolThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+    }
+}
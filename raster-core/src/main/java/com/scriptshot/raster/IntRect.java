@@ -0,0 +1,130 @@
+package com.scriptshot.raster;
+
+/**
+ * Immutable integer rectangle with exclusive right and bottom edges, plus the crop and pad geometry shared by the
+ * image APIs.
+ */
+public final class IntRect {
+
+    public final int left;
+    public final int top;
+    public final int right;
+    public final int bottom;
+
+    public IntRect(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+
+    public boolean isEmpty() {
+        return right <= left || bottom <= top;
+    }
+
+    /**
+     * True when the interiors overlap; rectangles that only share an edge do not intersect.
+     */
+    public boolean intersects(IntRect other) {
+        return left < other.right && other.left < right && top < other.bottom && other.top < bottom;
+    }
+
+    public IntRect union(IntRect other) {
+        return new IntRect(Math.min(left, other.left), Math.min(top, other.top),
+            Math.max(right, other.right), Math.max(bottom, other.bottom));
+    }
+
+    /**
+     * Orders the corners and clamps them to a {@code width x height} image. The result may be empty.
+     */
+    public static IntRect clamped(int left, int top, int right, int bottom, int width, int height) {
+        return new IntRect(
+            clamp(Math.min(left, right), 0, width),
+            clamp(Math.min(top, bottom), 0, height),
+            clamp(Math.max(left, right), 0, width),
+            clamp(Math.max(top, bottom), 0, height));
+    }
+
+    /**
+     * A {@code targetWidth x targetHeight} window centred in the image, shrunk to fit when the image is smaller.
+     */
+    public static IntRect centered(int width, int height, int targetWidth, int targetHeight) {
+        int cropWidth = Math.min(targetWidth, width);
+        int cropHeight = Math.min(targetHeight, height);
+        int left = Math.max(0, (width - cropWidth) / 2);
+        int top = Math.max(0, (height - cropHeight) / 2);
+        return new IntRect(left, top, left + cropWidth, top + cropHeight);
+    }
+
+    /**
+     * Maps edge ratios in {@code [0, 1]} to pixels. Ratios are clamped and ordered; the result may be empty.
+     */
+    public static IntRect relative(int width, int height, float leftRatio, float topRatio, float rightRatio, float bottomRatio) {
+        float clampedLeft = clamp(leftRatio);
+        float clampedTop = clamp(topRatio);
+        float clampedRight = clamp(rightRatio);
+        float clampedBottom = clamp(bottomRatio);
+        return new IntRect(
+            clamp(Math.round(width * Math.min(clampedLeft, clampedRight)), 0, width),
+            clamp(Math.round(height * Math.min(clampedTop, clampedBottom)), 0, height),
+            clamp(Math.round(width * Math.max(clampedLeft, clampedRight)), 0, width),
+            clamp(Math.round(height * Math.max(clampedTop, clampedBottom)), 0, height));
+    }
+
+    /**
+     * The canvas that pads a {@code width x height} image evenly to {@code targetRatio} (width / height), in the
+     * image's coordinates: the image is drawn at {@code (-left, -top)} on a {@code width() x height()} canvas.
+     */
+    public static IntRect padToAspect(int width, int height, float targetRatio) {
+        float current = (float) width / height;
+        int padLeft = 0;
+        int padTop = 0;
+        int padRight = 0;
+        int padBottom = 0;
+        if (targetRatio > current) {
+            int totalPad = Math.max(0, Math.round(targetRatio * height) - width);
+            padLeft = totalPad / 2;
+            padRight = totalPad - padLeft;
+        } else {
+            int totalPad = Math.max(0, Math.round(width / targetRatio) - height);
+            padTop = totalPad / 2;
+            padBottom = totalPad - padTop;
+        }
+        return new IntRect(-padLeft, -padTop, width + padRight, height + padBottom);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof IntRect)) {
+            return false;
+        }
+        IntRect rect = (IntRect) other;
+        return left == rect.left && top == rect.top && right == rect.right && bottom == rect.bottom;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((left * 31 + top) * 31 + right) * 31 + bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + left + "," + top + "][" + right + "," + bottom + "]";
+    }
+
+    static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static float clamp(float ratio) {
+        return Math.max(0f, Math.min(1f, ratio));
+    }
+}
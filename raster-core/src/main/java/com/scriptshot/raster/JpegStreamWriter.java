@@ -0,0 +1,371 @@
+package com.scriptshot.raster;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a baseline JFIF JPEG row by row with 4:2:0 chroma subsampling and the standard Annex K quantization and
+ * Huffman tables, so bands of an image too large for one bitmap can be re-encoded without holding the whole frame.
+ * Only one strip of 16 rows is buffered. Alpha is ignored, as with {@code Bitmap.compress(JPEG)}.
+ */
+public final class JpegStreamWriter implements RowSink, Closeable {
+
+    private static final int MCU = 16;
+    private static final int[] ZIGZAG = {
+        0, 1, 8, 16, 9, 2, 3, 10, 17, 24, 32, 25, 18, 11, 4, 5,
+        12, 19, 26, 33, 40, 48, 41, 34, 27, 20, 13, 6, 7, 14, 21, 28,
+        35, 42, 49, 56, 57, 50, 43, 36, 29, 22, 15, 23, 30, 37, 44, 51,
+        58, 59, 52, 45, 38, 31, 39, 46, 53, 60, 61, 54, 47, 55, 62, 63
+    };
+    private static final int[] LUMA_QUANT = {
+        16, 11, 10, 16, 24, 40, 51, 61,
+        12, 12, 14, 19, 26, 58, 60, 55,
+        14, 13, 16, 24, 40, 57, 69, 56,
+        14, 17, 22, 29, 51, 87, 80, 62,
+        18, 22, 37, 56, 68, 109, 103, 77,
+        24, 35, 55, 64, 81, 104, 113, 92,
+        49, 64, 78, 87, 103, 121, 120, 101,
+        72, 92, 95, 98, 112, 100, 103, 99
+    };
+    private static final int[] CHROMA_QUANT = {
+        17, 18, 24, 47, 99, 99, 99, 99,
+        18, 21, 26, 66, 99, 99, 99, 99,
+        24, 26, 56, 99, 99, 99, 99, 99,
+        47, 66, 99, 99, 99, 99, 99, 99,
+        99, 99, 99, 99, 99, 99, 99, 99,
+        99, 99, 99, 99, 99, 99, 99, 99,
+        99, 99, 99, 99, 99, 99, 99, 99,
+        99, 99, 99, 99, 99, 99, 99, 99
+    };
+    private static final int[] DC_LUMA_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] DC_CHROMA_BITS = {0, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0};
+    private static final int[] DC_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    private static final int[] AC_LUMA_BITS = {0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7D};
+    private static final int[] AC_LUMA_VALUES = {
+        0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12, 0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+        0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xA1, 0x08, 0x23, 0x42, 0xB1, 0xC1, 0x15, 0x52, 0xD1, 0xF0,
+        0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0A, 0x16, 0x17, 0x18, 0x19, 0x1A, 0x25, 0x26, 0x27, 0x28,
+        0x29, 0x2A, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3A, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+        0x4A, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5A, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+        0x6A, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7A, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+        0x8A, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9A, 0xA2, 0xA3, 0xA4, 0xA5, 0xA6, 0xA7,
+        0xA8, 0xA9, 0xAA, 0xB2, 0xB3, 0xB4, 0xB5, 0xB6, 0xB7, 0xB8, 0xB9, 0xBA, 0xC2, 0xC3, 0xC4, 0xC5,
+        0xC6, 0xC7, 0xC8, 0xC9, 0xCA, 0xD2, 0xD3, 0xD4, 0xD5, 0xD6, 0xD7, 0xD8, 0xD9, 0xDA, 0xE1, 0xE2,
+        0xE3, 0xE4, 0xE5, 0xE6, 0xE7, 0xE8, 0xE9, 0xEA, 0xF1, 0xF2, 0xF3, 0xF4, 0xF5, 0xF6, 0xF7, 0xF8,
+        0xF9, 0xFA
+    };
+    private static final int[] AC_CHROMA_BITS = {0, 2, 1, 2, 4, 4, 3, 4, 7, 5, 4, 4, 0, 1, 2, 0x77};
+    private static final int[] AC_CHROMA_VALUES = {
+        0x00, 0x01, 0x02, 0x03, 0x11, 0x04, 0x05, 0x21, 0x31, 0x06, 0x12, 0x41, 0x51, 0x07, 0x61, 0x71,
+        0x13, 0x22, 0x32, 0x81, 0x08, 0x14, 0x42, 0x91, 0xA1, 0xB1, 0xC1, 0x09, 0x23, 0x33, 0x52, 0xF0,
+        0x15, 0x62, 0x72, 0xD1, 0x0A, 0x16, 0x24, 0x34, 0xE1, 0x25, 0xF1, 0x17, 0x18, 0x19, 0x1A, 0x26,
+        0x27, 0x28, 0x29, 0x2A, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3A, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48,
+        0x49, 0x4A, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5A, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+        0x69, 0x6A, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7A, 0x82, 0x83, 0x84, 0x85, 0x86, 0x87,
+        0x88, 0x89, 0x8A, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9A, 0xA2, 0xA3, 0xA4, 0xA5,
+        0xA6, 0xA7, 0xA8, 0xA9, 0xAA, 0xB2, 0xB3, 0xB4, 0xB5, 0xB6, 0xB7, 0xB8, 0xB9, 0xBA, 0xC2, 0xC3,
+        0xC4, 0xC5, 0xC6, 0xC7, 0xC8, 0xC9, 0xCA, 0xD2, 0xD3, 0xD4, 0xD5, 0xD6, 0xD7, 0xD8, 0xD9, 0xDA,
+        0xE2, 0xE3, 0xE4, 0xE5, 0xE6, 0xE7, 0xE8, 0xE9, 0xEA, 0xF2, 0xF3, 0xF4, 0xF5, 0xF6, 0xF7, 0xF8,
+        0xF9, 0xFA
+    };
+    /** {@code COSINES[u * 8 + x] = C(u) / 2 * cos((2x + 1) u pi / 16)}. */
+    private static final float[] COSINES = new float[64];
+
+    static {
+        for (int u = 0; u < 8; u++) {
+            double scale = u == 0 ? Math.sqrt(0.5) / 2 : 0.5;
+            for (int x = 0; x < 8; x++) {
+                COSINES[u * 8 + x] = (float) (scale * Math.cos((2 * x + 1) * u * Math.PI / 16));
+            }
+        }
+    }
+
+    private final OutputStream output;
+    private final int width;
+    private final int height;
+    private final int paddedWidth;
+    private final int[] lumaQuant;
+    private final int[] chromaQuant;
+    private final HuffmanTable dcLuma = new HuffmanTable(DC_LUMA_BITS, DC_VALUES);
+    private final HuffmanTable acLuma = new HuffmanTable(AC_LUMA_BITS, AC_LUMA_VALUES);
+    private final HuffmanTable dcChroma = new HuffmanTable(DC_CHROMA_BITS, DC_VALUES);
+    private final HuffmanTable acChroma = new HuffmanTable(AC_CHROMA_BITS, AC_CHROMA_VALUES);
+    private final float[] stripY;
+    private final float[] stripCb;
+    private final float[] stripCr;
+    private final float[] block = new float[64];
+    private final float[] temp = new float[64];
+    private final int[] coefficients = new int[64];
+    private int stripRows;
+    private int rowsWritten;
+    private int previousY;
+    private int previousCb;
+    private int previousCr;
+    private int bitBuffer;
+    private int bitCount;
+    private boolean finished;
+
+    /**
+     * Writes the headers for a {@code width x height} image at {@code quality} (1-100, IJG scaling).
+     */
+    public JpegStreamWriter(OutputStream output, int width, int height, int quality) throws IOException {
+        if (width <= 0 || height <= 0 || width > 0xFFFF || height > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid JPEG size " + width + "x" + height);
+        }
+        this.output = new BufferedOutputStream(output, 64 * 1024);
+        this.width = width;
+        this.height = height;
+        this.paddedWidth = (width + MCU - 1) / MCU * MCU;
+        this.lumaQuant = scaleQuant(LUMA_QUANT, quality);
+        this.chromaQuant = scaleQuant(CHROMA_QUANT, quality);
+        stripY = new float[MCU * paddedWidth];
+        stripCb = new float[MCU * paddedWidth];
+        stripCr = new float[MCU * paddedWidth];
+        writeHeaders();
+    }
+
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    @Override
+    public void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("Too many rows: " + (rowsWritten + rows) + " > " + height);
+        }
+        for (int row = 0; row < rows; row++) {
+            int base = offset + row * stride;
+            int target = stripRows * paddedWidth;
+            for (int x = 0; x < paddedWidth; x++) {
+                int argb = pixels[base + Math.min(x, width - 1)];
+                float r = (argb >> 16) & 0xFF;
+                float g = (argb >> 8) & 0xFF;
+                float b = argb & 0xFF;
+                stripY[target + x] = 0.299f * r + 0.587f * g + 0.114f * b - 128f;
+                stripCb[target + x] = -0.168736f * r - 0.331264f * g + 0.5f * b;
+                stripCr[target + x] = 0.5f * r - 0.418688f * g - 0.081312f * b;
+            }
+            rowsWritten++;
+            if (++stripRows == MCU) {
+                encodeStrip();
+            }
+        }
+    }
+
+    /**
+     * Encodes the last partial strip, pads the entropy segment and writes EOI. Does not close the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (rowsWritten != height) {
+            throw new IllegalStateException("Expected " + height + " rows but got " + rowsWritten);
+        }
+        if (stripRows > 0) {
+            int last = (stripRows - 1) * paddedWidth;
+            for (int row = stripRows; row < MCU; row++) {
+                System.arraycopy(stripY, last, stripY, row * paddedWidth, paddedWidth);
+                System.arraycopy(stripCb, last, stripCb, row * paddedWidth, paddedWidth);
+                System.arraycopy(stripCr, last, stripCr, row * paddedWidth, paddedWidth);
+            }
+            encodeStrip();
+        }
+        if (bitCount > 0) {
+            writeBits(0x7F, 7);
+        }
+        output.write(0xFF);
+        output.write(0xD9);
+        output.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() {
+        // Nothing native to release; the underlying stream belongs to the caller.
+    }
+
+    private void encodeStrip() throws IOException {
+        for (int left = 0; left < paddedWidth; left += MCU) {
+            for (int blockY = 0; blockY < MCU; blockY += 8) {
+                for (int blockX = 0; blockX < MCU; blockX += 8) {
+                    for (int y = 0; y < 8; y++) {
+                        System.arraycopy(stripY, (blockY + y) * paddedWidth + left + blockX, block, y * 8, 8);
+                    }
+                    previousY = encodeBlock(lumaQuant, previousY, dcLuma, acLuma);
+                }
+            }
+            subsample(stripCb, left);
+            previousCb = encodeBlock(chromaQuant, previousCb, dcChroma, acChroma);
+            subsample(stripCr, left);
+            previousCr = encodeBlock(chromaQuant, previousCr, dcChroma, acChroma);
+        }
+        stripRows = 0;
+    }
+
+    private void subsample(float[] plane, int left) {
+        for (int y = 0; y < 8; y++) {
+            int top = 2 * y * paddedWidth + left;
+            int bottom = top + paddedWidth;
+            for (int x = 0; x < 8; x++) {
+                int column = 2 * x;
+                block[y * 8 + x] = 0.25f * (plane[top + column] + plane[top + column + 1]
+                    + plane[bottom + column] + plane[bottom + column + 1]);
+            }
+        }
+    }
+
+    /**
+     * Transforms, quantizes and entropy-codes {@link #block}. Returns the quantized DC for the next prediction.
+     */
+    private int encodeBlock(int[] quant, int previousDc, HuffmanTable dc, HuffmanTable ac) throws IOException {
+        for (int y = 0; y < 8; y++) {
+            for (int u = 0; u < 8; u++) {
+                float sum = 0f;
+                for (int x = 0; x < 8; x++) {
+                    sum += COSINES[u * 8 + x] * block[y * 8 + x];
+                }
+                temp[y * 8 + u] = sum;
+            }
+        }
+        for (int u = 0; u < 8; u++) {
+            for (int v = 0; v < 8; v++) {
+                float sum = 0f;
+                for (int y = 0; y < 8; y++) {
+                    sum += COSINES[v * 8 + y] * temp[y * 8 + u];
+                }
+                coefficients[v * 8 + u] = Math.round(sum / quant[v * 8 + u]);
+            }
+        }
+        int dcValue = coefficients[0];
+        int diff = dcValue - previousDc;
+        int size = magnitude(diff);
+        dc.write(this, size);
+        if (size > 0) {
+            writeBits(amplitude(diff, size), size);
+        }
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            int value = coefficients[ZIGZAG[k]];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                ac.write(this, 0xF0);
+                run -= 16;
+            }
+            size = magnitude(value);
+            ac.write(this, (run << 4) | size);
+            writeBits(amplitude(value, size), size);
+            run = 0;
+        }
+        if (run > 0) {
+            ac.write(this, 0x00);
+        }
+        return dcValue;
+    }
+
+    private static int magnitude(int value) {
+        return 32 - Integer.numberOfLeadingZeros(Math.abs(value));
+    }
+
+    private static int amplitude(int value, int size) {
+        return value >= 0 ? value : value + (1 << size) - 1;
+    }
+
+    void writeBits(int bits, int count) throws IOException {
+        bitBuffer = (bitBuffer << count) | (bits & ((1 << count) - 1));
+        bitCount += count;
+        while (bitCount >= 8) {
+            int value = (bitBuffer >> (bitCount - 8)) & 0xFF;
+            output.write(value);
+            if (value == 0xFF) {
+                output.write(0);
+            }
+            bitCount -= 8;
+        }
+        bitBuffer &= (1 << bitCount) - 1;
+    }
+
+    private void writeHeaders() throws IOException {
+        output.write(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        writeMarker(0xE0, new byte[]{'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0});
+        byte[] quantTables = new byte[130];
+        quantTables[0] = 0;
+        quantTables[65] = 1;
+        for (int k = 0; k < 64; k++) {
+            quantTables[1 + k] = (byte) lumaQuant[ZIGZAG[k]];
+            quantTables[66 + k] = (byte) chromaQuant[ZIGZAG[k]];
+        }
+        writeMarker(0xDB, quantTables);
+        writeMarker(0xC0, new byte[]{
+            8, (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width, 3,
+            1, 0x22, 0,
+            2, 0x11, 1,
+            3, 0x11, 1
+        });
+        ByteArrayOutputStream tables = new ByteArrayOutputStream();
+        writeHuffmanTable(tables, 0x00, DC_LUMA_BITS, DC_VALUES);
+        writeHuffmanTable(tables, 0x10, AC_LUMA_BITS, AC_LUMA_VALUES);
+        writeHuffmanTable(tables, 0x01, DC_CHROMA_BITS, DC_VALUES);
+        writeHuffmanTable(tables, 0x11, AC_CHROMA_BITS, AC_CHROMA_VALUES);
+        writeMarker(0xC4, tables.toByteArray());
+        writeMarker(0xDA, new byte[]{3, 1, 0x00, 2, 0x11, 3, 0x11, 0, 63, 0});
+    }
+
+    private static void writeHuffmanTable(ByteArrayOutputStream out, int classAndId, int[] bits, int[] values) {
+        out.write(classAndId);
+        for (int count : bits) {
+            out.write(count);
+        }
+        for (int value : values) {
+            out.write(value);
+        }
+    }
+
+    private void writeMarker(int marker, byte[] payload) throws IOException {
+        int length = payload.length + 2;
+        output.write(0xFF);
+        output.write(marker);
+        output.write(length >> 8);
+        output.write(length);
+        output.write(payload);
+    }
+
+    private static int[] scaleQuant(int[] base, int quality) {
+        int clamped = Math.max(1, Math.min(100, quality));
+        int scale = clamped < 50 ? 5000 / clamped : 200 - clamped * 2;
+        int[] out = new int[64];
+        for (int i = 0; i < 64; i++) {
+            out[i] = Math.max(1, Math.min(255, (base[i] * scale + 50) / 100));
+        }
+        return out;
+    }
+
+    /** Canonical Huffman codes derived from a BITS/HUFFVAL pair (T.81 Annex C). */
+    private static final class HuffmanTable {
+        final int[] codes = new int[256];
+        final int[] lengths = new int[256];
+
+        HuffmanTable(int[] bits, int[] values) {
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= 16; length++) {
+                for (int i = 0; i < bits[length - 1]; i++) {
+                    int symbol = values[index++];
+                    codes[symbol] = code++;
+                    lengths[symbol] = length;
+                }
+                code <<= 1;
+            }
+        }
+
+        void write(JpegStreamWriter writer, int symbol) throws IOException {
+            writer.writeBits(codes[symbol], lengths[symbol]);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.scriptshot.raster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads EAN-13, UPC-A, EAN-8 and Code 128 barcodes from the runs of evenly spaced rows of a {@link BinaryImage}.
+ * Each symbol character is matched by its run widths normalised to the character's own width, which absorbs the
+ * uniform widening a threshold gives dark bars. A barcode is reported only when at least two scanned rows read the
+ * same payload, and its bounds span those rows.
+ */
+final class LinearCodeReader {
+
+    /** About this many rows are scanned, whatever the image height. */
+    private static final int SCANNED_ROWS = 256;
+    private static final int MIN_ROWS_PER_TASK = 16;
+    private static final int MIN_CONFIRMATIONS = 2;
+    /** Light space required before and after a symbol, in modules. */
+    private static final float QUIET_ZONE = 2f;
+    private static final float MAX_GUARD_ERROR = 0.5f;
+    /** Largest summed deviation, in modules, of a character's runs from the pattern it matched. */
+    private static final float MAX_CHARACTER_ERROR = 1.5f;
+
+    private static final int EAN13_RUNS = 59;
+    private static final int EAN13_MODULES = 95;
+    private static final int EAN8_RUNS = 43;
+    private static final int EAN8_MODULES = 67;
+
+    /** Left-half odd-parity (L) digits as space, bar, space, bar widths; right-half digits use the same widths. */
+    private static final int[][] EAN_DIGITS = {
+        {3, 2, 1, 1}, {2, 2, 2, 1}, {2, 1, 2, 2}, {1, 4, 1, 1}, {1, 1, 3, 2},
+        {1, 2, 3, 1}, {1, 1, 1, 4}, {1, 3, 1, 2}, {1, 2, 1, 3}, {3, 1, 1, 2},
+    };
+    /** EAN-13 first digit by the odd/even parity of the six left digits, bit 5 for the first (1 = even). */
+    private static final int[] EAN13_FIRST_DIGIT_PARITY = {0x00, 0x0B, 0x0D, 0x0E, 0x13, 0x19, 0x1C, 0x15, 0x16, 0x1A};
+
+    private static final int CODE128_SHIFT = 98;
+    private static final int CODE128_CODE_C = 99;
+    private static final int CODE128_CODE_B = 100;
+    private static final int CODE128_CODE_A = 101;
+    private static final int CODE128_FNC1 = 102;
+    private static final int CODE128_START_A = 103;
+    private static final int CODE128_START_B = 104;
+    private static final int CODE128_START_C = 105;
+    private static final int CODE128_STOP = 106;
+    /**
+     * Code 128 symbol characters as bar, space, bar, space, bar, space widths. The stop character's trailing
+     * two-module bar is checked separately.
+     */
+    private static final int[][] CODE128_PATTERNS = {
+        {2, 1, 2, 2, 2, 2}, {2, 2, 2, 1, 2, 2}, {2, 2, 2, 2, 2, 1}, {1, 2, 1, 2, 2, 3}, {1, 2, 1, 3, 2, 2},
+        {1, 3, 1, 2, 2, 2}, {1, 2, 2, 2, 1, 3}, {1, 2, 2, 3, 1, 2}, {1, 3, 2, 2, 1, 2}, {2, 2, 1, 2, 1, 3},
+        {2, 2, 1, 3, 1, 2}, {2, 3, 1, 2, 1, 2}, {1, 1, 2, 2, 3, 2}, {1, 2, 2, 1, 3, 2}, {1, 2, 2, 2, 3, 1},
+        {1, 1, 3, 2, 2, 2}, {1, 2, 3, 1, 2, 2}, {1, 2, 3, 2, 2, 1}, {2, 2, 3, 2, 1, 1}, {2, 2, 1, 1, 3, 2},
+        {2, 2, 1, 2, 3, 1}, {2, 1, 3, 2, 1, 2}, {2, 2, 3, 1, 1, 2}, {3, 1, 2, 1, 3, 1}, {3, 1, 1, 2, 2, 2},
+        {3, 2, 1, 1, 2, 2}, {3, 2, 1, 2, 2, 1}, {3, 1, 2, 2, 1, 2}, {3, 2, 2, 1, 1, 2}, {3, 2, 2, 2, 1, 1},
+        {2, 1, 2, 1, 2, 3}, {2, 1, 2, 3, 2, 1}, {2, 3, 2, 1, 2, 1}, {1, 1, 1, 3, 2, 3}, {1, 3, 1, 1, 2, 3},
+        {1, 3, 1, 3, 2, 1}, {1, 1, 2, 3, 1, 3}, {1, 3, 2, 1, 1, 3}, {1, 3, 2, 3, 1, 1}, {2, 1, 1, 3, 1, 3},
+        {2, 3, 1, 1, 1, 3}, {2, 3, 1, 3, 1, 1}, {1, 1, 2, 1, 3, 3}, {1, 1, 2, 3, 3, 1}, {1, 3, 2, 1, 3, 1},
+        {1, 1, 3, 1, 2, 3}, {1, 1, 3, 3, 2, 1}, {1, 3, 3, 1, 2, 1}, {3, 1, 3, 1, 2, 1}, {2, 1, 1, 3, 3, 1},
+        {2, 3, 1, 1, 3, 1}, {2, 1, 3, 1, 1, 3}, {2, 1, 3, 3, 1, 1}, {2, 1, 3, 1, 3, 1}, {3, 1, 1, 1, 2, 3},
+        {3, 1, 1, 3, 2, 1}, {3, 3, 1, 1, 2, 1}, {3, 1, 2, 1, 1, 3}, {3, 1, 2, 3, 1, 1}, {3, 3, 2, 1, 1, 1},
+        {3, 1, 4, 1, 1, 1}, {2, 2, 1, 4, 1, 1}, {4, 3, 1, 1, 1, 1}, {1, 1, 1, 2, 2, 4}, {1, 1, 1, 4, 2, 2},
+        {1, 2, 1, 1, 2, 4}, {1, 2, 1, 4, 2, 1}, {1, 4, 1, 1, 2, 2}, {1, 4, 1, 2, 2, 1}, {1, 1, 2, 2, 1, 4},
+        {1, 1, 2, 4, 1, 2}, {1, 2, 2, 1, 1, 4}, {1, 2, 2, 4, 1, 1}, {1, 4, 2, 1, 1, 2}, {1, 4, 2, 2, 1, 1},
+        {2, 4, 1, 2, 1, 1}, {2, 2, 1, 1, 1, 4}, {4, 1, 3, 1, 1, 1}, {2, 4, 1, 1, 1, 2}, {1, 3, 4, 1, 1, 1},
+        {1, 1, 1, 2, 4, 2}, {1, 2, 1, 1, 4, 2}, {1, 2, 1, 2, 4, 1}, {1, 1, 4, 2, 1, 2}, {1, 2, 4, 1, 1, 2},
+        {1, 2, 4, 2, 1, 1}, {4, 1, 1, 2, 1, 2}, {4, 2, 1, 1, 1, 2}, {4, 2, 1, 2, 1, 1}, {2, 1, 2, 1, 4, 1},
+        {2, 1, 4, 1, 2, 1}, {4, 1, 2, 1, 2, 1}, {1, 1, 1, 1, 4, 3}, {1, 1, 1, 3, 4, 1}, {1, 3, 1, 1, 4, 1},
+        {1, 1, 4, 1, 1, 3}, {1, 1, 4, 3, 1, 1}, {4, 1, 1, 1, 1, 3}, {4, 1, 1, 3, 1, 1}, {1, 1, 3, 1, 4, 1},
+        {1, 1, 4, 1, 3, 1}, {3, 1, 1, 1, 4, 1}, {4, 1, 1, 1, 3, 1}, {2, 1, 1, 4, 1, 2}, {2, 1, 1, 2, 1, 4},
+        {2, 1, 1, 2, 3, 2}, {2, 3, 3, 1, 1, 1},
+    };
+
+    private LinearCodeReader() {
+    }
+
+    /** One row's reading of a barcode. */
+    private static final class Hit {
+        final String format;
+        final String text;
+        final int left;
+        final int right;
+        final int y;
+
+        Hit(String format, String text, int left, int right, int y) {
+            this.format = format;
+            this.text = text;
+            this.left = left;
+            this.right = right;
+            this.y = y;
+        }
+    }
+
+    static List<CodeScanner.Result> detect(BinaryImage image) {
+        int step = Math.max(1, image.height / SCANNED_ROWS);
+        int rows = (image.height + step - 1) / step;
+        List<Hit> hits = Collections.synchronizedList(new ArrayList<>());
+        ImagingPool.forEachRange(rows, MIN_ROWS_PER_TASK, (start, end) -> {
+            List<Hit> local = new ArrayList<>();
+            int[] runs = new int[image.width + 1];
+            for (int row = start; row < end; row++) {
+                scanRow(image, row * step, runs, local);
+            }
+            hits.addAll(local);
+        });
+        return group(hits);
+    }
+
+    private static List<CodeScanner.Result> group(List<Hit> hits) {
+        List<Hit> sorted = new ArrayList<>(hits);
+        sorted.sort((first, second) -> Integer.compare(first.y, second.y));
+        List<CodeScanner.Result> results = new ArrayList<>();
+        boolean[] grouped = new boolean[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            if (grouped[i]) {
+                continue;
+            }
+            Hit seed = sorted.get(i);
+            int left = seed.left;
+            int right = seed.right;
+            int top = seed.y;
+            int bottom = seed.y;
+            int count = 1;
+            for (int j = i + 1; j < sorted.size(); j++) {
+                Hit other = sorted.get(j);
+                if (!grouped[j] && other.format.equals(seed.format) && other.text.equals(seed.text)
+                    && other.left < right && left < other.right) {
+                    grouped[j] = true;
+                    left = Math.min(left, other.left);
+                    right = Math.max(right, other.right);
+                    bottom = Math.max(bottom, other.y);
+                    count++;
+                }
+            }
+            if (count >= MIN_CONFIRMATIONS) {
+                results.add(new CodeScanner.Result(seed.format, seed.text,
+                    new IntRect(left, top, right, bottom + 1)));
+            }
+        }
+        return results;
+    }
+
+    private static void scanRow(BinaryImage image, int y, int[] runs, List<Hit> out) {
+        int width = image.width;
+        int offset = y * width;
+        int count = 0;
+        int length = 1;
+        for (int x = 1; x < width; x++) {
+            if (image.bits[offset + x] == image.bits[offset + x - 1]) {
+                length++;
+            } else {
+                runs[count++] = length;
+                length = 1;
+            }
+        }
+        runs[count++] = length;
+        boolean firstDark = image.bits[offset] != 0;
+        int position = 0;
+        // Symbols start with a bar after a quiet zone, so only dark runs preceded by a light one qualify.
+        for (int i = 0; i < count; i++) {
+            boolean dark = firstDark == ((i & 1) == 0);
+            if (dark && i > 0) {
+                Hit hit = readEan(runs, count, i, position, y, true);
+                if (hit == null) {
+                    hit = readEan(runs, count, i, position, y, false);
+                }
+                if (hit == null) {
+                    hit = readCode128(runs, count, i, position, y);
+                }
+                if (hit != null) {
+                    out.add(hit);
+                }
+            }
+            position += runs[i];
+        }
+    }
+
+    private static Hit readEan(int[] runs, int count, int start, int position, int y, boolean thirteen) {
+        int symbolRuns = thirteen ? EAN13_RUNS : EAN8_RUNS;
+        int digitsPerHalf = thirteen ? 6 : 4;
+        if (start + symbolRuns >= count) {
+            return null;
+        }
+        int width = 0;
+        for (int i = start; i < start + symbolRuns; i++) {
+            width += runs[i];
+        }
+        float module = width / (float) (thirteen ? EAN13_MODULES : EAN8_MODULES);
+        if (!quietZones(runs, start, symbolRuns, module)
+            || !guard(runs, start, 3, module)
+            || !guard(runs, start + 3 + digitsPerHalf * 4, 5, module)
+            || !guard(runs, start + symbolRuns - 3, 3, module)) {
+            return null;
+        }
+        int[] digits = new int[digitsPerHalf * 2 + 1];
+        int parity = 0;
+        for (int i = 0; i < digitsPerHalf; i++) {
+            int index = start + 3 + i * 4;
+            int odd = match(runs, index, EAN_DIGITS, false);
+            int even = match(runs, index, EAN_DIGITS, true);
+            if (odd < 0 && even < 0) {
+                return null;
+            }
+            boolean useEven = odd < 0 || even >= 0 && error(runs, index, EAN_DIGITS[even], true)
+                < error(runs, index, EAN_DIGITS[odd], false);
+            if (useEven && !thirteen) {
+                return null;
+            }
+            digits[i + 1] = useEven ? even : odd;
+            parity = parity << 1 | (useEven ? 1 : 0);
+        }
+        for (int i = 0; i < digitsPerHalf; i++) {
+            int digit = match(runs, start + 3 + digitsPerHalf * 4 + 5 + i * 4, EAN_DIGITS, false);
+            if (digit < 0) {
+                return null;
+            }
+            digits[digitsPerHalf + 1 + i] = digit;
+        }
+        String format;
+        int from;
+        if (thirteen) {
+            int first = -1;
+            for (int digit = 0; digit < EAN13_FIRST_DIGIT_PARITY.length; digit++) {
+                if (EAN13_FIRST_DIGIT_PARITY[digit] == parity) {
+                    first = digit;
+                }
+            }
+            if (first < 0) {
+                return null;
+            }
+            digits[0] = first;
+            format = first == 0 ? CodeScanner.UPC_A : CodeScanner.EAN_13;
+            from = first == 0 ? 1 : 0;
+        } else {
+            format = CodeScanner.EAN_8;
+            from = 1;
+        }
+        if (!checksumValid(digits, from)) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(digits.length);
+        for (int i = from; i < digits.length; i++) {
+            text.append((char) ('0' + digits[i]));
+        }
+        return new Hit(format, text.toString(), position, position + width, y);
+    }
+
+    /**
+     * The GS1 check: weights alternate 3, 1 from the digit nearest the check digit.
+     */
+    private static boolean checksumValid(int[] digits, int from) {
+        int sum = 0;
+        int weight = 3;
+        for (int i = digits.length - 2; i >= from; i--) {
+            sum += digits[i] * weight;
+            weight = 4 - weight;
+        }
+        return (10 - sum % 10) % 10 == digits[digits.length - 1];
+    }
+
+    private static boolean quietZones(int[] runs, int start, int symbolRuns, float module) {
+        return start > 0 && runs[start - 1] >= QUIET_ZONE * module
+            && runs[start + symbolRuns] >= QUIET_ZONE * module;
+    }
+
+    private static boolean guard(int[] runs, int start, int length, float module) {
+        for (int i = start; i < start + length; i++) {
+            if (Math.abs(runs[i] - module) > MAX_GUARD_ERROR * module + 0.5f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Hit readCode128(int[] runs, int count, int start, int position, int y) {
+        if (start + 6 >= count) {
+            return null;
+        }
+        int startWidth = 0;
+        for (int i = start; i < start + 6; i++) {
+            startWidth += runs[i];
+        }
+        float module = startWidth / 11f;
+        if (runs[start - 1] < QUIET_ZONE * module) {
+            return null;
+        }
+        int code = match(runs, start, CODE128_PATTERNS, false);
+        if (code < CODE128_START_A || code > CODE128_START_C) {
+            return null;
+        }
+        List<Integer> values = new ArrayList<>();
+        values.add(code);
+        int index = start + 6;
+        int width = startWidth;
+        while (true) {
+            if (index + 6 >= count) {
+                return null;
+            }
+            int value = match(runs, index, CODE128_PATTERNS, false);
+            if (value < 0 || value >= CODE128_START_A && value <= CODE128_START_C) {
+                return null;
+            }
+            for (int i = index; i < index + 6; i++) {
+                width += runs[i];
+            }
+            index += 6;
+            if (value == CODE128_STOP) {
+                break;
+            }
+            values.add(value);
+        }
+        float finalBar = runs[index];
+        if (Math.abs(finalBar - 2f * module) > module + 0.5f || index + 1 >= count
+            || runs[index + 1] < QUIET_ZONE * module || values.size() < 3) {
+            return null;
+        }
+        width += runs[index];
+        int checksum = values.get(0);
+        for (int i = 1; i < values.size() - 1; i++) {
+            checksum += i * values.get(i);
+        }
+        if (checksum % 103 != values.get(values.size() - 1)) {
+            return null;
+        }
+        String text = code128Text(values);
+        return text == null ? null : new Hit(CodeScanner.CODE_128, text, position, position + width, y);
+    }
+
+    /**
+     * Expands symbol values (start character first, check character last) through code sets A, B and C. FNC1
+     * becomes the GS separator except in first position, where it only marks GS1 data.
+     */
+    private static String code128Text(List<Integer> values) {
+        StringBuilder text = new StringBuilder();
+        int set = values.get(0);
+        boolean shifted = false;
+        for (int i = 1; i < values.size() - 1; i++) {
+            int value = values.get(i);
+            int current = set;
+            if (shifted) {
+                current = set == CODE128_START_A ? CODE128_START_B : CODE128_START_A;
+                shifted = false;
+            }
+            if (current == CODE128_START_C) {
+                if (value < 100) {
+                    text.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+                } else if (value == CODE128_CODE_B) {
+                    set = CODE128_START_B;
+                } else if (value == CODE128_CODE_A) {
+                    set = CODE128_START_A;
+                } else if (value == CODE128_FNC1) {
+                    appendFnc1(text, i);
+                }
+                continue;
+            }
+            if (value < 96) {
+                if (current == CODE128_START_A) {
+                    text.append((char) (value < 64 ? value + 32 : value - 64));
+                } else {
+                    text.append((char) (value + 32));
+                }
+            } else if (value == CODE128_SHIFT) {
+                shifted = true;
+            } else if (value == CODE128_CODE_C) {
+                set = CODE128_START_C;
+            } else if (value == CODE128_CODE_B && current == CODE128_START_A) {
+                set = CODE128_START_B;
+            } else if (value == CODE128_CODE_A && current == CODE128_START_B) {
+                set = CODE128_START_A;
+            } else if (value == CODE128_FNC1) {
+                appendFnc1(text, i);
+            }
+            // FNC2, FNC3 and FNC4 carry reader instructions, not data.
+        }
+        return text.length() == 0 ? null : text.toString();
+    }
+
+    private static void appendFnc1(StringBuilder text, int index) {
+        if (index > 1) {
+            text.append('\u001D');
+        }
+    }
+
+    /**
+     * The pattern whose widths best fit the runs from {@code start}, or -1 when none fits within
+     * {@link #MAX_CHARACTER_ERROR}. {@code reversed} reads the runs right to left.
+     */
+    private static int match(int[] runs, int start, int[][] patterns, boolean reversed) {
+        int best = -1;
+        float bestError = MAX_CHARACTER_ERROR;
+        for (int i = 0; i < patterns.length; i++) {
+            float error = error(runs, start, patterns[i], reversed);
+            if (error < bestError) {
+                best = i;
+                bestError = error;
+            }
+        }
+        return best;
+    }
+
+    private static float error(int[] runs, int start, int[] pattern, boolean reversed) {
+        int length = pattern.length;
+        int modules = 0;
+        int width = 0;
+        for (int i = 0; i < length; i++) {
+            modules += pattern[i];
+            width += runs[start + i];
+        }
+        float scale = modules / (float) width;
+        float error = 0;
+        for (int i = 0; i < length; i++) {
+            int run = runs[reversed ? start + length - 1 - i : start + i];
+            error += Math.abs(run * scale - pattern[i]);
+        }
+        return error;
+    }
+}
@@ -0,0 +1,78 @@
+package com.scriptshot.raster;
+
+/**
+ * Single-channel 8-bit luminance image stored row-major in an {@code int[]}.
+ */
+public final class LumaPlane {
+
+    public final int width;
+    public final int height;
+    public final int[] values;
+
+    public LumaPlane(int width, int height, int[] values) {
+        if (width <= 0 || height <= 0 || values.length < width * height) {
+            throw new IllegalArgumentException("Invalid plane " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.values = values;
+    }
+
+    /**
+     * Converts ARGB pixels in place; {@code argb} becomes the plane's backing array.
+     */
+    public static LumaPlane fromArgb(int[] argb, int width, int height) {
+        for (int i = 0; i < width * height; i++) {
+            argb[i] = PerceptualHash.luma(argb[i]);
+        }
+        return new LumaPlane(width, height, argb);
+    }
+
+    /**
+     * Halves both dimensions with a 2x2 box filter.
+     */
+    public LumaPlane downsample() {
+        int halfWidth = Math.max(1, width / 2);
+        int halfHeight = Math.max(1, height / 2);
+        int[] out = new int[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            int top = Math.min(height - 1, y * 2) * width;
+            int bottom = Math.min(height - 1, y * 2 + 1) * width;
+            for (int x = 0; x < halfWidth; x++) {
+                int left = Math.min(width - 1, x * 2);
+                int right = Math.min(width - 1, x * 2 + 1);
+                out[y * halfWidth + x] = (values[top + left] + values[top + right]
+                    + values[bottom + left] + values[bottom + right] + 2) >> 2;
+            }
+        }
+        return new LumaPlane(halfWidth, halfHeight, out);
+    }
+
+    /**
+     * Bilinear resample to the given size.
+     */
+    public LumaPlane resize(int newWidth, int newHeight) {
+        if (newWidth == width && newHeight == height) {
+            return this;
+        }
+        int[] out = new int[newWidth * newHeight];
+        float scaleX = (float) width / newWidth;
+        float scaleY = (float) height / newHeight;
+        for (int y = 0; y < newHeight; y++) {
+            float sourceY = Math.max(0f, (y + 0.5f) * scaleY - 0.5f);
+            int y0 = Math.min(height - 1, (int) sourceY);
+            int y1 = Math.min(height - 1, y0 + 1);
+            float fy = sourceY - y0;
+            for (int x = 0; x < newWidth; x++) {
+                float sourceX = Math.max(0f, (x + 0.5f) * scaleX - 0.5f);
+                int x0 = Math.min(width - 1, (int) sourceX);
+                int x1 = Math.min(width - 1, x0 + 1);
+                float fx = sourceX - x0;
+                float top = values[y0 * width + x0] * (1 - fx) + values[y0 * width + x1] * fx;
+                float bottom = values[y1 * width + x0] * (1 - fx) + values[y1 * width + x1] * fx;
+                out[y * newWidth + x] = Math.round(top * (1 - fy) + bottom * fy);
+            }
+        }
+        return new LumaPlane(newWidth, newHeight, out);
+    }
+}
@@ -0,0 +1,369 @@
+package com.scriptshot.raster;
+
+import java.util.Arrays;
+
+/**
+ * Reduces an ARGB image to at most 256 colours for palette PNG output. Images that already use few enough distinct
+ * colours, which is the common case for flat UI screenshots, get an exact palette; everything else goes through
+ * median cut on a 15-bit histogram. Pixels with alpha below 128 share one fully transparent entry, other alpha is
+ * dropped.
+ */
+public final class PaletteQuantizer {
+
+    public static final int MAX_COLORS = 256;
+
+    private static final int BAND_ROWS = 64;
+    private static final int BINS = 1 << 15;
+    private static final int TRANSPARENT = 0;
+    private static final int[] BAYER_8X8 = {
+        0, 32, 8, 40, 2, 34, 10, 42,
+        48, 16, 56, 24, 50, 18, 58, 26,
+        12, 44, 4, 36, 14, 46, 6, 38,
+        60, 28, 52, 20, 62, 30, 54, 22,
+        3, 35, 11, 43, 1, 33, 9, 41,
+        51, 19, 59, 27, 49, 17, 57, 25,
+        15, 47, 7, 39, 13, 45, 5, 37,
+        63, 31, 55, 23, 61, 29, 53, 21
+    };
+
+    private PaletteQuantizer() {
+    }
+
+    public static final class Palette {
+        /** ARGB entries; a transparent entry, when present, is first. */
+        public final int[] colors;
+        public final boolean exact;
+        private final int transparentIndex;
+        private final ColorTable exactTable;
+        private final short[] lut;
+        private final int opaqueStart;
+        private final int ditherSpread;
+        private int lastPixel;
+        private int lastIndex = -1;
+
+        private Palette(int[] colors, boolean exact, int transparentIndex, ColorTable exactTable, boolean dither) {
+            this.colors = colors;
+            this.exact = exact;
+            this.transparentIndex = transparentIndex;
+            this.exactTable = exactTable;
+            this.lut = exact ? null : new short[BINS];
+            if (lut != null) {
+                Arrays.fill(lut, (short) -1);
+            }
+            this.opaqueStart = transparentIndex >= 0 ? 1 : 0;
+            int opaqueCount = colors.length - opaqueStart;
+            this.ditherSpread = exact || !dither ? 0 : (int) Math.round(255d / Math.cbrt(Math.max(2, opaqueCount)));
+        }
+
+        /**
+         * Maps {@code width} pixels of row {@code y} to palette indices. Not thread-safe.
+         */
+        public void mapRow(int[] pixels, int offset, int width, int y, byte[] out, int outOffset) {
+            int ditherRow = (y & 7) << 3;
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[offset + x];
+                int index;
+                if ((pixel >>> 24) < 0x80) {
+                    index = transparentIndex;
+                } else if (ditherSpread == 0 && pixel == lastPixel && lastIndex >= 0) {
+                    index = lastIndex;
+                } else if (exact) {
+                    index = exactTable.indexOf(pixel | 0xFF000000);
+                    lastPixel = pixel;
+                    lastIndex = index;
+                } else {
+                    int r = (pixel >> 16) & 0xFF;
+                    int g = (pixel >> 8) & 0xFF;
+                    int b = pixel & 0xFF;
+                    if (ditherSpread != 0) {
+                        int offsetValue = ((BAYER_8X8[ditherRow | (x & 7)] * 2 - 63) * ditherSpread) >> 7;
+                        r = clamp(r + offsetValue);
+                        g = clamp(g + offsetValue);
+                        b = clamp(b + offsetValue);
+                    }
+                    index = nearestForBin(binOf(r, g, b));
+                    lastPixel = pixel;
+                    lastIndex = index;
+                }
+                out[outOffset + x] = (byte) index;
+            }
+        }
+
+        private int nearestForBin(int bin) {
+            int cached = lut[bin];
+            if (cached >= 0) {
+                return cached;
+            }
+            int r = ((bin >> 10) << 3) | 4;
+            int g = (((bin >> 5) & 31) << 3) | 4;
+            int b = ((bin & 31) << 3) | 4;
+            int best = opaqueStart;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = opaqueStart; i < colors.length; i++) {
+                int color = colors[i];
+                int dr = ((color >> 16) & 0xFF) - r;
+                int dg = ((color >> 8) & 0xFF) - g;
+                int db = (color & 0xFF) - b;
+                int distance = dr * dr * 3 + dg * dg * 4 + db * db * 2;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            lut[bin] = (short) best;
+            return best;
+        }
+    }
+
+    public static Palette build(BandReader source, int width, int height, int maxColors, boolean dither) {
+        int limit = Math.max(2, Math.min(MAX_COLORS, maxColors));
+        int[] band = new int[width * Math.min(BAND_ROWS, height)];
+        int[] counts = new int[BINS];
+        long[] sumR = new long[BINS];
+        long[] sumG = new long[BINS];
+        long[] sumB = new long[BINS];
+        ColorTable distinct = new ColorTable(MAX_COLORS + 1);
+        boolean exact = true;
+        boolean hasTransparent = false;
+        for (int top = 0; top < height; top += BAND_ROWS) {
+            int rows = Math.min(BAND_ROWS, height - top);
+            source.read(top, rows, band);
+            int last = 0;
+            for (int i = 0, count = rows * width; i < count; i++) {
+                int pixel = band[i];
+                if ((pixel >>> 24) < 0x80) {
+                    hasTransparent = true;
+                    continue;
+                }
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+                int bin = binOf(r, g, b);
+                counts[bin]++;
+                sumR[bin] += r;
+                sumG[bin] += g;
+                sumB[bin] += b;
+                if (exact && pixel != last) {
+                    last = pixel;
+                    distinct.add(pixel | 0xFF000000);
+                    exact = distinct.size() <= limit;
+                }
+            }
+        }
+        int slots = hasTransparent ? limit - 1 : limit;
+        exact = exact && distinct.size() <= slots;
+        int offset = hasTransparent ? 1 : 0;
+        if (exact) {
+            int[] keys = distinct.keys();
+            int[] colors = new int[keys.length + offset];
+            System.arraycopy(keys, 0, colors, offset, keys.length);
+            ColorTable table = new ColorTable(colors.length);
+            for (int i = offset; i < colors.length; i++) {
+                table.put(colors[i], i);
+            }
+            if (hasTransparent) {
+                colors[0] = TRANSPARENT;
+            }
+            return new Palette(colors, true, hasTransparent ? 0 : -1, table, false);
+        }
+        int[] opaque = medianCut(counts, sumR, sumG, sumB, slots);
+        int[] colors = new int[opaque.length + offset];
+        System.arraycopy(opaque, 0, colors, offset, opaque.length);
+        if (hasTransparent) {
+            colors[0] = TRANSPARENT;
+        }
+        return new Palette(colors, false, hasTransparent ? 0 : -1, null, dither);
+    }
+
+    private static int[] medianCut(int[] counts, long[] sumR, long[] sumG, long[] sumB, int slots) {
+        int used = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                used++;
+            }
+        }
+        if (used == 0) {
+            return new int[]{0xFF000000};
+        }
+        int[] bins = new int[used];
+        int cursor = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            if (counts[bin] > 0) {
+                bins[cursor++] = bin;
+            }
+        }
+        int maxBoxes = Math.min(slots, used);
+        int[] starts = new int[maxBoxes];
+        int[] ends = new int[maxBoxes];
+        starts[0] = 0;
+        ends[0] = used;
+        int boxes = 1;
+        int[] sortKeys = new int[used];
+        while (boxes < maxBoxes) {
+            int target = -1;
+            long bestScore = -1;
+            int targetAxis = 0;
+            for (int box = 0; box < boxes; box++) {
+                if (ends[box] - starts[box] < 2) {
+                    continue;
+                }
+                int[] range = axisRange(bins, starts[box], ends[box]);
+                long population = 0;
+                for (int i = starts[box]; i < ends[box]; i++) {
+                    population += counts[bins[i]];
+                }
+                long score = population * (range[1] + 1L);
+                if (score > bestScore) {
+                    bestScore = score;
+                    target = box;
+                    targetAxis = range[0];
+                }
+            }
+            if (target < 0) {
+                break;
+            }
+            int start = starts[target];
+            int end = ends[target];
+            int shift = targetAxis == 0 ? 10 : targetAxis == 1 ? 5 : 0;
+            for (int i = start; i < end; i++) {
+                sortKeys[i] = (((bins[i] >> shift) & 31) << 15) | bins[i];
+            }
+            Arrays.sort(sortKeys, start, end);
+            long population = 0;
+            for (int i = start; i < end; i++) {
+                bins[i] = sortKeys[i] & (BINS - 1);
+                population += counts[bins[i]];
+            }
+            long half = population / 2;
+            long running = 0;
+            int split = end - 1;
+            for (int i = start; i < end - 1; i++) {
+                running += counts[bins[i]];
+                if (running >= half) {
+                    split = i + 1;
+                    break;
+                }
+            }
+            ends[target] = split;
+            starts[boxes] = split;
+            ends[boxes] = end;
+            boxes++;
+        }
+        int[] palette = new int[boxes];
+        for (int box = 0; box < boxes; box++) {
+            long population = 0;
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            for (int i = starts[box]; i < ends[box]; i++) {
+                int bin = bins[i];
+                population += counts[bin];
+                r += sumR[bin];
+                g += sumG[bin];
+                b += sumB[bin];
+            }
+            palette[box] = 0xFF000000
+                | (int) ((r + population / 2) / population) << 16
+                | (int) ((g + population / 2) / population) << 8
+                | (int) ((b + population / 2) / population);
+        }
+        return palette;
+    }
+
+    /**
+     * Returns {axis, extent} for the widest channel of the bins in {@code [start, end)}; axis 0 = red, 1 = green, 2 = blue.
+     */
+    private static int[] axisRange(int[] bins, int start, int end) {
+        int minR = 31;
+        int maxR = 0;
+        int minG = 31;
+        int maxG = 0;
+        int minB = 31;
+        int maxB = 0;
+        for (int i = start; i < end; i++) {
+            int bin = bins[i];
+            int r = bin >> 10;
+            int g = (bin >> 5) & 31;
+            int b = bin & 31;
+            minR = Math.min(minR, r);
+            maxR = Math.max(maxR, r);
+            minG = Math.min(minG, g);
+            maxG = Math.max(maxG, g);
+            minB = Math.min(minB, b);
+            maxB = Math.max(maxB, b);
+        }
+        int rangeR = maxR - minR;
+        int rangeG = maxG - minG;
+        int rangeB = maxB - minB;
+        if (rangeG >= rangeR && rangeG >= rangeB) {
+            return new int[]{1, rangeG};
+        }
+        return rangeR >= rangeB ? new int[]{0, rangeR} : new int[]{2, rangeB};
+    }
+
+    private static int binOf(int r, int g, int b) {
+        return ((r >> 3) << 10) | ((g >> 3) << 5) | (b >> 3);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(255, value);
+    }
+
+    /**
+     * Open-addressing map from opaque ARGB colour to palette index, sized for at most {@code capacity} keys; zero
+     * marks an empty slot since every key has alpha 0xFF.
+     */
+    private static final class ColorTable {
+        private final int[] keys;
+        private final int[] values;
+        private final int mask;
+        private int size;
+
+        ColorTable(int capacity) {
+            int tableSize = Integer.highestOneBit(Math.max(4, capacity) * 4 - 1) << 1;
+            keys = new int[tableSize];
+            values = new int[tableSize];
+            mask = tableSize - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(int key) {
+            put(key, size);
+        }
+
+        void put(int key, int value) {
+            int slot = slotOf(key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+            }
+        }
+
+        int indexOf(int key) {
+            int slot = slotOf(key);
+            return keys[slot] == key ? values[slot] : -1;
+        }
+
+        int[] keys() {
+            int[] result = new int[size];
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    result[values[slot]] = keys[slot];
+                }
+            }
+            return result;
+        }
+
+        private int slotOf(int key) {
+            int slot = (key * 0x9E3779B9) >>> 16 & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
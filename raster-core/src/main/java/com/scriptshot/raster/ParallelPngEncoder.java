@@ -0,0 +1,213 @@
+package com.scriptshot.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes an 8-bit RGB or RGBA PNG with filtering and deflate spread over the imaging pool, in the manner of pigz.
+ * Rows are cut into chunks of about {@link #CHUNK_BYTES}; each chunk is filtered on its own (filters only look one
+ * row up, at unfiltered pixels) and compressed by its own raw deflater, primed with the last 32 KiB of the previous
+ * chunk's filtered bytes so matches still reach across the seam. Chunks end on a sync flush, which byte-aligns them,
+ * so concatenating them yields one valid zlib stream; its Adler-32 is combined from per-chunk checksums.
+ * Chunk boundaries depend only on the row width, so the output is identical on any number of cores.
+ */
+public final class ParallelPngEncoder {
+
+    /** Uncompressed bytes per chunk; pigz uses the same block size. */
+    static final int CHUNK_BYTES = 128 * 1024;
+    private static final int WINDOW_BYTES = 32 * 1024;
+    private static final int ADLER_BASE = 65521;
+
+    private ParallelPngEncoder() {
+    }
+
+    /**
+     * Encodes a {@code width x height} image read through {@code source}. {@code level} is a {@link Deflater} level
+     * (0..9, or {@link Deflater#DEFAULT_COMPRESSION}); lower levels trade size for speed. Does not close
+     * {@code output}.
+     */
+    public static void encode(BandReader source, int width, int height, boolean alpha, int level, PngFilter filter,
+                              OutputStream output) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid PNG size " + width + "x" + height);
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+            throw new IllegalArgumentException("Compression level must be 0..9");
+        }
+        int channels = alpha ? 4 : 3;
+        int stride = width * channels;
+        int chunkRows = Math.max(1, CHUNK_BYTES / (stride + 1));
+        int waveChunks = ImagingPool.parallelism();
+        int waveRows = chunkRows * waveChunks;
+        CRC32 crc = new CRC32();
+        PngFormat.writeHeader(output, crc, width, height, 8, alpha ? PngFormat.COLOR_RGBA : PngFormat.COLOR_RGB);
+
+        int[] pixels = new int[Math.min(waveRows, height) * width];
+        // Last row of the previous wave, which the first chunk of the next wave filters against.
+        int[] seam = new int[width];
+        byte[][] filtered = new byte[waveChunks][];
+        int[] filteredLength = new int[waveChunks];
+        long[] checksums = new long[waveChunks];
+        byte[][] compressed = new byte[waveChunks][];
+        byte[] dictionary = null;
+        long adler = 1;
+        boolean header = true;
+        for (int waveTop = 0; waveTop < height; waveTop += waveRows) {
+            int rows = Math.min(waveRows, height - waveTop);
+            source.read(waveTop, rows, pixels);
+            int chunks = (rows + chunkRows - 1) / chunkRows;
+            boolean lastWave = waveTop + rows == height;
+            int waveStart = waveTop;
+            ImagingPool.forEachRange(chunks, 1, (start, end) -> {
+                byte[] current = new byte[stride];
+                byte[] previous = new byte[stride];
+                byte[][] candidates = PngFormat.newCandidates(stride);
+                for (int chunk = start; chunk < end; chunk++) {
+                    int firstRow = chunk * chunkRows;
+                    int lastRow = Math.min(rows, firstRow + chunkRows);
+                    int capacity = (lastRow - firstRow) * (stride + 1);
+                    byte[] out = filtered[chunk] != null && filtered[chunk].length >= capacity
+                        ? filtered[chunk] : new byte[capacity];
+                    if (waveStart + firstRow == 0) {
+                        Arrays.fill(previous, (byte) 0);
+                    } else if (firstRow == 0) {
+                        PngFormat.unpackRow(seam, 0, width, channels, previous);
+                    } else {
+                        PngFormat.unpackRow(pixels, (firstRow - 1) * width, width, channels, previous);
+                    }
+                    int length = 0;
+                    for (int row = firstRow; row < lastRow; row++) {
+                        PngFormat.unpackRow(pixels, row * width, width, channels, current);
+                        byte[] best = PngFormat.filterRow(current, previous, stride, channels, waveStart + row == 0,
+                            filter, candidates);
+                        System.arraycopy(best, 0, out, length, stride + 1);
+                        length += stride + 1;
+                        byte[] swap = previous;
+                        previous = current;
+                        current = swap;
+                    }
+                    Adler32 checksum = new Adler32();
+                    checksum.update(out, 0, length);
+                    filtered[chunk] = out;
+                    filteredLength[chunk] = length;
+                    checksums[chunk] = checksum.getValue();
+                }
+            });
+            byte[] waveDictionary = dictionary;
+            ImagingPool.forEachRange(chunks, 1, (start, end) -> {
+                Deflater deflater = new Deflater(level, true);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] scratch = new byte[CHUNK_BYTES / 2];
+                try {
+                    for (int chunk = start; chunk < end; chunk++) {
+                        deflater.reset();
+                        buffer.reset();
+                        byte[] primer = chunk > 0 ? filtered[chunk - 1] : waveDictionary;
+                        int primerLength = chunk > 0 ? filteredLength[chunk - 1] : primer != null ? primer.length : 0;
+                        if (primer != null) {
+                            int size = Math.min(WINDOW_BYTES, primerLength);
+                            deflater.setDictionary(primer, primerLength - size, size);
+                        }
+                        deflater.setInput(filtered[chunk], 0, filteredLength[chunk]);
+                        boolean last = lastWave && chunk == chunks - 1;
+                        if (last) {
+                            deflater.finish();
+                            while (!deflater.finished()) {
+                                buffer.write(scratch, 0, deflater.deflate(scratch));
+                            }
+                        } else {
+                            int produced;
+                            do {
+                                produced = deflater.deflate(scratch, 0, scratch.length, Deflater.SYNC_FLUSH);
+                                buffer.write(scratch, 0, produced);
+                            } while (produced == scratch.length);
+                        }
+                        compressed[chunk] = buffer.toByteArray();
+                    }
+                } finally {
+                    deflater.end();
+                }
+            });
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                adler = combineAdler(adler, checksums[chunk], filteredLength[chunk]);
+                byte[] data = compressed[chunk];
+                int length = data.length;
+                if (header) {
+                    data = prepend(zlibHeader(level), data, length);
+                    length = data.length;
+                    header = false;
+                }
+                if (lastWave && chunk == chunks - 1) {
+                    data = appendInt(data, length, (int) adler);
+                    length = data.length;
+                }
+                PngFormat.writeChunk(output, crc, "IDAT", data, 0, length);
+                compressed[chunk] = null;
+            }
+            System.arraycopy(pixels, (rows - 1) * width, seam, 0, width);
+            int tail = filteredLength[chunks - 1];
+            int size = Math.min(WINDOW_BYTES, tail);
+            dictionary = new byte[size];
+            System.arraycopy(filtered[chunks - 1], tail - size, dictionary, 0, size);
+        }
+        PngFormat.writeChunk(output, crc, "IEND", new byte[0], 0, 0);
+        output.flush();
+    }
+
+    /**
+     * Adler-32 of two concatenated blocks from their checksums and the second block's length (zlib's
+     * {@code adler32_combine}).
+     */
+    static long combineAdler(long first, long second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= (long) ADLER_BASE << 1) {
+            sum2 -= (long) ADLER_BASE << 1;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * The two zlib header bytes for a 32 KiB window, with the level hint zlib itself would write.
+     */
+    private static byte[] zlibHeader(int level) {
+        int hint = level == Deflater.DEFAULT_COMPRESSION ? 2 : level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int header = (0x78 << 8) | (hint << 6);
+        header += 31 - header % 31;
+        return new byte[]{(byte) (header >>> 8), (byte) header};
+    }
+
+    private static byte[] prepend(byte[] prefix, byte[] data, int length) {
+        byte[] out = new byte[prefix.length + length];
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        System.arraycopy(data, 0, out, prefix.length, length);
+        return out;
+    }
+
+    private static byte[] appendInt(byte[] data, int length, int value) {
+        byte[] out = new byte[length + 4];
+        System.arraycopy(data, 0, out, 0, length);
+        out[length] = (byte) (value >>> 24);
+        out[length + 1] = (byte) (value >>> 16);
+        out[length + 2] = (byte) (value >>> 8);
+        out[length + 3] = (byte) value;
+        return out;
+    }
+}
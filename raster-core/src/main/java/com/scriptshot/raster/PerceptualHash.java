@@ -0,0 +1,114 @@
+package com.scriptshot.raster;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 64-bit perceptual hashes over a downsampled luminance plane. Callers supply the plane already scaled to
+ * 32x32 (pHash) or 9x8 (dHash).
+ */
+public final class PerceptualHash {
+
+    public static final int PHASH_SIZE = 32;
+    public static final int DHASH_WIDTH = 9;
+    public static final int DHASH_HEIGHT = 8;
+
+    private static final int LOW_FREQUENCIES = 8;
+    private static final double[][] DCT_COSINES = buildCosines();
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * DCT-based hash: the low 8x8 frequencies of a 32x32 plane, each bit set when above the median (DC excluded).
+     */
+    public static long phash(int[] luma) {
+        if (luma.length != PHASH_SIZE * PHASH_SIZE) {
+            throw new IllegalArgumentException("pHash expects a " + PHASH_SIZE + "x" + PHASH_SIZE + " plane");
+        }
+        double[] rows = new double[PHASH_SIZE * LOW_FREQUENCIES];
+        for (int y = 0; y < PHASH_SIZE; y++) {
+            int rowOffset = y * PHASH_SIZE;
+            for (int u = 0; u < LOW_FREQUENCIES; u++) {
+                double sum = 0d;
+                for (int x = 0; x < PHASH_SIZE; x++) {
+                    sum += luma[rowOffset + x] * DCT_COSINES[x][u];
+                }
+                rows[y * LOW_FREQUENCIES + u] = sum;
+            }
+        }
+        double[] coefficients = new double[LOW_FREQUENCIES * LOW_FREQUENCIES];
+        for (int v = 0; v < LOW_FREQUENCIES; v++) {
+            for (int u = 0; u < LOW_FREQUENCIES; u++) {
+                double sum = 0d;
+                for (int y = 0; y < PHASH_SIZE; y++) {
+                    sum += rows[y * LOW_FREQUENCIES + u] * DCT_COSINES[y][v];
+                }
+                coefficients[v * LOW_FREQUENCIES + u] = sum;
+            }
+        }
+        double[] sorted = Arrays.copyOfRange(coefficients, 1, coefficients.length);
+        Arrays.sort(sorted);
+        double median = (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2d;
+        long hash = 0L;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Gradient hash: one bit per horizontally adjacent pair of a 9x8 plane.
+     */
+    public static long dhash(int[] luma) {
+        if (luma.length != DHASH_WIDTH * DHASH_HEIGHT) {
+            throw new IllegalArgumentException("dHash expects a " + DHASH_WIDTH + "x" + DHASH_HEIGHT + " plane");
+        }
+        long hash = 0L;
+        int bit = 0;
+        for (int y = 0; y < DHASH_HEIGHT; y++) {
+            int rowOffset = y * DHASH_WIDTH;
+            for (int x = 0; x < DHASH_WIDTH - 1; x++) {
+                if (luma[rowOffset + x] > luma[rowOffset + x + 1]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    public static String toHex(long hash) {
+        return String.format(Locale.US, "%016x", hash);
+    }
+
+    public static long fromHex(String hex) {
+        return Long.parseUnsignedLong(hex.trim(), 16);
+    }
+
+    /**
+     * Rec. 601 luma of an ARGB colour, 0..255.
+     */
+    public static int luma(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+
+    private static double[][] buildCosines() {
+        double[][] table = new double[PHASH_SIZE][LOW_FREQUENCIES];
+        for (int x = 0; x < PHASH_SIZE; x++) {
+            for (int u = 0; u < LOW_FREQUENCIES; u++) {
+                table[x][u] = Math.cos((2 * x + 1) * u * Math.PI / (2d * PHASH_SIZE));
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,42 @@
+package com.scriptshot.raster;
+
+import java.util.Locale;
+
+/**
+ * Per-row PNG filter choice. {@link #ADAPTIVE} tries None, Sub, Up and Paeth on every row and keeps the one with the
+ * smallest sum of absolute residuals; the fixed filters skip that search for speed.
+ */
+public enum PngFilter {
+    NONE(0),
+    SUB(1),
+    UP(2),
+    PAETH(4),
+    ADAPTIVE(-1);
+
+    /** Filter type byte written at the start of each row, or -1 for the adaptive choice. */
+    final int type;
+
+    PngFilter(int type) {
+        this.type = type;
+    }
+
+    public static PngFilter parse(String value, PngFilter fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        switch (value.trim().toLowerCase(Locale.US)) {
+            case "none":
+                return NONE;
+            case "sub":
+                return SUB;
+            case "up":
+                return UP;
+            case "paeth":
+                return PAETH;
+            case "adaptive":
+                return ADAPTIVE;
+            default:
+                return fallback;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.scriptshot.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Container and filter primitives shared by the PNG writers: signature, chunk framing, pixel unpacking and row
+ * filtering.
+ */
+final class PngFormat {
+
+    static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    static final int COLOR_RGB = 2;
+    static final int COLOR_INDEXED = 3;
+    static final int COLOR_RGBA = 6;
+
+    private PngFormat() {
+    }
+
+    static void writeHeader(OutputStream output, CRC32 crc, int width, int height, int bitDepth, int colorType)
+        throws IOException {
+        output.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        writeInt(header, width);
+        writeInt(header, height);
+        header.write(bitDepth);
+        header.write(colorType);
+        header.write(0);
+        header.write(0);
+        header.write(0);
+        writeChunk(output, crc, "IHDR", header.toByteArray(), 0, header.size());
+    }
+
+    static void writeChunk(OutputStream output, CRC32 crc, String type, byte[] data, int offset, int length)
+        throws IOException {
+        byte[] typeBytes = {(byte) type.charAt(0), (byte) type.charAt(1), (byte) type.charAt(2), (byte) type.charAt(3)};
+        writeInt(output, length);
+        output.write(typeBytes);
+        output.write(data, offset, length);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        writeInt(output, (int) crc.getValue());
+    }
+
+    static void writeInt(OutputStream stream, int value) throws IOException {
+        stream.write(value >>> 24);
+        stream.write(value >>> 16);
+        stream.write(value >>> 8);
+        stream.write(value);
+    }
+
+    /**
+     * Unpacks one row of ARGB pixels into RGB or RGBA bytes.
+     */
+    static void unpackRow(int[] pixels, int offset, int width, int channels, byte[] out) {
+        int index = 0;
+        for (int x = 0; x < width; x++) {
+            int argb = pixels[offset + x];
+            out[index++] = (byte) (argb >> 16);
+            out[index++] = (byte) (argb >> 8);
+            out[index++] = (byte) argb;
+            if (channels == 4) {
+                out[index++] = (byte) (argb >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Scratch rows for {@link #filterRow}, indexed by filter type, each starting with its type byte.
+     */
+    static byte[][] newCandidates(int stride) {
+        byte[][] candidates = new byte[5][];
+        for (PngFilter filter : PngFilter.values()) {
+            if (filter.type >= 0) {
+                candidates[filter.type] = new byte[stride + 1];
+                candidates[filter.type][0] = (byte) filter.type;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Filters {@code current} against {@code previous} (all zeros above the first row) and returns the candidate
+     * row, type byte included, that {@code filter} selects.
+     */
+    static byte[] filterRow(byte[] current, byte[] previous, int stride, int channels, boolean firstRow,
+                            PngFilter filter, byte[][] candidates) {
+        if (filter != PngFilter.ADAPTIVE) {
+            byte[] out = candidates[filter.type];
+            for (int i = 0; i < stride; i++) {
+                int value = current[i] & 0xFF;
+                int left = i >= channels ? current[i - channels] & 0xFF : 0;
+                int above = previous[i] & 0xFF;
+                switch (filter) {
+                    case SUB:
+                        out[i + 1] = (byte) (value - left);
+                        break;
+                    case UP:
+                        out[i + 1] = (byte) (value - above);
+                        break;
+                    case PAETH:
+                        int upperLeft = i >= channels ? previous[i - channels] & 0xFF : 0;
+                        out[i + 1] = (byte) (value - paethPredictor(left, above, upperLeft));
+                        break;
+                    default:
+                        out[i + 1] = (byte) value;
+                        break;
+                }
+            }
+            return out;
+        }
+        byte[] none = candidates[PngFilter.NONE.type];
+        byte[] sub = candidates[PngFilter.SUB.type];
+        byte[] up = candidates[PngFilter.UP.type];
+        byte[] paeth = candidates[PngFilter.PAETH.type];
+        long sumNone = 0;
+        long sumSub = 0;
+        long sumUp = 0;
+        long sumPaeth = 0;
+        for (int i = 0; i < stride; i++) {
+            int value = current[i] & 0xFF;
+            int left = i >= channels ? current[i - channels] & 0xFF : 0;
+            int above = previous[i] & 0xFF;
+            int upperLeft = i >= channels ? previous[i - channels] & 0xFF : 0;
+            byte n = (byte) value;
+            byte s = (byte) (value - left);
+            byte u = (byte) (value - above);
+            byte p = (byte) (value - paethPredictor(left, above, upperLeft));
+            none[i + 1] = n;
+            sub[i + 1] = s;
+            up[i + 1] = u;
+            paeth[i + 1] = p;
+            sumNone += Math.abs((int) n);
+            sumSub += Math.abs((int) s);
+            sumUp += Math.abs((int) u);
+            sumPaeth += Math.abs((int) p);
+        }
+        if (firstRow) {
+            // Up and Paeth degenerate on the first row, so only None and Sub are meaningful.
+            return sumSub < sumNone ? sub : none;
+        }
+        byte[] best = none;
+        long bestSum = sumNone;
+        if (sumSub < bestSum) {
+            best = sub;
+            bestSum = sumSub;
+        }
+        if (sumUp < bestSum) {
+            best = up;
+            bestSum = sumUp;
+        }
+        if (sumPaeth < bestSum) {
+            best = paeth;
+        }
+        return best;
+    }
+
+    private static int paethPredictor(int left, int above, int upperLeft) {
+        int estimate = left + above - upperLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceAbove = Math.abs(estimate - above);
+        int distanceUpperLeft = Math.abs(estimate - upperLeft);
+        if (distanceLeft <= distanceAbove && distanceLeft <= distanceUpperLeft) {
+            return left;
+        }
+        return distanceAbove <= distanceUpperLeft ? above : upperLeft;
+    }
+}
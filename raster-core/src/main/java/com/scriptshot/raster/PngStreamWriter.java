@@ -0,0 +1,189 @@
+package com.scriptshot.raster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an 8-bit RGB or RGBA PNG row by row, so images taller than any bitmap we could allocate can be encoded from
+ * bands. Each row gets the filter with the smallest sum of absolute residuals among None, Sub, Up and Paeth.
+ * Palette images are written with the smallest bit depth that fits and no filtering, as the PNG spec recommends.
+ */
+public final class PngStreamWriter implements RowSink, Closeable {
+
+    private static final int IDAT_CHUNK = 64 * 1024;
+
+    private final OutputStream output;
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final int bitDepth;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] deflateBuffer = new byte[IDAT_CHUNK];
+    private int pending;
+    private byte[] previous;
+    private byte[] current;
+    private final byte[][] candidates;
+    private int rowsWritten;
+    private boolean finished;
+
+    public PngStreamWriter(OutputStream output, int width, int height, boolean alpha, int compressionLevel) throws IOException {
+        this(output, width, height, alpha ? 4 : 3, 8, compressionLevel);
+        writeHeader(alpha ? PngFormat.COLOR_RGBA : PngFormat.COLOR_RGB);
+    }
+
+    private PngStreamWriter(OutputStream output, int width, int height, int channels, int bitDepth,
+                            int compressionLevel) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid PNG size " + width + "x" + height);
+        }
+        this.output = output;
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.bitDepth = bitDepth;
+        this.deflater = new Deflater(compressionLevel);
+        int stride = width * channels;
+        previous = new byte[stride];
+        current = new byte[stride];
+        candidates = PngFormat.newCandidates(stride);
+    }
+
+    /**
+     * Starts a palette PNG. Entries of {@code palette} are ARGB; alpha below 255 is emitted through a tRNS chunk.
+     */
+    public static PngStreamWriter indexed(OutputStream output, int width, int height, int[] palette,
+                                          int compressionLevel) throws IOException {
+        if (palette.length == 0 || palette.length > 256) {
+            throw new IllegalArgumentException("Palette must have 1..256 entries");
+        }
+        int bitDepth = palette.length <= 2 ? 1 : palette.length <= 4 ? 2 : palette.length <= 16 ? 4 : 8;
+        PngStreamWriter writer = new PngStreamWriter(output, width, height, 1, bitDepth, compressionLevel);
+        writer.writeHeader(PngFormat.COLOR_INDEXED);
+        byte[] rgb = new byte[palette.length * 3];
+        int lastTranslucent = -1;
+        for (int i = 0; i < palette.length; i++) {
+            rgb[i * 3] = (byte) (palette[i] >> 16);
+            rgb[i * 3 + 1] = (byte) (palette[i] >> 8);
+            rgb[i * 3 + 2] = (byte) palette[i];
+            if ((palette[i] >>> 24) != 0xFF) {
+                lastTranslucent = i;
+            }
+        }
+        writer.writeChunk("PLTE", rgb, rgb.length);
+        if (lastTranslucent >= 0) {
+            byte[] alpha = new byte[lastTranslucent + 1];
+            for (int i = 0; i <= lastTranslucent; i++) {
+                alpha[i] = (byte) (palette[i] >>> 24);
+            }
+            writer.writeChunk("tRNS", alpha, alpha.length);
+        }
+        return writer;
+    }
+
+    private void writeHeader(int colorType) throws IOException {
+        PngFormat.writeHeader(output, crc, width, height, bitDepth, colorType);
+    }
+
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Appends {@code rows} rows of ARGB pixels read from {@code pixels} starting at {@code offset} with the given stride.
+     */
+    @Override
+    public void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException {
+        if (channels == 1) {
+            throw new IllegalStateException("Palette PNGs take index rows");
+        }
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("Too many rows: " + (rowsWritten + rows) + " > " + height);
+        }
+        for (int row = 0; row < rows; row++) {
+            PngFormat.unpackRow(pixels, offset + row * stride, width, channels, current);
+            byte[] filtered = PngFormat.filterRow(current, previous, width * channels, channels, rowsWritten == 0,
+                PngFilter.ADAPTIVE, candidates);
+            deflater.setInput(filtered, 0, filtered.length);
+            drain(false);
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+            rowsWritten++;
+        }
+    }
+
+    /**
+     * Appends one row of palette indices read from {@code indices} starting at {@code offset}.
+     */
+    public void writeIndexRow(byte[] indices, int offset) throws IOException {
+        if (channels != 1) {
+            throw new IllegalStateException("Not a palette PNG");
+        }
+        if (rowsWritten >= height) {
+            throw new IllegalStateException("Too many rows: " + (rowsWritten + 1) + " > " + height);
+        }
+        byte[] packed = candidates[PngFilter.NONE.type];
+        if (bitDepth == 8) {
+            System.arraycopy(indices, offset, packed, 1, width);
+        } else {
+            int perByte = 8 / bitDepth;
+            int packedLength = (width + perByte - 1) / perByte;
+            for (int i = 0; i < packedLength; i++) {
+                int value = 0;
+                for (int j = 0; j < perByte; j++) {
+                    int x = i * perByte + j;
+                    int index = x < width ? indices[offset + x] & 0xFF : 0;
+                    value = (value << bitDepth) | index;
+                }
+                packed[i + 1] = (byte) value;
+            }
+        }
+        deflater.setInput(packed, 0, 1 + (width * bitDepth + 7) / 8);
+        drain(false);
+        rowsWritten++;
+    }
+
+    /**
+     * Flushes the compressed stream and writes IEND. Does not close the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (rowsWritten != height) {
+            throw new IllegalStateException("Expected " + height + " rows but got " + rowsWritten);
+        }
+        deflater.finish();
+        drain(true);
+        writeChunk("IEND", new byte[0], 0);
+        output.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    private void drain(boolean finishing) throws IOException {
+        while (finishing ? !deflater.finished() : !deflater.needsInput()) {
+            pending += deflater.deflate(deflateBuffer, pending, deflateBuffer.length - pending);
+            if (pending == deflateBuffer.length) {
+                writeChunk("IDAT", deflateBuffer, pending);
+                pending = 0;
+            }
+        }
+        if (finishing && pending > 0) {
+            writeChunk("IDAT", deflateBuffer, pending);
+            pending = 0;
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        PngFormat.writeChunk(output, crc, type, data, 0, length);
+    }
+}
@@ -0,0 +1,465 @@
+package com.scriptshot.raster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a sampled QR code module grid (ISO/IEC 18004, model 2): format information, unmasking, codeword
+ * extraction, per-block Reed-Solomon correction and the numeric, alphanumeric, byte, kanji and ECI segments.
+ */
+final class QrDecoder {
+
+    static final int MIN_VERSION = 1;
+    static final int MAX_VERSION = 40;
+
+    private static final int FORMAT_MASK = 0x5412;
+    private static final int FORMAT_GENERATOR = 0x537;
+    private static final int MAX_FORMAT_ERRORS = 3;
+    private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    private static final int MODE_TERMINATOR = 0;
+    private static final int MODE_NUMERIC = 1;
+    private static final int MODE_ALPHANUMERIC = 2;
+    private static final int MODE_STRUCTURED_APPEND = 3;
+    private static final int MODE_BYTE = 4;
+    private static final int MODE_FNC1_FIRST = 5;
+    private static final int MODE_ECI = 7;
+    private static final int MODE_KANJI = 8;
+    private static final int MODE_FNC1_SECOND = 9;
+
+    // Indexed by error correction level (L, M, Q, H) and version.
+    private static final int[][] EC_CODEWORDS_PER_BLOCK = {
+        {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28, 28, 28, 30, 30, 26, 28,
+            30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26, 26, 28, 28, 28, 28, 28,
+            28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+        {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30, 28, 30, 30, 30, 30, 28,
+            30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28, 30, 24, 30, 30, 30, 30,
+            30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+    };
+    private static final int[][] EC_BLOCKS = {
+        {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8, 8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17,
+            18, 19, 19, 20, 21, 22, 24, 25},
+        {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16, 17, 17, 18, 20, 21, 23, 25, 26, 28, 29,
+            31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+        {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20, 23, 23, 25, 27, 29, 34, 34, 35, 38,
+            40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+        {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42, 45,
+            48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81},
+    };
+
+    private QrDecoder() {
+    }
+
+    static int dimension(int version) {
+        return 17 + 4 * version;
+    }
+
+    /**
+     * Decodes a {@code dimension x dimension} grid of modules, row-major with {@code true} for dark. Returns the
+     * payload, or {@code null} when the grid is not a readable QR code.
+     */
+    static String decode(boolean[] modules, int dimension) {
+        int version = (dimension - 17) / 4;
+        if (version < MIN_VERSION || version > MAX_VERSION || dimension(version) != dimension) {
+            return null;
+        }
+        int format = readFormat(modules, dimension);
+        if (format < 0) {
+            return null;
+        }
+        // Format bits store L, M, Q, H as 01, 00, 11, 10.
+        int level = (format >> 3) ^ 1;
+        int mask = format & 7;
+        boolean[] function = functionModules(version);
+        int[] codewords = readCodewords(modules, function, dimension, mask, rawCodewords(version));
+        byte[] data = correct(codewords, version, level);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return parse(data, version);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException malformed) {
+            return null;
+        }
+    }
+
+    /**
+     * The five format data bits (level and mask) from whichever copy is nearest a valid code word, or -1.
+     */
+    private static int readFormat(boolean[] modules, int dimension) {
+        int first = 0;
+        for (int x = 0; x <= 5; x++) {
+            first = first << 1 | bit(modules, dimension, x, 8);
+        }
+        first = first << 1 | bit(modules, dimension, 7, 8);
+        first = first << 1 | bit(modules, dimension, 8, 8);
+        first = first << 1 | bit(modules, dimension, 8, 7);
+        for (int y = 5; y >= 0; y--) {
+            first = first << 1 | bit(modules, dimension, 8, y);
+        }
+        int second = 0;
+        for (int y = dimension - 1; y >= dimension - 7; y--) {
+            second = second << 1 | bit(modules, dimension, 8, y);
+        }
+        for (int x = dimension - 8; x < dimension; x++) {
+            second = second << 1 | bit(modules, dimension, x, 8);
+        }
+        int best = -1;
+        int bestDistance = MAX_FORMAT_ERRORS + 1;
+        for (int data = 0; data < 32; data++) {
+            int code = formatCode(data);
+            int distance = Math.min(Integer.bitCount(code ^ first), Integer.bitCount(code ^ second));
+            if (distance < bestDistance) {
+                best = data;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    static int formatCode(int data) {
+        int remainder = data;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * FORMAT_GENERATOR);
+        }
+        return (data << 10 | remainder) ^ FORMAT_MASK;
+    }
+
+    private static int bit(boolean[] modules, int dimension, int x, int y) {
+        return modules[y * dimension + x] ? 1 : 0;
+    }
+
+    /**
+     * Marks finder patterns with their separators, timing patterns, alignment patterns and the format and version
+     * areas; everything else carries codewords.
+     */
+    static boolean[] functionModules(int version) {
+        int size = dimension(version);
+        boolean[] function = new boolean[size * size];
+        fill(function, size, 0, 0, 9, 9);
+        fill(function, size, size - 8, 0, 8, 9);
+        fill(function, size, 0, size - 8, 9, 8);
+        fill(function, size, 6, 0, 1, size);
+        fill(function, size, 0, 6, size, 1);
+        int[] centres = alignmentCentres(version);
+        for (int i = 0; i < centres.length; i++) {
+            for (int j = 0; j < centres.length; j++) {
+                boolean finderCorner = i == 0 && j == 0 || i == 0 && j == centres.length - 1
+                    || i == centres.length - 1 && j == 0;
+                if (!finderCorner) {
+                    fill(function, size, centres[i] - 2, centres[j] - 2, 5, 5);
+                }
+            }
+        }
+        if (version >= 7) {
+            fill(function, size, size - 11, 0, 3, 6);
+            fill(function, size, 0, size - 11, 6, 3);
+        }
+        return function;
+    }
+
+    private static void fill(boolean[] grid, int size, int left, int top, int width, int height) {
+        for (int y = top; y < top + height; y++) {
+            for (int x = left; x < left + width; x++) {
+                grid[y * size + x] = true;
+            }
+        }
+    }
+
+    static int[] alignmentCentres(int version) {
+        if (version == 1) {
+            return new int[0];
+        }
+        int count = version / 7 + 2;
+        int step = version == 32 ? 26 : (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+        int[] centres = new int[count];
+        centres[0] = 6;
+        for (int i = count - 1, position = version * 4 + 10; i >= 1; i--, position -= step) {
+            centres[i] = position;
+        }
+        return centres;
+    }
+
+    /**
+     * Codewords in the symbol, data and error correction together; remainder bits are not counted.
+     */
+    static int rawCodewords(int version) {
+        int modules = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int alignments = version / 7 + 2;
+            modules -= (25 * alignments - 10) * alignments - 55;
+            if (version >= 7) {
+                modules -= 36;
+            }
+        }
+        return modules / 8;
+    }
+
+    /**
+     * Reads codewords in the two-module-wide zigzag from the bottom right, skipping the vertical timing column and
+     * undoing the data mask on the way.
+     */
+    private static int[] readCodewords(boolean[] modules, boolean[] function, int size, int mask, int count) {
+        int[] codewords = new int[count];
+        int bitIndex = 0;
+        int total = count * 8;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5;
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vertical = 0; vertical < size; vertical++) {
+                int y = upward ? size - 1 - vertical : vertical;
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    int index = y * size + x;
+                    if (function[index] || bitIndex >= total) {
+                        continue;
+                    }
+                    boolean dark = modules[index] ^ masked(mask, x, y);
+                    if (dark) {
+                        codewords[bitIndex >> 3] |= 0x80 >> (bitIndex & 7);
+                    }
+                    bitIndex++;
+                }
+            }
+        }
+        return codewords;
+    }
+
+    private static boolean masked(int mask, int x, int y) {
+        switch (mask) {
+            case 0:
+                return (x + y) % 2 == 0;
+            case 1:
+                return y % 2 == 0;
+            case 2:
+                return x % 3 == 0;
+            case 3:
+                return (x + y) % 3 == 0;
+            case 4:
+                return (x / 3 + y / 2) % 2 == 0;
+            case 5:
+                return x * y % 2 + x * y % 3 == 0;
+            case 6:
+                return (x * y % 2 + x * y % 3) % 2 == 0;
+            default:
+                return ((x + y) % 2 + x * y % 3) % 2 == 0;
+        }
+    }
+
+    /**
+     * Splits the interleaved codewords into blocks, corrects each and concatenates the data parts. Blocks share
+     * one error correction length; the later ones hold one more data codeword when the total does not divide.
+     */
+    private static byte[] correct(int[] codewords, int version, int level) {
+        int blocks = EC_BLOCKS[level][version];
+        int ecLength = EC_CODEWORDS_PER_BLOCK[level][version];
+        int total = codewords.length;
+        int shortBlocks = blocks - total % blocks;
+        int shortData = total / blocks - ecLength;
+        int[][] split = new int[blocks][];
+        for (int block = 0; block < blocks; block++) {
+            split[block] = new int[shortData + (block < shortBlocks ? 0 : 1) + ecLength];
+        }
+        int index = 0;
+        for (int i = 0; i <= shortData; i++) {
+            for (int block = 0; block < blocks; block++) {
+                if (i < shortData || block >= shortBlocks) {
+                    split[block][i] = codewords[index++];
+                }
+            }
+        }
+        for (int i = 0; i < ecLength; i++) {
+            for (int block = 0; block < blocks; block++) {
+                split[block][split[block].length - ecLength + i] = codewords[index++];
+            }
+        }
+        byte[] data = new byte[total - blocks * ecLength];
+        int offset = 0;
+        for (int[] block : split) {
+            if (!ReedSolomon.correct(block, ecLength)) {
+                return null;
+            }
+            for (int i = 0; i < block.length - ecLength; i++) {
+                data[offset++] = (byte) block[i];
+            }
+        }
+        return data;
+    }
+
+    private static String parse(byte[] data, int version) {
+        BitReader reader = new BitReader(data);
+        StringBuilder text = new StringBuilder();
+        Charset charset = null;
+        int sizeClass = version <= 9 ? 0 : version <= 26 ? 1 : 2;
+        while (reader.available() >= 4) {
+            int mode = reader.read(4);
+            switch (mode) {
+                case MODE_TERMINATOR:
+                    return text.toString();
+                case MODE_NUMERIC:
+                    readNumeric(reader, reader.read(new int[]{10, 12, 14}[sizeClass]), text);
+                    break;
+                case MODE_ALPHANUMERIC:
+                    readAlphanumeric(reader, reader.read(new int[]{9, 11, 13}[sizeClass]), text);
+                    break;
+                case MODE_BYTE:
+                    readBytes(reader, reader.read(new int[]{8, 16, 16}[sizeClass]), charset, text);
+                    break;
+                case MODE_KANJI:
+                    readKanji(reader, reader.read(new int[]{8, 10, 12}[sizeClass]), text);
+                    break;
+                case MODE_ECI:
+                    charset = eciCharset(readEci(reader));
+                    break;
+                case MODE_STRUCTURED_APPEND:
+                    reader.read(16);
+                    break;
+                case MODE_FNC1_FIRST:
+                    break;
+                case MODE_FNC1_SECOND:
+                    reader.read(8);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown QR mode " + mode);
+            }
+        }
+        return text.toString();
+    }
+
+    private static void readNumeric(BitReader reader, int count, StringBuilder text) {
+        while (count >= 3) {
+            int value = reader.read(10);
+            if (value >= 1000) {
+                throw new IllegalArgumentException("Bad numeric triple");
+            }
+            text.append((char) ('0' + value / 100)).append((char) ('0' + value / 10 % 10))
+                .append((char) ('0' + value % 10));
+            count -= 3;
+        }
+        if (count == 2) {
+            int value = reader.read(7);
+            if (value >= 100) {
+                throw new IllegalArgumentException("Bad numeric pair");
+            }
+            text.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+        } else if (count == 1) {
+            int value = reader.read(4);
+            if (value >= 10) {
+                throw new IllegalArgumentException("Bad numeric digit");
+            }
+            text.append((char) ('0' + value));
+        }
+    }
+
+    private static void readAlphanumeric(BitReader reader, int count, StringBuilder text) {
+        while (count >= 2) {
+            int value = reader.read(11);
+            text.append(ALPHANUMERIC.charAt(value / 45)).append(ALPHANUMERIC.charAt(value % 45));
+            count -= 2;
+        }
+        if (count == 1) {
+            text.append(ALPHANUMERIC.charAt(reader.read(6)));
+        }
+    }
+
+    private static void readBytes(BitReader reader, int count, Charset charset, StringBuilder text) {
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) reader.read(8);
+        }
+        if (charset != null) {
+            text.append(new String(bytes, charset));
+            return;
+        }
+        // Without an ECI the encoding is unspecified; nearly every generator writes UTF-8.
+        try {
+            text.append(StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes)));
+        } catch (CharacterCodingException notUtf8) {
+            text.append(new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static void readKanji(BitReader reader, int count, StringBuilder text) {
+        byte[] bytes = new byte[count * 2];
+        for (int i = 0; i < count; i++) {
+            int value = reader.read(13);
+            int packed = (value / 0xC0) << 8 | value % 0xC0;
+            packed += packed < 0x1F00 ? 0x8140 : 0xC140;
+            bytes[i * 2] = (byte) (packed >> 8);
+            bytes[i * 2 + 1] = (byte) packed;
+        }
+        text.append(new String(bytes, Charset.forName("Shift_JIS")));
+    }
+
+    private static int readEci(BitReader reader) {
+        int first = reader.read(8);
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        if ((first & 0xC0) == 0x80) {
+            return (first & 0x3F) << 8 | reader.read(8);
+        }
+        return (first & 0x1F) << 16 | reader.read(16);
+    }
+
+    private static Charset eciCharset(int eci) {
+        switch (eci) {
+            case 0:
+            case 2:
+            case 20:
+                return Charset.forName("Shift_JIS");
+            case 1:
+            case 3:
+                return StandardCharsets.ISO_8859_1;
+            case 25:
+                return StandardCharsets.UTF_16BE;
+            case 26:
+                return StandardCharsets.UTF_8;
+            case 27:
+            case 170:
+                return StandardCharsets.US_ASCII;
+            case 28:
+                return Charset.forName("Big5");
+            case 29:
+                return Charset.forName("GB18030");
+            case 30:
+                return Charset.forName("EUC-KR");
+            default:
+                return null;
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] bytes;
+        private int position;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int available() {
+            return bytes.length * 8 - position;
+        }
+
+        int read(int count) {
+            if (count > available()) {
+                throw new IndexOutOfBoundsException("QR bit stream ended early");
+            }
+            int value = 0;
+            for (int i = 0; i < count; i++, position++) {
+                value = value << 1 | (bytes[position >> 3] >> (7 - (position & 7)) & 1);
+            }
+            return value;
+        }
+    }
+}
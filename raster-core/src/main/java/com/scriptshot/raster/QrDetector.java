@@ -0,0 +1,406 @@
+package com.scriptshot.raster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds QR codes in a {@link BinaryImage}. Every row is scanned for the 1:1:3:1:1 dark-light run ratio of a finder
+ * pattern; each hit is cross-checked along its column and again along its row, and hits on neighbouring rows are
+ * merged. Finders are then grouped into right-angled triples of similar module size, and each triple's grid is
+ * sampled on the affine frame the three centres span and handed to {@link QrDecoder}. Screen captures are not
+ * perspective-distorted, so the frame needs no alignment-pattern correction; the version estimated from the finder
+ * spacing is tried first and its neighbours after it.
+ */
+final class QrDetector {
+
+    private static final int MIN_ROWS_PER_TASK = 32;
+    /** Finders confirmed on fewer rows than this are noise; a 2px module already covers six rows. */
+    private static final int MIN_CONFIRMATIONS = 2;
+    private static final int MAX_FINDERS = 24;
+    private static final float MAX_MODULE_RATIO = 1.5f;
+    private static final float MAX_LEG_DIFFERENCE = 0.15f;
+    private static final float MAX_HYPOTENUSE_ERROR = 0.1f;
+
+    private QrDetector() {
+    }
+
+    static final class Finder {
+        final float x;
+        final float y;
+        final float moduleSize;
+        final int count;
+
+        Finder(float x, float y, float moduleSize, int count) {
+            this.x = x;
+            this.y = y;
+            this.moduleSize = moduleSize;
+            this.count = count;
+        }
+
+        boolean near(Finder other) {
+            float tolerance = Math.max(moduleSize, other.moduleSize);
+            return Math.abs(x - other.x) <= tolerance && Math.abs(y - other.y) <= tolerance
+                && Math.abs(moduleSize - other.moduleSize) <= Math.max(1f, tolerance * 0.5f);
+        }
+
+        Finder merge(Finder other) {
+            int total = count + other.count;
+            return new Finder((x * count + other.x * other.count) / total, (y * count + other.y * other.count) / total,
+                (moduleSize * count + other.moduleSize * other.count) / total, total);
+        }
+    }
+
+    /** Three finders ordered as the code's top-left, top-right and bottom-left corners. */
+    private static final class Triple {
+        final Finder topLeft;
+        final Finder topRight;
+        final Finder bottomLeft;
+        final float error;
+
+        Triple(Finder topLeft, Finder topRight, Finder bottomLeft, float error) {
+            this.topLeft = topLeft;
+            this.topRight = topRight;
+            this.bottomLeft = bottomLeft;
+            this.error = error;
+        }
+
+        boolean uses(Finder finder) {
+            return topLeft == finder || topRight == finder || bottomLeft == finder;
+        }
+    }
+
+    static List<CodeScanner.Result> detect(BinaryImage image) {
+        List<Finder> finders = findFinders(image);
+        List<Triple> triples = triples(finders);
+        List<CodeScanner.Result> results = new ArrayList<>();
+        List<Finder> used = new ArrayList<>();
+        for (Triple triple : triples) {
+            boolean taken = false;
+            for (Finder finder : used) {
+                taken |= triple.uses(finder);
+            }
+            if (taken) {
+                continue;
+            }
+            CodeScanner.Result result = decode(image, triple);
+            if (result != null) {
+                results.add(result);
+                used.add(triple.topLeft);
+                used.add(triple.topRight);
+                used.add(triple.bottomLeft);
+            }
+        }
+        return results;
+    }
+
+    static List<Finder> findFinders(BinaryImage image) {
+        List<Finder> hits = Collections.synchronizedList(new ArrayList<>());
+        ImagingPool.forEachRange(image.height, MIN_ROWS_PER_TASK, (start, end) -> {
+            List<Finder> local = new ArrayList<>();
+            int[] runs = new int[image.width + 1];
+            for (int y = start; y < end; y++) {
+                scanRow(image, y, runs, local);
+            }
+            hits.addAll(local);
+        });
+        List<Finder> merged = new ArrayList<>();
+        for (Finder hit : hits) {
+            boolean absorbed = false;
+            for (int i = 0; i < merged.size(); i++) {
+                if (merged.get(i).near(hit)) {
+                    merged.set(i, merged.get(i).merge(hit));
+                    absorbed = true;
+                    break;
+                }
+            }
+            if (!absorbed) {
+                merged.add(hit);
+            }
+        }
+        List<Finder> confirmed = new ArrayList<>();
+        for (Finder finder : merged) {
+            if (finder.count >= MIN_CONFIRMATIONS) {
+                confirmed.add(finder);
+            }
+        }
+        confirmed.sort((first, second) -> Integer.compare(second.count, first.count));
+        return confirmed.size() > MAX_FINDERS ? new ArrayList<>(confirmed.subList(0, MAX_FINDERS)) : confirmed;
+    }
+
+    private static void scanRow(BinaryImage image, int y, int[] runs, List<Finder> out) {
+        int width = image.width;
+        int count = 0;
+        int offset = y * width;
+        boolean firstDark = image.bits[offset] != 0;
+        int length = 1;
+        for (int x = 1; x < width; x++) {
+            if (image.bits[offset + x] == image.bits[offset + x - 1]) {
+                length++;
+            } else {
+                runs[count++] = length;
+                length = 1;
+            }
+        }
+        runs[count++] = length;
+        int position = 0;
+        for (int i = 0; i + 4 < count; i++) {
+            boolean dark = firstDark == ((i & 1) == 0);
+            if (dark && ratioMatches(runs[i], runs[i + 1], runs[i + 2], runs[i + 3], runs[i + 4])) {
+                int total = runs[i] + runs[i + 1] + runs[i + 2] + runs[i + 3] + runs[i + 4];
+                float centerX = position + runs[i] + runs[i + 1] + runs[i + 2] / 2f;
+                Finder finder = confirm(image, centerX, y, runs[i + 2], total);
+                if (finder != null) {
+                    out.add(finder);
+                }
+            }
+            position += runs[i];
+        }
+    }
+
+    private static boolean ratioMatches(int outerLeft, int innerLeft, int centre, int innerRight, int outerRight) {
+        int total = outerLeft + innerLeft + centre + innerRight + outerRight;
+        if (total < 7) {
+            return false;
+        }
+        float module = total / 7f;
+        float tolerance = module / 2f;
+        return Math.abs(module - outerLeft) < tolerance && Math.abs(module - innerLeft) < tolerance
+            && Math.abs(3f * module - centre) < 3f * tolerance
+            && Math.abs(module - innerRight) < tolerance && Math.abs(module - outerRight) < tolerance;
+    }
+
+    /**
+     * Re-measures a row hit down its column and then across the refined row, returning the refined centre or
+     * {@code null} when either cross-section is not a finder pattern of about the same size.
+     */
+    private static Finder confirm(BinaryImage image, float centerX, int y, int centreRun, int rowTotal) {
+        int[] vertical = new int[5];
+        float centerY = crossCheck(image, (int) centerX, y, 0, 1, centreRun * 2, vertical);
+        if (Float.isNaN(centerY) || !similar(sum(vertical), rowTotal)) {
+            return null;
+        }
+        int[] horizontal = new int[5];
+        float refinedX = crossCheck(image, (int) centerX, (int) centerY, 1, 0, centreRun * 2, horizontal);
+        if (Float.isNaN(refinedX) || !similar(sum(horizontal), rowTotal)) {
+            return null;
+        }
+        return new Finder(refinedX, centerY, (sum(vertical) + sum(horizontal)) / 14f, 1);
+    }
+
+    private static boolean similar(int total, int expected) {
+        return 5 * Math.abs(total - expected) < 2 * expected;
+    }
+
+    private static int sum(int[] runs) {
+        return runs[0] + runs[1] + runs[2] + runs[3] + runs[4];
+    }
+
+    /**
+     * Counts the five runs through {@code (x, y)} along {@code (dx, dy)}, starting inside the dark centre, and
+     * returns the centre's coordinate along that axis, or NaN.
+     */
+    private static float crossCheck(BinaryImage image, int x, int y, int dx, int dy, int maxRun, int[] runs) {
+        if (x < 0 || y < 0 || x >= image.width || y >= image.height || !image.isDark(x, y)) {
+            return Float.NaN;
+        }
+        int step = 0;
+        while (inside(image, x - step * dx, y - step * dy) && image.isDark(x - step * dx, y - step * dy)) {
+            runs[2]++;
+            step++;
+        }
+        step = countRun(image, x, y, -dx, -dy, step, false, maxRun, runs, 1);
+        if (step < 0) {
+            return Float.NaN;
+        }
+        step = countRun(image, x, y, -dx, -dy, step, true, maxRun, runs, 0);
+        if (step < 0) {
+            return Float.NaN;
+        }
+        step = 1;
+        while (inside(image, x + step * dx, y + step * dy) && image.isDark(x + step * dx, y + step * dy)) {
+            runs[2]++;
+            step++;
+        }
+        step = countRun(image, x, y, dx, dy, step, false, maxRun, runs, 3);
+        if (step < 0) {
+            return Float.NaN;
+        }
+        step = countRun(image, x, y, dx, dy, step, true, maxRun, runs, 4);
+        if (step < 0 || !ratioMatches(runs[0], runs[1], runs[2], runs[3], runs[4])) {
+            return Float.NaN;
+        }
+        int end = (dx != 0 ? x : y) + step;
+        return end - runs[4] - runs[3] - runs[2] / 2f;
+    }
+
+    /**
+     * Extends run {@code slot} from {@code step} while pixels match {@code dark}; returns the next step, or -1
+     * when the run is empty or longer than {@code maxRun}.
+     */
+    private static int countRun(BinaryImage image, int x, int y, int dx, int dy, int step, boolean dark, int maxRun,
+                                int[] runs, int slot) {
+        while (inside(image, x + step * dx, y + step * dy) && image.isDark(x + step * dx, y + step * dy) == dark) {
+            runs[slot]++;
+            step++;
+            if (runs[slot] > maxRun) {
+                return -1;
+            }
+        }
+        return runs[slot] == 0 ? -1 : step;
+    }
+
+    private static boolean inside(BinaryImage image, int x, int y) {
+        return x >= 0 && y >= 0 && x < image.width && y < image.height;
+    }
+
+    /**
+     * Every right-angled, roughly isosceles triple of finders with similar module sizes, best fitting first.
+     */
+    private static List<Triple> triples(List<Finder> finders) {
+        List<Triple> triples = new ArrayList<>();
+        int count = finders.size();
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                for (int k = j + 1; k < count; k++) {
+                    Triple triple = triple(finders.get(i), finders.get(j), finders.get(k));
+                    if (triple != null) {
+                        triples.add(triple);
+                    }
+                }
+            }
+        }
+        triples.sort((first, second) -> Float.compare(first.error, second.error));
+        return triples;
+    }
+
+    private static Triple triple(Finder a, Finder b, Finder c) {
+        float smallest = Math.min(a.moduleSize, Math.min(b.moduleSize, c.moduleSize));
+        float largest = Math.max(a.moduleSize, Math.max(b.moduleSize, c.moduleSize));
+        if (largest > smallest * MAX_MODULE_RATIO) {
+            return null;
+        }
+        float ab = distance(a, b);
+        float bc = distance(b, c);
+        float ca = distance(c, a);
+        // The corner finder sits opposite the longest side.
+        Finder corner;
+        Finder first;
+        Finder second;
+        float hypotenuse;
+        if (bc >= ab && bc >= ca) {
+            corner = a;
+            first = b;
+            second = c;
+            hypotenuse = bc;
+        } else if (ca >= ab) {
+            corner = b;
+            first = c;
+            second = a;
+            hypotenuse = ca;
+        } else {
+            corner = c;
+            first = a;
+            second = b;
+            hypotenuse = ab;
+        }
+        float legA = distance(corner, first);
+        float legB = distance(corner, second);
+        float legError = Math.abs(legA - legB) / Math.max(legA, legB);
+        float expected = (float) Math.sqrt(legA * legA + legB * legB);
+        float hypotenuseError = Math.abs(hypotenuse - expected) / expected;
+        float module = (a.moduleSize + b.moduleSize + c.moduleSize) / 3f;
+        float legModules = (legA + legB) / 2f / module;
+        if (legError > MAX_LEG_DIFFERENCE || hypotenuseError > MAX_HYPOTENUSE_ERROR
+            || legModules < dimensionSpan(QrDecoder.MIN_VERSION) * 0.75f
+            || legModules > dimensionSpan(QrDecoder.MAX_VERSION) * 1.25f) {
+            return null;
+        }
+        // In image coordinates (y down) the top-right corner lies clockwise of the bottom-left one.
+        float cross = (second.x - corner.x) * (first.y - corner.y) - (second.y - corner.y) * (first.x - corner.x);
+        Finder topRight = cross >= 0 ? second : first;
+        Finder bottomLeft = cross >= 0 ? first : second;
+        return new Triple(corner, topRight, bottomLeft, legError + hypotenuseError);
+    }
+
+    /** Modules between the top-left and top-right finder centres. */
+    private static int dimensionSpan(int version) {
+        return QrDecoder.dimension(version) - 7;
+    }
+
+    private static float distance(Finder a, Finder b) {
+        float dx = a.x - b.x;
+        float dy = a.y - b.y;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static CodeScanner.Result decode(BinaryImage image, Triple triple) {
+        float module = (triple.topLeft.moduleSize + triple.topRight.moduleSize + triple.bottomLeft.moduleSize) / 3f;
+        float span = (distance(triple.topLeft, triple.topRight) + distance(triple.topLeft, triple.bottomLeft)) / 2f;
+        int estimate = Math.round((span / module + 7f - 17f) / 4f);
+        int[] versions = {estimate, estimate - 1, estimate + 1, estimate - 2, estimate + 2};
+        for (int version : versions) {
+            if (version < QrDecoder.MIN_VERSION || version > QrDecoder.MAX_VERSION) {
+                continue;
+            }
+            int dimension = QrDecoder.dimension(version);
+            boolean[] modules = sample(image, triple, dimension);
+            if (modules == null) {
+                continue;
+            }
+            String text = QrDecoder.decode(modules, dimension);
+            if (text != null) {
+                return new CodeScanner.Result(CodeScanner.QR_CODE, text, bounds(image, triple, dimension));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Samples the centre of every module on the frame spanned by the finder centres, which sit 3.5 modules in from
+     * their corners. Returns {@code null} when part of the grid falls outside the image.
+     */
+    private static boolean[] sample(BinaryImage image, Triple triple, int dimension) {
+        float span = dimension - 7;
+        float ux = (triple.topRight.x - triple.topLeft.x) / span;
+        float uy = (triple.topRight.y - triple.topLeft.y) / span;
+        float vx = (triple.bottomLeft.x - triple.topLeft.x) / span;
+        float vy = (triple.bottomLeft.y - triple.topLeft.y) / span;
+        boolean[] modules = new boolean[dimension * dimension];
+        for (int row = 0; row < dimension; row++) {
+            float rowOffset = row - 3f;
+            for (int column = 0; column < dimension; column++) {
+                float columnOffset = column - 3f;
+                int x = (int) Math.floor(triple.topLeft.x + columnOffset * ux + rowOffset * vx);
+                int y = (int) Math.floor(triple.topLeft.y + columnOffset * uy + rowOffset * vy);
+                if (!inside(image, x, y)) {
+                    return null;
+                }
+                modules[row * dimension + column] = image.isDark(x, y);
+            }
+        }
+        return modules;
+    }
+
+    private static IntRect bounds(BinaryImage image, Triple triple, int dimension) {
+        float span = dimension - 7;
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int corner = 0; corner < 4; corner++) {
+            float column = (corner & 1) == 0 ? -3.5f : dimension - 3.5f;
+            float row = (corner & 2) == 0 ? -3.5f : dimension - 3.5f;
+            float x = triple.topLeft.x + (column * (triple.topRight.x - triple.topLeft.x)
+                + row * (triple.bottomLeft.x - triple.topLeft.x)) / span;
+            float y = triple.topLeft.y + (column * (triple.topRight.y - triple.topLeft.y)
+                + row * (triple.bottomLeft.y - triple.topLeft.y)) / span;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        return IntRect.clamped((int) Math.floor(minX), (int) Math.floor(minY), (int) Math.ceil(maxX),
+            (int) Math.ceil(maxY), image.width, image.height);
+    }
+}
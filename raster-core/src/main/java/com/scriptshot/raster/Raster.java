@@ -0,0 +1,90 @@
+package com.scriptshot.raster;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Non-premultiplied ARGB image stored row-major in an {@code int[]} whose stride equals the width, matching the
+ * layout of {@code Bitmap.getPixels}/{@code setPixels} so pixels move across in one bulk copy.
+ */
+public final class Raster implements BandReader {
+
+    public final int width;
+    public final int height;
+    public final int[] pixels;
+
+    public Raster(int width, int height) {
+        this(width, height, new int[checkedArea(width, height)]);
+    }
+
+    public Raster(int width, int height, int[] pixels) {
+        if (pixels.length < checkedArea(width, height)) {
+            throw new IllegalArgumentException("Pixel array too small for " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Returns a buffer view over the backing array; writes through it are visible in {@link #pixels}.
+     */
+    public IntBuffer buffer() {
+        return IntBuffer.wrap(pixels, 0, width * height);
+    }
+
+    public int get(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public void set(int x, int y, int argb) {
+        pixels[y * width + x] = argb;
+    }
+
+    public void fill(int argb) {
+        Arrays.fill(pixels, 0, width * height, argb);
+    }
+
+    /**
+     * Copies the part of this raster covered by {@code rect}, which must lie inside it.
+     */
+    public Raster crop(IntRect rect) {
+        if (rect.left < 0 || rect.top < 0 || rect.right > width || rect.bottom > height || rect.isEmpty()) {
+            throw new IllegalArgumentException("Crop " + rect + " outside " + width + "x" + height);
+        }
+        Raster out = new Raster(rect.width(), rect.height());
+        for (int y = 0; y < out.height; y++) {
+            System.arraycopy(pixels, (rect.top + y) * width + rect.left, out.pixels, y * out.width, out.width);
+        }
+        return out;
+    }
+
+    /**
+     * Overwrites pixels with {@code source} placed at {@code (left, top)}; parts falling outside are dropped.
+     */
+    public void paste(Raster source, int left, int top) {
+        int startX = Math.max(0, left);
+        int startY = Math.max(0, top);
+        int endX = Math.min(width, left + source.width);
+        int endY = Math.min(height, top + source.height);
+        if (endX <= startX) {
+            return;
+        }
+        for (int y = startY; y < endY; y++) {
+            System.arraycopy(source.pixels, (y - top) * source.width + (startX - left),
+                pixels, y * width + startX, endX - startX);
+        }
+    }
+
+    @Override
+    public void read(int top, int rows, int[] out) {
+        System.arraycopy(pixels, top * width, out, 0, rows * width);
+    }
+
+    private static int checkedArea(int width, int height) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid raster " + width + "x" + height);
+        }
+        return width * height;
+    }
+}
@@ -0,0 +1,38 @@
+package com.scriptshot.raster;
+
+/**
+ * Channel statistics over a {@link Raster}.
+ */
+public final class RasterStats {
+
+    private RasterStats() {
+    }
+
+    /**
+     * Mean colour of {@code rect} as opaque ARGB, each channel truncated toward zero. Alpha is ignored. Returns
+     * opaque black for an empty rectangle.
+     */
+    public static int average(Raster raster, IntRect rect) {
+        long totalR = 0;
+        long totalG = 0;
+        long totalB = 0;
+        for (int y = rect.top; y < rect.bottom; y++) {
+            int row = y * raster.width;
+            for (int x = rect.left; x < rect.right; x++) {
+                int pixel = raster.pixels[row + x];
+                totalR += (pixel >> 16) & 0xFF;
+                totalG += (pixel >> 8) & 0xFF;
+                totalB += pixel & 0xFF;
+            }
+        }
+        long count = rect.isEmpty() ? 0 : (long) rect.width() * rect.height();
+        if (count == 0) {
+            return 0xFF000000;
+        }
+        return 0xFF000000 | (int) (totalR / count) << 16 | (int) (totalG / count) << 8 | (int) (totalB / count);
+    }
+
+    public static int average(Raster raster) {
+        return average(raster, new IntRect(0, 0, raster.width, raster.height));
+    }
+}
@@ -0,0 +1,196 @@
+package com.scriptshot.raster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a batch of rectangle redactions to one raster. Rectangles with the same mode and parameters are merged
+ * while any two of them overlap (their union bounds replace both), so every pixel is processed at most once per
+ * group and the merged regions are disjoint, which lets each group run its regions in parallel. Groups run in the
+ * order their first rectangle was given, so later groups paint over earlier ones.
+ */
+public final class Redaction {
+
+    public enum Mode {
+        BLUR,
+        FILL,
+        PIXELATE
+    }
+
+    public static final class Area {
+        public final IntRect rect;
+        public final Mode mode;
+        /** Blur radius or pixelate block size; unused for fill. */
+        public final int amount;
+        /** ARGB fill colour; unused otherwise. */
+        public final int color;
+
+        public Area(IntRect rect, Mode mode, int amount, int color) {
+            this.rect = rect;
+            this.mode = mode;
+            this.amount = mode == Mode.FILL ? 0 : Math.max(1, amount);
+            this.color = mode == Mode.FILL ? color : 0;
+        }
+
+        Area withRect(IntRect other) {
+            return new Area(other, mode, amount, color);
+        }
+
+        String groupKey() {
+            return mode + ":" + amount + ":" + color;
+        }
+    }
+
+    private Redaction() {
+    }
+
+    /**
+     * Clamps every area to the raster, drops empty ones, merges each group and applies it. Returns the number of
+     * regions processed after merging.
+     */
+    public static int apply(Raster raster, List<Area> areas) {
+        Map<String, List<IntRect>> groups = new LinkedHashMap<>();
+        Map<String, Area> templates = new LinkedHashMap<>();
+        for (Area area : areas) {
+            IntRect rect = IntRect.clamped(area.rect.left, area.rect.top, area.rect.right, area.rect.bottom,
+                raster.width, raster.height);
+            if (rect.isEmpty()) {
+                continue;
+            }
+            String key = area.groupKey();
+            List<IntRect> rects = groups.get(key);
+            if (rects == null) {
+                rects = new ArrayList<>();
+                groups.put(key, rects);
+                templates.put(key, area);
+            }
+            rects.add(rect);
+        }
+        int processed = 0;
+        for (Map.Entry<String, List<IntRect>> group : groups.entrySet()) {
+            Area template = templates.get(group.getKey());
+            List<IntRect> merged = merge(group.getValue());
+            ImagingPool.forEachRange(merged.size(), 1, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    applyOne(raster, template.withRect(merged.get(i)));
+                }
+            });
+            processed += merged.size();
+        }
+        return processed;
+    }
+
+    /**
+     * Replaces overlapping rectangles by their union bounds until no two overlap. Touching edges do not count.
+     */
+    public static List<IntRect> merge(List<IntRect> rects) {
+        List<IntRect> result = new ArrayList<>(rects);
+        boolean changed = true;
+        while (changed && result.size() > 1) {
+            changed = false;
+            outer:
+            for (int i = 0; i < result.size(); i++) {
+                for (int j = i + 1; j < result.size(); j++) {
+                    IntRect first = result.get(i);
+                    IntRect second = result.get(j);
+                    if (first.intersects(second)) {
+                        result.set(i, first.union(second));
+                        result.remove(j);
+                        changed = true;
+                        break outer;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void applyOne(Raster raster, Area area) {
+        IntRect rect = area.rect;
+        switch (area.mode) {
+            case FILL:
+                fill(raster, rect, area.color);
+                break;
+            case PIXELATE:
+                pixelate(raster, rect, area.amount);
+                break;
+            case BLUR:
+            default:
+                Raster region = raster.crop(rect);
+                BoxBlur.apply(region, area.amount);
+                raster.paste(region, rect.left, rect.top);
+                break;
+        }
+    }
+
+    /**
+     * Source-over fill, matching a Canvas rectangle draw for translucent colours.
+     */
+    static void fill(Raster raster, IntRect rect, int color) {
+        int alpha = color >>> 24;
+        for (int y = rect.top; y < rect.bottom; y++) {
+            int row = y * raster.width;
+            if (alpha == 0xFF) {
+                Arrays.fill(raster.pixels, row + rect.left, row + rect.right, color);
+                continue;
+            }
+            for (int x = rect.left; x < rect.right; x++) {
+                raster.pixels[row + x] = blend(raster.pixels[row + x], color, alpha);
+            }
+        }
+    }
+
+    /**
+     * Replaces each {@code block x block} cell (clipped to the rectangle) by its mean colour.
+     */
+    static void pixelate(Raster raster, IntRect rect, int block) {
+        int[] pixels = raster.pixels;
+        int width = raster.width;
+        for (int cellTop = rect.top; cellTop < rect.bottom; cellTop += block) {
+            int cellBottom = Math.min(rect.bottom, cellTop + block);
+            for (int cellLeft = rect.left; cellLeft < rect.right; cellLeft += block) {
+                int cellRight = Math.min(rect.right, cellLeft + block);
+                long sumA = 0;
+                long sumR = 0;
+                long sumG = 0;
+                long sumB = 0;
+                for (int y = cellTop; y < cellBottom; y++) {
+                    for (int i = y * width + cellLeft, end = y * width + cellRight; i < end; i++) {
+                        int pixel = pixels[i];
+                        sumA += pixel >>> 24;
+                        sumR += (pixel >> 16) & 0xFF;
+                        sumG += (pixel >> 8) & 0xFF;
+                        sumB += pixel & 0xFF;
+                    }
+                }
+                long count = (long) (cellBottom - cellTop) * (cellRight - cellLeft);
+                int mean = (int) (sumA / count) << 24 | (int) (sumR / count) << 16
+                    | (int) (sumG / count) << 8 | (int) (sumB / count);
+                for (int y = cellTop; y < cellBottom; y++) {
+                    Arrays.fill(pixels, y * width + cellLeft, y * width + cellRight, mean);
+                }
+            }
+        }
+    }
+
+    static int blend(int destination, int source, int alpha) {
+        int inverse = 255 - alpha;
+        int destinationAlpha = destination >>> 24;
+        int outAlpha = alpha + destinationAlpha * inverse / 255;
+        if (outAlpha == 0) {
+            return 0;
+        }
+        int r = channel(source >> 16, destination >> 16, alpha, destinationAlpha, inverse, outAlpha);
+        int g = channel(source >> 8, destination >> 8, alpha, destinationAlpha, inverse, outAlpha);
+        int b = channel(source, destination, alpha, destinationAlpha, inverse, outAlpha);
+        return outAlpha << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int channel(int source, int destination, int alpha, int destinationAlpha, int inverse, int outAlpha) {
+        int premultiplied = (source & 0xFF) * alpha + (destination & 0xFF) * destinationAlpha * inverse / 255;
+        return Math.min(255, (premultiplied + outAlpha / 2) / outAlpha);
+    }
+}
@@ -0,0 +1,157 @@
+package com.scriptshot.raster;
+
+/**
+ * Reed-Solomon error correction over GF(256) with the QR code field polynomial (x^8 + x^4 + x^3 + x^2 + 1) and
+ * generator roots starting at alpha^0: syndromes, Berlekamp-Massey for the error locator, a Chien search for the
+ * positions and Forney's formula for the values.
+ */
+final class ReedSolomon {
+
+    private static final int FIELD_POLYNOMIAL = 0x11D;
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+
+    static {
+        int value = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = value;
+            LOG[value] = i;
+            value <<= 1;
+            if (value >= 256) {
+                value ^= FIELD_POLYNOMIAL;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+    }
+
+    private ReedSolomon() {
+    }
+
+    /**
+     * Corrects {@code block} (data codewords followed by {@code ecCount} check codewords, first codeword as the
+     * highest power) in place. Returns false when it holds more errors than the check codewords can repair.
+     */
+    static boolean correct(int[] block, int ecCount) {
+        int length = block.length;
+        int[] syndromes = new int[ecCount];
+        boolean clean = true;
+        for (int i = 0; i < ecCount; i++) {
+            int sum = 0;
+            for (int codeword : block) {
+                sum = multiply(sum, EXP[i]) ^ codeword;
+            }
+            syndromes[i] = sum;
+            clean &= sum == 0;
+        }
+        if (clean) {
+            return true;
+        }
+        int[] locator = errorLocator(syndromes);
+        int errors = degree(locator);
+        if (errors == 0 || errors * 2 > ecCount) {
+            return false;
+        }
+        // Omega(x) = S(x) * Lambda(x) mod x^ecCount
+        int[] evaluator = new int[ecCount];
+        for (int i = 0; i < ecCount; i++) {
+            int sum = 0;
+            for (int j = 0; j <= Math.min(i, errors); j++) {
+                sum ^= multiply(locator[j], syndromes[i - j]);
+            }
+            evaluator[i] = sum;
+        }
+        int found = 0;
+        for (int position = 0; position < length; position++) {
+            int power = length - 1 - position;
+            int inverse = EXP[(255 - power) % 255];
+            if (evaluate(locator, inverse) != 0) {
+                continue;
+            }
+            int derivative = 0;
+            for (int i = 1; i <= errors; i += 2) {
+                derivative ^= multiply(locator[i], pow(inverse, i - 1));
+            }
+            if (derivative == 0) {
+                return false;
+            }
+            int magnitude = multiply(EXP[power], divide(evaluate(evaluator, inverse), derivative));
+            block[position] ^= magnitude;
+            found++;
+        }
+        return found == errors;
+    }
+
+    /**
+     * Berlekamp-Massey: the shortest connection polynomial generating the syndromes, lowest power first.
+     */
+    private static int[] errorLocator(int[] syndromes) {
+        int size = syndromes.length + 1;
+        int[] current = new int[size];
+        int[] previous = new int[size];
+        current[0] = 1;
+        previous[0] = 1;
+        int length = 0;
+        int shift = 1;
+        int previousDiscrepancy = 1;
+        for (int n = 0; n < syndromes.length; n++) {
+            int discrepancy = syndromes[n];
+            for (int i = 1; i <= length; i++) {
+                discrepancy ^= multiply(current[i], syndromes[n - i]);
+            }
+            if (discrepancy == 0) {
+                shift++;
+                continue;
+            }
+            int factor = divide(discrepancy, previousDiscrepancy);
+            if (2 * length <= n) {
+                int[] saved = current.clone();
+                subtractShifted(current, previous, factor, shift);
+                length = n + 1 - length;
+                previous = saved;
+                previousDiscrepancy = discrepancy;
+                shift = 1;
+            } else {
+                subtractShifted(current, previous, factor, shift);
+                shift++;
+            }
+        }
+        return degree(current) == length ? current : new int[]{1};
+    }
+
+    private static void subtractShifted(int[] target, int[] source, int factor, int shift) {
+        for (int i = 0; i + shift < target.length; i++) {
+            target[i + shift] ^= multiply(factor, source[i]);
+        }
+    }
+
+    private static int degree(int[] polynomial) {
+        for (int i = polynomial.length - 1; i > 0; i--) {
+            if (polynomial[i] != 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static int evaluate(int[] polynomial, int x) {
+        int result = 0;
+        for (int i = polynomial.length - 1; i >= 0; i--) {
+            result = multiply(result, x) ^ polynomial[i];
+        }
+        return result;
+    }
+
+    private static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    private static int divide(int a, int b) {
+        return a == 0 ? 0 : EXP[LOG[a] + 255 - LOG[b]];
+    }
+
+    private static int pow(int a, int exponent) {
+        return exponent == 0 ? 1 : a == 0 ? 0 : EXP[(LOG[a] * exponent) % 255];
+    }
+}
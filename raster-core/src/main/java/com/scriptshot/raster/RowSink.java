@@ -0,0 +1,14 @@
+package com.scriptshot.raster;
+
+import java.io.IOException;
+
+/**
+ * Consumer of ARGB rows in top-to-bottom order, such as a streaming encoder.
+ */
+public interface RowSink {
+
+    /**
+     * Consumes {@code rows} rows of the sink's width starting at {@code pixels[offset]}, {@code stride} ints apart.
+     */
+    void writeRows(int[] pixels, int offset, int stride, int rows) throws IOException;
+}
@@ -0,0 +1,217 @@
+package com.scriptshot.raster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans a vertical stitch of scrolling captures from per-row hashes alone. Rows shared by every frame at the top and
+ * bottom are treated as fixed header and footer bands; the scroll offset between neighbours is found by rolling-hash
+ * search for a distinctive window of the next frame inside the previous one, then verified row by row.
+ */
+public final class ScrollStitcher {
+
+    /** Rows {@code [top, bottom)} of frame {@code frame} are copied to the output in list order. */
+    public static final class Segment {
+        public final int frame;
+        public final int top;
+        public final int bottom;
+
+        Segment(int frame, int top, int bottom) {
+            this.frame = frame;
+            this.top = top;
+            this.bottom = bottom;
+        }
+
+        public int rows() {
+            return bottom - top;
+        }
+    }
+
+    public static final class Plan {
+        public final int header;
+        public final int footer;
+        public final List<Segment> segments;
+        public final int outputHeight;
+
+        Plan(int header, int footer, List<Segment> segments) {
+            this.header = header;
+            this.footer = footer;
+            this.segments = segments;
+            int total = 0;
+            for (Segment segment : segments) {
+                total += segment.rows();
+            }
+            this.outputHeight = total;
+        }
+    }
+
+    private static final double MAX_FIXED_FRACTION = 0.4d;
+    private static final double MIN_MATCH_RATIO = 0.9d;
+    private static final int MIN_WINDOW = 8;
+    private static final int MAX_WINDOW = 64;
+    private static final int MAX_NEEDLES = 8;
+    private static final long ROLLING_BASE = 0x100000001b3L;
+    /** Right-hand columns excluded from row hashes, where scroll indicators are drawn. */
+    private static final int IGNORED_RIGHT_DIVISOR = 32;
+
+    private ScrollStitcher() {
+    }
+
+    public static int hashedWidth(int width) {
+        return Math.max(1, width - width / IGNORED_RIGHT_DIVISOR);
+    }
+
+    /**
+     * Hashes {@code rows} rows of ARGB pixels into {@code out} starting at {@code outOffset}.
+     */
+    public static void hashRows(int[] pixels, int width, int rows, long[] out, int outOffset) {
+        int hashed = hashedWidth(width);
+        for (int row = 0; row < rows; row++) {
+            long hash = 0xcbf29ce484222325L;
+            int base = row * width;
+            for (int x = 0; x < hashed; x++) {
+                hash = (hash ^ (pixels[base + x] & 0xFFFFFF)) * 0x100000001b3L;
+            }
+            out[outOffset + row] = hash ^ (hash >>> 31);
+        }
+    }
+
+    public static Plan plan(List<long[]> frames) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("No frames to stitch");
+        }
+        int height = frames.get(0).length;
+        for (long[] frame : frames) {
+            if (frame.length != height) {
+                throw new IllegalArgumentException("All frames must have the same height");
+            }
+        }
+        List<Segment> segments = new ArrayList<>();
+        if (frames.size() == 1) {
+            segments.add(new Segment(0, 0, height));
+            return new Plan(0, 0, segments);
+        }
+        int limit = (int) (height * MAX_FIXED_FRACTION);
+        int header = fixedRows(frames, limit, true);
+        int footer = fixedRows(frames, limit, false);
+        int bodyEnd = height - footer;
+        segments.add(new Segment(0, 0, bodyEnd));
+        for (int i = 1; i < frames.size(); i++) {
+            int scroll = scrollOffset(frames.get(i - 1), frames.get(i), header, bodyEnd);
+            if (scroll > 0) {
+                segments.add(new Segment(i, bodyEnd - scroll, bodyEnd));
+            }
+        }
+        if (footer > 0) {
+            segments.add(new Segment(frames.size() - 1, bodyEnd, height));
+        }
+        return new Plan(header, footer, segments);
+    }
+
+    private static int fixedRows(List<long[]> frames, int limit, boolean fromTop) {
+        long[] first = frames.get(0);
+        int height = first.length;
+        int count = 0;
+        while (count < limit) {
+            int row = fromTop ? count : height - 1 - count;
+            long value = first[row];
+            for (int i = 1; i < frames.size(); i++) {
+                if (frames.get(i)[row] != value) {
+                    return count;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many body rows {@code next} scrolled past {@code previous}: 0 for an unchanged frame and the full
+     * body length when no overlap is found.
+     */
+    static int scrollOffset(long[] previous, long[] next, int bodyStart, int bodyEnd) {
+        int bodyLength = bodyEnd - bodyStart;
+        if (bodyLength <= 0) {
+            return 0;
+        }
+        int window = Math.max(MIN_WINDOW, Math.min(MAX_WINDOW, bodyLength / 8));
+        if (window > bodyLength) {
+            return bodyLength;
+        }
+        long power = 1L;
+        for (int i = 1; i < window; i++) {
+            power *= ROLLING_BASE;
+        }
+        // The overlap sits at the top of the next body, so try needles from the top down and take the first that
+        // verifies. Windows of near-uniform rows (blank areas) match everywhere and are skipped.
+        int attempts = 0;
+        for (int needleStart = bodyStart; needleStart + window <= bodyEnd && attempts < MAX_NEEDLES;
+             needleStart += Math.max(1, window / 2)) {
+            if (rowChanges(next, needleStart, window) < window / 4) {
+                continue;
+            }
+            attempts++;
+            int scroll = findScroll(previous, next, bodyStart, bodyEnd, window, needleStart, power);
+            if (scroll >= 0) {
+                return scroll;
+            }
+        }
+        return bodyLength;
+    }
+
+    private static int findScroll(long[] previous, long[] next, int bodyStart, int bodyEnd, int window,
+                                  int needleStart, long power) {
+        long needle = windowHash(next, needleStart, window);
+        int bestScroll = -1;
+        double bestRatio = 0d;
+        long rolling = windowHash(previous, bodyStart, window);
+        for (int start = bodyStart; start + window <= bodyEnd; start++) {
+            if (start > bodyStart) {
+                rolling = (rolling - previous[start - 1] * power) * ROLLING_BASE + previous[start + window - 1];
+            }
+            int scroll = start - needleStart;
+            if (rolling != needle || scroll < 0) {
+                continue;
+            }
+            double ratio = overlapRatio(previous, next, bodyStart, bodyEnd, scroll);
+            // On equal ratios prefer the smaller scroll, i.e. the larger overlap.
+            if (ratio > bestRatio) {
+                bestRatio = ratio;
+                bestScroll = scroll;
+            }
+        }
+        return bestRatio >= MIN_MATCH_RATIO ? bestScroll : -1;
+    }
+
+    private static int rowChanges(long[] rows, int start, int window) {
+        int changes = 0;
+        for (int i = start + 1; i < start + window; i++) {
+            if (rows[i] != rows[i - 1]) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    private static long windowHash(long[] rows, int start, int window) {
+        long hash = 0L;
+        for (int i = start; i < start + window; i++) {
+            hash = hash * ROLLING_BASE + rows[i];
+        }
+        return hash;
+    }
+
+    private static double overlapRatio(long[] previous, long[] next, int bodyStart, int bodyEnd, int scroll) {
+        int overlap = bodyEnd - bodyStart - scroll;
+        if (overlap <= 0) {
+            return 0d;
+        }
+        int equal = 0;
+        for (int i = 0; i < overlap; i++) {
+            if (previous[bodyStart + scroll + i] == next[bodyStart + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / overlap;
+    }
+}
@@ -0,0 +1,286 @@
+package com.scriptshot.raster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent index of recent 64-bit image hashes searchable by Hamming distance. Entries live in a BK-tree so a
+ * radius query only visits subtrees whose edge distance can still satisfy the triangle inequality. The backing
+ * file is an append-only log that is compacted whenever the oldest entries are evicted.
+ */
+public final class SimilarityIndex {
+
+    public static final class Match {
+        public final String path;
+        public final String hash;
+        public final int distance;
+        public final long timestamp;
+
+        Match(String path, long hash, int distance, long timestamp) {
+            this.path = path;
+            this.hash = PerceptualHash.toHex(hash);
+            this.distance = distance;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final File file;
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Map<String, Entry> latestByPath = new HashMap<>();
+    private Node root;
+
+    public SimilarityIndex(File file, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.file = file;
+        this.capacity = capacity;
+        load();
+    }
+
+    public synchronized int size() {
+        return latestByPath.size();
+    }
+
+    /**
+     * Returns indexed entries within {@code maxDistance} of {@code hash}, closest first then newest first.
+     */
+    public synchronized List<Match> query(long hash, int maxDistance, String excludePath) {
+        if (root == null || maxDistance < 0) {
+            return Collections.emptyList();
+        }
+        List<Match> matches = new ArrayList<>();
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = PerceptualHash.distance(node.entry.hash, hash);
+            if (distance <= maxDistance && !node.entry.removed && !node.entry.path.equals(excludePath)) {
+                matches.add(new Match(node.entry.path, node.entry.hash, distance, node.entry.timestamp));
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                int edge = node.edges[i];
+                if (edge >= distance - maxDistance && edge <= distance + maxDistance) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+        matches.sort((first, second) -> first.distance != second.distance
+            ? Integer.compare(first.distance, second.distance)
+            : Long.compare(second.timestamp, first.timestamp));
+        return matches;
+    }
+
+    public synchronized void add(String path, long hash, long timestamp) {
+        Entry previous = latestByPath.get(path);
+        if (previous != null) {
+            if (previous.hash == hash) {
+                return;
+            }
+            previous.removed = true;
+        }
+        Entry entry = new Entry(path, hash, timestamp);
+        insert(entry);
+        if (latestByPath.size() > capacity) {
+            evictOldest();
+            compact();
+        } else {
+            append(entry);
+        }
+    }
+
+    private void insert(Entry entry) {
+        entries.addLast(entry);
+        latestByPath.put(entry.path, entry);
+        insertNode(entry);
+    }
+
+    private void insertNode(Entry entry) {
+        Node node = new Node(entry);
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node current = root;
+        while (true) {
+            int distance = PerceptualHash.distance(current.entry.hash, entry.hash);
+            Node child = current.childAt(distance);
+            if (child == null) {
+                current.addChild(distance, node);
+                return;
+            }
+            current = child;
+        }
+    }
+
+    private void evictOldest() {
+        int target = capacity - capacity / 10;
+        List<Entry> survivors = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (!entry.removed) {
+                survivors.add(entry);
+            }
+        }
+        int drop = Math.max(0, survivors.size() - target);
+        rebuild(survivors.subList(drop, survivors.size()));
+    }
+
+    /**
+     * Rebuilds the tree from {@code kept} (oldest first). Nodes are inserted in hash-mixed order so that a log
+     * of near-identical consecutive captures does not degrade the tree into a chain.
+     */
+    private void rebuild(List<Entry> kept) {
+        Entry[] ordered = kept.toArray(new Entry[0]);
+        Entry[] shuffled = ordered.clone();
+        Arrays.sort(shuffled, (first, second) -> Long.compare(mix(first.hash), mix(second.hash)));
+        entries.clear();
+        latestByPath.clear();
+        root = null;
+        Collections.addAll(entries, ordered);
+        for (Entry entry : shuffled) {
+            latestByPath.put(entry.path, entry);
+            insertNode(entry);
+        }
+    }
+
+    private void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        List<Entry> loaded = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            while (true) {
+                long hash = in.readLong();
+                long timestamp = in.readLong();
+                String path = in.readUTF();
+                loaded.add(new Entry(path, hash, timestamp));
+            }
+        } catch (EOFException endOfLog) {
+            // A torn final record from an interrupted append is simply dropped.
+        } catch (IOException e) {
+            loaded.clear();
+        }
+        Map<String, Entry> newest = new HashMap<>();
+        for (Entry entry : loaded) {
+            newest.put(entry.path, entry);
+        }
+        List<Entry> live = new ArrayList<>(newest.size());
+        for (Entry entry : loaded) {
+            if (newest.get(entry.path) == entry) {
+                live.add(entry);
+            }
+        }
+        int drop = Math.max(0, live.size() - capacity);
+        rebuild(live.subList(drop, live.size()));
+        if (live.size() - drop != loaded.size()) {
+            compact();
+        }
+    }
+
+    private void append(Entry entry) {
+        if (file == null) {
+            return;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            parent.mkdirs();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            writeEntry(out, entry);
+        } catch (IOException ignored) {
+            // The in-memory index stays authoritative for this process; the entry is lost on restart only.
+        }
+    }
+
+    private void compact() {
+        if (file == null) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp, false), 64 * 1024))) {
+            for (Entry entry : entries) {
+                if (!entry.removed) {
+                    writeEntry(out, entry);
+                }
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeLong(entry.hash);
+        out.writeLong(entry.timestamp);
+        out.writeUTF(entry.path);
+    }
+
+    private static long mix(long value) {
+        long mixed = value * 0x9E3779B97F4A7C15L;
+        return mixed ^ (mixed >>> 29);
+    }
+
+    private static final class Entry {
+        final String path;
+        final long hash;
+        final long timestamp;
+        boolean removed;
+
+        Entry(String path, long hash, long timestamp) {
+            this.path = path;
+            this.hash = hash;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static final class Node {
+        final Entry entry;
+        int[] edges = new int[2];
+        Node[] children = new Node[2];
+        int childCount;
+
+        Node(Entry entry) {
+            this.entry = entry;
+        }
+
+        Node childAt(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (edges[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            if (childCount == edges.length) {
+                edges = Arrays.copyOf(edges, childCount * 2);
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            edges[childCount] = distance;
+            children[childCount] = child;
+            childCount++;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.scriptshot.raster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Locates a template inside an image by normalized cross-correlation. The full search only runs on the coarsest
+ * pyramid level; candidates are then refined in a small window on each finer level down to full resolution, where
+ * they are scored against the threshold. The pyramid is as deep as the image needs to get near 256x256 pixels, as
+ * long as the template keeps at least 4 pixels per side, so small templates on large captures still avoid a
+ * full-resolution search. Window means and variances come from summed-area tables so each position costs a single
+ * dot product against the zero-mean template.
+ */
+public final class TemplateMatcher {
+
+    public static final class Match {
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+        public final double score;
+        public final double scale;
+
+        Match(int left, int top, int width, int height, double score, double scale) {
+            this.left = left;
+            this.top = top;
+            this.right = left + width;
+            this.bottom = top + height;
+            this.score = score;
+            this.scale = scale;
+        }
+
+        int area() {
+            return (right - left) * (bottom - top);
+        }
+    }
+
+    /** Image size, in pixels, below which another pyramid level would not pay for itself. */
+    private static final int COARSE_PIXELS = 256 * 256;
+    /** Smallest template side the coarsest level may shrink it to and still correlate usefully. */
+    private static final int MIN_COARSE_TEMPLATE = 4;
+    /** Share of the template's standard deviation a coarser level must keep to be worth searching. */
+    private static final double MIN_DETAIL_KEPT = 0.6;
+    private static final int MIN_TEMPLATE = 4;
+    private static final int MAX_LEVELS = 5;
+    /**
+     * Full-resolution template pixels times coarse candidates. Small templates match many places at the coarse level,
+     * so they keep more candidates; refining each one is cheap for them.
+     */
+    private static final int CANDIDATE_BUDGET = 1 << 20;
+    private static final int MIN_CANDIDATES = 32;
+    private static final int MAX_CANDIDATES = 4096;
+    private static final int REFINE_RADIUS = 3;
+    private static final double COARSE_SLACK = 0.6;
+    private static final double OVERLAP_LIMIT = 0.3;
+    private static final double FLAT_VARIANCE = 1e-6;
+
+    private TemplateMatcher() {
+    }
+
+    public static List<Match> find(LumaPlane image, LumaPlane template, double threshold, double[] scales, int maxResults) {
+        List<Match> all = new ArrayList<>();
+        double[] safeScales = scales == null || scales.length == 0 ? new double[]{1d} : scales;
+        for (double scale : safeScales) {
+            if (scale <= 0d) {
+                continue;
+            }
+            int scaledWidth = (int) Math.round(template.width * scale);
+            int scaledHeight = (int) Math.round(template.height * scale);
+            if (scaledWidth < MIN_TEMPLATE || scaledHeight < MIN_TEMPLATE
+                || scaledWidth > image.width || scaledHeight > image.height) {
+                continue;
+            }
+            all.addAll(findAtScale(image, template.resize(scaledWidth, scaledHeight), threshold, scale));
+        }
+        all.sort((first, second) -> Double.compare(second.score, first.score));
+        List<Match> kept = new ArrayList<>();
+        for (Match candidate : all) {
+            boolean overlaps = false;
+            for (Match accepted : kept) {
+                if (overlapRatio(candidate, accepted) > OVERLAP_LIMIT) {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (!overlaps) {
+                kept.add(candidate);
+                if (kept.size() >= Math.max(1, maxResults)) {
+                    break;
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static List<Match> findAtScale(LumaPlane image, LumaPlane template, double threshold, double scale) {
+        int levels = 0;
+        LumaPlane[] templates = new LumaPlane[MAX_LEVELS + 1];
+        templates[0] = template;
+        double detail = deviation(template);
+        while (levels < MAX_LEVELS
+            && ((long) image.width * image.height) >> (2 * levels) > COARSE_PIXELS
+            && Math.min(template.width, template.height) >> (levels + 1) >= MIN_COARSE_TEMPLATE) {
+            LumaPlane coarser = templates[levels].downsample();
+            // Averaging wipes out fine texture; once most of it is gone the coarse scores no longer rank the true
+            // position among the candidates.
+            if (deviation(coarser) < detail * MIN_DETAIL_KEPT) {
+                break;
+            }
+            templates[++levels] = coarser;
+        }
+        LumaPlane[] images = new LumaPlane[levels + 1];
+        images[0] = image;
+        for (int level = 1; level <= levels; level++) {
+            images[level] = images[level - 1].downsample();
+        }
+
+        double coarseThreshold = levels == 0 ? threshold : Math.max(0d, threshold - COARSE_SLACK);
+        int maxCandidates = levels == 0 ? MIN_CANDIDATES : Math.max(MIN_CANDIDATES,
+            Math.min(MAX_CANDIDATES, CANDIDATE_BUDGET / (template.width * template.height)));
+        // Only the coarsest level is searched exhaustively; the others score a few windows per candidate.
+        Level base = new Level(images[levels], templates[levels], true);
+        List<int[]> candidates = coarseSearch(base, coarseThreshold, maxCandidates);
+        for (int level = levels - 1; level >= 0; level--) {
+            // Summed-area tables pay off once the refinement windows cover more than the image does.
+            long windows = (long) candidates.size() * (2 * REFINE_RADIUS + 1) * (2 * REFINE_RADIUS + 1);
+            boolean tables = windows * templates[level].width * templates[level].height
+                > (long) images[level].width * images[level].height;
+            base = new Level(images[level], templates[level], tables);
+            // Each finer level costs four times as much per candidate but ranks them better, so keep fewer.
+            int keep = Math.max(MIN_CANDIDATES, maxCandidates >> (2 * (levels - level)));
+            candidates = refine(base, candidates, level == 0 ? -1d : coarseThreshold, keep);
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int[] candidate : candidates) {
+            double score = base.score(candidate[0], candidate[1]);
+            if (score >= threshold) {
+                matches.add(new Match(candidate[0], candidate[1], template.width, template.height, score, scale));
+            }
+        }
+        return matches;
+    }
+
+    private static List<int[]> coarseSearch(Level level, double minScore, int maxCandidates) {
+        int columns = level.image.width - level.template.width + 1;
+        int rows = level.image.height - level.template.height + 1;
+        if (columns <= 0 || rows <= 0) {
+            return new ArrayList<>();
+        }
+        float[] scores = new float[columns * rows];
+        ImagingPool.forEachRange(rows, 8, (start, end) -> {
+            for (int y = start; y < end; y++) {
+                for (int x = 0; x < columns; x++) {
+                    scores[y * columns + x] = (float) level.score(x, y);
+                }
+            }
+        });
+        // Peaks are keyed by score bits (monotonic for positive floats) over the inverted position, so an ascending
+        // sort puts the best last and breaks ties towards the first position in scan order.
+        long[] peaks = new long[64];
+        int count = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                int index = y * columns + x;
+                float value = scores[index];
+                if (value <= 0f || value < minScore || !isLocalMaximum(scores, columns, rows, x, y, value)) {
+                    continue;
+                }
+                if (count == peaks.length) {
+                    peaks = Arrays.copyOf(peaks, count * 2);
+                }
+                peaks[count++] = (long) Float.floatToIntBits(value) << 32 | (Integer.MAX_VALUE - index);
+            }
+        }
+        Arrays.sort(peaks, 0, count);
+        List<int[]> candidates = new ArrayList<>(Math.min(count, maxCandidates));
+        for (int i = count - 1; i >= Math.max(0, count - maxCandidates); i--) {
+            int index = Integer.MAX_VALUE - (int) peaks[i];
+            candidates.add(new int[]{index % columns, index / columns});
+        }
+        return candidates;
+    }
+
+    private static boolean isLocalMaximum(float[] scores, int columns, int rows, int x, int y, float value) {
+        for (int dy = -1; dy <= 1; dy++) {
+            int ny = y + dy;
+            if (ny < 0 || ny >= rows) {
+                continue;
+            }
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                if ((dx == 0 && dy == 0) || nx < 0 || nx >= columns) {
+                    continue;
+                }
+                float neighbour = scores[ny * columns + nx];
+                // Ties resolve towards the first position in scan order so plateaus yield one peak.
+                if (neighbour > value || (neighbour == value && (dy < 0 || (dy == 0 && dx < 0)))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves each candidate to the best position around it on the next finer level, dropping those that score below
+     * {@code minScore} there and keeping the {@code maxCandidates} best of the rest.
+     */
+    private static List<int[]> refine(Level level, List<int[]> coarse, double minScore, int maxCandidates) {
+        int maxX = level.image.width - level.template.width;
+        int maxY = level.image.height - level.template.height;
+        List<int[]> refined = new ArrayList<>(coarse.size());
+        List<Double> scores = new ArrayList<>(coarse.size());
+        Set<Integer> seen = new HashSet<>();
+        for (int[] candidate : coarse) {
+            int centerX = candidate[0] * 2;
+            int centerY = candidate[1] * 2;
+            double best = -2d;
+            int bestX = -1;
+            int bestY = -1;
+            for (int y = Math.max(0, centerY - REFINE_RADIUS); y <= Math.min(maxY, centerY + REFINE_RADIUS); y++) {
+                for (int x = Math.max(0, centerX - REFINE_RADIUS); x <= Math.min(maxX, centerX + REFINE_RADIUS); x++) {
+                    double score = level.score(x, y);
+                    if (score > best) {
+                        best = score;
+                        bestX = x;
+                        bestY = y;
+                    }
+                }
+            }
+            if (bestX < 0 || best < minScore) {
+                continue;
+            }
+            if (seen.add(bestY * level.image.width + bestX)) {
+                refined.add(new int[]{bestX, bestY});
+                scores.add(best);
+            }
+        }
+        if (refined.size() <= maxCandidates) {
+            return refined;
+        }
+        Integer[] order = new Integer[refined.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> Double.compare(scores.get(second), scores.get(first)));
+        List<int[]> kept = new ArrayList<>(maxCandidates);
+        for (int i = 0; i < maxCandidates; i++) {
+            kept.add(refined.get(order[i]));
+        }
+        return kept;
+    }
+
+    private static double deviation(LumaPlane plane) {
+        int count = plane.width * plane.height;
+        long sum = 0L;
+        long squares = 0L;
+        for (int i = 0; i < count; i++) {
+            int value = plane.values[i];
+            sum += value;
+            squares += (long) value * value;
+        }
+        double mean = (double) sum / count;
+        return Math.sqrt(Math.max(0d, (double) squares / count - mean * mean));
+    }
+
+    private static double overlapRatio(Match first, Match second) {
+        int left = Math.max(first.left, second.left);
+        int top = Math.max(first.top, second.top);
+        int right = Math.min(first.right, second.right);
+        int bottom = Math.min(first.bottom, second.bottom);
+        if (right <= left || bottom <= top) {
+            return 0d;
+        }
+        double intersection = (double) (right - left) * (bottom - top);
+        return intersection / (first.area() + second.area() - intersection);
+    }
+
+    /**
+     * One pyramid level: the image, the zero-mean template and, when enough windows will be scored, the image's
+     * summed-area tables. Without them window statistics are summed directly, which is cheaper for the few windows
+     * a light refinement scores than building tables over the whole image.
+     */
+    private static final class Level {
+        final LumaPlane image;
+        final LumaPlane template;
+        final long[] sums;
+        final long[] squares;
+        final float[] centeredTemplate;
+        final double templateNorm;
+        final int stride;
+
+        Level(LumaPlane image, LumaPlane template, boolean tables) {
+            this.image = image;
+            this.template = template;
+            this.stride = image.width + 1;
+            this.sums = tables ? new long[stride * (image.height + 1)] : null;
+            this.squares = tables ? new long[stride * (image.height + 1)] : null;
+            for (int y = 0; tables && y < image.height; y++) {
+                long rowSum = 0L;
+                long rowSquares = 0L;
+                int source = y * image.width;
+                int target = (y + 1) * stride;
+                for (int x = 0; x < image.width; x++) {
+                    int value = image.values[source + x];
+                    rowSum += value;
+                    rowSquares += (long) value * value;
+                    sums[target + x + 1] = sums[target - stride + x + 1] + rowSum;
+                    squares[target + x + 1] = squares[target - stride + x + 1] + rowSquares;
+                }
+            }
+            int count = template.width * template.height;
+            long total = 0L;
+            for (int i = 0; i < count; i++) {
+                total += template.values[i];
+            }
+            double mean = (double) total / count;
+            centeredTemplate = new float[count];
+            double norm = 0d;
+            for (int i = 0; i < count; i++) {
+                float centered = (float) (template.values[i] - mean);
+                centeredTemplate[i] = centered;
+                norm += centered * centered;
+            }
+            templateNorm = Math.sqrt(norm);
+        }
+
+        double score(int x, int y) {
+            int width = template.width;
+            int height = template.height;
+            int count = width * height;
+            int[] pixels = image.values;
+            int imageWidth = image.width;
+            long sum = 0L;
+            long sumSquares = 0L;
+            if (sums != null) {
+                int topLeft = y * stride + x;
+                int bottomLeft = (y + height) * stride + x;
+                sum = sums[bottomLeft + width] - sums[bottomLeft] - sums[topLeft + width] + sums[topLeft];
+                sumSquares = squares[bottomLeft + width] - squares[bottomLeft] - squares[topLeft + width]
+                    + squares[topLeft];
+            } else {
+                for (int row = 0; row < height; row++) {
+                    int imageOffset = (y + row) * imageWidth + x;
+                    for (int column = 0; column < width; column++) {
+                        int value = pixels[imageOffset + column];
+                        sum += value;
+                        sumSquares += (long) value * value;
+                    }
+                }
+            }
+            double variance = sumSquares - (double) sum * sum / count;
+            if (templateNorm < FLAT_VARIANCE) {
+                return variance < FLAT_VARIANCE ? 1d : 0d;
+            }
+            if (variance < FLAT_VARIANCE) {
+                return 0d;
+            }
+            double dot = 0d;
+            for (int row = 0; row < height; row++) {
+                int imageOffset = (y + row) * imageWidth + x;
+                int templateOffset = row * width;
+                float rowDot = 0f;
+                for (int column = 0; column < width; column++) {
+                    rowDot += pixels[imageOffset + column] * centeredTemplate[templateOffset + column];
+                }
+                dot += rowDot;
+            }
+            return dot / (Math.sqrt(variance) * templateNorm);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.scriptshot.raster;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs a chain of {@link BandOp}s over an image that is never held whole: the source is read band by band, each band
+ * is widened by the ops' combined halo so neighbourhood ops see the rows they need, and only the band's own rows are
+ * passed on to the sink. Peak memory is about two bands of the source width regardless of the image height.
+ */
+public final class TiledProcessor {
+
+    private TiledProcessor() {
+    }
+
+    /**
+     * Streams {@code crop} of a {@code sourceWidth x sourceHeight} source through {@code ops} into {@code sink},
+     * {@code bandRows} output rows at a time. Returns the number of bands processed.
+     */
+    public static int run(BandReader source, int sourceWidth, int sourceHeight, IntRect crop, List<BandOp> ops,
+                          int bandRows, RowSink sink) throws IOException {
+        IntRect bounds = crop != null ? crop : new IntRect(0, 0, sourceWidth, sourceHeight);
+        if (bounds.isEmpty() || bounds.left < 0 || bounds.top < 0 || bounds.right > sourceWidth
+            || bounds.bottom > sourceHeight) {
+            throw new IllegalArgumentException("Crop " + bounds + " outside " + sourceWidth + "x" + sourceHeight);
+        }
+        if (bandRows <= 0) {
+            throw new IllegalArgumentException("bandRows must be > 0");
+        }
+        int halo = 0;
+        for (BandOp op : ops) {
+            halo += op.haloRows();
+        }
+        int width = bounds.width();
+        int height = bounds.height();
+        int maxRows = Math.min(height, bandRows + 2 * halo);
+        boolean fullWidth = width == sourceWidth;
+        int[] decoded = new int[sourceWidth * maxRows];
+        int[] working = fullWidth ? decoded : new int[width * maxRows];
+        int bands = 0;
+        for (int top = 0; top < height; top += bandRows) {
+            int bottom = Math.min(height, top + bandRows);
+            int readTop = Math.max(0, top - halo);
+            int readBottom = Math.min(height, bottom + halo);
+            int rows = readBottom - readTop;
+            source.read(bounds.top + readTop, rows, decoded);
+            if (!fullWidth) {
+                for (int y = 0; y < rows; y++) {
+                    System.arraycopy(decoded, y * sourceWidth + bounds.left, working, y * width, width);
+                }
+            }
+            Raster band = new Raster(width, rows, working);
+            for (BandOp op : ops) {
+                op.apply(band, readTop);
+            }
+            sink.writeRows(working, (top - readTop) * width, width, bottom - top);
+            bands++;
+        }
+        return bands;
+    }
+}
@@ -0,0 +1,116 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class BandOpsTest {
+
+    @Test
+    public void unrotatedPatternRepeatsTheTile() {
+        Raster tile = TestImages.noise(7, 5, 110);
+        Raster raster = TestImages.filled(30, 23, 0xFF000000);
+        BandOps.pattern(tile, 0f, 13f, 4f, 1f).apply(raster, 0);
+        for (int y = 0; y < 23; y++) {
+            for (int x = 0; x < 30; x++) {
+                assertEquals(tile.get(x % 7, y % 5), raster.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void quarterTurnSwapsTheTileAxes() {
+        Raster tile = TestImages.noise(6, 4, 111);
+        Raster raster = TestImages.filled(20, 18, 0xFF000000);
+        BandOps.pattern(tile, 90f, 0f, 0f, 1f).apply(raster, 0);
+        for (int y = 0; y < 18; y++) {
+            for (int x = 0; x < 20; x++) {
+                int expected = tile.get(y % 6, Math.floorMod(-x - 1, 4));
+                assertTrue(TestImages.maxChannelDelta(expected, raster.get(x, y)) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void opacityScalesTheTileAlpha() {
+        Raster tile = TestImages.filled(3, 3, 0x80FF0000);
+        Raster full = TestImages.filled(4, 4, 0xFF0000FF);
+        BandOps.pattern(tile, 0f, 0f, 0f, 1f).apply(full, 0);
+        assertEquals(0xFF80007F, full.get(1, 1));
+        Raster half = TestImages.filled(4, 4, 0xFF0000FF);
+        BandOps.pattern(tile, 0f, 0f, 0f, 0.5f).apply(half, 0);
+        assertEquals(0xFF4000BF, half.get(1, 1));
+        Raster none = TestImages.filled(4, 4, 0xFF0000FF);
+        BandOps.pattern(tile, 0f, 0f, 0f, 0f).apply(none, 0);
+        assertEquals(0xFF0000FF, none.get(1, 1));
+    }
+
+    @Test
+    public void transparentTexelsDoNotDarkenTheSample() {
+        // Half a texel off in both axes, every sample mixes transparent and red columns equally.
+        Raster tile = new Raster(2, 2, new int[]{0x00000000, 0xFFFF0000, 0x00000000, 0xFFFF0000});
+        Raster raster = new Raster(9, 7);
+        BandOps.pattern(tile, 180f, 0.25f, 0.25f, 1f).apply(raster, 0);
+        for (int pixel : raster.pixels) {
+            assertEquals(0x80FF0000, pixel);
+        }
+    }
+
+    @Test
+    public void patternBandsMatchTheWholeImage() throws IOException {
+        Raster source = TestImages.noise(57, 83, 112);
+        BandOp op = BandOps.pattern(TestImages.translucentNoise(11, 9, 113), 30f, 20f, 40f, 0.6f);
+        Raster expected = new Raster(57, 83, source.pixels.clone());
+        op.apply(expected, 0);
+        for (int bandRows : new int[]{1, 10, 32, 83}) {
+            TiledProcessorTest.Collector sink = new TiledProcessorTest.Collector(57, 83);
+            TiledProcessor.run(source, 57, 83, null, Collections.singletonList(op), bandRows, sink);
+            assertArrayEquals("band rows " + bandRows, expected.pixels, sink.raster.pixels);
+        }
+    }
+
+    @Test
+    public void pasteReplacesPixelsWithoutBlending() {
+        Raster block = TestImages.translucentNoise(5, 4, 114);
+        Raster raster = TestImages.noise(12, 10, 115);
+        Raster expected = new Raster(12, 10, raster.pixels.clone());
+        expected.paste(block, 3, 2);
+        BandOps.paste(block, 3, 2).apply(raster, 0);
+        assertArrayEquals(expected.pixels, raster.pixels);
+    }
+
+    @Test
+    public void pasteBandsClipAtEveryEdge() throws IOException {
+        Raster source = TestImages.noise(40, 50, 116);
+        Raster block = TestImages.translucentNoise(17, 23, 117);
+        int[][] offsets = {{-6, -9}, {30, 40}, {-5, 20}, {10, -22}, {0, 0}, {40, 10}, {5, 50}};
+        for (int[] offset : offsets) {
+            Raster expected = new Raster(40, 50, source.pixels.clone());
+            expected.paste(block, offset[0], offset[1]);
+            for (int bandRows : new int[]{1, 7, 50}) {
+                TiledProcessorTest.Collector sink = new TiledProcessorTest.Collector(40, 50);
+                TiledProcessor.run(source, 40, 50, null,
+                    Collections.singletonList(BandOps.paste(block, offset[0], offset[1])), bandRows, sink);
+                assertArrayEquals(offset[0] + "," + offset[1] + " band rows " + bandRows,
+                    expected.pixels, sink.raster.pixels);
+            }
+        }
+    }
+
+    @Test
+    public void pasteUsesCroppedCoordinates() throws IOException {
+        Raster source = TestImages.noise(30, 30, 118);
+        Raster block = TestImages.noise(6, 6, 119);
+        IntRect crop = new IntRect(4, 5, 26, 28);
+        Raster expected = source.crop(crop);
+        expected.paste(block, -2, 19);
+        TiledProcessorTest.Collector sink = new TiledProcessorTest.Collector(crop.width(), crop.height());
+        TiledProcessor.run(source, 30, 30, crop, Collections.singletonList(BandOps.paste(block, -2, 19)), 4, sink);
+        assertArrayEquals(expected.pixels, sink.raster.pixels);
+    }
+}
@@ -0,0 +1,101 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BorderTrimmerTest {
+
+    private static final int BACKGROUND = 0xFFF0F0F0;
+
+    @Test
+    public void trimFindsTheContentInsideUniformBorders() {
+        Raster raster = TestImages.filled(40, 30, BACKGROUND);
+        raster.paste(TestImages.noise(17, 11, 100), 6, 9);
+        IntRect bounds = new IntRect(0, 0, 40, 30);
+        assertEquals(new IntRect(6, 9, 23, 20), BorderTrimmer.trim(raster, bounds, BorderTrimmer.DEFAULT_TOLERANCE));
+        // Only the given bounds are scanned.
+        IntRect inner = new IntRect(10, 12, 40, 30);
+        assertEquals(new IntRect(10, 12, 23, 20), BorderTrimmer.trim(raster, inner, BorderTrimmer.DEFAULT_TOLERANCE));
+    }
+
+    @Test
+    public void trimReturnsTheBoundsForAFlatImage() {
+        Raster raster = TestImages.filled(12, 9, BACKGROUND);
+        IntRect bounds = new IntRect(0, 0, 12, 9);
+        assertEquals(bounds, BorderTrimmer.trim(raster, bounds, 0));
+    }
+
+    @Test
+    public void toleranceAbsorbsSmallDifferences() {
+        Raster raster = TestImages.filled(10, 10, BACKGROUND);
+        for (int x = 0; x < 10; x++) {
+            raster.set(x, 1, 0xFFF8F0EA);
+        }
+        raster.set(4, 5, 0xFF000000);
+        assertEquals(1, BorderTrimmer.leadingRows(raster, 0, 10, 0, 10, 7, false));
+        assertEquals(5, BorderTrimmer.leadingRows(raster, 0, 10, 0, 10, 8, false));
+        assertEquals(4, BorderTrimmer.leadingRows(raster, 0, 10, 0, 10, 8, true));
+    }
+
+    @Test
+    public void alphaCountsAsAChannel() {
+        Raster raster = TestImages.filled(6, 6, BACKGROUND);
+        raster.set(2, 3, BACKGROUND & 0x00FFFFFF);
+        assertEquals(3, BorderTrimmer.leadingRows(raster, 0, 6, 0, 6, 8, false));
+    }
+
+    @Test
+    public void leadingColumnsScanFromEitherSide() {
+        Raster raster = TestImages.filled(20, 8, 0xFF000000);
+        for (int y = 0; y < 8; y++) {
+            raster.set(5, y, 0xFFFFFFFF);
+            raster.set(16, y, 0xFFFFFFFF);
+        }
+        assertEquals(5, BorderTrimmer.leadingColumns(raster, 0, 8, 0, 20, 0, false));
+        assertEquals(3, BorderTrimmer.leadingColumns(raster, 0, 8, 0, 20, 0, true));
+        assertEquals(0, BorderTrimmer.leadingColumns(raster, 0, 8, 5, 5, 0, false));
+    }
+
+    @Test
+    public void barRowsAcceptIconsOnAFlatBar() {
+        Raster raster = TestImages.noise(80, 40, 101);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 80; x++) {
+                raster.set(x, y, BACKGROUND);
+            }
+        }
+        // A clock and a few icons covering a quarter of the bar's width.
+        for (int y = 1; y < 5; y++) {
+            for (int x = 4; x < 14; x++) {
+                raster.set(x, y, 0xFF202020);
+            }
+            for (int x = 60; x < 70; x++) {
+                raster.set(x, y, 0xFF202020);
+            }
+        }
+        assertEquals(6, BorderTrimmer.barRows(raster, 0, 80, 0, 10, BorderTrimmer.DEFAULT_TOLERANCE, false));
+        assertEquals(1, BorderTrimmer.leadingRows(raster, 0, 80, 0, 10, BorderTrimmer.DEFAULT_TOLERANCE, false));
+    }
+
+    @Test
+    public void barRowsRejectBusyContent() {
+        Raster raster = TestImages.noise(80, 40, 102);
+        assertEquals(0, BorderTrimmer.barRows(raster, 0, 80, 0, 10, BorderTrimmer.DEFAULT_TOLERANCE, false));
+        assertEquals(0, BorderTrimmer.barRows(raster, 0, 80, 30, 40, BorderTrimmer.DEFAULT_TOLERANCE, true));
+    }
+
+    @Test
+    public void barRowsStopAtTheFirstMostlyDifferentRow() {
+        Raster raster = TestImages.filled(40, 20, 0xFF000000);
+        for (int x = 0; x < 11; x++) {
+            raster.set(x, 16, 0xFFFFFFFF);
+        }
+        assertEquals(3, BorderTrimmer.barRows(raster, 0, 40, 10, 20, 0, true));
+        assertEquals(10, BorderTrimmer.barRows(raster, 0, 40, 0, 10, 0, false));
+        for (int x = 0; x < 10; x++) {
+            raster.set(x, 2, 0xFFFFFFFF);
+        }
+        assertEquals(10, BorderTrimmer.barRows(raster, 0, 40, 0, 10, 0, false));
+    }
+}
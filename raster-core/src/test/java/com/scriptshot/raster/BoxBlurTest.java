@@ -0,0 +1,77 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BoxBlurTest {
+
+    @Test
+    public void zeroRadiusIsANoOp() {
+        Raster raster = TestImages.noise(20, 10, 3);
+        int[] before = raster.pixels.clone();
+        BoxBlur.apply(raster, 0);
+        assertArrayEquals(before, raster.pixels);
+    }
+
+    @Test
+    public void uniformImageIsUnchanged() {
+        Raster raster = TestImages.filled(40, 30, 0x80406080);
+        BoxBlur.apply(raster, 5);
+        for (int pixel : raster.pixels) {
+            assertEquals(0x80406080, pixel);
+        }
+    }
+
+    @Test
+    public void matchesSeparableReferenceWithRepeatedEdges() {
+        // Large enough that both passes are split across several ranges.
+        Raster raster = TestImages.translucentNoise(150, 130, 4);
+        int[] expected = reference(raster.pixels, raster.width, raster.height, 3);
+        BoxBlur.apply(raster, 3);
+        assertArrayEquals(expected, raster.pixels);
+    }
+
+    @Test
+    public void radiusLargerThanTheImageAveragesWithRepeatedEdges() {
+        Raster raster = TestImages.noise(5, 4, 5);
+        int[] expected = reference(raster.pixels, raster.width, raster.height, 9);
+        BoxBlur.apply(raster, 9);
+        assertArrayEquals(expected, raster.pixels);
+    }
+
+    /** Direct horizontal-then-vertical window average, truncating after each pass like the kernel. */
+    private static int[] reference(int[] input, int width, int height, int radius) {
+        int window = radius * 2 + 1;
+        int[] horizontal = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = 0;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int sum = 0;
+                    for (int i = -radius; i <= radius; i++) {
+                        sum += TestImages.channel(input[y * width + IntRect.clamp(x + i, 0, width - 1)], shift);
+                    }
+                    value |= (sum / window) << shift;
+                }
+                horizontal[y * width + x] = value;
+            }
+        }
+        int[] out = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = 0;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int sum = 0;
+                    for (int i = -radius; i <= radius; i++) {
+                        sum += TestImages.channel(horizontal[IntRect.clamp(y + i, 0, height - 1) * width + x], shift);
+                    }
+                    value |= (sum / window) << shift;
+                }
+                out[y * width + x] = value;
+            }
+        }
+        return out;
+    }
+}
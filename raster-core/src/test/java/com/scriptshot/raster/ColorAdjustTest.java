@@ -0,0 +1,156 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ColorAdjustTest {
+
+    @Test
+    public void lookupTablesMatchTheMatrixThenCurve() {
+        // Per-channel matrices take the table path; the result must be the same to the bit.
+        ColorMatrixOp matrix = ColorMatrixOp.brightness(-20f).concat(ColorMatrixOp.contrast(1.4f))
+            .concat(ColorMatrixOp.invert());
+        assertMatchesMatrixThenCurve(matrix, ColorAdjust.gammaCurve(1.8f));
+        assertMatchesMatrixThenCurve(matrix, null);
+    }
+
+    @Test
+    public void crossChannelMatricesMatchTheMatrixThenCurve() {
+        ColorMatrixOp matrix = ColorMatrixOp.saturation(1.6f).concat(ColorMatrixOp.contrast(0.9f));
+        assertMatchesMatrixThenCurve(matrix, ColorAdjust.gammaCurve(0.7f));
+        assertMatchesMatrixThenCurve(matrix, null);
+    }
+
+    @Test
+    public void fusedChainMatchesSequentialSteps() {
+        // Channels stay inside 40..200 so no intermediate step clamps.
+        Raster sequential = midTones(64, 48, 130);
+        Raster fused = new Raster(64, 48, sequential.pixels.clone());
+        ColorMatrixOp.brightness(0.05f * 255f).apply(sequential);
+        ColorMatrixOp.contrast(1.1f).apply(sequential);
+        ColorMatrixOp.saturation(0.5f).apply(sequential);
+        ColorMatrixOp.invert().apply(sequential);
+        ColorAdjust.of(0.05f, 1.1f, 0.5f, 1f, true).apply(fused);
+        for (int i = 0; i < fused.pixels.length; i++) {
+            // Each sequential step rounds; the fused pass rounds once.
+            assertTrue("pixel " + i, TestImages.maxChannelDelta(sequential.pixels[i], fused.pixels[i]) <= 2);
+        }
+    }
+
+    @Test
+    public void gammaCurveRunsAfterTheMatrix() {
+        Raster raster = new Raster(2, 1, new int[]{0xFF404040, 0x80FF0000});
+        ColorAdjust.of(0f, 1f, 1f, 2f, true).apply(raster);
+        int[] curve = ColorAdjust.gammaCurve(2f);
+        int lifted = curve[0xBF];
+        assertEquals(0xFF000000 | lifted << 16 | lifted << 8 | lifted, raster.get(0, 0));
+        assertEquals(0x8000FFFF, raster.get(1, 0));
+    }
+
+    @Test
+    public void gammaCurveKeepsEndpointsAndLiftsMidTones() {
+        int[] curve = ColorAdjust.gammaCurve(2.2f);
+        assertEquals(0, curve[0]);
+        assertEquals(255, curve[255]);
+        assertTrue(curve[128] > 128);
+        assertTrue(ColorAdjust.gammaCurve(0.5f)[128] < 128);
+        for (int i = 1; i < 256; i++) {
+            assertTrue(curve[i] >= curve[i - 1]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ColorAdjust.gammaCurve(0f));
+        assertThrows(IllegalArgumentException.class, () -> ColorAdjust.gammaCurve(-1f));
+        assertThrows(IllegalArgumentException.class, () -> ColorAdjust.gammaCurve(Float.NaN));
+    }
+
+    @Test
+    public void identityDetection() {
+        assertTrue(ColorAdjust.of(0f, 1f, 1f, 1f, false).isIdentity());
+        assertTrue(new ColorAdjust(null, ColorAdjust.gammaCurve(1f)).isIdentity());
+        assertFalse(ColorAdjust.of(0f, 1f, 1f, 1.2f, false).isIdentity());
+        assertFalse(ColorAdjust.of(0f, 1f, 1f, 1f, true).isIdentity());
+        assertThrows(IllegalArgumentException.class, () -> new ColorAdjust(null, new int[255]));
+    }
+
+    @Test
+    public void translucentPixelsKeepTheirAlpha() {
+        Raster raster = TestImages.translucentNoise(30, 20, 131);
+        int[] before = raster.pixels.clone();
+        ColorAdjust.of(0.2f, 0.8f, 1f, 1.5f, false).apply(raster);
+        for (int i = 0; i < before.length; i++) {
+            assertEquals(before[i] >>> 24, raster.pixels[i] >>> 24);
+        }
+    }
+
+    @Test
+    public void thenFoldsMatricesAndCurves() {
+        Raster source = midTones(40, 30, 132);
+        ColorAdjust brighten = new ColorAdjust(ColorMatrixOp.brightness(12f), null);
+        ColorAdjust gamma = new ColorAdjust(null, ColorAdjust.gammaCurve(1.4f));
+        ColorAdjust darken = new ColorAdjust(null, ColorAdjust.gammaCurve(0.8f));
+
+        assertSequentialEqualsFolded(source, brighten, gamma);
+        assertSequentialEqualsFolded(source, gamma, darken);
+        assertSame(gamma, gamma.then(new ColorAdjust(null, null)));
+        assertNull(gamma.then(brighten));
+    }
+
+    @Test
+    public void bandsMatchTheWholeImage() throws IOException {
+        Raster source = TestImages.translucentNoise(45, 70, 133);
+        ColorAdjust adjust = ColorAdjust.of(-0.1f, 1.3f, 0.4f, 1.6f, true);
+        Raster expected = new Raster(45, 70, source.pixels.clone());
+        adjust.apply(expected);
+        for (int bandRows : new int[]{1, 9, 70}) {
+            TiledProcessorTest.Collector sink = new TiledProcessorTest.Collector(45, 70);
+            TiledProcessor.run(source, 45, 70, null, Collections.singletonList(BandOps.colorAdjust(adjust)),
+                bandRows, sink);
+            assertArrayEquals("band rows " + bandRows, expected.pixels, sink.raster.pixels);
+        }
+    }
+
+    private static void assertMatchesMatrixThenCurve(ColorMatrixOp matrix, int[] curve) {
+        Raster expected = TestImages.translucentNoise(50, 40, 134);
+        Raster actual = new Raster(50, 40, expected.pixels.clone());
+        matrix.apply(expected);
+        if (curve != null) {
+            for (int i = 0; i < expected.pixels.length; i++) {
+                int pixel = expected.pixels[i];
+                expected.pixels[i] = (pixel & 0xFF000000) | curve[(pixel >> 16) & 0xFF] << 16
+                    | curve[(pixel >> 8) & 0xFF] << 8 | curve[pixel & 0xFF];
+            }
+        }
+        new ColorAdjust(matrix, curve).apply(actual);
+        assertArrayEquals(expected.pixels, actual.pixels);
+    }
+
+    private static void assertSequentialEqualsFolded(Raster source, ColorAdjust first, ColorAdjust second) {
+        Raster sequential = new Raster(source.width, source.height, source.pixels.clone());
+        first.apply(sequential);
+        second.apply(sequential);
+        Raster folded = new Raster(source.width, source.height, source.pixels.clone());
+        first.then(second).apply(folded);
+        assertArrayEquals(sequential.pixels, folded.pixels);
+    }
+
+    /** Opaque pixels with every channel in 40..200. */
+    private static Raster midTones(int width, int height, long seed) {
+        Random random = new Random(seed);
+        Raster raster = new Raster(width, height);
+        for (int i = 0; i < raster.pixels.length; i++) {
+            raster.pixels[i] = 0xFF000000 | (40 + random.nextInt(161)) << 16 | (40 + random.nextInt(161)) << 8
+                | (40 + random.nextInt(161));
+        }
+        return raster;
+    }
+}
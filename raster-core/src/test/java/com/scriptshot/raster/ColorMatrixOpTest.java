@@ -0,0 +1,105 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ColorMatrixOpTest {
+
+    @Test
+    public void rejectsWrongSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ColorMatrixOp(new float[16]));
+    }
+
+    @Test
+    public void identityLeavesPixelsAlone() {
+        Raster raster = TestImages.translucentNoise(70, 90, 6);
+        int[] before = raster.pixels.clone();
+        ColorMatrixOp.identity().apply(raster);
+        assertArrayEquals(before, raster.pixels);
+    }
+
+    @Test
+    public void identityDetection() {
+        assertTrue(ColorMatrixOp.identity().isIdentity());
+        assertTrue(ColorMatrixOp.saturation(1f).isIdentity());
+        assertFalse(ColorMatrixOp.saturation(0.5f).isIdentity());
+    }
+
+    @Test
+    public void invertFlipsColourAndKeepsAlpha() {
+        Raster raster = new Raster(2, 1, new int[]{0x80FF0010, 0xFF000000});
+        ColorMatrixOp.invert().apply(raster);
+        assertArrayEquals(new int[]{0x8000FFEF, 0xFFFFFFFF}, raster.pixels);
+    }
+
+    @Test
+    public void zeroSaturationIsGray() {
+        Raster raster = TestImages.noise(30, 30, 7);
+        ColorMatrixOp.saturation(0f).apply(raster);
+        for (int pixel : raster.pixels) {
+            int r = TestImages.channel(pixel, 16);
+            assertEquals(r, TestImages.channel(pixel, 8), 1);
+            assertEquals(r, TestImages.channel(pixel, 0), 1);
+        }
+    }
+
+    @Test
+    public void brightnessAndContrastClamp() {
+        Raster raster = new Raster(3, 1, new int[]{0xFF000000, 0xFF808080, 0xFFF0F0F0});
+        ColorMatrixOp.brightness(32f).apply(raster);
+        assertArrayEquals(new int[]{0xFF202020, 0xFFA0A0A0, 0xFFFFFFFF}, raster.pixels);
+
+        ColorMatrixOp.contrast(0f).apply(raster);
+        assertArrayEquals(new int[]{0xFF808080, 0xFF808080, 0xFF808080}, raster.pixels);
+    }
+
+    @Test
+    public void concatMatchesSequentialApplicationWithoutClamping() {
+        ColorMatrixOp first = ColorMatrixOp.saturation(0.6f);
+        ColorMatrixOp second = ColorMatrixOp.contrast(0.8f);
+        Raster sequential = TestImages.noise(40, 40, 8);
+        Raster fused = new Raster(40, 40, sequential.pixels.clone());
+        first.apply(sequential);
+        second.apply(sequential);
+        first.concat(second).apply(fused);
+        for (int i = 0; i < fused.pixels.length; i++) {
+            // The sequential path rounds once in between, the fused path only at the end.
+            assertTrue(TestImages.maxChannelDelta(sequential.pixels[i], fused.pixels[i]) <= 1);
+        }
+    }
+
+    @Test
+    public void concatOrderIsThisThenNext() {
+        float[] expected = ColorMatrixOp.brightness(10f).concat(ColorMatrixOp.invert()).getArray();
+        // invert(x + 10) = 245 - x
+        assertEquals(-1f, expected[0], 0f);
+        assertEquals(245f, expected[4], 0f);
+    }
+
+    @Test
+    public void perChannelOnlyWithoutCrossTerms() {
+        assertTrue(ColorMatrixOp.contrast(1.3f).concat(ColorMatrixOp.invert()).isPerChannel());
+        assertFalse(ColorMatrixOp.saturation(0.5f).isPerChannel());
+        assertFalse(ColorMatrixOp.invert().isIdentity());
+    }
+
+    @Test
+    public void getArrayIsACopy() {
+        ColorMatrixOp identity = ColorMatrixOp.identity();
+        identity.getArray()[0] = 5f;
+        assertEquals(1f, identity.getArray()[0], 0f);
+    }
+
+    @Test
+    public void channelRoundsAndClamps() {
+        assertEquals(0, ColorMatrixOp.channel(-3f));
+        assertEquals(255, ColorMatrixOp.channel(300f));
+        assertEquals(128, ColorMatrixOp.channel(127.5f));
+        assertEquals(127, ColorMatrixOp.channel(127.4f));
+    }
+}
@@ -0,0 +1,225 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ConvolutionTest {
+
+    private static final float[] LAPLACIAN = {0, -1, 0, -1, 4, -1, 0, -1, 0};
+
+    @Test
+    public void kernelRejectsBadShapes() {
+        assertThrows(IllegalArgumentException.class, () -> new Convolution.Kernel(2, 3, new float[6]));
+        assertThrows(IllegalArgumentException.class, () -> new Convolution.Kernel(3, 3, new float[8]));
+        assertThrows(IllegalArgumentException.class, () -> Convolution.Kernel.gaussian(0));
+    }
+
+    @Test
+    public void detectsSeparableKernels() {
+        assertTrue(Convolution.Kernel.gaussian(1.5).isSeparable());
+        assertTrue(new Convolution.Kernel(3, 3, new float[]{1, 1, 1, 1, 1, 1, 1, 1, 1}).isSeparable());
+        assertTrue(Convolution.Kernel.outer(new float[]{1, 2, 1}, new float[]{-1, 0, 1}).isSeparable());
+        assertFalse(new Convolution.Kernel(3, 3, LAPLACIAN).isSeparable());
+        assertFalse(new Convolution.Kernel(3, 3, new float[9]).isSeparable());
+    }
+
+    @Test
+    public void gaussianIsNormalizedAndTruncatedAtThreeSigma() {
+        Convolution.Kernel kernel = Convolution.Kernel.gaussian(1.2);
+        assertEquals(9, kernel.width);
+        assertEquals(9, kernel.height);
+        Raster raster = TestImages.filled(20, 20, 0xFF7F3F1F);
+        Convolution.apply(raster, kernel);
+        for (int pixel : raster.pixels) {
+            assertEquals(0xFF7F3F1F, pixel);
+        }
+    }
+
+    @Test
+    public void identityKernelLeavesOpaquePixelsUnchanged() {
+        Raster raster = TestImages.noise(40, 35, 90);
+        int[] before = raster.pixels.clone();
+        Convolution.apply(raster, new Convolution.Kernel(3, 3, new float[]{0, 0, 0, 0, 1, 0, 0, 0, 0}));
+        assertArrayEquals(before, raster.pixels);
+    }
+
+    @Test
+    public void shiftKernelRepeatsTheEdge() {
+        Raster raster = TestImages.noise(9, 4, 91);
+        Raster expected = new Raster(9, 4);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 9; x++) {
+                expected.set(x, y, raster.get(Math.max(0, x - 2), y));
+            }
+        }
+        Convolution.apply(raster, new Convolution.Kernel(5, 1, new float[]{1, 0, 0, 0, 0}));
+        assertArrayEquals(expected.pixels, raster.pixels);
+    }
+
+    @Test
+    public void separableAndGeneralPathsMatchAFloatReference() {
+        Raster source = TestImages.noise(70, 50, 92);
+        float[] taps = gaussianTaps(3, 1.0);
+        float[] weights = new float[taps.length * taps.length];
+        for (int y = 0; y < taps.length; y++) {
+            for (int x = 0; x < taps.length; x++) {
+                weights[y * taps.length + x] = taps[y] * taps[x];
+            }
+        }
+        Convolution.Kernel separable = Convolution.Kernel.outer(taps, taps);
+        // A tiny off-rank term sends the same kernel down the general 2D path.
+        float[] perturbed = weights.clone();
+        perturbed[0] += 1e-3f;
+        Convolution.Kernel general = new Convolution.Kernel(taps.length, taps.length, perturbed);
+        assertTrue(separable.isSeparable());
+        assertFalse(general.isSeparable());
+        Convolution.Kernel[] kernels = {separable, general};
+        float[][] expectedWeights = {weights, perturbed};
+        for (int k = 0; k < kernels.length; k++) {
+            Raster raster = new Raster(70, 50, source.pixels.clone());
+            Convolution.apply(raster, kernels[k]);
+            int[] expected = reference(source, taps.length, taps.length, expectedWeights[k]);
+            for (int i = 0; i < expected.length; i++) {
+                assertTrue("pixel " + i, TestImages.maxChannelDelta(expected[i], raster.pixels[i]) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void zeroSumKernelsKeepOpaqueImagesOpaque() {
+        Raster raster = TestImages.noise(30, 30, 93);
+        Convolution.apply(raster, new Convolution.Kernel(3, 3, LAPLACIAN));
+        for (int pixel : raster.pixels) {
+            assertEquals(0xFF, pixel >>> 24);
+        }
+    }
+
+    @Test
+    public void translucentPixelsArePremultipliedBeforeBlurring() {
+        // A transparent neighbour must not pull red towards black.
+        Raster raster = new Raster(3, 1, new int[]{0xFFFF0000, 0x00000000, 0xFFFF0000});
+        Convolution.apply(raster, new Convolution.Kernel(3, 1, new float[]{1 / 3f, 1 / 3f, 1 / 3f}));
+        for (int pixel : raster.pixels) {
+            assertEquals(0x00FF0000, pixel & 0x00FFFFFF);
+        }
+        assertEquals(0xAA, raster.get(1, 0) >>> 24);
+    }
+
+    @Test
+    public void rejectsWeightsThatWouldOverflow() {
+        Raster raster = new Raster(4, 4);
+        float[] weights = new float[25];
+        weights[3] = 1e6f;
+        weights[17] = 1e6f;
+        assertThrows(IllegalArgumentException.class,
+            () -> Convolution.apply(raster, new Convolution.Kernel(5, 5, weights)));
+    }
+
+    @Test
+    public void scaledMultipliesEveryWeight() {
+        Raster raster = TestImages.filled(8, 8, 0xFF404040);
+        Convolution.apply(raster, new Convolution.Kernel(3, 3, new float[]{1, 1, 1, 1, 1, 1, 1, 1, 1}).scaled(1 / 9f));
+        assertEquals(0xFF404040, raster.get(4, 4));
+    }
+
+    @Test
+    public void sharpenSteepensAStepAndKeepsFlatAreas() {
+        Raster raster = step(40, 20, 0xFF606060, 0xFFA0A0A0);
+        Raster unchanged = new Raster(40, 20, raster.pixels.clone());
+        Convolution.sharpen(unchanged, 0f, 1.0);
+        assertArrayEquals(raster.pixels, unchanged.pixels);
+
+        Convolution.sharpen(raster, 1.5f, 1.0);
+        assertEquals(0xFF606060, raster.get(2, 10));
+        assertEquals(0xFFA0A0A0, raster.get(37, 10));
+        assertTrue(TestImages.channel(raster.get(19, 10), 0) < 0x60);
+        assertTrue(TestImages.channel(raster.get(20, 10), 0) > 0xA0);
+    }
+
+    @Test
+    public void edgesMarkTheStepOnly() {
+        Raster raster = step(20, 10, 0x80000000, 0xFFFFFFFF);
+        Convolution.edges(raster);
+        for (int y = 0; y < 10; y++) {
+            assertEquals(0xFF000000, raster.get(3, y));
+            assertEquals(0xFF000000, raster.get(16, y));
+            assertEquals(0xFFFFFFFF, raster.get(9, y));
+            assertEquals(0xFFFFFFFF, raster.get(10, y));
+        }
+    }
+
+    @Test
+    public void bandOpsMatchTheWholeImage() throws IOException {
+        Raster source = TestImages.noise(48, 61, 94);
+        Convolution.Kernel kernel = new Convolution.Kernel(3, 5, new float[]{
+            0, 1, 0, 1, -2, 1, 0, 3, 0, 1, -2, 1, 0, 1, 0}).scaled(0.5f);
+        BandOp[] ops = {BandOps.convolve(kernel), BandOps.sharpen(0.8f, 1.5), BandOps.edges()};
+        Raster[] expected = new Raster[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            expected[i] = new Raster(48, 61, source.pixels.clone());
+        }
+        Convolution.apply(expected[0], kernel);
+        Convolution.sharpen(expected[1], 0.8f, 1.5);
+        Convolution.edges(expected[2]);
+        for (int i = 0; i < ops.length; i++) {
+            TiledProcessorTest.Collector sink = new TiledProcessorTest.Collector(48, 61);
+            TiledProcessor.run(source, 48, 61, null, Collections.singletonList(ops[i]), 8, sink);
+            assertArrayEquals("op " + i, expected[i].pixels, sink.raster.pixels);
+        }
+    }
+
+    private static Raster step(int width, int height, int left, int right) {
+        Raster raster = new Raster(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.set(x, y, x < width / 2 ? left : right);
+            }
+        }
+        return raster;
+    }
+
+    private static float[] gaussianTaps(int radius, double sigma) {
+        float[] taps = new float[radius * 2 + 1];
+        double sum = 0;
+        for (int i = -radius; i <= radius; i++) {
+            double value = Math.exp(-(i * i) / (2 * sigma * sigma));
+            taps[i + radius] = (float) value;
+            sum += value;
+        }
+        for (int i = 0; i < taps.length; i++) {
+            taps[i] /= (float) sum;
+        }
+        return taps;
+    }
+
+    /** Direct floating-point convolution of an opaque raster with repeated edges. */
+    private static int[] reference(Raster source, int kernelWidth, int kernelHeight, float[] weights) {
+        int[] out = new int[source.width * source.height];
+        for (int y = 0; y < source.height; y++) {
+            for (int x = 0; x < source.width; x++) {
+                int pixel = 0xFF000000;
+                for (int shift = 0; shift < 24; shift += 8) {
+                    double sum = 0;
+                    for (int ky = 0; ky < kernelHeight; ky++) {
+                        int sy = IntRect.clamp(y + ky - kernelHeight / 2, 0, source.height - 1);
+                        for (int kx = 0; kx < kernelWidth; kx++) {
+                            int sx = IntRect.clamp(x + kx - kernelWidth / 2, 0, source.width - 1);
+                            sum += weights[ky * kernelWidth + kx] * TestImages.channel(source.get(sx, sy), shift);
+                        }
+                    }
+                    pixel |= IntRect.clamp((int) Math.round(sum), 0, 255) << shift;
+                }
+                out[y * source.width + x] = pixel;
+            }
+        }
+        return out;
+    }
+}
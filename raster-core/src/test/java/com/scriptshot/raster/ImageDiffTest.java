@@ -0,0 +1,108 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ImageDiffTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 70;
+
+    @Test
+    public void identicalImagesAreUnchanged() {
+        Raster first = TestImages.noise(WIDTH, HEIGHT, 10);
+        Raster second = TestImages.noise(WIDTH, HEIGHT, 10);
+        ImageDiff.Result result = ImageDiff.compare(WIDTH, HEIGHT, first, second, 0, 32, true, null);
+        assertFalse(result.changed);
+        assertEquals(0, result.changedPixels);
+        assertEquals(0, result.regions.length);
+        assertEquals(1d, result.ssim, 0d);
+        assertFalse(ImageDiff.differs(WIDTH, HEIGHT, first, second, 0, 32));
+    }
+
+    @Test
+    public void reportsTightBoundsOfEachChangedArea() {
+        Raster first = TestImages.noise(WIDTH, HEIGHT, 11);
+        Raster second = TestImages.noise(WIDTH, HEIGHT, 11);
+        second.set(3, 4, second.get(3, 4) ^ 0xFF);
+        second.paste(TestImages.filled(6, 5, 0xFF00FF00), 80, 60);
+        ImageDiff.Result result = ImageDiff.compare(WIDTH, HEIGHT, first, second, 0, 32, false, null);
+        assertTrue(result.changed);
+        assertTrue(Double.isNaN(result.ssim));
+        assertEquals(2, result.regions.length);
+        ImageDiff.Region dot = result.regions[0];
+        assertEquals(3, dot.left);
+        assertEquals(4, dot.top);
+        assertEquals(4, dot.right);
+        assertEquals(5, dot.bottom);
+        assertEquals(1, dot.pixels);
+        ImageDiff.Region block = result.regions[1];
+        assertEquals(80, block.left);
+        assertEquals(60, block.top);
+        assertEquals(86, block.right);
+        assertEquals(65, block.bottom);
+        assertEquals(1 + block.pixels, result.changedPixels);
+        assertEquals((double) result.changedPixels / (WIDTH * HEIGHT), result.ratio, 1e-12);
+    }
+
+    @Test
+    public void changesAcrossTileBordersFormOneRegion() {
+        Raster first = TestImages.filled(WIDTH, HEIGHT, 0xFFFFFFFF);
+        Raster second = TestImages.filled(WIDTH, HEIGHT, 0xFFFFFFFF);
+        second.paste(TestImages.filled(10, 10, 0xFF000000), 27, 27);
+        ImageDiff.Result result = ImageDiff.compare(WIDTH, HEIGHT, first, second, 0, 32, false, null);
+        assertEquals(1, result.regions.length);
+        assertEquals(100, result.regions[0].pixels);
+        assertEquals(27, result.regions[0].left);
+        assertEquals(37, result.regions[0].bottom);
+    }
+
+    @Test
+    public void findsAChangeInTheLastPixelOfAnEdgeTile() {
+        Raster first = TestImages.noise(WIDTH, HEIGHT, 14);
+        Raster second = TestImages.noise(WIDTH, HEIGHT, 14);
+        second.set(WIDTH - 1, HEIGHT - 1, second.get(WIDTH - 1, HEIGHT - 1) ^ 0x01);
+        assertTrue(ImageDiff.differs(WIDTH, HEIGHT, first, second, 0, 32));
+        ImageDiff.Result result = ImageDiff.compare(WIDTH, HEIGHT, first, second, 0, 32, false, null);
+        assertEquals(1, result.changedPixels);
+        assertEquals(WIDTH - 1, result.regions[0].left);
+        assertEquals(HEIGHT - 1, result.regions[0].top);
+    }
+
+    @Test
+    public void toleranceIgnoresSmallDeltas() {
+        Raster first = TestImages.filled(WIDTH, HEIGHT, 0xFF808080);
+        Raster second = TestImages.filled(WIDTH, HEIGHT, 0xFF808080);
+        second.set(50, 50, 0xFF848080);
+        assertFalse(ImageDiff.compare(WIDTH, HEIGHT, first, second, 4, 32, false, null).changed);
+        assertFalse(ImageDiff.differs(WIDTH, HEIGHT, first, second, 4, 32));
+        assertTrue(ImageDiff.compare(WIDTH, HEIGHT, first, second, 3, 32, false, null).changed);
+        assertTrue(ImageDiff.differs(WIDTH, HEIGHT, first, second, 3, 32));
+        second.set(50, 50, 0xF0808080);
+        assertTrue(ImageDiff.differs(WIDTH, HEIGHT, first, second, 3, 32));
+    }
+
+    @Test
+    public void ssimDropsForChangedContent() {
+        Raster first = TestImages.noise(64, 64, 12);
+        Raster second = TestImages.noise(64, 64, 13);
+        ImageDiff.Result result = ImageDiff.compare(64, 64, first, second, 0, 16, true, null);
+        assertTrue(result.ssim < 0.2d);
+    }
+
+    @Test
+    public void heatmapMarksChangedPixelsAndDimsTheRest() {
+        Raster first = TestImages.filled(WIDTH, HEIGHT, 0xFFFFFFFF);
+        Raster second = TestImages.filled(WIDTH, HEIGHT, 0xFFFFFFFF);
+        second.set(40, 41, 0xFF000000);
+        Raster heat = new Raster(WIDTH, HEIGHT);
+        ImageDiff.compare(WIDTH, HEIGHT, first, second, 0, 32, false,
+            (top, rows, pixels) -> System.arraycopy(pixels, 0, heat.pixels, top * WIDTH, rows * WIDTH));
+        assertEquals(0xFFFF0000, heat.get(40, 41));
+        assertEquals(0xFF3F3F3F, heat.get(0, 0));
+        assertEquals(0xFF3F3F3F, heat.get(41, 41));
+    }
+}
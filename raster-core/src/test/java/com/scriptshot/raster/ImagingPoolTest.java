@@ -0,0 +1,66 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+public class ImagingPoolTest {
+
+    @Test
+    public void forEachRangeCoversEveryIndexOnce() {
+        for (int count : new int[]{0, 1, 7, 64, 1000, 4097}) {
+            AtomicIntegerArray visits = new AtomicIntegerArray(Math.max(1, count));
+            ImagingPool.forEachRange(count, 8, (start, end) -> {
+                for (int i = start; i < end; i++) {
+                    visits.incrementAndGet(i);
+                }
+            });
+            for (int i = 0; i < count; i++) {
+                assertEquals("count " + count + " index " + i, 1, visits.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void nestedRangesRunInline() {
+        AtomicIntegerArray visits = new AtomicIntegerArray(64 * 64);
+        ImagingPool.forEachRange(64, 1, (outerStart, outerEnd) -> {
+            for (int row = outerStart; row < outerEnd; row++) {
+                int base = row * 64;
+                ImagingPool.forEachRange(64, 1, (start, end) -> {
+                    for (int i = start; i < end; i++) {
+                        visits.incrementAndGet(base + i);
+                    }
+                });
+            }
+        });
+        for (int i = 0; i < visits.length(); i++) {
+            assertEquals(1, visits.get(i));
+        }
+    }
+
+    @Test
+    public void taskFailuresReachTheCaller() {
+        assertThrows(IllegalArgumentException.class, () -> ImagingPool.forEachRange(1000, 1, (start, end) -> {
+            // The first range runs on a pool thread whenever the work is split.
+            if (start == 0) {
+                throw new IllegalArgumentException("range " + start);
+            }
+        }));
+    }
+
+    @Test
+    public void awaitIoRethrowsIoExceptions() {
+        Future<Object> future = ImagingPool.executor().submit(() -> {
+            throw new IOException("disk");
+        });
+        IOException error = assertThrows(IOException.class, () -> ImagingPool.awaitIo(future));
+        assertEquals("disk", error.getMessage());
+        assertThrows(IllegalStateException.class, () -> ImagingPool.await(future));
+    }
+}
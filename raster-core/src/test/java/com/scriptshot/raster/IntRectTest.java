@@ -0,0 +1,78 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IntRectTest {
+
+    @Test
+    public void sizeUsesExclusiveEdges() {
+        IntRect rect = new IntRect(2, 3, 7, 4);
+        assertEquals(5, rect.width());
+        assertEquals(1, rect.height());
+        assertFalse(rect.isEmpty());
+        assertTrue(new IntRect(2, 3, 2, 9).isEmpty());
+        assertTrue(new IntRect(5, 3, 2, 9).isEmpty());
+    }
+
+    @Test
+    public void sharedEdgesDoNotIntersect() {
+        IntRect rect = new IntRect(0, 0, 10, 10);
+        assertTrue(rect.intersects(new IntRect(9, 9, 20, 20)));
+        assertFalse(rect.intersects(new IntRect(10, 0, 20, 10)));
+        assertFalse(rect.intersects(new IntRect(0, 10, 10, 20)));
+        assertTrue(rect.intersects(new IntRect(2, 2, 3, 3)));
+    }
+
+    @Test
+    public void unionCoversBoth() {
+        assertRect(-1, 0, 10, 12, new IntRect(0, 0, 10, 5).union(new IntRect(-1, 4, 3, 12)));
+    }
+
+    @Test
+    public void clampedOrdersAndClampsCorners() {
+        assertRect(0, 5, 50, 100, IntRect.clamped(80, 5, -10, 200, 50, 100));
+        assertTrue(IntRect.clamped(60, 0, 70, 10, 50, 100).isEmpty());
+    }
+
+    @Test
+    public void centeredShrinksToFit() {
+        assertRect(25, 10, 75, 30, IntRect.centered(100, 40, 50, 20));
+        assertRect(0, 5, 30, 15, IntRect.centered(30, 20, 60, 10));
+        // An odd margin leaves the extra pixel on the right.
+        assertRect(1, 0, 3, 1, IntRect.centered(5, 1, 2, 1));
+    }
+
+    @Test
+    public void relativeMapsRatiosToPixels() {
+        assertRect(25, 10, 75, 40, IntRect.relative(100, 40, 0.25f, 0.25f, 0.75f, 1f));
+        assertRect(0, 0, 100, 20, IntRect.relative(100, 40, 1.5f, 0.5f, -0.2f, 0f));
+    }
+
+    @Test
+    public void padToAspectPadsTheShortSideEvenly() {
+        IntRect wide = IntRect.padToAspect(100, 100, 2f);
+        assertRect(-50, 0, 150, 100, wide);
+        IntRect tall = IntRect.padToAspect(100, 100, 0.5f);
+        assertRect(0, -50, 100, 150, tall);
+        // The odd pixel goes to the right or bottom.
+        assertRect(0, -1, 10, 11, IntRect.padToAspect(10, 9, 10f / 12f));
+        assertRect(0, 0, 10, 10, IntRect.padToAspect(10, 10, 1f));
+    }
+
+    @Test
+    public void equalityIsByValue() {
+        assertEquals(new IntRect(1, 2, 3, 4), new IntRect(1, 2, 3, 4));
+        assertEquals(new IntRect(1, 2, 3, 4).hashCode(), new IntRect(1, 2, 3, 4).hashCode());
+        assertNotEquals(new IntRect(1, 2, 3, 4), new IntRect(1, 2, 3, 5));
+        assertEquals("[1,2][3,4]", new IntRect(1, 2, 3, 4).toString());
+    }
+
+    private static void assertRect(int left, int top, int right, int bottom, IntRect actual) {
+        assertEquals(new IntRect(left, top, right, bottom).toString(), actual.toString());
+    }
+}
@@ -0,0 +1,107 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class JpegStreamWriterTest {
+
+    @Test
+    public void flatColourDecodesAlmostExactly() throws IOException {
+        Raster raster = TestImages.filled(40, 24, 0xFF3366CC);
+        Raster decoded = TestImages.decode(encode(raster, 95, raster.height));
+        for (int pixel : decoded.pixels) {
+            assertTrue(Integer.toHexString(pixel), TestImages.maxChannelDelta(pixel, 0xFF3366CC) <= 3);
+        }
+    }
+
+    @Test
+    public void oddSizesDecodeCloseToTheSource() throws IOException {
+        Raster raster = smoothImage(101, 67);
+        Raster decoded = TestImages.decode(encode(raster, 90, 13));
+        assertEquals(101, decoded.width);
+        assertEquals(67, decoded.height);
+        assertTrue("mean error " + meanError(raster, decoded), meanError(raster, decoded) < 3d);
+    }
+
+    @Test
+    public void bandSizeDoesNotChangeTheOutput() throws IOException {
+        Raster raster = smoothImage(50, 45);
+        byte[] whole = encode(raster, 80, raster.height);
+        assertArrayEquals(whole, encode(raster, 80, 1));
+        assertArrayEquals(whole, encode(raster, 80, 17));
+    }
+
+    @Test
+    public void lowerQualityIsSmallerAndCoarser() throws IOException {
+        Raster raster = smoothImage(128, 96);
+        byte[] high = encode(raster, 95, 32);
+        byte[] low = encode(raster, 20, 32);
+        assertTrue(low.length < high.length);
+        assertTrue(meanError(raster, TestImages.decode(low)) > meanError(raster, TestImages.decode(high)));
+    }
+
+    @Test
+    public void ignoresAlpha() throws IOException {
+        Raster raster = TestImages.filled(16, 16, 0x00808080);
+        Raster decoded = TestImages.decode(encode(raster, 90, 16));
+        assertTrue(TestImages.maxChannelDelta(decoded.get(5, 5), 0xFF808080) <= 2);
+    }
+
+    @Test
+    public void enforcesTheRowCount() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> new JpegStreamWriter(new ByteArrayOutputStream(), 0, 5, 90));
+        assertThrows(IllegalArgumentException.class,
+            () -> new JpegStreamWriter(new ByteArrayOutputStream(), 70000, 5, 90));
+        try (JpegStreamWriter writer = new JpegStreamWriter(new ByteArrayOutputStream(), 4, 2, 90)) {
+            writer.writeRows(new int[8], 0, 4, 1);
+            assertEquals(1, writer.getRowsWritten());
+            assertThrows(IllegalStateException.class, writer::finish);
+            assertThrows(IllegalStateException.class, () -> writer.writeRows(new int[8], 0, 4, 2));
+        }
+    }
+
+    private static byte[] encode(Raster raster, int quality, int bandRows) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JpegStreamWriter writer = new JpegStreamWriter(output, raster.width, raster.height, quality)) {
+            for (int top = 0; top < raster.height; top += bandRows) {
+                int rows = Math.min(bandRows, raster.height - top);
+                writer.writeRows(raster.pixels, top * raster.width, raster.width, rows);
+            }
+            writer.finish();
+        }
+        return output.toByteArray();
+    }
+
+    /** Gradients with a few hard edges: typical photo-like content JPEG should handle well. */
+    private static Raster smoothImage(int width, int height) {
+        Raster raster = new Raster(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = x > width / 2 && y > height / 3 ? 220 : 40;
+                raster.set(x, y, 0xFF000000 | r << 16 | g << 8 | b);
+            }
+        }
+        return raster;
+    }
+
+    private static double meanError(Raster expected, Raster actual) {
+        long total = 0;
+        for (int i = 0; i < expected.pixels.length; i++) {
+            int a = expected.pixels[i];
+            int b = actual.pixels[i];
+            for (int shift = 0; shift < 24; shift += 8) {
+                total += Math.abs(TestImages.channel(a, shift) - TestImages.channel(b, shift));
+            }
+        }
+        return total / (3d * expected.pixels.length);
+    }
+}
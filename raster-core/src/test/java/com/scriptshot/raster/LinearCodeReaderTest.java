@@ -0,0 +1,102 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class LinearCodeReaderTest {
+
+    private static final int QUIET = 10;
+    private static final int TOP = 12;
+    private static final int HEIGHT = 40;
+
+    @Test
+    public void readsEan13() {
+        assertReads(CodeScanner.EAN_13, "4006381333931", TestCodes.ean("4006381333931"), 2);
+        assertReads(CodeScanner.EAN_13, "5901234123457", TestCodes.ean("5901234123457"), 3);
+    }
+
+    @Test
+    public void readsUpcAAsTwelveDigits() {
+        assertReads(CodeScanner.UPC_A, "036000291452", TestCodes.upcA("036000291452"), 2);
+    }
+
+    @Test
+    public void readsEan8() {
+        assertReads(CodeScanner.EAN_8, "96385074", TestCodes.ean("96385074"), 3);
+    }
+
+    @Test
+    public void rejectsABadCheckDigit() {
+        assertNothing(TestCodes.ean("4006381333932"), 2);
+        assertNothing(TestCodes.ean("96385075"), 3);
+    }
+
+    @Test
+    public void readsCode128SetB() {
+        String text = "Hello, World!";
+        int[] values = new int[text.length() + 1];
+        values[0] = 104;
+        for (int i = 0; i < text.length(); i++) {
+            values[i + 1] = text.charAt(i) - 32;
+        }
+        assertReads(CodeScanner.CODE_128, text, TestCodes.code128(values), 2);
+    }
+
+    @Test
+    public void readsCode128SetAControlCharacters() {
+        // Set A puts the control characters after the upper-case letters: tab is value 73.
+        assertReads(CodeScanner.CODE_128, "AB\tC", TestCodes.code128(103, 33, 34, 73, 35), 2);
+    }
+
+    @Test
+    public void readsCode128SetCAndSwitches() {
+        assertReads(CodeScanner.CODE_128, "123456789012", TestCodes.code128(105, 12, 34, 56, 78, 90, 12), 2);
+        // Code B (100) leaves set C for the two letters.
+        assertReads(CodeScanner.CODE_128, "1234ab", TestCodes.code128(105, 12, 34, 100, 65, 66), 3);
+    }
+
+    @Test
+    public void dropsALeadingFnc1AndSeparatesLaterOnes() {
+        // GS1-128: FNC1 (102) first marks the data as GS1, later ones separate variable-length fields.
+        assertReads(CodeScanner.CODE_128, "0112345678901231",
+            TestCodes.code128(105, 102, 1, 12, 34, 56, 78, 90, 12, 31), 2);
+        assertReads(CodeScanner.CODE_128, "10AB\u001D12",
+            TestCodes.code128(105, 102, 10, 101, 33, 34, 102, 17, 18), 2);
+    }
+
+    @Test
+    public void ignoresBarcodesSeenOnASingleRow() {
+        String modules = TestCodes.ean("4006381333931");
+        LumaPlane plane = TestCodes.blank((modules.length() + QUIET * 2) * 2, HEIGHT + TOP * 2);
+        TestCodes.drawBars(plane, modules, 2, QUIET * 2, TOP, 1);
+        assertTrue(CodeScanner.scan(plane, false, true).isEmpty());
+    }
+
+    @Test
+    public void findsNothingInNoise() {
+        Raster noise = TestImages.noise(400, 120, 160);
+        assertTrue(CodeScanner.scan(LumaPlane.fromArgb(noise.pixels, 400, 120), false, true).isEmpty());
+    }
+
+    private static void assertReads(String format, String text, String modules, int modulePixels) {
+        int left = QUIET * modulePixels;
+        LumaPlane plane = TestCodes.blank((modules.length() + QUIET * 2) * modulePixels, HEIGHT + TOP * 2);
+        TestCodes.drawBars(plane, modules, modulePixels, left, TOP, HEIGHT);
+        List<CodeScanner.Result> results = CodeScanner.scan(plane, false, true);
+        assertEquals(text, 1, results.size());
+        CodeScanner.Result result = results.get(0);
+        assertEquals(format, result.format);
+        assertEquals(text, result.text);
+        assertEquals(new IntRect(left, TOP, left + modules.length() * modulePixels, TOP + HEIGHT), result.bounds);
+    }
+
+    private static void assertNothing(String modules, int modulePixels) {
+        LumaPlane plane = TestCodes.blank((modules.length() + QUIET * 2) * modulePixels, HEIGHT + TOP * 2);
+        TestCodes.drawBars(plane, modules, modulePixels, QUIET * modulePixels, TOP, HEIGHT);
+        assertTrue(CodeScanner.scan(plane, false, true).isEmpty());
+    }
+}
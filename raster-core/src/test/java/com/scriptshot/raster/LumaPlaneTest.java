@@ -0,0 +1,60 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class LumaPlaneTest {
+
+    @Test
+    public void rejectsShortArrays() {
+        assertThrows(IllegalArgumentException.class, () -> new LumaPlane(3, 3, new int[8]));
+        assertThrows(IllegalArgumentException.class, () -> new LumaPlane(0, 3, new int[8]));
+    }
+
+    @Test
+    public void fromArgbConvertsInPlace() {
+        int[] argb = {0xFFFFFFFF, 0xFFFF0000, 0xFF000000, 0x00FFFFFF};
+        LumaPlane plane = LumaPlane.fromArgb(argb, 2, 2);
+        assertSame(argb, plane.values);
+        assertArrayEquals(new int[]{255, 76, 0, 255}, plane.values);
+    }
+
+    @Test
+    public void downsampleAveragesAndRoundsQuads() {
+        LumaPlane plane = new LumaPlane(4, 2, new int[]{
+            0, 1, 10, 10,
+            1, 1, 20, 21,
+        });
+        // (0 + 1 + 1 + 1 + 2) >> 2 = 1 and (10 + 10 + 20 + 21 + 2) >> 2 = 15.
+        assertArrayEquals(new int[]{1, 15}, plane.downsample().values);
+    }
+
+    @Test
+    public void downsampleKeepsAtLeastOnePixel() {
+        LumaPlane plane = new LumaPlane(1, 3, new int[]{8, 4, 0});
+        LumaPlane half = plane.downsample();
+        assertEquals(1, half.width);
+        assertEquals(1, half.height);
+        assertEquals(6, half.values[0]);
+    }
+
+    @Test
+    public void resizeToTheSameSizeReturnsThePlane() {
+        LumaPlane plane = new LumaPlane(2, 2, new int[4]);
+        assertSame(plane, plane.resize(2, 2));
+    }
+
+    @Test
+    public void resizeInterpolatesLinearly() {
+        LumaPlane ramp = new LumaPlane(4, 1, new int[]{0, 40, 80, 120});
+        assertArrayEquals(new int[]{20, 100}, ramp.resize(2, 1).values);
+        LumaPlane flat = new LumaPlane(3, 3, new int[]{90, 90, 90, 90, 90, 90, 90, 90, 90});
+        for (int value : flat.resize(7, 5).values) {
+            assertEquals(90, value);
+        }
+    }
+}
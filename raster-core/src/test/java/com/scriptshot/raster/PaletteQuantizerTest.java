@@ -0,0 +1,118 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PaletteQuantizerTest {
+
+    @Test
+    public void fewColoursGetAnExactPalette() {
+        Raster raster = TestImages.filled(90, 80, 0xFFFFFFFF);
+        raster.paste(TestImages.filled(30, 30, 0xFF2196F3), 10, 10);
+        raster.paste(TestImages.filled(20, 70, 0xFF212121), 60, 5);
+        PaletteQuantizer.Palette palette = PaletteQuantizer.build(raster, raster.width, raster.height, 256, true);
+        assertTrue(palette.exact);
+        assertEquals(3, palette.colors.length);
+        assertMapsExactly(raster, palette);
+    }
+
+    @Test
+    public void translucentPixelsShareTheFirstEntry() {
+        Raster raster = TestImages.filled(10, 10, 0xFF102030);
+        raster.set(0, 0, 0x00000000);
+        raster.set(1, 0, 0x7F405060);
+        raster.set(2, 0, 0x80405060);
+        PaletteQuantizer.Palette palette = PaletteQuantizer.build(raster, 10, 10, 256, false);
+        assertTrue(palette.exact);
+        assertEquals(0, palette.colors[0]);
+        assertEquals(3, palette.colors.length);
+        byte[] row = new byte[10];
+        palette.mapRow(raster.pixels, 0, 10, 0, row, 0);
+        assertEquals(0, row[0]);
+        assertEquals(0, row[1]);
+        // Alpha of 128 and above is dropped rather than kept.
+        assertEquals(0xFF405060, palette.colors[row[2]]);
+        assertEquals(0xFF102030, palette.colors[row[3]]);
+    }
+
+    @Test
+    public void exactPaletteRespectsTheColourLimit() {
+        Raster raster = new Raster(16, 1);
+        for (int x = 0; x < 16; x++) {
+            raster.set(x, 0, 0xFF000000 | x * 0x111111);
+        }
+        assertTrue(PaletteQuantizer.build(raster, 16, 1, 16, false).exact);
+        PaletteQuantizer.Palette limited = PaletteQuantizer.build(raster, 16, 1, 8, false);
+        assertFalse(limited.exact);
+        assertTrue(limited.colors.length <= 8);
+    }
+
+    @Test
+    public void manyColoursAreReducedWithBoundedError() {
+        Raster raster = smoothGradient(256, 200);
+        PaletteQuantizer.Palette palette = PaletteQuantizer.build(raster, raster.width, raster.height, 64, false);
+        assertFalse(palette.exact);
+        assertTrue(palette.colors.length <= 64);
+        byte[] row = new byte[raster.width];
+        long totalError = 0;
+        for (int y = 0; y < raster.height; y++) {
+            palette.mapRow(raster.pixels, y * raster.width, raster.width, y, row, 0);
+            for (int x = 0; x < raster.width; x++) {
+                int mapped = palette.colors[row[x] & 0xFF];
+                int original = raster.get(x, y);
+                assertEquals(0xFF, mapped >>> 24);
+                totalError += TestImages.maxChannelDelta(mapped, original);
+            }
+        }
+        double meanError = (double) totalError / (raster.width * raster.height);
+        assertTrue("mean error " + meanError, meanError < 24);
+    }
+
+    @Test
+    public void ditheringUsesMoreEntriesOnAGradient() {
+        Raster raster = smoothGradient(128, 64);
+        PaletteQuantizer.Palette plain = PaletteQuantizer.build(raster, raster.width, raster.height, 8, false);
+        PaletteQuantizer.Palette dithered = PaletteQuantizer.build(raster, raster.width, raster.height, 8, true);
+        assertTrue(distinctIndices(raster, dithered, 0) >= distinctIndices(raster, plain, 0));
+        assertTrue(distinctIndices(raster, dithered, 0) > 1);
+    }
+
+    private static void assertMapsExactly(Raster raster, PaletteQuantizer.Palette palette) {
+        byte[] row = new byte[raster.width];
+        for (int y = 0; y < raster.height; y++) {
+            palette.mapRow(raster.pixels, y * raster.width, raster.width, y, row, 0);
+            for (int x = 0; x < raster.width; x++) {
+                assertEquals(raster.get(x, y), palette.colors[row[x] & 0xFF]);
+            }
+        }
+    }
+
+    private static int distinctIndices(Raster raster, PaletteQuantizer.Palette palette, int y) {
+        byte[] row = new byte[raster.width];
+        palette.mapRow(raster.pixels, y * raster.width, raster.width, y, row, 0);
+        Set<Byte> seen = new HashSet<>();
+        for (byte index : row) {
+            seen.add(index);
+        }
+        return seen.size();
+    }
+
+    private static Raster smoothGradient(int width, int height) {
+        Raster raster = new Raster(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / (width - 1);
+                int g = y * 255 / (height - 1);
+                int b = (x + y) * 255 / (width + height - 2);
+                raster.set(x, y, 0xFF000000 | r << 16 | g << 8 | b);
+            }
+        }
+        return raster;
+    }
+}
@@ -0,0 +1,177 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+public class ParallelPngEncoderTest {
+
+    private static final int[] LEVELS = {0, 1, 6, 9, Deflater.DEFAULT_COMPRESSION};
+
+    @Test
+    public void everyFilterAndLevelRoundTrips() throws IOException {
+        // Tall enough for several chunks, so seams between chunks and waves are crossed.
+        Raster raster = screenshot(300, 700, 120);
+        for (PngFilter filter : PngFilter.values()) {
+            for (int level : LEVELS) {
+                byte[] png = encode(raster, false, level, filter);
+                assertArrayEquals(filter + " level " + level, raster.pixels, TestImages.decode(png).pixels);
+            }
+        }
+    }
+
+    @Test
+    public void alphaRoundTrips() throws IOException {
+        Raster raster = TestImages.translucentNoise(181, 400, 121);
+        for (PngFilter filter : new PngFilter[]{PngFilter.ADAPTIVE, PngFilter.PAETH}) {
+            byte[] png = encode(raster, true, 6, filter);
+            assertArrayEquals(filter.toString(), raster.pixels, TestImages.decode(png).pixels);
+        }
+    }
+
+    @Test
+    public void zlibStreamIsCompleteAndChecksummed() throws IOException, DataFormatException {
+        Raster raster = screenshot(256, 900, 122);
+        int stride = 256 * 3;
+        for (PngFilter filter : PngFilter.values()) {
+            byte[] inflated = inflate(idat(encode(raster, false, 6, filter)), 900 * (stride + 1));
+            for (int row = 0; row < 900; row++) {
+                int type = inflated[row * (stride + 1)];
+                if (filter == PngFilter.ADAPTIVE) {
+                    assertTrue("row " + row, type == 0 || type == 1 || type == 2 || type == 4);
+                } else {
+                    assertEquals(filter + " row " + row, filter.type, type);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesTheStreamingWriterPixels() throws IOException {
+        Raster raster = screenshot(97, 333, 123);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (PngStreamWriter writer = new PngStreamWriter(output, 97, 333, false, 6)) {
+            writer.writeRows(raster.pixels, 0, 97, 333);
+            writer.finish();
+        }
+        assertArrayEquals(TestImages.decode(output.toByteArray()).pixels,
+            TestImages.decode(encode(raster, false, 6, PngFilter.ADAPTIVE)).pixels);
+    }
+
+    @Test
+    public void outputIsDeterministic() throws IOException {
+        Raster raster = screenshot(200, 800, 124);
+        assertArrayEquals(encode(raster, false, 6, PngFilter.ADAPTIVE), encode(raster, false, 6, PngFilter.ADAPTIVE));
+    }
+
+    @Test
+    public void combineAdlerMatchesTheChecksumOfTheConcatenation() {
+        Random random = new Random(125);
+        for (int[] lengths : new int[][]{{0, 10}, {10, 0}, {1, 1}, {70000, 3}, {5, 200000}, {131072, 131072}}) {
+            byte[] first = new byte[lengths[0]];
+            byte[] second = new byte[lengths[1]];
+            random.nextBytes(first);
+            random.nextBytes(second);
+            Adler32 whole = new Adler32();
+            whole.update(first);
+            whole.update(second);
+            assertEquals(whole.getValue(), ParallelPngEncoder.combineAdler(adler(first), adler(second), second.length));
+        }
+    }
+
+    @Test
+    public void rejectsBadArguments() {
+        Raster raster = new Raster(4, 4);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThrows(IllegalArgumentException.class,
+            () -> ParallelPngEncoder.encode(raster, 0, 4, false, 6, PngFilter.NONE, output));
+        assertThrows(IllegalArgumentException.class,
+            () -> ParallelPngEncoder.encode(raster, 4, 4, false, 10, PngFilter.NONE, output));
+        assertThrows(IllegalArgumentException.class,
+            () -> ParallelPngEncoder.encode(raster, 4, 4, false, -2, PngFilter.NONE, output));
+    }
+
+    @Test
+    public void parsesFilterNames() {
+        assertSame(PngFilter.SUB, PngFilter.parse("sub", PngFilter.ADAPTIVE));
+        assertSame(PngFilter.PAETH, PngFilter.parse(" Paeth ", PngFilter.ADAPTIVE));
+        assertSame(PngFilter.NONE, PngFilter.parse("NONE", PngFilter.ADAPTIVE));
+        assertSame(PngFilter.UP, PngFilter.parse("up", null));
+        assertSame(PngFilter.ADAPTIVE, PngFilter.parse("adaptive", PngFilter.NONE));
+        assertSame(PngFilter.UP, PngFilter.parse("average", PngFilter.UP));
+        assertSame(PngFilter.UP, PngFilter.parse(null, PngFilter.UP));
+    }
+
+    private static byte[] encode(Raster raster, boolean alpha, int level, PngFilter filter) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ParallelPngEncoder.encode(raster, raster.width, raster.height, alpha, level, filter, output);
+        return output.toByteArray();
+    }
+
+    /** Flat panels, a gradient and a noisy photo block: a mix every filter handles differently. */
+    private static Raster screenshot(int width, int height, long seed) {
+        Raster raster = TestImages.filled(width, height, 0xFFFAFAFA);
+        raster.paste(TestImages.filled(width, height / 10, 0xFF6200EE), 0, 0);
+        for (int y = height / 5; y < height / 2; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.set(x, y, 0xFF000000 | (x * 255 / width) << 16 | (y & 0xFF) << 8 | 0x40);
+            }
+        }
+        raster.paste(TestImages.noise(width / 2, height / 4, seed), width / 4, height * 2 / 3);
+        return raster;
+    }
+
+    /** Concatenated IDAT payloads of a PNG. */
+    private static byte[] idat(byte[] png) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int offset = PngFormat.SIGNATURE.length;
+        while (offset < png.length) {
+            int length = (png[offset] & 0xFF) << 24 | (png[offset + 1] & 0xFF) << 16
+                | (png[offset + 2] & 0xFF) << 8 | (png[offset + 3] & 0xFF);
+            String type = new String(png, offset + 4, 4, StandardCharsets.US_ASCII);
+            if (type.equals("IDAT")) {
+                data.write(png, offset + 8, length);
+            }
+            offset += length + 12;
+        }
+        return data.toByteArray();
+    }
+
+    /** Inflates a zlib stream, which fails on a bad header or Adler-32 trailer. */
+    private static byte[] inflate(byte[] zlib, int expectedLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(zlib);
+        byte[] out = new byte[expectedLength + 1];
+        int length = 0;
+        while (!inflater.finished()) {
+            int produced = inflater.inflate(out, length, out.length - length);
+            assertTrue("stream ended early", produced > 0 || inflater.finished());
+            length += produced;
+        }
+        assertEquals(0, inflater.getRemaining());
+        inflater.end();
+        assertEquals(expectedLength, length);
+        byte[] result = new byte[length];
+        System.arraycopy(out, 0, result, 0, length);
+        return result;
+    }
+
+    private static long adler(byte[] data) {
+        Adler32 checksum = new Adler32();
+        checksum.update(data);
+        return checksum.getValue();
+    }
+}
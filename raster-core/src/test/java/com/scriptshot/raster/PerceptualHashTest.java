@@ -0,0 +1,109 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PerceptualHashTest {
+
+    @Test
+    public void dhashSetsABitForEachFallingPair() {
+        int[] falling = new int[PerceptualHash.DHASH_WIDTH * PerceptualHash.DHASH_HEIGHT];
+        for (int i = 0; i < falling.length; i++) {
+            falling[i] = 255 - (i % PerceptualHash.DHASH_WIDTH) * 10;
+        }
+        assertEquals(-1L, PerceptualHash.dhash(falling));
+
+        int[] rising = new int[falling.length];
+        for (int i = 0; i < rising.length; i++) {
+            rising[i] = (i % PerceptualHash.DHASH_WIDTH) * 10;
+        }
+        assertEquals(0L, PerceptualHash.dhash(rising));
+
+        int[] oneStep = new int[falling.length];
+        oneStep[PerceptualHash.DHASH_WIDTH * 2 + 3] = 1;
+        assertEquals(1L << (8 * 2 + 3), PerceptualHash.dhash(oneStep));
+    }
+
+    @Test
+    public void phashIgnoresABrightnessShift() {
+        int[] plane = blockPlane(17);
+        int[] brighter = plane.clone();
+        for (int i = 0; i < brighter.length; i++) {
+            brighter[i] += 40;
+        }
+        assertEquals(PerceptualHash.phash(plane), PerceptualHash.phash(brighter));
+    }
+
+    @Test
+    public void phashSeparatesDifferentImages() {
+        long first = PerceptualHash.phash(blockPlane(17));
+        long second = PerceptualHash.phash(blockPlane(18));
+        assertTrue(PerceptualHash.distance(first, second) > 10);
+    }
+
+    @Test
+    public void phashIsStableUnderNoise() {
+        int[] plane = blockPlane(19);
+        int[] noisy = plane.clone();
+        Random random = new Random(20);
+        for (int i = 0; i < noisy.length; i++) {
+            noisy[i] += random.nextInt(7) - 3;
+        }
+        int distance = PerceptualHash.distance(PerceptualHash.phash(plane), PerceptualHash.phash(noisy));
+        assertTrue("distance " + distance, distance <= 6);
+    }
+
+    @Test
+    public void rejectsWrongPlaneSizes() {
+        assertThrows(IllegalArgumentException.class, () -> PerceptualHash.phash(new int[64]));
+        assertThrows(IllegalArgumentException.class, () -> PerceptualHash.dhash(new int[64]));
+    }
+
+    @Test
+    public void hexRoundTripsIncludingTheSignBit() {
+        long hash = 0x8000000000000abcL;
+        assertEquals("8000000000000abc", PerceptualHash.toHex(hash));
+        assertEquals(hash, PerceptualHash.fromHex(" 8000000000000ABC "));
+        assertEquals("0000000000000001", PerceptualHash.toHex(1L));
+    }
+
+    @Test
+    public void distanceCountsDifferingBits() {
+        assertEquals(0, PerceptualHash.distance(42L, 42L));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+        assertEquals(2, PerceptualHash.distance(0b1010L, 0b0110L));
+    }
+
+    @Test
+    public void lumaUsesRec601Weights() {
+        assertEquals(255, PerceptualHash.luma(0xFFFFFFFF));
+        assertEquals(0, PerceptualHash.luma(0xFF000000));
+        assertEquals(76, PerceptualHash.luma(0xFFFF0000));
+        assertEquals(149, PerceptualHash.luma(0xFF00FF00));
+        assertEquals(29, PerceptualHash.luma(0xFF0000FF));
+        assertNotEquals(PerceptualHash.luma(0xFF00FF00), PerceptualHash.luma(0xFFFF00FF));
+    }
+
+    /** Random 4x4 blocks, coarse enough that every low frequency the hash keeps carries signal. */
+    private static int[] blockPlane(long seed) {
+        Random random = new Random(seed);
+        int size = PerceptualHash.PHASH_SIZE;
+        int[] blocks = new int[(size / 4) * (size / 4)];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = 40 + random.nextInt(160);
+        }
+        int[] plane = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                plane[y * size + x] = blocks[(y / 4) * (size / 4) + x / 4];
+            }
+        }
+        return plane;
+    }
+}
@@ -0,0 +1,123 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class PngStreamWriterTest {
+
+    @Test
+    public void rgbRoundTripsThroughBands() throws IOException {
+        Raster raster = TestImages.noise(61, 47, 30);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (PngStreamWriter writer = new PngStreamWriter(output, raster.width, raster.height, false,
+            Deflater.DEFAULT_COMPRESSION)) {
+            writer.writeRows(raster.pixels, 0, raster.width, 20);
+            writer.writeRows(raster.pixels, 20 * raster.width, raster.width, 27);
+            writer.finish();
+        }
+        assertArrayEquals(raster.pixels, TestImages.decode(output.toByteArray()).pixels);
+    }
+
+    @Test
+    public void rgbaKeepsAlpha() throws IOException {
+        Raster raster = TestImages.translucentNoise(33, 20, 31);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (PngStreamWriter writer = new PngStreamWriter(output, raster.width, raster.height, true, 9)) {
+            writer.writeRows(raster.pixels, 0, raster.width, raster.height);
+            writer.finish();
+        }
+        assertArrayEquals(raster.pixels, TestImages.decode(output.toByteArray()).pixels);
+    }
+
+    @Test
+    public void honoursTheSourceStride() throws IOException {
+        Raster wide = TestImages.noise(40, 10, 32);
+        Raster crop = wide.crop(new IntRect(5, 0, 25, 10));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (PngStreamWriter writer = new PngStreamWriter(output, 20, 10, false, 6)) {
+            writer.writeRows(wide.pixels, 5, wide.width, 10);
+            writer.finish();
+        }
+        assertArrayEquals(crop.pixels, TestImages.decode(output.toByteArray()).pixels);
+    }
+
+    @Test
+    public void indexedRoundTripsAtEveryBitDepth() throws IOException {
+        for (int colours : new int[]{2, 4, 16, 200}) {
+            int[] palette = new int[colours];
+            for (int i = 0; i < colours; i++) {
+                palette[i] = 0xFF000000 | (i * 0x010305 * 7) & 0xFFFFFF;
+            }
+            // Translucent entries go through tRNS.
+            palette[0] = 0x00000000;
+            if (colours > 2) {
+                palette[1] = 0x80FF0000;
+            }
+            int width = 13;
+            int height = 9;
+            byte[][] rows = new byte[height][width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    rows[y][x] = (byte) ((x * 7 + y * 3) % colours);
+                }
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (PngStreamWriter writer = PngStreamWriter.indexed(output, width, height, palette, 9)) {
+                for (byte[] row : rows) {
+                    writer.writeIndexRow(row, 0);
+                }
+                writer.finish();
+            }
+            Raster decoded = TestImages.decode(output.toByteArray());
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int expected = palette[rows[y][x] & 0xFF];
+                    int actual = decoded.get(x, y);
+                    if ((expected >>> 24) == 0) {
+                        assertEquals(colours + " colours at " + x + "," + y, 0, actual >>> 24);
+                    } else {
+                        assertEquals(colours + " colours at " + x + "," + y, expected, actual);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void quantizedScreenshotRoundTripsAsPng8() throws IOException {
+        Raster raster = TestImages.filled(50, 40, 0xFFFAFAFA);
+        raster.paste(TestImages.filled(20, 10, 0xFF6200EE), 5, 5);
+        raster.paste(TestImages.filled(10, 30, 0xFF03DAC5), 35, 5);
+        PaletteQuantizer.Palette palette = PaletteQuantizer.build(raster, 50, 40, 256, false);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] row = new byte[50];
+        try (PngStreamWriter writer = PngStreamWriter.indexed(output, 50, 40, palette.colors, 9)) {
+            for (int y = 0; y < 40; y++) {
+                palette.mapRow(raster.pixels, y * 50, 50, y, row, 0);
+                writer.writeIndexRow(row, 0);
+            }
+            writer.finish();
+        }
+        assertArrayEquals(raster.pixels, TestImages.decode(output.toByteArray()).pixels);
+    }
+
+    @Test
+    public void rejectsTheWrongRowCount() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (PngStreamWriter writer = new PngStreamWriter(output, 4, 2, false, 6)) {
+            writer.writeRows(new int[8], 0, 4, 1);
+            assertThrows(IllegalStateException.class, writer::finish);
+            assertThrows(IllegalStateException.class, () -> writer.writeRows(new int[8], 0, 4, 2));
+            assertThrows(IllegalStateException.class, () -> writer.writeIndexRow(new byte[4], 0));
+        }
+        assertThrows(IllegalArgumentException.class,
+            () -> PngStreamWriter.indexed(new ByteArrayOutputStream(), 4, 2, new int[257], 6));
+    }
+}
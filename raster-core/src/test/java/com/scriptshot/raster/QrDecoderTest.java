@@ -0,0 +1,149 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QrDecoderTest {
+
+    private static final TestCodes.EcLayout V1_L = new TestCodes.EcLayout(1, 7);
+    private static final TestCodes.EcLayout V1_M = new TestCodes.EcLayout(1, 10);
+    private static final TestCodes.EcLayout V1_Q = new TestCodes.EcLayout(1, 13);
+    private static final TestCodes.EcLayout V1_H = new TestCodes.EcLayout(1, 17);
+    private static final TestCodes.EcLayout V2_H = new TestCodes.EcLayout(1, 28);
+
+    @Test
+    public void formatCodesMatchTheSpecification() {
+        // Level and mask 0 for L, M, Q and H.
+        assertEquals(0x77C4, QrDecoder.formatCode(0x08));
+        assertEquals(0x5412, QrDecoder.formatCode(0x00));
+        assertEquals(0x355F, QrDecoder.formatCode(0x18));
+        assertEquals(0x1689, QrDecoder.formatCode(0x10));
+        for (int data = 0; data < 32; data++) {
+            assertEquals(TestCodes.formatInfo(data), QrDecoder.formatCode(data));
+        }
+        assertEquals(0x07C94, TestCodes.versionInfo(7));
+    }
+
+    @Test
+    public void symbolGeometryMatchesTheSpecification() {
+        assertEquals(21, QrDecoder.dimension(1));
+        assertEquals(177, QrDecoder.dimension(40));
+        assertEquals(26, QrDecoder.rawCodewords(1));
+        assertEquals(44, QrDecoder.rawCodewords(2));
+        assertEquals(196, QrDecoder.rawCodewords(7));
+        assertEquals(346, QrDecoder.rawCodewords(10));
+        assertEquals(3706, QrDecoder.rawCodewords(40));
+        assertArrayEquals(new int[0], QrDecoder.alignmentCentres(1));
+        assertArrayEquals(new int[]{6, 18}, QrDecoder.alignmentCentres(2));
+        assertArrayEquals(new int[]{6, 22, 38}, QrDecoder.alignmentCentres(7));
+        assertArrayEquals(new int[]{6, 28, 50}, QrDecoder.alignmentCentres(10));
+        assertArrayEquals(new int[]{6, 34, 60, 86, 112, 138}, QrDecoder.alignmentCentres(32));
+        assertArrayEquals(new int[]{6, 30, 58, 86, 114, 142, 170}, QrDecoder.alignmentCentres(40));
+    }
+
+    @Test
+    public void decodesEveryLevelAndMask() {
+        int[] levels = {TestCodes.LEVEL_L, TestCodes.LEVEL_M, TestCodes.LEVEL_Q, TestCodes.LEVEL_H};
+        TestCodes.EcLayout[] layouts = {V1_L, V1_M, V1_Q, V1_H};
+        for (int i = 0; i < levels.length; i++) {
+            for (int mask = 0; mask < 8; mask++) {
+                // Ten alphanumeric characters is the 1-H capacity.
+                TestCodes.Qr qr = TestCodes.qr("HELLO QR 1", 'A', 1, levels[i], mask, layouts[i]);
+                assertEquals("level " + i + " mask " + mask, "HELLO QR 1", QrDecoder.decode(qr.modules, qr.dimension));
+            }
+        }
+    }
+
+    @Test
+    public void decodesLargerVersionsAndEveryMode() {
+        assertRoundTrip("https://example.com/qr", 'B', 2, TestCodes.LEVEL_M, 3, new TestCodes.EcLayout(1, 16));
+        assertRoundTrip("3141592653589793238462643383279", 'N', 5, TestCodes.LEVEL_Q, 5,
+            new TestCodes.EcLayout(4, 18));
+        assertRoundTrip("SCRIPTSHOT QR VERSION 7 LEVEL H", 'A', 7, TestCodes.LEVEL_H, 1, new TestCodes.EcLayout(5, 26));
+        assertRoundTrip("SEVEN-L $%*+-./: 0123456789", 'A', 7, TestCodes.LEVEL_L, 6, new TestCodes.EcLayout(2, 20));
+        assertRoundTrip("Gr\u00fc\u00dfe aus \u6771\u4eac, version 10", 'B', 10, TestCodes.LEVEL_M, 2,
+            new TestCodes.EcLayout(5, 26));
+        assertRoundTrip("20260419", 'N', 10, TestCodes.LEVEL_Q, 7, new TestCodes.EcLayout(8, 24));
+        StringBuilder long15 = new StringBuilder();
+        while (long15.length() < 480) {
+            long15.append("The quick brown fox jumps over the lazy dog. ");
+        }
+        assertRoundTrip(long15.toString(), 'B', 15, TestCodes.LEVEL_L, 4, new TestCodes.EcLayout(6, 22));
+    }
+
+    @Test
+    public void correctsErrorsInASingleBlock() {
+        int[] data = TestCodes.qrData("ERRORS", 'A', 2, 16);
+        int[] codewords = TestCodes.qrCodewords(data, 2, V2_H);
+        Random random = new Random(150);
+        int[] fixable = codewords.clone();
+        corrupt(fixable, 0, 1, 14, random);
+        TestCodes.Qr qr = TestCodes.qrSymbol(fixable, 2, TestCodes.LEVEL_H, 0);
+        assertEquals("ERRORS", QrDecoder.decode(qr.modules, qr.dimension));
+
+        int[] broken = codewords.clone();
+        corrupt(broken, 0, 1, 15, random);
+        TestCodes.Qr unreadable = TestCodes.qrSymbol(broken, 2, TestCodes.LEVEL_H, 0);
+        assertNull(QrDecoder.decode(unreadable.modules, unreadable.dimension));
+    }
+
+    @Test
+    public void correctsErrorsInEveryInterleavedBlock() {
+        TestCodes.EcLayout layout = new TestCodes.EcLayout(5, 26);
+        int dataCodewords = QrDecoder.rawCodewords(7) - 5 * 26;
+        String text = "INTERLEAVED BLOCKS";
+        int[] codewords = TestCodes.qrCodewords(TestCodes.qrData(text, 'A', 7, dataCodewords), 7, layout);
+        // Interleaving puts one codeword of each block in turn, so every block gets 13 errors.
+        corrupt(codewords, 0, 1, 13 * 5, new Random(151));
+        TestCodes.Qr qr = TestCodes.qrSymbol(codewords, 7, TestCodes.LEVEL_H, 4);
+        assertEquals(text, QrDecoder.decode(qr.modules, qr.dimension));
+    }
+
+    @Test
+    public void toleratesDamagedModulesAndOneLostFormatCopy() {
+        TestCodes.Qr qr = TestCodes.qr("DAMAGED", 'A', 2, TestCodes.LEVEL_H, 2, V2_H);
+        int size = qr.dimension;
+        for (int y = 10; y < 15; y++) {
+            for (int x = 11; x < 16; x++) {
+                qr.modules[y * size + x] = !qr.modules[y * size + x];
+            }
+        }
+        for (int x = 0; x < 6; x++) {
+            qr.modules[8 * size + x] = !qr.modules[8 * size + x];
+        }
+        for (int y = 0; y < 6; y++) {
+            qr.modules[y * size + 8] = !qr.modules[y * size + 8];
+        }
+        assertEquals("DAMAGED", QrDecoder.decode(qr.modules, size));
+    }
+
+    @Test
+    public void rejectsGridsThatAreNotQrCodes() {
+        assertNull(QrDecoder.decode(new boolean[22 * 22], 22));
+        assertNull(QrDecoder.decode(new boolean[13 * 13], 13));
+        Random random = new Random(152);
+        boolean[] noise = new boolean[25 * 25];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = random.nextBoolean();
+        }
+        assertNull(QrDecoder.decode(noise, 25));
+    }
+
+    private static void assertRoundTrip(String text, char mode, int version, int level, int mask,
+                                        TestCodes.EcLayout layout) {
+        TestCodes.Qr qr = TestCodes.qr(text, mode, version, level, mask, layout);
+        assertEquals("version " + version, text, QrDecoder.decode(qr.modules, qr.dimension));
+    }
+
+    /** Flips bits in {@code count} codewords from {@code start}, every {@code step}th one. */
+    private static void corrupt(int[] codewords, int start, int step, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            codewords[start + i * step] ^= 1 + random.nextInt(255);
+        }
+    }
+}
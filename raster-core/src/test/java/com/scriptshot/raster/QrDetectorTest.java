@@ -0,0 +1,99 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class QrDetectorTest {
+
+    private static final int QUIET = 4;
+
+    @Test
+    public void findsCodesOfSeveralVersionsAndModuleSizes() {
+        assertScans("HELLO QR 1", 'A', 1, TestCodes.LEVEL_H, 3, new TestCodes.EcLayout(1, 17), 3);
+        assertScans("https://example.com/qr", 'B', 2, TestCodes.LEVEL_M, 5, new TestCodes.EcLayout(1, 16), 2);
+        assertScans("3141592653589793238462643383279", 'N', 5, TestCodes.LEVEL_Q, 0, new TestCodes.EcLayout(4, 18), 4);
+        assertScans("SCRIPTSHOT QR VERSION 7 LEVEL H", 'A', 7, TestCodes.LEVEL_H, 6, new TestCodes.EcLayout(5, 26), 4);
+        assertScans("version ten, level M", 'B', 10, TestCodes.LEVEL_M, 1, new TestCodes.EcLayout(5, 26), 3);
+    }
+
+    @Test
+    public void findsLightOnDarkCodes() {
+        TestCodes.Qr qr = TestCodes.qr("INVERTED", 'A', 2, TestCodes.LEVEL_M, 4, new TestCodes.EcLayout(1, 16));
+        List<CodeScanner.Result> results = CodeScanner.scan(TestCodes.render(qr, 4, QUIET, true), true, false);
+        assertEquals(1, results.size());
+        assertEquals("INVERTED", results.get(0).text);
+    }
+
+    @Test
+    public void readsPastAPaintedOverPatch() {
+        TestCodes.Qr qr = TestCodes.qr("SMUDGED", 'A', 2, TestCodes.LEVEL_H, 2, new TestCodes.EcLayout(1, 28));
+        int module = 4;
+        LumaPlane plane = TestCodes.render(qr, module, QUIET, false);
+        // A light 4x4-module blob over the data area, away from the finders and the alignment pattern.
+        for (int y = (QUIET + 10) * module; y < (QUIET + 14) * module; y++) {
+            for (int x = (QUIET + 11) * module; x < (QUIET + 15) * module; x++) {
+                plane.values[y * plane.width + x] = 235;
+            }
+        }
+        List<CodeScanner.Result> results = CodeScanner.scan(plane, true, false);
+        assertEquals(1, results.size());
+        assertEquals("SMUDGED", results.get(0).text);
+    }
+
+    @Test
+    public void reportsCodesInReadingOrder() {
+        LumaPlane first = rendered("FIRST", 0);
+        LumaPlane second = rendered("SECOND", 1);
+        LumaPlane third = rendered("THIRD", 2);
+        int size = first.width;
+        LumaPlane plane = TestCodes.blank(size * 2, size * 2);
+        paste(plane, second, size, 0);
+        paste(plane, first, 0, 0);
+        paste(plane, third, size / 2, size);
+        List<CodeScanner.Result> results = CodeScanner.scan(plane, true, false);
+        assertEquals(3, results.size());
+        assertEquals("FIRST", results.get(0).text);
+        assertEquals("SECOND", results.get(1).text);
+        assertEquals("THIRD", results.get(2).text);
+    }
+
+    @Test
+    public void findsNothingInNoiseOrBlankImages() {
+        Raster noise = TestImages.noise(300, 200, 160);
+        LumaPlane plane = LumaPlane.fromArgb(noise.pixels, 300, 200);
+        assertTrue(CodeScanner.scan(plane, true, true).isEmpty());
+        assertTrue(CodeScanner.scan(TestCodes.blank(120, 90), true, true).isEmpty());
+    }
+
+    private static void assertScans(String text, char mode, int version, int level, int mask,
+                                    TestCodes.EcLayout layout, int module) {
+        TestCodes.Qr qr = TestCodes.qr(text, mode, version, level, mask, layout);
+        List<CodeScanner.Result> results = CodeScanner.scan(TestCodes.render(qr, module, QUIET, false), true, false);
+        assertEquals("version " + version, 1, results.size());
+        CodeScanner.Result result = results.get(0);
+        assertEquals(CodeScanner.QR_CODE, result.format);
+        assertEquals(text, result.text);
+        int start = QUIET * module;
+        int end = (QUIET + qr.dimension) * module;
+        IntRect bounds = result.bounds;
+        assertTrue("version " + version + " bounds " + bounds,
+            Math.abs(bounds.left - start) <= 1 && Math.abs(bounds.top - start) <= 1
+                && Math.abs(bounds.right - end) <= 1 && Math.abs(bounds.bottom - end) <= 1);
+    }
+
+    private static LumaPlane rendered(String text, int mask) {
+        return TestCodes.render(TestCodes.qr(text, 'A', 2, TestCodes.LEVEL_M, mask, new TestCodes.EcLayout(1, 16)), 3,
+            QUIET, false);
+    }
+
+    private static void paste(LumaPlane target, LumaPlane source, int left, int top) {
+        for (int y = 0; y < source.height; y++) {
+            System.arraycopy(source.values, y * source.width, target.values, (top + y) * target.width + left,
+                source.width);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RasterStatsTest {
+
+    @Test
+    public void averagesAndTruncatesEachChannel() {
+        Raster raster = new Raster(2, 1, new int[]{0xFF0A0001, 0xFF0B00FF});
+        // (10 + 11) / 2 = 10, (1 + 255) / 2 = 128.
+        assertEquals(0xFF0A0080, RasterStats.average(raster));
+    }
+
+    @Test
+    public void ignoresAlpha() {
+        Raster raster = new Raster(2, 1, new int[]{0x00102030, 0x7F102030});
+        assertEquals(0xFF102030, RasterStats.average(raster));
+    }
+
+    @Test
+    public void averagesOnlyTheRectangle() {
+        Raster raster = TestImages.filled(6, 6, 0xFF000000);
+        raster.paste(TestImages.filled(2, 3, 0xFFFFFFFF), 3, 2);
+        assertEquals(0xFFFFFFFF, RasterStats.average(raster, new IntRect(3, 2, 5, 5)));
+        assertEquals(0xFF7F7F7F, RasterStats.average(raster, new IntRect(2, 2, 4, 5)));
+    }
+
+    @Test
+    public void emptyRectangleIsOpaqueBlack() {
+        Raster raster = TestImages.filled(4, 4, 0xFFFFFFFF);
+        assertEquals(0xFF000000, RasterStats.average(raster, new IntRect(2, 2, 2, 4)));
+    }
+}
@@ -0,0 +1,106 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.nio.IntBuffer;
+
+import org.junit.Test;
+
+public class RasterTest {
+
+    @Test
+    public void rejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new Raster(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new Raster(4, -1));
+        assertThrows(IllegalArgumentException.class, () -> new Raster(4, 4, new int[15]));
+        assertThrows(IllegalArgumentException.class, () -> new Raster(65536, 65536));
+    }
+
+    @Test
+    public void getAndSetUseRowMajorLayout() {
+        Raster raster = new Raster(3, 2);
+        raster.set(2, 1, 0xFF112233);
+        assertEquals(0xFF112233, raster.pixels[5]);
+        assertEquals(0xFF112233, raster.get(2, 1));
+    }
+
+    @Test
+    public void bufferWritesThroughToPixels() {
+        Raster raster = new Raster(2, 2, new int[6]);
+        IntBuffer buffer = raster.buffer();
+        assertEquals(4, buffer.remaining());
+        buffer.put(3, 7);
+        assertEquals(7, raster.get(1, 1));
+    }
+
+    @Test
+    public void fillLeavesSlackUntouched() {
+        int[] pixels = new int[5];
+        new Raster(2, 2, pixels).fill(9);
+        assertArrayEquals(new int[]{9, 9, 9, 9, 0}, pixels);
+    }
+
+    @Test
+    public void cropCopiesTheRectangle() {
+        Raster raster = TestImages.noise(7, 5, 1);
+        Raster crop = raster.crop(new IntRect(2, 1, 6, 4));
+        assertEquals(4, crop.width);
+        assertEquals(3, crop.height);
+        for (int y = 0; y < crop.height; y++) {
+            for (int x = 0; x < crop.width; x++) {
+                assertEquals(raster.get(x + 2, y + 1), crop.get(x, y));
+            }
+        }
+        crop.set(0, 0, 0);
+        assertEquals(TestImages.noise(7, 5, 1).get(2, 1), raster.get(2, 1));
+    }
+
+    @Test
+    public void cropRejectsRectanglesOutside() {
+        Raster raster = new Raster(4, 4);
+        assertThrows(IllegalArgumentException.class, () -> raster.crop(new IntRect(-1, 0, 2, 2)));
+        assertThrows(IllegalArgumentException.class, () -> raster.crop(new IntRect(0, 0, 5, 2)));
+        assertThrows(IllegalArgumentException.class, () -> raster.crop(new IntRect(2, 2, 2, 3)));
+    }
+
+    @Test
+    public void pasteClipsAtEveryEdge() {
+        Raster target = TestImages.filled(4, 4, 0);
+        Raster source = TestImages.filled(3, 3, 1);
+        target.paste(source, -1, 2);
+        int[] expected = {
+            0, 0, 0, 0,
+            0, 0, 0, 0,
+            1, 1, 0, 0,
+            1, 1, 0, 0,
+        };
+        assertArrayEquals(expected, target.pixels);
+
+        target.fill(0);
+        target.paste(source, 2, -2);
+        expected = new int[]{
+            0, 0, 1, 1,
+            0, 0, 0, 0,
+            0, 0, 0, 0,
+            0, 0, 0, 0,
+        };
+        assertArrayEquals(expected, target.pixels);
+
+        target.fill(0);
+        target.paste(source, 4, 0);
+        target.paste(source, -3, 0);
+        assertArrayEquals(new int[16], target.pixels);
+    }
+
+    @Test
+    public void readCopiesWholeRows() {
+        Raster raster = TestImages.noise(5, 4, 2);
+        int[] out = new int[10];
+        raster.read(1, 2, out);
+        for (int i = 0; i < out.length; i++) {
+            assertEquals(raster.pixels[5 + i], out[i]);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RedactionTest {
+
+    @Test
+    public void mergeJoinsOverlapsTransitively() {
+        List<IntRect> merged = Redaction.merge(Arrays.asList(
+            new IntRect(0, 0, 10, 10),
+            new IntRect(30, 30, 40, 40),
+            new IntRect(9, 9, 20, 20),
+            new IntRect(19, 0, 25, 5)));
+        assertEquals(Arrays.asList("[0,0][25,20]", "[30,30][40,40]"), sorted(merged));
+    }
+
+    @Test
+    public void mergeKeepsTouchingRectanglesApart() {
+        List<IntRect> rects = Arrays.asList(new IntRect(0, 0, 10, 10), new IntRect(10, 0, 20, 10));
+        assertEquals(sorted(rects), sorted(Redaction.merge(rects)));
+    }
+
+    @Test
+    public void mergeRepeatsUntilUnionsStopOverlapping() {
+        // The union of the first two grows into the third, which neither touched on its own.
+        List<IntRect> merged = Redaction.merge(Arrays.asList(
+            new IntRect(0, 0, 10, 2),
+            new IntRect(8, 0, 10, 10),
+            new IntRect(0, 8, 2, 10)));
+        assertEquals(Collections.singletonList("[0,0][10,10]"), sorted(merged));
+    }
+
+    @Test
+    public void opaqueFillReplacesOnlyTheRectangle() {
+        Raster raster = TestImages.noise(20, 20, 70);
+        int[] before = raster.pixels.clone();
+        int processed = Redaction.apply(raster, Collections.singletonList(
+            new Redaction.Area(new IntRect(-5, 15, 4, 30), Redaction.Mode.FILL, 0, 0xFF000000)));
+        assertEquals(1, processed);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 20; x++) {
+                int expected = x < 4 && y >= 15 ? 0xFF000000 : before[y * 20 + x];
+                assertEquals(expected, raster.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void translucentFillBlendsSourceOver() {
+        Raster raster = new Raster(3, 1, new int[]{0xFF000000, 0x00000000, 0xFF00FF00});
+        Redaction.apply(raster, Collections.singletonList(
+            new Redaction.Area(new IntRect(0, 0, 2, 1), Redaction.Mode.FILL, 0, 0x80FFFFFF)));
+        assertArrayEquals(new int[]{0xFF808080, 0x80FFFFFF, 0xFF00FF00}, raster.pixels);
+    }
+
+    @Test
+    public void pixelateAveragesClippedCells() {
+        Raster raster = new Raster(5, 2, new int[]{
+            0xFF000000, 0xFF020202, 0xFF101010, 0xFF101010, 0xFF646464,
+            0xFF040404, 0xFF060606, 0xFF101010, 0xFF101010, 0xFF000000,
+        });
+        Redaction.pixelate(raster, new IntRect(0, 0, 5, 2), 2);
+        assertArrayEquals(new int[]{
+            0xFF030303, 0xFF030303, 0xFF101010, 0xFF101010, 0xFF323232,
+            0xFF030303, 0xFF030303, 0xFF101010, 0xFF101010, 0xFF323232,
+        }, raster.pixels);
+    }
+
+    @Test
+    public void blurMatchesBoxBlurOfTheCrop() {
+        Raster raster = TestImages.noise(60, 50, 71);
+        IntRect rect = new IntRect(10, 5, 45, 40);
+        Raster expected = raster.crop(rect);
+        BoxBlur.apply(expected, 4);
+        Redaction.apply(raster, Collections.singletonList(new Redaction.Area(rect, Redaction.Mode.BLUR, 4, 0)));
+        assertArrayEquals(expected.pixels, raster.crop(rect).pixels);
+    }
+
+    @Test
+    public void laterGroupsPaintOverEarlierOnes() {
+        Raster raster = TestImages.filled(10, 10, 0xFFFFFFFF);
+        int processed = Redaction.apply(raster, Arrays.asList(
+            new Redaction.Area(new IntRect(0, 0, 6, 6), Redaction.Mode.FILL, 0, 0xFFFF0000),
+            new Redaction.Area(new IntRect(4, 4, 10, 10), Redaction.Mode.FILL, 0, 0xFF0000FF),
+            new Redaction.Area(new IntRect(5, 0, 8, 3), Redaction.Mode.FILL, 0, 0xFFFF0000),
+            new Redaction.Area(new IntRect(20, 20, 30, 30), Redaction.Mode.FILL, 0, 0xFF00FF00)));
+        // The two red areas overlap and merge; the off-canvas area is dropped.
+        assertEquals(2, processed);
+        assertEquals(0xFFFF0000, raster.get(0, 0));
+        assertEquals(0xFFFF0000, raster.get(7, 2));
+        assertEquals(0xFF0000FF, raster.get(5, 5));
+        assertEquals(0xFFFF0000, raster.get(7, 3));
+        assertEquals(0xFFFFFFFF, raster.get(9, 0));
+    }
+
+    @Test
+    public void areaNormalisesUnusedParameters() {
+        Redaction.Area fill = new Redaction.Area(new IntRect(0, 0, 1, 1), Redaction.Mode.FILL, 9, 0xFF123456);
+        assertEquals(0, fill.amount);
+        Redaction.Area blur = new Redaction.Area(new IntRect(0, 0, 1, 1), Redaction.Mode.BLUR, 0, 0xFF123456);
+        assertEquals(1, blur.amount);
+        assertEquals(0, blur.color);
+    }
+
+    /** Rectangles in a stable order, compared by their corners. */
+    private static List<String> sorted(List<IntRect> rects) {
+        List<String> corners = new ArrayList<>();
+        for (IntRect rect : rects) {
+            corners.add(rect.toString());
+        }
+        Collections.sort(corners);
+        return corners;
+    }
+}
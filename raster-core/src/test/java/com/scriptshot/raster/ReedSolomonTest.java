@@ -0,0 +1,97 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReedSolomonTest {
+
+    /** "HELLO WORLD" as a 1-M symbol, the worked example of the QR specification. */
+    private static final int[] HELLO_WORLD_DATA = {
+        32, 91, 11, 120, 209, 114, 220, 77, 67, 64, 236, 17, 236, 17, 236, 17,
+    };
+    private static final int[] HELLO_WORLD_EC = {196, 35, 39, 119, 235, 215, 231, 226, 93, 23};
+
+    @Test
+    public void fixtureMatchesTheSpecificationExample() {
+        assertArrayEquals(HELLO_WORLD_DATA, TestCodes.qrData("HELLO WORLD", 'A', 1, 16));
+        assertArrayEquals(HELLO_WORLD_EC, TestCodes.reedSolomon(HELLO_WORLD_DATA, 10));
+    }
+
+    @Test
+    public void cleanBlocksAreLeftAlone() {
+        int[] block = concat(HELLO_WORLD_DATA, HELLO_WORLD_EC);
+        int[] original = block.clone();
+        assertTrue(ReedSolomon.correct(block, 10));
+        assertArrayEquals(original, block);
+    }
+
+    @Test
+    public void singleErrorsAreFixedAtEveryPosition() {
+        int[] original = concat(HELLO_WORLD_DATA, HELLO_WORLD_EC);
+        for (int position = 0; position < original.length; position++) {
+            int[] block = original.clone();
+            block[position] ^= 0x5A;
+            assertTrue("position " + position, ReedSolomon.correct(block, 10));
+            assertArrayEquals("position " + position, original, block);
+        }
+    }
+
+    @Test
+    public void correctsUpToHalfTheCheckCodewords() {
+        Random random = new Random(140);
+        for (int ec : new int[]{7, 10, 17, 22, 26, 30}) {
+            for (int trial = 0; trial < 40; trial++) {
+                int[] original = codeword(random, 15 + random.nextInt(100), ec);
+                int[] block = original.clone();
+                corrupt(block, ec / 2, random);
+                assertTrue("ec " + ec + " trial " + trial, ReedSolomon.correct(block, ec));
+                assertArrayEquals("ec " + ec + " trial " + trial, original, block);
+            }
+        }
+    }
+
+    @Test
+    public void reportsBlocksWithTooManyErrors() {
+        Random random = new Random(141);
+        for (int ec : new int[]{10, 17, 26, 30}) {
+            for (int trial = 0; trial < 40; trial++) {
+                int[] block = codeword(random, 20 + random.nextInt(80), ec);
+                corrupt(block, ec / 2 + 1, random);
+                assertFalse("ec " + ec + " trial " + trial, ReedSolomon.correct(block, ec));
+            }
+        }
+    }
+
+    private static int[] codeword(Random random, int dataLength, int ec) {
+        int[] data = new int[dataLength];
+        for (int i = 0; i < dataLength; i++) {
+            data[i] = random.nextInt(256);
+        }
+        return concat(data, TestCodes.reedSolomon(data, ec));
+    }
+
+    /** Changes {@code errors} distinct codewords to different values. */
+    private static void corrupt(int[] block, int errors, Random random) {
+        boolean[] hit = new boolean[block.length];
+        for (int i = 0; i < errors; i++) {
+            int position;
+            do {
+                position = random.nextInt(block.length);
+            } while (hit[position]);
+            hit[position] = true;
+            block[position] ^= 1 + random.nextInt(255);
+        }
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] out = new int[first.length + second.length];
+        System.arraycopy(first, 0, out, 0, first.length);
+        System.arraycopy(second, 0, out, first.length, second.length);
+        return out;
+    }
+}
@@ -0,0 +1,125 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ScrollStitcherTest {
+
+    private static final int HEADER = 12;
+    private static final int FOOTER = 8;
+    private static final int BODY = 180;
+
+    @Test
+    public void stitchesScrolledFramesBetweenFixedBars() {
+        long[] page = page(600, 40);
+        int[] offsets = {0, 70, 150, 150, 260};
+        List<long[]> frames = new ArrayList<>();
+        for (int offset : offsets) {
+            frames.add(frame(page, offset));
+        }
+        ScrollStitcher.Plan plan = ScrollStitcher.plan(frames);
+        assertEquals(HEADER, plan.header);
+        assertEquals(FOOTER, plan.footer);
+        assertArrayEquals(stitched(page, 260 + BODY), render(plan, frames));
+        // The repeated frame contributes nothing.
+        for (ScrollStitcher.Segment segment : plan.segments) {
+            assertNotEquals(3, segment.frame);
+        }
+        assertEquals(HEADER + 260 + BODY + FOOTER, plan.outputHeight);
+    }
+
+    @Test
+    public void framesWithoutOverlapAreAppendedWhole() {
+        long[] page = page(1000, 41);
+        List<long[]> frames = Arrays.asList(frame(page, 0), frame(page, 500));
+        ScrollStitcher.Plan plan = ScrollStitcher.plan(frames);
+        assertEquals(HEADER + 2 * BODY + FOOTER, plan.outputHeight);
+    }
+
+    @Test
+    public void singleFrameIsCopiedAsIs() {
+        long[] frame = frame(page(300, 42), 0);
+        ScrollStitcher.Plan plan = ScrollStitcher.plan(Collections.singletonList(frame));
+        assertEquals(1, plan.segments.size());
+        assertEquals(frame.length, plan.outputHeight);
+    }
+
+    @Test
+    public void rejectsMismatchedFrames() {
+        assertThrows(IllegalArgumentException.class, () -> ScrollStitcher.plan(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class,
+            () -> ScrollStitcher.plan(Arrays.asList(new long[10], new long[11])));
+    }
+
+    @Test
+    public void rowHashesSkipTheScrollIndicatorColumns() {
+        int width = 64;
+        Raster first = TestImages.noise(width, 3, 43);
+        Raster second = new Raster(width, 3, first.pixels.clone());
+        for (int y = 0; y < 3; y++) {
+            second.set(width - 1, y, ~first.get(width - 1, y));
+        }
+        second.set(0, 2, first.get(0, 2) ^ 1);
+        long[] hashes = new long[6];
+        ScrollStitcher.hashRows(first.pixels, width, 3, hashes, 0);
+        ScrollStitcher.hashRows(second.pixels, width, 3, hashes, 3);
+        assertEquals(62, ScrollStitcher.hashedWidth(width));
+        assertEquals(hashes[0], hashes[3]);
+        assertEquals(hashes[1], hashes[4]);
+        assertNotEquals(hashes[2], hashes[5]);
+    }
+
+    /** Row hashes of a scrolling page with blank stretches, which must not be mistaken for overlap. */
+    private static long[] page(int rows, long seed) {
+        Random random = new Random(seed);
+        long[] page = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            page[i] = (i / 25) % 3 == 2 ? 0L : random.nextLong();
+        }
+        return page;
+    }
+
+    private static long[] frame(long[] page, int offset) {
+        long[] frame = new long[HEADER + BODY + FOOTER];
+        for (int i = 0; i < HEADER; i++) {
+            frame[i] = 1000 + i;
+        }
+        System.arraycopy(page, offset, frame, HEADER, BODY);
+        for (int i = 0; i < FOOTER; i++) {
+            frame[HEADER + BODY + i] = 2000 + i;
+        }
+        return frame;
+    }
+
+    private static long[] stitched(long[] page, int pageRows) {
+        long[] expected = new long[HEADER + pageRows + FOOTER];
+        for (int i = 0; i < HEADER; i++) {
+            expected[i] = 1000 + i;
+        }
+        System.arraycopy(page, 0, expected, HEADER, pageRows);
+        for (int i = 0; i < FOOTER; i++) {
+            expected[HEADER + pageRows + i] = 2000 + i;
+        }
+        return expected;
+    }
+
+    private static long[] render(ScrollStitcher.Plan plan, List<long[]> frames) {
+        long[] out = new long[plan.outputHeight];
+        int row = 0;
+        for (ScrollStitcher.Segment segment : plan.segments) {
+            System.arraycopy(frames.get(segment.frame), segment.top, out, row, segment.rows());
+            row += segment.rows();
+        }
+        return out;
+    }
+}
@@ -0,0 +1,138 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimilarityIndexTest {
+
+    private File directory;
+    private File log;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("similarity").toFile();
+        log = new File(directory, "index.bin");
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void rejectsZeroCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SimilarityIndex(null, 0));
+    }
+
+    @Test
+    public void queryReturnsClosestThenNewest() {
+        SimilarityIndex index = new SimilarityIndex(null, 100);
+        index.add("/a.png", 0b0000L, 1);
+        index.add("/b.png", 0b0011L, 2);
+        index.add("/c.png", 0b0001L, 3);
+        index.add("/d.png", 0b0010L, 4);
+        index.add("/far.png", -1L, 5);
+        List<SimilarityIndex.Match> matches = index.query(0L, 2, null);
+        assertEquals(4, matches.size());
+        assertEquals("/a.png", matches.get(0).path);
+        assertEquals("/d.png", matches.get(1).path);
+        assertEquals("/c.png", matches.get(2).path);
+        assertEquals("/b.png", matches.get(3).path);
+        assertEquals(2, matches.get(3).distance);
+        assertEquals("0000000000000003", matches.get(3).hash);
+        assertEquals(3, index.query(0L, 2, "/a.png").size());
+        assertTrue(index.query(0L, -1, null).isEmpty());
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomHashes() {
+        Random random = new Random(50);
+        SimilarityIndex index = new SimilarityIndex(null, 1000);
+        long[] hashes = new long[400];
+        long base = random.nextLong();
+        for (int i = 0; i < hashes.length; i++) {
+            // Cluster around one hash so radius queries have something to find.
+            long flips = random.nextLong() & random.nextLong() & random.nextLong();
+            hashes[i] = base ^ flips;
+            index.add("/" + i, hashes[i], i);
+        }
+        for (int radius : new int[]{0, 4, 10, 20}) {
+            long probe = base ^ (1L << radius);
+            int expected = 0;
+            for (long hash : hashes) {
+                if (PerceptualHash.distance(hash, probe) <= radius) {
+                    expected++;
+                }
+            }
+            assertEquals("radius " + radius, expected, index.query(probe, radius, null).size());
+        }
+    }
+
+    @Test
+    public void reAddingAPathReplacesItsHash() {
+        SimilarityIndex index = new SimilarityIndex(null, 10);
+        index.add("/a.png", 0L, 1);
+        index.add("/a.png", -1L, 2);
+        assertEquals(1, index.size());
+        assertTrue(index.query(0L, 5, null).isEmpty());
+        assertEquals(1, index.query(-1L, 0, null).size());
+    }
+
+    @Test
+    public void persistsAcrossReloads() {
+        SimilarityIndex index = new SimilarityIndex(log, 10);
+        index.add("/a.png", 5L, 1);
+        index.add("/b.png", 6L, 2);
+        index.add("/a.png", 7L, 3);
+        SimilarityIndex reloaded = new SimilarityIndex(log, 10);
+        assertEquals(2, reloaded.size());
+        List<SimilarityIndex.Match> matches = reloaded.query(7L, 0, null);
+        assertEquals(1, matches.size());
+        assertEquals("/a.png", matches.get(0).path);
+        assertEquals(3, matches.get(0).timestamp);
+    }
+
+    @Test
+    public void evictsTheOldestEntriesPastCapacity() {
+        SimilarityIndex index = new SimilarityIndex(log, 20);
+        for (int i = 0; i < 21; i++) {
+            index.add("/" + i, i, i);
+        }
+        // Eviction drops back to 90% of capacity.
+        assertEquals(18, index.size());
+        assertTrue(index.query(0L, 0, null).isEmpty());
+        assertEquals(1, index.query(20L, 0, null).size());
+        assertEquals(18, new SimilarityIndex(log, 20).size());
+    }
+
+    @Test
+    public void dropsATornFinalRecord() throws IOException {
+        SimilarityIndex index = new SimilarityIndex(log, 10);
+        index.add("/a.png", 1L, 1);
+        index.add("/b.png", 2L, 2);
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        SimilarityIndex reloaded = new SimilarityIndex(log, 10);
+        assertEquals(1, reloaded.size());
+        assertEquals("/a.png", reloaded.query(1L, 0, null).get(0).path);
+    }
+}
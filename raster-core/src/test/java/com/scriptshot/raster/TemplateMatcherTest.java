@@ -0,0 +1,122 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TemplateMatcherTest {
+
+    @Test
+    public void findsAnExactCopy() {
+        LumaPlane image = texture(320, 240, 60);
+        LumaPlane template = crop(image, 201, 77, 48, 36);
+        List<TemplateMatcher.Match> matches = TemplateMatcher.find(image, template, 0.9, null, 5);
+        assertEquals(1, matches.size());
+        TemplateMatcher.Match match = matches.get(0);
+        assertEquals(201, match.left);
+        assertEquals(77, match.top);
+        assertEquals(249, match.right);
+        assertEquals(113, match.bottom);
+        assertEquals(1d, match.score, 1e-6);
+        assertEquals(1d, match.scale, 0d);
+    }
+
+    @Test
+    public void findsEveryNonOverlappingCopy() {
+        LumaPlane image = texture(300, 200, 61);
+        LumaPlane template = texture(30, 20, 62);
+        paste(image, template, 20, 30);
+        paste(image, template, 220, 150);
+        List<TemplateMatcher.Match> matches = TemplateMatcher.find(image, template, 0.95, null, 10);
+        assertEquals(2, matches.size());
+        TemplateMatcher.Match first = matches.get(0).top < matches.get(1).top ? matches.get(0) : matches.get(1);
+        TemplateMatcher.Match second = first == matches.get(0) ? matches.get(1) : matches.get(0);
+        assertEquals(20, first.left);
+        assertEquals(30, first.top);
+        assertEquals(220, second.left);
+        assertEquals(150, second.top);
+        assertEquals(1, TemplateMatcher.find(image, template, 0.95, null, 1).size());
+    }
+
+    @Test
+    public void findsASmallTemplateOnALargeImage() {
+        // Too small for the old fixed pyramid: the image decides the depth and the template shrinks to a few pixels.
+        LumaPlane image = texture(1080, 1920, 67);
+        LumaPlane template = crop(image, 613, 1401, 16, 16);
+        List<TemplateMatcher.Match> matches = TemplateMatcher.find(image, template, 0.9, null, 1);
+        assertEquals(1, matches.size());
+        assertEquals(613, matches.get(0).left);
+        assertEquals(1401, matches.get(0).top);
+        assertEquals(1d, matches.get(0).score, 1e-6);
+    }
+
+    @Test
+    public void toleratesABrightnessChange() {
+        LumaPlane image = texture(200, 160, 63);
+        LumaPlane template = crop(image, 50, 60, 40, 40);
+        for (int i = 0; i < template.values.length; i++) {
+            template.values[i] = template.values[i] / 2 + 60;
+        }
+        List<TemplateMatcher.Match> matches = TemplateMatcher.find(image, template, 0.9, null, 1);
+        assertEquals(1, matches.size());
+        assertEquals(50, matches.get(0).left);
+        assertEquals(60, matches.get(0).top);
+    }
+
+    @Test
+    public void searchesTheRequestedScales() {
+        LumaPlane image = texture(240, 240, 64);
+        LumaPlane template = crop(image, 80, 100, 64, 64).resize(32, 32);
+        List<TemplateMatcher.Match> matches = TemplateMatcher.find(image, template, 0.8, new double[]{1d, 2d}, 1);
+        assertEquals(1, matches.size());
+        TemplateMatcher.Match match = matches.get(0);
+        assertEquals(2d, match.scale, 0d);
+        assertTrue(Math.abs(match.left - 80) <= 1);
+        assertTrue(Math.abs(match.top - 100) <= 1);
+    }
+
+    @Test
+    public void reportsNothingBelowTheThreshold() {
+        LumaPlane image = texture(160, 120, 65);
+        LumaPlane template = texture(24, 24, 66);
+        assertTrue(TemplateMatcher.find(image, template, 0.9, null, 5).isEmpty());
+        // A template larger than the image is skipped rather than rejected.
+        assertTrue(TemplateMatcher.find(template, image, 0.1, null, 5).isEmpty());
+    }
+
+    /** Smoothed noise: random 4x4 cells, so the pyramid levels keep enough detail to match on. */
+    private static LumaPlane texture(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int cellsX = (width + 3) / 4;
+        int[] cells = new int[cellsX * ((height + 3) / 4)];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = random.nextInt(256);
+        }
+        int[] values = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                values[y * width + x] = cells[(y / 4) * cellsX + x / 4];
+            }
+        }
+        return new LumaPlane(width, height, values);
+    }
+
+    private static LumaPlane crop(LumaPlane plane, int left, int top, int width, int height) {
+        int[] values = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(plane.values, (top + y) * plane.width + left, values, y * width, width);
+        }
+        return new LumaPlane(width, height, values);
+    }
+
+    private static void paste(LumaPlane target, LumaPlane source, int left, int top) {
+        for (int y = 0; y < source.height; y++) {
+            System.arraycopy(source.values, y * source.width, target.values, (top + y) * target.width + left,
+                source.width);
+        }
+    }
+}
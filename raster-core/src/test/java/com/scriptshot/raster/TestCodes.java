@@ -0,0 +1,463 @@
+package com.scriptshot.raster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds symbols for the code reader tests straight from the specifications: QR codes (ISO/IEC 18004) for a chosen
+ * version, level and mask, EAN/UPC digits and Code 128 values, and renders them into luminance planes.
+ */
+final class TestCodes {
+
+    static final int LEVEL_L = 0;
+    static final int LEVEL_M = 1;
+    static final int LEVEL_Q = 2;
+    static final int LEVEL_H = 3;
+
+    /** Format bits store L, M, Q, H as 01, 00, 11, 10. */
+    private static final int[] LEVEL_BITS = {1, 0, 3, 2};
+    private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    /** EAN-13 left-half parity by first digit, L for odd and G for even. */
+    private static final String[] EAN13_PARITY = {
+        "LLLLLL", "LLGLGG", "LLGGLG", "LLGGGL", "LGLLGG", "LGGLLG", "LGGGLL", "LGLGLG", "LGLGGL", "LGGLGL",
+    };
+    /** L-code digits as 7-module strings, 1 for a dark module. */
+    private static final String[] EAN_L_CODES = {
+        "0001101", "0011001", "0010011", "0111101", "0100011", "0110001", "0101111", "0111011", "0110111", "0001011",
+    };
+
+    /** Code 128 symbol widths, bar first; the stop character (106) has seven elements. */
+    static final String[] CODE128_WIDTHS = {
+        "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+        "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132",
+        "221231", "213212", "223112", "312131", "311222", "321122", "321221", "312212", "322112", "322211",
+        "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+        "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331",
+        "231131", "213113", "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111",
+        "314111", "221411", "431111", "111224", "111422", "121124", "121421", "141122", "141221", "112214",
+        "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+        "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141",
+        "214121", "412121", "111143", "111341", "131141", "114113", "114311", "411113", "411311", "113141",
+        "114131", "311141", "411131", "211412", "211214", "211232", "2331112",
+    };
+
+    private TestCodes() {
+    }
+
+    /** How many blocks and check codewords per block a version and level use. */
+    static final class EcLayout {
+        final int blocks;
+        final int ecPerBlock;
+
+        EcLayout(int blocks, int ecPerBlock) {
+            this.blocks = blocks;
+            this.ecPerBlock = ecPerBlock;
+        }
+    }
+
+    /** Module grid of a QR symbol, row-major with {@code true} for dark. */
+    static final class Qr {
+        final int version;
+        final int dimension;
+        final boolean[] modules;
+
+        Qr(int version, boolean[] modules) {
+            this.version = version;
+            this.dimension = QrDecoder.dimension(version);
+            this.modules = modules;
+        }
+    }
+
+    // ---- Reed-Solomon ----
+
+    /** GF(256) product with the QR field polynomial, by shift and add. */
+    static int gfMultiply(int a, int b) {
+        int product = 0;
+        while (b != 0) {
+            if ((b & 1) != 0) {
+                product ^= a;
+            }
+            a <<= 1;
+            if (a >= 256) {
+                a ^= 0x11D;
+            }
+            b >>>= 1;
+        }
+        return product;
+    }
+
+    /** Check codewords for {@code data}: the remainder of data(x) * x^ec divided by the generator polynomial. */
+    static int[] reedSolomon(int[] data, int ecCount) {
+        int[] generator = {1};
+        int root = 1;
+        for (int i = 0; i < ecCount; i++) {
+            int[] next = new int[generator.length + 1];
+            for (int j = 0; j < generator.length; j++) {
+                next[j] ^= generator[j];
+                next[j + 1] ^= gfMultiply(generator[j], root);
+            }
+            generator = next;
+            root = gfMultiply(root, 2);
+        }
+        int[] remainder = new int[ecCount];
+        for (int value : data) {
+            int factor = value ^ remainder[0];
+            System.arraycopy(remainder, 1, remainder, 0, ecCount - 1);
+            remainder[ecCount - 1] = 0;
+            for (int j = 0; j < ecCount; j++) {
+                remainder[j] ^= gfMultiply(generator[j + 1], factor);
+            }
+        }
+        return remainder;
+    }
+
+    // ---- QR ----
+
+    /** Data codewords of a single-segment symbol: mode, count, payload, terminator and padding. */
+    static int[] qrData(String text, char mode, int version, int dataCodewords) {
+        BitBuffer bits = new BitBuffer();
+        int sizeClass = version <= 9 ? 0 : version <= 26 ? 1 : 2;
+        switch (mode) {
+            case 'N':
+                bits.append(1, 4);
+                bits.append(text.length(), new int[]{10, 12, 14}[sizeClass]);
+                for (int i = 0; i < text.length(); i += 3) {
+                    String group = text.substring(i, Math.min(text.length(), i + 3));
+                    bits.append(Integer.parseInt(group), group.length() * 3 + 1);
+                }
+                break;
+            case 'A':
+                bits.append(2, 4);
+                bits.append(text.length(), new int[]{9, 11, 13}[sizeClass]);
+                for (int i = 0; i + 1 < text.length(); i += 2) {
+                    bits.append(ALPHANUMERIC.indexOf(text.charAt(i)) * 45 + ALPHANUMERIC.indexOf(text.charAt(i + 1)),
+                        11);
+                }
+                if (text.length() % 2 == 1) {
+                    bits.append(ALPHANUMERIC.indexOf(text.charAt(text.length() - 1)), 6);
+                }
+                break;
+            default:
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                bits.append(4, 4);
+                bits.append(bytes.length, new int[]{8, 16, 16}[sizeClass]);
+                for (byte value : bytes) {
+                    bits.append(value & 0xFF, 8);
+                }
+                break;
+        }
+        int capacity = dataCodewords * 8;
+        if (bits.length > capacity) {
+            throw new IllegalArgumentException(text.length() + " characters do not fit version " + version);
+        }
+        bits.append(0, Math.min(4, capacity - bits.length));
+        bits.append(0, (8 - bits.length % 8) % 8);
+        int[] codewords = new int[dataCodewords];
+        int filled = bits.length / 8;
+        for (int i = 0; i < filled; i++) {
+            codewords[i] = bits.byteAt(i);
+        }
+        for (int i = filled; i < dataCodewords; i++) {
+            codewords[i] = (i - filled) % 2 == 0 ? 0xEC : 0x11;
+        }
+        return codewords;
+    }
+
+    /** Splits data into blocks (the later ones one codeword longer), adds check codewords and interleaves. */
+    static int[] qrCodewords(int[] data, int version, EcLayout layout) {
+        int total = QrDecoder.rawCodewords(version);
+        int blocks = layout.blocks;
+        int ec = layout.ecPerBlock;
+        int shortBlocks = blocks - total % blocks;
+        int shortData = total / blocks - ec;
+        if (data.length != total - blocks * ec) {
+            throw new IllegalArgumentException("Expected " + (total - blocks * ec) + " data codewords");
+        }
+        int[][] dataBlocks = new int[blocks][];
+        int[][] ecBlocks = new int[blocks][];
+        int offset = 0;
+        for (int block = 0; block < blocks; block++) {
+            int length = shortData + (block < shortBlocks ? 0 : 1);
+            dataBlocks[block] = new int[length];
+            System.arraycopy(data, offset, dataBlocks[block], 0, length);
+            offset += length;
+            ecBlocks[block] = reedSolomon(dataBlocks[block], ec);
+        }
+        int[] out = new int[total];
+        int index = 0;
+        for (int i = 0; i <= shortData; i++) {
+            for (int[] block : dataBlocks) {
+                if (i < block.length) {
+                    out[index++] = block[i];
+                }
+            }
+        }
+        for (int i = 0; i < ec; i++) {
+            for (int[] block : ecBlocks) {
+                out[index++] = block[i];
+            }
+        }
+        return out;
+    }
+
+    static Qr qr(String text, char mode, int version, int level, int mask, EcLayout layout) {
+        int dataCodewords = QrDecoder.rawCodewords(version) - layout.blocks * layout.ecPerBlock;
+        return qrSymbol(qrCodewords(qrData(text, mode, version, dataCodewords), version, layout), version, level,
+            mask);
+    }
+
+    /** Places interleaved codewords and every function pattern, then applies {@code mask}. */
+    static Qr qrSymbol(int[] codewords, int version, int level, int mask) {
+        int size = QrDecoder.dimension(version);
+        boolean[] dark = new boolean[size * size];
+        boolean[] reserved = new boolean[size * size];
+        drawFinder(dark, reserved, size, 3, 3);
+        drawFinder(dark, reserved, size, size - 4, 3);
+        drawFinder(dark, reserved, size, 3, size - 4);
+        for (int i = 0; i < size; i++) {
+            if (!reserved[6 * size + i]) {
+                set(dark, reserved, size, i, 6, i % 2 == 0);
+            }
+            if (!reserved[i * size + 6]) {
+                set(dark, reserved, size, 6, i, i % 2 == 0);
+            }
+        }
+        int[] centres = QrDecoder.alignmentCentres(version);
+        for (int cy : centres) {
+            for (int cx : centres) {
+                boolean nearFinder = cx < 9 && cy < 9 || cx >= size - 9 && cy < 9 || cx < 9 && cy >= size - 9;
+                if (nearFinder) {
+                    continue;
+                }
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        set(dark, reserved, size, cx + dx, cy + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+                    }
+                }
+            }
+        }
+        // Format areas (filled below), the dark module and the version blocks.
+        for (int i = 0; i < 9; i++) {
+            reserved[8 * size + i] = true;
+            reserved[i * size + 8] = true;
+        }
+        for (int i = 0; i < 8; i++) {
+            reserved[8 * size + size - 1 - i] = true;
+            reserved[(size - 1 - i) * size + 8] = true;
+        }
+        set(dark, reserved, size, 8, size - 8, true);
+        if (version >= 7) {
+            int info = versionInfo(version);
+            for (int i = 0; i < 18; i++) {
+                boolean bit = (info >> i & 1) != 0;
+                set(dark, reserved, size, i / 3, size - 11 + i % 3, bit);
+                set(dark, reserved, size, size - 11 + i % 3, i / 3, bit);
+            }
+        }
+        int bitIndex = 0;
+        boolean upward = true;
+        for (int right = size - 1; right > 0; right -= 2) {
+            if (right == 6) {
+                right--;
+            }
+            for (int step = 0; step < size; step++) {
+                int row = upward ? size - 1 - step : step;
+                for (int column = right; column > right - 2; column--) {
+                    int index = row * size + column;
+                    if (reserved[index]) {
+                        continue;
+                    }
+                    boolean bit = bitIndex < codewords.length * 8
+                        && (codewords[bitIndex >> 3] >> (7 - (bitIndex & 7)) & 1) != 0;
+                    dark[index] = bit ^ maskBit(mask, row, column);
+                    bitIndex++;
+                }
+            }
+            upward = !upward;
+        }
+        int format = formatInfo(LEVEL_BITS[level] << 3 | mask);
+        for (int i = 0; i < 15; i++) {
+            boolean bit = (format >> (14 - i) & 1) != 0;
+            // First copy around the top-left finder, second split between the other two.
+            int[] first = i < 6 ? new int[]{i, 8} : i < 9 ? new int[][]{{7, 8}, {8, 8}, {8, 7}}[i - 6]
+                : new int[]{8, 14 - i};
+            dark[first[1] * size + first[0]] = bit;
+            int[] second = i < 7 ? new int[]{8, size - 1 - i} : new int[]{size - 15 + i, 8};
+            dark[second[1] * size + second[0]] = bit;
+        }
+        return new Qr(version, dark);
+    }
+
+    private static void drawFinder(boolean[] dark, boolean[] reserved, int size, int cx, int cy) {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int x = cx + dx;
+                int y = cy + dy;
+                if (x < 0 || y < 0 || x >= size || y >= size) {
+                    continue;
+                }
+                int ring = Math.max(Math.abs(dx), Math.abs(dy));
+                set(dark, reserved, size, x, y, ring != 2 && ring != 4);
+            }
+        }
+    }
+
+    private static void set(boolean[] dark, boolean[] reserved, int size, int x, int y, boolean value) {
+        dark[y * size + x] = value;
+        reserved[y * size + x] = true;
+    }
+
+    /** Mask conditions from the specification, with i the row and j the column. */
+    private static boolean maskBit(int mask, int i, int j) {
+        switch (mask) {
+            case 0:
+                return (i + j) % 2 == 0;
+            case 1:
+                return i % 2 == 0;
+            case 2:
+                return j % 3 == 0;
+            case 3:
+                return (i + j) % 3 == 0;
+            case 4:
+                return (i / 2 + j / 3) % 2 == 0;
+            case 5:
+                return i * j % 2 + i * j % 3 == 0;
+            case 6:
+                return (i * j % 2 + i * j % 3) % 2 == 0;
+            default:
+                return ((i + j) % 2 + i * j % 3) % 2 == 0;
+        }
+    }
+
+    /** BCH(15,5) format word, masked with 101010000010010. */
+    static int formatInfo(int data) {
+        return (data << 10 | bchRemainder(data << 10, 0x537, 10)) ^ 0x5412;
+    }
+
+    /** BCH(18,6) version word. */
+    static int versionInfo(int version) {
+        return version << 12 | bchRemainder(version << 12, 0x1F25, 12);
+    }
+
+    private static int bchRemainder(int value, int generator, int degree) {
+        for (int bit = 31; bit >= degree; bit--) {
+            if ((value >>> bit & 1) != 0) {
+                value ^= generator << (bit - degree);
+            }
+        }
+        return value;
+    }
+
+    // ---- Linear codes ----
+
+    /** Module pattern of an EAN-13 (13 digits) or EAN-8 (8 digits) symbol, guards included. */
+    static String ean(String digits) {
+        boolean thirteen = digits.length() == 13;
+        String parity = thirteen ? EAN13_PARITY[digits.charAt(0) - '0'] : "LLLL";
+        String left = thirteen ? digits.substring(1, 7) : digits.substring(0, 4);
+        String right = thirteen ? digits.substring(7) : digits.substring(4);
+        StringBuilder modules = new StringBuilder("101");
+        for (int i = 0; i < left.length(); i++) {
+            String code = EAN_L_CODES[left.charAt(i) - '0'];
+            modules.append(parity.charAt(i) == 'L' ? code : new StringBuilder(complement(code)).reverse());
+        }
+        modules.append("01010");
+        for (int i = 0; i < right.length(); i++) {
+            modules.append(complement(EAN_L_CODES[right.charAt(i) - '0']));
+        }
+        return modules.append("101").toString();
+    }
+
+    /** UPC-A is EAN-13 with a leading zero. */
+    static String upcA(String digits) {
+        return ean("0" + digits);
+    }
+
+    /** Module pattern of a Code 128 symbol from its values, start character first; adds check and stop. */
+    static String code128(int... values) {
+        StringBuilder modules = new StringBuilder();
+        int checksum = values[0];
+        for (int i = 0; i < values.length; i++) {
+            appendWidths(modules, CODE128_WIDTHS[values[i]]);
+            checksum += i * values[i];
+        }
+        appendWidths(modules, CODE128_WIDTHS[checksum % 103]);
+        appendWidths(modules, CODE128_WIDTHS[106]);
+        return modules.toString();
+    }
+
+    private static void appendWidths(StringBuilder modules, String widths) {
+        for (int i = 0; i < widths.length(); i++) {
+            char module = i % 2 == 0 ? '1' : '0';
+            for (int w = 0; w < widths.charAt(i) - '0'; w++) {
+                modules.append(module);
+            }
+        }
+    }
+
+    private static String complement(String code) {
+        StringBuilder out = new StringBuilder(code.length());
+        for (int i = 0; i < code.length(); i++) {
+            out.append(code.charAt(i) == '1' ? '0' : '1');
+        }
+        return out.toString();
+    }
+
+    // ---- Rendering ----
+
+    static LumaPlane render(Qr qr, int modulePixels, int quietModules, boolean inverted) {
+        int size = (qr.dimension + quietModules * 2) * modulePixels;
+        int[] values = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int column = x / modulePixels - quietModules;
+                int row = y / modulePixels - quietModules;
+                boolean dark = column >= 0 && row >= 0 && column < qr.dimension && row < qr.dimension
+                    && qr.modules[row * qr.dimension + column];
+                values[y * size + x] = dark != inverted ? 20 : 235;
+            }
+        }
+        return new LumaPlane(size, size, values);
+    }
+
+    /** Draws {@code modules} ('1' dark) as bars {@code height} pixels tall at ({@code left}, {@code top}). */
+    static void drawBars(LumaPlane plane, String modules, int modulePixels, int left, int top, int height) {
+        for (int y = top; y < top + height; y++) {
+            for (int i = 0; i < modules.length(); i++) {
+                if (modules.charAt(i) == '1') {
+                    for (int x = 0; x < modulePixels; x++) {
+                        plane.values[y * plane.width + left + i * modulePixels + x] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    static LumaPlane blank(int width, int height) {
+        int[] values = new int[width * height];
+        Arrays.fill(values, 255);
+        return new LumaPlane(width, height, values);
+    }
+
+    private static final class BitBuffer {
+        private byte[] bytes = new byte[16];
+        int length;
+
+        void append(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (length / 8 >= bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                if ((value >> i & 1) != 0) {
+                    bytes[length / 8] |= (byte) (0x80 >> (length % 8));
+                }
+                length++;
+            }
+        }
+
+        int byteAt(int index) {
+            return bytes[index] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.scriptshot.raster;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Fixtures shared by the kernel tests: seeded random rasters and a decoder for encoded output.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    /** Opaque pixels with independent random channels. */
+    static Raster noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        Raster raster = new Raster(width, height);
+        for (int i = 0; i < width * height; i++) {
+            raster.pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return raster;
+    }
+
+    /** Pixels with random alpha as well as colour. */
+    static Raster translucentNoise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        Raster raster = new Raster(width, height);
+        for (int i = 0; i < width * height; i++) {
+            raster.pixels[i] = random.nextInt();
+        }
+        return raster;
+    }
+
+    static Raster filled(int width, int height, int argb) {
+        Raster raster = new Raster(width, height);
+        raster.fill(argb);
+        return raster;
+    }
+
+    /** Decodes PNG or JPEG bytes with ImageIO into a non-premultiplied ARGB raster. */
+    static Raster decode(byte[] encoded) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (image == null) {
+            throw new IOException("ImageIO could not decode " + encoded.length + " bytes");
+        }
+        Raster raster = new Raster(image.getWidth(), image.getHeight());
+        image.getRGB(0, 0, raster.width, raster.height, raster.pixels, 0, raster.width);
+        return raster;
+    }
+
+    static int channel(int argb, int shift) {
+        return (argb >> shift) & 0xFF;
+    }
+
+    /** Largest difference between any channel of two pixels. */
+    static int maxChannelDelta(int first, int second) {
+        int delta = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            delta = Math.max(delta, Math.abs(channel(first, shift) - channel(second, shift)));
+        }
+        return delta;
+    }
+}
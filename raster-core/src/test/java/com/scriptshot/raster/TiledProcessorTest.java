@@ -0,0 +1,114 @@
+package com.scriptshot.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TiledProcessorTest {
+
+    @Test
+    public void passesBandsThroughUnchangedWithoutOps() throws IOException {
+        Raster source = TestImages.translucentNoise(37, 53, 80);
+        for (int bandRows : new int[]{1, 7, 16, 53, 100}) {
+            Collector sink = new Collector(37, 53);
+            int bands = TiledProcessor.run(source, 37, 53, null, Collections.emptyList(), bandRows, sink);
+            assertEquals((53 + bandRows - 1) / bandRows, bands);
+            assertArrayEquals("band rows " + bandRows, source.pixels, sink.raster.pixels);
+        }
+    }
+
+    @Test
+    public void cropsBeforeApplyingOps() throws IOException {
+        Raster source = TestImages.noise(50, 40, 81);
+        IntRect crop = new IntRect(7, 5, 31, 38);
+        Collector sink = new Collector(crop.width(), crop.height());
+        TiledProcessor.run(source, 50, 40, crop, Collections.emptyList(), 8, sink);
+        assertArrayEquals(source.crop(crop).pixels, sink.raster.pixels);
+    }
+
+    @Test
+    public void haloOpsMatchTheWholeImageResult() throws IOException {
+        Raster source = TestImages.noise(64, 90, 82);
+        IntRect crop = new IntRect(3, 4, 60, 88);
+        IntRect blurred = new IntRect(10, 20, 50, 70);
+        Raster overlay = TestImages.translucentNoise(20, 30, 83);
+
+        Raster expected = source.crop(crop);
+        BoxBlur.apply(expected, 2);
+        Raster region = expected.crop(blurred);
+        BoxBlur.apply(region, 3);
+        expected.paste(region, blurred.left, blurred.top);
+        Redaction.fill(expected, new IntRect(0, 30, 20, 45), 0x80FF0000);
+        drawOver(expected, overlay, 40, 50);
+        ColorMatrixOp.saturation(0.4f).apply(expected);
+
+        List<BandOp> ops = Arrays.asList(
+            BandOps.blur(null, 2),
+            BandOps.blur(blurred, 3),
+            BandOps.fill(new IntRect(0, 30, 20, 45), 0x80FF0000),
+            BandOps.overlay(overlay, 40, 50),
+            BandOps.colorMatrix(ColorMatrixOp.saturation(0.4f)));
+        for (int bandRows : new int[]{1, 5, 16, 200}) {
+            Collector sink = new Collector(crop.width(), crop.height());
+            TiledProcessor.run(source, 64, 90, crop, ops, bandRows, sink);
+            assertArrayEquals("band rows " + bandRows, expected.pixels, sink.raster.pixels);
+        }
+    }
+
+    @Test
+    public void rejectsBadArguments() {
+        Raster source = new Raster(10, 10);
+        Collector sink = new Collector(10, 10);
+        assertThrows(IllegalArgumentException.class, () -> TiledProcessor.run(source, 10, 10,
+            new IntRect(0, 0, 11, 10), Collections.emptyList(), 4, sink));
+        assertThrows(IllegalArgumentException.class, () -> TiledProcessor.run(source, 10, 10,
+            new IntRect(5, 5, 5, 9), Collections.emptyList(), 4, sink));
+        assertThrows(IllegalArgumentException.class, () -> TiledProcessor.run(source, 10, 10,
+            null, Collections.emptyList(), 0, sink));
+    }
+
+    private static void drawOver(Raster target, Raster overlay, int left, int top) {
+        for (int y = 0; y < overlay.height; y++) {
+            for (int x = 0; x < overlay.width; x++) {
+                int tx = left + x;
+                int ty = top + y;
+                if (tx < 0 || ty < 0 || tx >= target.width || ty >= target.height) {
+                    continue;
+                }
+                int color = overlay.get(x, y);
+                int alpha = color >>> 24;
+                if (alpha == 0xFF) {
+                    target.set(tx, ty, color);
+                } else if (alpha != 0) {
+                    target.set(tx, ty, Redaction.blend(target.get(tx, ty), color, alpha));
+                }
+            }
+        }
+    }
+
+    /** Reassembles the rows a sink receives into one raster. */
+    static final class Collector implements RowSink {
+        final Raster raster;
+        int rows;
+
+        Collector(int width, int height) {
+            raster = new Raster(width, height);
+        }
+
+        @Override
+        public void writeRows(int[] pixels, int offset, int stride, int count) {
+            for (int row = 0; row < count; row++) {
+                System.arraycopy(pixels, offset + row * stride, raster.pixels, (rows + row) * raster.width,
+                    raster.width);
+            }
+            rows += count;
+        }
+    }
+}